@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Generates the in-process cell fixtures shared by the JMH suites. Row keys are a fixed-width,
+ * zero-padded row number followed by random bytes so that comparisons have to walk a realistic
+ * common prefix before they find a difference.
+ */
+@InterfaceAudience.Private
+public final class BenchmarkCellUtil {
+
+  public static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private BenchmarkCellUtil() {
+  }
+
+  /**
+   * @return a row key of <code>rowLength</code> bytes that sorts at position <code>rowIndex</code>
+   */
+  public static byte[] row(int rowIndex, int rowLength, Random rand) {
+    byte[] prefix = Bytes.toBytes(String.format("%010d", rowIndex));
+    byte[] row = new byte[Math.max(rowLength, prefix.length)];
+    System.arraycopy(prefix, 0, row, 0, prefix.length);
+    for (int i = prefix.length; i < row.length; i++) {
+      row[i] = (byte) ('a' + rand.nextInt(26));
+    }
+    return row;
+  }
+
+  /**
+   * @return <code>rows * qualifiers</code> KeyValues sorted by {@link CellComparator#COMPARATOR}
+   */
+  public static List<Cell> createSortedCells(int rows, int qualifiers, int rowLength,
+      int valueLength, long seed) {
+    Random rand = new Random(seed);
+    List<Cell> cells = new ArrayList<>(rows * qualifiers);
+    long ts = System.currentTimeMillis();
+    for (int r = 0; r < rows; r++) {
+      byte[] row = row(r, rowLength, rand);
+      for (int q = 0; q < qualifiers; q++) {
+        byte[] value = new byte[valueLength];
+        rand.nextBytes(value);
+        cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("q" + q), ts, value));
+      }
+    }
+    Collections.sort(cells, CellComparator.COMPARATOR);
+    return cells;
+  }
+
+  /**
+   * @return an off-heap copy of <code>kv</code> backed by a direct buffer
+   */
+  public static Cell toOffheap(KeyValue kv) {
+    ByteBuffer bb = ByteBuffer.allocateDirect(kv.getLength());
+    bb.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    return new ByteBufferKeyValue(bb, 0, kv.getLength());
+  }
+}
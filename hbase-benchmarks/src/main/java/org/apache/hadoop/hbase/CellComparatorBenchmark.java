@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CellComparator} on the shapes the read path compares most: cells of adjacent
+ * rows, cells of the same row that only differ in the qualifier, and on-heap against off-heap
+ * backed cells.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellComparatorBenchmark {
+
+  @Param({ "16", "64", "256" })
+  public int rowLength;
+
+  @Param({ "true", "false" })
+  public boolean offheap;
+
+  private final CellComparator comparator = CellComparator.COMPARATOR;
+
+  private Cell left;
+  private Cell sameRowNextQualifier;
+  private Cell nextRow;
+
+  @Setup
+  public void setup() {
+    List<Cell> cells = BenchmarkCellUtil.createSortedCells(2, 2, rowLength, 8, 42L);
+    left = maybeOffheap(cells.get(0));
+    sameRowNextQualifier = maybeOffheap(cells.get(1));
+    nextRow = maybeOffheap(cells.get(2));
+  }
+
+  private Cell maybeOffheap(Cell cell) {
+    return offheap ? BenchmarkCellUtil.toOffheap((KeyValue) cell) : cell;
+  }
+
+  @Benchmark
+  public int compareSameRow() {
+    return comparator.compare(left, sameRowNextQualifier);
+  }
+
+  @Benchmark
+  public int compareDifferentRow() {
+    return comparator.compare(left, nextRow);
+  }
+
+  @Benchmark
+  public int compareRows() {
+    return comparator.compareRows(left, nextRow);
+  }
+
+  @Benchmark
+  public int compareSelf() {
+    return comparator.compare(left, left);
+  }
+}
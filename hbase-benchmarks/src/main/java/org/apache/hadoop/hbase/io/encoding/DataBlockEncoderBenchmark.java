@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.encoding;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.BenchmarkCellUtil;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.io.ByteArrayOutputStream;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures each {@link DataBlockEncoder}: encoding a full data block, seeking to a random key
+ * within an encoded block, and iterating an encoded block from start to end.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBlockEncoderBenchmark {
+
+  private static final byte[] DUMMY_HEADER = new byte[HConstants.HFILEBLOCK_HEADER_SIZE];
+  private static final int ENCODED_DATA_OFFSET =
+      HConstants.HFILEBLOCK_HEADER_SIZE + DataBlockEncoding.ID_SIZE;
+  private static final int NUM_SEEK_KEYS = 1024;
+
+  @Param({ "PREFIX", "DIFF", "FAST_DIFF", "ROW_INDEX_V1" })
+  public DataBlockEncoding encoding;
+
+  @Param({ "1000" })
+  public int numCells;
+
+  @Param({ "true", "false" })
+  public boolean offheap;
+
+  private DataBlockEncoder encoder;
+  private HFileContext meta;
+  private List<Cell> cells;
+  private DataBlockEncoder.EncodedSeeker seeker;
+  private Cell[] seekKeys;
+  private int seekIndex;
+
+  @Setup
+  public void setup() throws IOException {
+    encoder = encoding.getEncoder();
+    meta = new HFileContextBuilder().withHBaseCheckSum(false).withIncludesMvcc(false)
+        .withIncludesTags(false).withCompression(Compression.Algorithm.NONE).build();
+    cells = BenchmarkCellUtil.createSortedCells(numCells / 10, 10, 24, 16, 42L);
+    byte[] encoded = encode();
+    ByteBuffer block;
+    if (offheap) {
+      block = ByteBuffer.allocateDirect(encoded.length - ENCODED_DATA_OFFSET);
+      block.put(encoded, ENCODED_DATA_OFFSET, encoded.length - ENCODED_DATA_OFFSET);
+      block.rewind();
+    } else {
+      block = ByteBuffer.wrap(encoded, ENCODED_DATA_OFFSET, encoded.length - ENCODED_DATA_OFFSET)
+          .slice();
+    }
+    seeker = encoder.createSeeker(CellComparator.COMPARATOR,
+      encoder.newDataBlockDecodingContext(meta));
+    seeker.setCurrentBuffer(new SingleByteBuff(block));
+    Random rand = new Random(42L);
+    seekKeys = new Cell[NUM_SEEK_KEYS];
+    for (int i = 0; i < NUM_SEEK_KEYS; i++) {
+      seekKeys[i] = cells.get(rand.nextInt(cells.size()));
+    }
+  }
+
+  private byte[] encode() throws IOException {
+    HFileBlockEncodingContext ctx =
+        encoder.newDataBlockEncodingContext(encoding, DUMMY_HEADER, meta);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    baos.write(DUMMY_HEADER);
+    DataOutputStream dos = new DataOutputStream(baos);
+    encoder.startBlockEncoding(ctx, dos);
+    for (Cell cell : cells) {
+      encoder.encode(cell, ctx, dos);
+    }
+    encoder.endBlockEncoding(ctx, dos, baos.getBuffer());
+    return baos.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] encodeBlock() throws IOException {
+    return encode();
+  }
+
+  @Benchmark
+  public int seekInBlock() {
+    return seeker.seekToKeyInBlock(seekKeys[seekIndex++ & (NUM_SEEK_KEYS - 1)], false);
+  }
+
+  @Benchmark
+  public void iterateBlock(Blackhole bh) {
+    seeker.rewind();
+    do {
+      bh.consume(seeker.getCell());
+    } while (seeker.next());
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
+import org.apache.hadoop.hbase.util.ChecksumType;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures get and put on the L1 {@link LruBlockCache} and {@link TinyLfuBlockCache} and the
+ * off-heap {@link BucketCache}.
+ * The cache is filled with <code>numBlocks</code> data blocks before measurement, so gets are
+ * hits and puts of new keys soon have to evict older blocks to make room.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockCacheBenchmark {
+
+  @Param({ "lru", "tinylfu", "bucket" })
+  public String cacheType;
+
+  @Param({ "4096" })
+  public int numBlocks;
+
+  @Param({ "65536" })
+  public int blockSize;
+
+  private BlockCache cache;
+  private BlockCacheKey[] keys;
+  private HFileBlock[] blocks;
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    long capacity = 2L * numBlocks * (blockSize + HConstants.HFILEBLOCK_HEADER_SIZE);
+    if ("bucket".equals(cacheType)) {
+      cache = new BucketCache("offheap", capacity, blockSize,
+          new int[] { blockSize + HConstants.HFILEBLOCK_HEADER_SIZE + 1024 }, 3, 64, null,
+          60 * 1000, HBaseConfiguration.create());
+    } else if ("tinylfu".equals(cacheType)) {
+      cache = new TinyLfuBlockCache(capacity, blockSize, HBaseConfiguration.create());
+    } else {
+      cache = new LruBlockCache(capacity, blockSize, true, HBaseConfiguration.create());
+    }
+    Random rand = new Random(42L);
+    keys = new BlockCacheKey[numBlocks];
+    blocks = new HFileBlock[numBlocks];
+    for (int i = 0; i < numBlocks; i++) {
+      keys[i] = new BlockCacheKey("hfile-" + (i % 16), (long) i * blockSize);
+      blocks[i] = newBlock(rand);
+      cacheAndWait(keys[i], blocks[i]);
+    }
+    // The bucket cache writes asynchronously; wait for the writers to drain.
+    long deadline = System.currentTimeMillis() + 60 * 1000;
+    while (cache.getBlockCount() < numBlocks && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  private void cacheAndWait(BlockCacheKey key, HFileBlock block) {
+    if (cache instanceof BucketCache) {
+      ((BucketCache) cache).cacheBlockWithWait(key, block, false, false, true);
+    } else {
+      cache.cacheBlock(key, block);
+    }
+  }
+
+  private HFileBlock newBlock(Random rand) {
+    ByteBuffer buf = ByteBuffer.allocate(blockSize + HConstants.HFILEBLOCK_HEADER_SIZE);
+    rand.nextBytes(buf.array());
+    HFileContext meta = new HFileContextBuilder().withHBaseCheckSum(false)
+        .withIncludesMvcc(false).withIncludesTags(false)
+        .withCompression(Compression.Algorithm.NONE).withBytesPerCheckSum(0)
+        .withChecksumType(ChecksumType.NULL).build();
+    return new HFileBlock(BlockType.DATA, blockSize, blockSize, -1, buf,
+        HFileBlock.FILL_HEADER, -1, blockSize + HConstants.HFILEBLOCK_HEADER_SIZE, -1, meta);
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.shutdown();
+  }
+
+  /**
+   * Per-thread cursor so that concurrent threads do not contend on the key index.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private Random rand;
+    private long id;
+    private long putOffset;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      id = Thread.currentThread().getId();
+      rand = new Random(id);
+    }
+
+    int next(int bound) {
+      return rand.nextInt(bound);
+    }
+  }
+
+  private Cacheable get(int i) {
+    Cacheable block = cache.getBlock(keys[i], true, false, true);
+    if (block != null) {
+      cache.returnBlock(keys[i], block);
+    }
+    return block;
+  }
+
+  @Benchmark
+  public Cacheable getHit(Cursor cursor) {
+    return get(cursor.next(numBlocks));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Cacheable getHitConcurrent(Cursor cursor) {
+    return get(cursor.next(numBlocks));
+  }
+
+  @Benchmark
+  public Cacheable getMiss(Cursor cursor) {
+    return cache.getBlock(new BlockCacheKey("absent", cursor.next(numBlocks)), true, false, true);
+  }
+
+  @Benchmark
+  public void putNew(Cursor cursor) {
+    cacheAndWait(new BlockCacheKey("put-" + cursor.id, cursor.putOffset++),
+      blocks[cursor.next(numBlocks)]);
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.ipc.RpcServer.BlockingServiceAndInterface;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.hadoop.hbase.util.NettyEventLoopGroupConfig;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.collect.Lists;
+import org.apache.hadoop.hbase.shaded.com.google.protobuf.RpcController;
+import org.apache.hadoop.hbase.shaded.com.google.protobuf.ServiceException;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.AddrResponseProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.EchoRequestProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.EchoResponseProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.EmptyRequestProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.EmptyResponseProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.PauseRequestProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestRpcServiceProtos.TestProtobufRpcProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestRpcServiceProtos.TestProtobufRpcProto.BlockingInterface;
+
+/**
+ * Measures echo calls over loopback against the {@link NettyRpcServer}, with the different
+ * transports and allocators. The epoll transport only runs on Linux.
+ */
+@InterfaceAudience.Private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NettyRpcServerBenchmark {
+
+  @Param({ "nio", "epoll" })
+  public String transport;
+
+  @Param({ "default", "pooled", "unpooled" })
+  public String allocator;
+
+  @Param({ "16", "4096" })
+  public int messageSize;
+
+  private NettyRpcServer rpcServer;
+  private NettyRpcClient client;
+  private BlockingInterface stub;
+  private EchoRequestProto request;
+
+  private static final class EchoService implements BlockingInterface {
+
+    @Override
+    public EmptyResponseProto ping(RpcController controller, EmptyRequestProto request)
+        throws ServiceException {
+      return EmptyResponseProto.getDefaultInstance();
+    }
+
+    @Override
+    public EchoResponseProto echo(RpcController controller, EchoRequestProto request)
+        throws ServiceException {
+      return EchoResponseProto.newBuilder().setMessage(request.getMessage()).build();
+    }
+
+    @Override
+    public EmptyResponseProto error(RpcController controller, EmptyRequestProto request)
+        throws ServiceException {
+      throw new ServiceException("error");
+    }
+
+    @Override
+    public EmptyResponseProto pause(RpcController controller, PauseRequestProto request)
+        throws ServiceException {
+      throw new ServiceException("not supported");
+    }
+
+    @Override
+    public AddrResponseProto addr(RpcController controller, EmptyRequestProto request)
+        throws ServiceException {
+      throw new ServiceException("not supported");
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(RpcServerFactory.CUSTOM_RPC_SERVER_IMPL_CONF_KEY, NettyRpcServer.class.getName());
+    conf.setBoolean(NettyEventLoopGroupConfig.NATIVE_TRANSPORT_KEY, transport.equals("epoll"));
+    conf.setBoolean(NettyEventLoopGroupConfig.TCP_QUICKACK_KEY, true);
+    conf.setInt(NettyEventLoopGroupConfig.WORKER_COUNT_KEY, 2);
+    conf.set(NettyEventLoopGroupConfig.ALLOCATOR_KEY, allocator);
+    conf.setInt(NettyEventLoopGroupConfig.ALLOCATOR_PAGE_SIZE_KEY, 8192);
+    conf.setInt(NettyEventLoopGroupConfig.ALLOCATOR_MAX_ORDER_KEY, 9);
+    rpcServer = (NettyRpcServer) RpcServerFactory.createRpcServer(null, "benchmark",
+      Lists.newArrayList(new BlockingServiceAndInterface(
+        TestProtobufRpcProto.newReflectiveBlockingService(new EchoService()), null)),
+      new InetSocketAddress("localhost", 0), conf, new FifoRpcScheduler(conf, 1));
+    rpcServer.start();
+    client = new NettyRpcClient(conf);
+    InetSocketAddress addr = rpcServer.getListenerAddress();
+    stub = TestProtobufRpcProto.newBlockingStub(client.createBlockingRpcChannel(
+      ServerName.valueOf(addr.getHostName(), addr.getPort(), System.currentTimeMillis()),
+      User.getCurrent(), 0));
+    StringBuilder message = new StringBuilder(messageSize);
+    for (int i = 0; i < messageSize; i++) {
+      message.append((char) ('a' + i % 26));
+    }
+    request = EchoRequestProto.newBuilder().setMessage(message.toString()).build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    rpcServer.stop();
+  }
+
+  @Benchmark
+  public EchoResponseProto echo() throws ServiceException {
+    return stub.echo(null, request);
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.BenchmarkCellUtil;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the k-way merge done by {@link KeyValueHeap}. The same sorted cells are dealt
+ * round-robin over <code>numScanners</code> scanners, which is the worst case for the heap as
+ * the winning scanner changes on every cell, as it does for a region with many overlapping store
+ * files.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyValueHeapBenchmark {
+
+  private static final int NUM_SEEK_KEYS = 1024;
+
+  @Param({ "2", "4", "8", "16", "32", "64", "100" })
+  public int numScanners;
+
+  @Param({ "100000" })
+  public int numCells;
+
+  private final CellComparator comparator = CellComparator.COMPARATOR;
+  private List<List<Cell>> perScannerCells;
+  private Cell[] seekKeys;
+  /** Rebuilt every {@link #NUM_SEEK_KEYS} seeks */
+  private KeyValueHeap seekHeap;
+  private int seekIndex;
+
+  @Setup
+  public void setup() throws IOException {
+    List<Cell> cells = BenchmarkCellUtil.createSortedCells(numCells / 4, 4, 32, 16, 42L);
+    perScannerCells = new ArrayList<>(numScanners);
+    for (int i = 0; i < numScanners; i++) {
+      perScannerCells.add(new ArrayList<>(cells.size() / numScanners + 1));
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      perScannerCells.get(i % numScanners).add(cells.get(i));
+    }
+    // A seek at or before the current top of the heap does nothing, so the keys go up, one at a
+    // random position in each stride of the cells
+    Random rand = new Random(42L);
+    int stride = cells.size() / NUM_SEEK_KEYS;
+    seekKeys = new Cell[NUM_SEEK_KEYS];
+    for (int i = 0; i < NUM_SEEK_KEYS; i++) {
+      seekKeys[i] = cells.get(i * stride + rand.nextInt(stride));
+    }
+  }
+
+  private List<KeyValueScanner> newScanners() {
+    List<KeyValueScanner> scanners = new ArrayList<>(numScanners);
+    for (int i = 0; i < numScanners; i++) {
+      scanners.add(new SortedArrayScanner(perScannerCells.get(i), comparator, numScanners - i));
+    }
+    return scanners;
+  }
+
+  private KeyValueHeap newHeap() throws IOException {
+    return new KeyValueHeap(newScanners(), comparator);
+  }
+
+  @Benchmark
+  public void scanAll(Blackhole bh) throws IOException {
+    KeyValueHeap heap = newHeap();
+    for (Cell cell = heap.next(); cell != null; cell = heap.next()) {
+      bh.consume(cell);
+    }
+    heap.close();
+  }
+
+  @Benchmark
+  public Cell seek() throws IOException {
+    if (seekIndex == 0) {
+      // Start over with all the scanners in the heap once the keys are done
+      if (seekHeap != null) {
+        seekHeap.close();
+      }
+      seekHeap = newHeap();
+    }
+    seekHeap.seek(seekKeys[seekIndex]);
+    seekIndex = (seekIndex + 1) & (NUM_SEEK_KEYS - 1);
+    return seekHeap.peek();
+  }
+}
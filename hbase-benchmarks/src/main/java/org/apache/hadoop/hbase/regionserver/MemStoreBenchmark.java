@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.BenchmarkCellUtil;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the MemStore add path: adding a batch of cells one at a time and as a single
+ * iterable into a fresh {@link DefaultMemStore}, with and without MSLAB chunk copying. Each
+ * invocation snapshots and clears the memstore so MSLAB chunks are given back to the pool.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemStoreBenchmark {
+
+  @Param({ "true", "false" })
+  public boolean mslab;
+
+  @Param({ "false", "true" })
+  public boolean offheapChunks;
+
+  @Param({ "10000" })
+  public int numCells;
+
+  @Param({ "16", "512" })
+  public int valueLength;
+
+  private Configuration conf;
+  private List<Cell> cells;
+
+  @Setup
+  public void setup() {
+    conf = HBaseConfiguration.create();
+    conf.setBoolean(MemStoreLAB.USEMSLAB_KEY, mslab);
+    if (mslab) {
+      // The chunk creator is a singleton; every trial runs in its own fork.
+      ChunkCreator.initialize(MemStoreLABImpl.CHUNK_SIZE_DEFAULT, offheapChunks,
+        256L * MemStoreLABImpl.CHUNK_SIZE_DEFAULT, 1.0f, 0.5f, null);
+    }
+    cells = BenchmarkCellUtil.createSortedCells(numCells / 4, 4, 32, valueLength, 42L);
+  }
+
+  private long release(DefaultMemStore memstore) throws IOException {
+    long size = memstore.getActive().keySize();
+    MemStoreSnapshot snapshot = memstore.snapshot();
+    memstore.clearSnapshot(snapshot.getId());
+    return size;
+  }
+
+  @Benchmark
+  public long addOneByOne() throws IOException {
+    DefaultMemStore memstore = new DefaultMemStore(conf, CellComparator.COMPARATOR);
+    MemStoreSize memstoreSize = new MemStoreSize();
+    for (Cell cell : cells) {
+      memstore.add(cell, memstoreSize);
+    }
+    return release(memstore);
+  }
+
+  @Benchmark
+  public long addAll() throws IOException {
+    DefaultMemStore memstore = new DefaultMemStore(conf, CellComparator.COMPARATOR);
+    memstore.add(cells, new MemStoreSize());
+    return release(memstore);
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.BenchmarkCellUtil;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link TournamentTree} now used by {@link KeyValueHeap} against the
+ * {@link PriorityQueue} it replaced, merging the same scanners the way the heap does: the current
+ * scanner is kept out of the structure and swapped with the top only when it stops holding the
+ * smallest cell.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerMergeBenchmark {
+
+  @Param({ "2", "4", "8", "16", "32", "64", "100" })
+  public int numScanners;
+
+  @Param({ "100000" })
+  public int numCells;
+
+  @Param({ "PriorityQueue", "TournamentTree" })
+  public String structure;
+
+  private final CellComparator comparator = CellComparator.COMPARATOR;
+  private KeyValueHeap.KVScannerComparator scannerComparator;
+  private List<List<Cell>> perScannerCells;
+
+  @Setup
+  public void setup() {
+    List<Cell> cells = BenchmarkCellUtil.createSortedCells(numCells / 4, 4, 32, 16, 42L);
+    perScannerCells = new ArrayList<>(numScanners);
+    for (int i = 0; i < numScanners; i++) {
+      perScannerCells.add(new ArrayList<>(cells.size() / numScanners + 1));
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      perScannerCells.get(i % numScanners).add(cells.get(i));
+    }
+    scannerComparator = new KeyValueHeap.KVScannerComparator(comparator);
+  }
+
+  private List<KeyValueScanner> newScanners() {
+    List<KeyValueScanner> scanners = new ArrayList<>(numScanners);
+    for (int i = 0; i < numScanners; i++) {
+      scanners.add(new SortedArrayScanner(perScannerCells.get(i), comparator, numScanners - i));
+    }
+    return scanners;
+  }
+
+  @Benchmark
+  public void merge(Blackhole bh) throws IOException {
+    if ("PriorityQueue".equals(structure)) {
+      mergeWithPriorityQueue(bh);
+    } else {
+      mergeWithTournamentTree(bh);
+    }
+  }
+
+  private void mergeWithPriorityQueue(Blackhole bh) throws IOException {
+    PriorityQueue<KeyValueScanner> heap = new PriorityQueue<>(numScanners, scannerComparator);
+    heap.addAll(newScanners());
+    KeyValueScanner current = heap.poll();
+    while (current != null) {
+      bh.consume(current.next());
+      if (current.peek() == null) {
+        current = heap.poll();
+      } else {
+        KeyValueScanner top = heap.peek();
+        if (top != null && scannerComparator.compare(current, top) > 0) {
+          heap.add(current);
+          current = heap.poll();
+        }
+      }
+    }
+  }
+
+  private void mergeWithTournamentTree(Blackhole bh) throws IOException {
+    TournamentTree<KeyValueScanner> heap = new TournamentTree<>(numScanners, scannerComparator);
+    for (KeyValueScanner scanner : newScanners()) {
+      heap.add(scanner);
+    }
+    KeyValueScanner current = heap.poll();
+    while (current != null) {
+      bh.consume(current.next());
+      if (current.peek() == null) {
+        current = heap.poll();
+      } else {
+        KeyValueScanner top = heap.peek();
+        if (top != null && scannerComparator.compare(current, top) > 0) {
+          current = heap.replaceTop(current);
+        }
+      }
+    }
+  }
+}
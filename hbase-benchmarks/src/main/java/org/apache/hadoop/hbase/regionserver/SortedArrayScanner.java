@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A KeyValueScanner over an already sorted list of cells. Unlike CollectionBackedScanner it
+ * seeks with a binary search, so benchmarks of the heaps and scanners stacked on top of it are
+ * not dominated by linear seeks in the leaf scanners.
+ */
+@InterfaceAudience.Private
+public class SortedArrayScanner extends NonReversedNonLazyKeyValueScanner {
+
+  private final List<Cell> cells;
+  private final CellComparator comparator;
+  private final long scannerOrder;
+  private int index;
+
+  public SortedArrayScanner(List<Cell> cells, CellComparator comparator, long scannerOrder) {
+    this.cells = cells;
+    this.comparator = comparator;
+    this.scannerOrder = scannerOrder;
+  }
+
+  @Override
+  public Cell peek() {
+    return index < cells.size() ? cells.get(index) : null;
+  }
+
+  @Override
+  public Cell next() {
+    Cell current = peek();
+    if (current != null) {
+      index++;
+    }
+    return current;
+  }
+
+  @Override
+  public boolean seek(Cell key) {
+    return seekFrom(0, key);
+  }
+
+  @Override
+  public boolean reseek(Cell key) {
+    return seekFrom(index, key);
+  }
+
+  private boolean seekFrom(int from, Cell key) {
+    int pos = Collections.binarySearch(cells.subList(from, cells.size()), key, comparator);
+    index = from + (pos < 0 ? -(pos + 1) : pos);
+    return index < cells.size();
+  }
+
+  @Override
+  public long getScannerOrder() {
+    return scannerOrder;
+  }
+
+  @Override
+  public void close() {
+    // nothing to release
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.BenchmarkCellUtil;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeepDeletedCells;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures a full user scan and a forward reseek through {@link StoreScanner}, that is the heap
+ * plus the {@link UserScanQueryMatcher}, over in-memory scanners. Uses the test-only constructor
+ * which bypasses the store and reads everything at read point 0.
+ */
+@InterfaceAudience.Private
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreScannerBenchmark {
+
+  @Param({ "1", "8", "32" })
+  public int numScanners;
+
+  @Param({ "1", "16" })
+  public int qualifiersPerRow;
+
+  @Param({ "100000" })
+  public int numCells;
+
+  private final CellComparator comparator = CellComparator.COMPARATOR;
+  private List<List<Cell>> perScannerCells;
+  private List<Cell> cells;
+  private ScanInfo scanInfo;
+
+  @Setup
+  public void setup() {
+    Configuration conf = HBaseConfiguration.create();
+    scanInfo = new ScanInfo(conf, BenchmarkCellUtil.FAMILY, 0, Integer.MAX_VALUE,
+        HConstants.FOREVER, KeepDeletedCells.FALSE, HConstants.DEFAULT_BLOCKSIZE, 0, comparator,
+        false);
+    cells = BenchmarkCellUtil.createSortedCells(numCells / qualifiersPerRow, qualifiersPerRow, 32,
+      16, 42L);
+    perScannerCells = new ArrayList<>(numScanners);
+    for (int i = 0; i < numScanners; i++) {
+      perScannerCells.add(new ArrayList<>(cells.size() / numScanners + 1));
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      perScannerCells.get(i % numScanners).add(cells.get(i));
+    }
+  }
+
+  private StoreScanner newScanner() throws IOException {
+    List<KeyValueScanner> scanners = new ArrayList<>(numScanners);
+    for (int i = 0; i < numScanners; i++) {
+      scanners.add(new SortedArrayScanner(perScannerCells.get(i), comparator, numScanners - i));
+    }
+    return new StoreScanner(new Scan(), scanInfo, null, scanners);
+  }
+
+  @Benchmark
+  public void scanAll(Blackhole bh) throws IOException {
+    List<Cell> results = new ArrayList<>();
+    try (StoreScanner scanner = newScanner()) {
+      while (scanner.next(results)) {
+        bh.consume(results);
+        results.clear();
+      }
+      bh.consume(results);
+    }
+  }
+
+  @Benchmark
+  public void reseekEveryHundredth(Blackhole bh) throws IOException {
+    try (StoreScanner scanner = newScanner()) {
+      for (int i = 100; i < cells.size(); i += 100) {
+        scanner.reseek(cells.get(i));
+        bh.consume(scanner.peek());
+      }
+    }
+  }
+}
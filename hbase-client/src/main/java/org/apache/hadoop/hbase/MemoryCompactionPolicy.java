@@ -42,5 +42,12 @@ public enum MemoryCompactionPolicy {
    * on-disk compaction does after the data is flushed to disk). This policy is most useful for
    * applications with high data churn or small working sets.
    */
-  EAGER
+  EAGER,
+  /**
+   * Adaptive policy samples the data in memory on every in-memory flush and applies the eager
+   * policy only when a good part of it is made of versions that would be eliminated, and the
+   * basic policy otherwise. This gives update-heavy workloads the benefit of the eager policy
+   * without spending its CPU on append-only workloads.
+   */
+  ADAPTIVE
 }
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.apache.hadoop.hbase.util.CollectionUtils.computeIfAbsent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.apache.yetus.audience.InterfaceStability;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Holds back the requests like {@link SimpleRequestController}, but sizes the number of tasks
+ * running on each region server with additive increase, multiplicative decrease, from the load
+ * statistics the servers send back. A server starts with
+ * {@link HConstants#HBASE_CLIENT_MAX_PERSERVER_TASKS} tasks. Each response of a server that is not
+ * congested adds a task per window of responses, up to {@link #MAX_PERSERVER_TASKS}. A congested
+ * server, one whose calls wait too long for a handler, that is short of handlers or heap, or that
+ * is behind on compactions, divides its tasks by {@link #DECREASE_FACTOR}, at most once per
+ * {@link #DECREASE_INTERVAL}.
+ * <p>
+ * The window is kept per server and steps once per response, whatever the number of regions in
+ * it, on the values the server reports for all of its regions alike. The memstore load of a region
+ * does not move the window, so a busy region does not hold back the writes to the other regions of
+ * its server. The tasks per region, and the backoff policy, which goes by region, take care of it.
+ * <p>
+ * The servers only send the statistics when {@link HConstants#ENABLE_CLIENT_BACKPRESSURE} is on.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+class AimdRequestController extends SimpleRequestController {
+
+  public static final String MAX_PERSERVER_TASKS = "hbase.client.aimd.max.perserver.tasks";
+  static final int DEFAULT_MAX_PERSERVER_TASKS = 16;
+  public static final String DECREASE_FACTOR = "hbase.client.aimd.decrease.factor";
+  static final float DEFAULT_DECREASE_FACTOR = 0.5f;
+  public static final String DECREASE_INTERVAL = "hbase.client.aimd.decrease.interval";
+  static final long DEFAULT_DECREASE_INTERVAL = 500;
+  public static final String MAX_QUEUE_TIME = "hbase.client.aimd.queue-time.max";
+  static final int DEFAULT_MAX_QUEUE_TIME = 100;
+  public static final String MAX_HANDLER_OCCUPANCY = "hbase.client.aimd.handler-occupancy.max";
+  static final int DEFAULT_MAX_HANDLER_OCCUPANCY = 90;
+
+  @VisibleForTesting
+  final ConcurrentMap<ServerName, Window> windows = new ConcurrentHashMap<>();
+  private final int maxTasksPerServer;
+  private final double decreaseFactor;
+  private final long decreaseInterval;
+  private final int maxQueueTime;
+  private final int maxHandlerOccupancy;
+  private final int maxHeapOccupancy;
+
+  AimdRequestController(final Configuration conf) {
+    super(conf);
+    this.maxTasksPerServer = Math.max(maxConcurrentTasksPerServer,
+      conf.getInt(MAX_PERSERVER_TASKS, DEFAULT_MAX_PERSERVER_TASKS));
+    float factor = conf.getFloat(DECREASE_FACTOR, DEFAULT_DECREASE_FACTOR);
+    if (factor <= 0 || factor >= 1) {
+      throw new IllegalArgumentException(DECREASE_FACTOR + "=" + factor);
+    }
+    this.decreaseFactor = factor;
+    this.decreaseInterval = conf.getLong(DECREASE_INTERVAL, DEFAULT_DECREASE_INTERVAL);
+    this.maxQueueTime = conf.getInt(MAX_QUEUE_TIME, DEFAULT_MAX_QUEUE_TIME);
+    this.maxHandlerOccupancy = conf.getInt(MAX_HANDLER_OCCUPANCY, DEFAULT_MAX_HANDLER_OCCUPANCY);
+    this.maxHeapOccupancy = (int) (100 * conf.getFloat(HConstants.HEAP_OCCUPANCY_HIGH_WATERMARK_KEY,
+      HConstants.DEFAULT_HEAP_OCCUPANCY_HIGH_WATERMARK));
+  }
+
+  /**
+   * The number of tasks a region server may run, as a fraction that grows by one over a window of
+   * responses.
+   */
+  @VisibleForTesting
+  final class Window {
+
+    private double size = maxConcurrentTasksPerServer;
+
+    private long lastDecrease;
+
+    synchronized void update(boolean congested) {
+      if (!congested) {
+        size = Math.min(maxTasksPerServer, size + 1 / size);
+        return;
+      }
+      // The responses of the tasks sent before the decrease still report the congestion, so only
+      // decrease once per interval
+      long now = EnvironmentEdgeManager.currentTime();
+      if (now - lastDecrease >= decreaseInterval) {
+        size = Math.max(1, size * decreaseFactor);
+        lastDecrease = now;
+      }
+    }
+
+    synchronized int getSize() {
+      return (int) size;
+    }
+  }
+
+  @VisibleForTesting
+  boolean isCongested(RegionLoadStats stats) {
+    return stats.getRpcQueueTime() >= maxQueueTime
+        || stats.getHandlerOccupancy() >= maxHandlerOccupancy
+        || stats.getHeapOccupancy() >= maxHeapOccupancy
+        || stats.getCompactionPressure() >= 100;
+  }
+
+  /**
+   * Steps the window of a server on one of its responses.
+   * @param stats the stats of any region in the response, of which only the values of the server
+   *          are used
+   */
+  void updateServerStats(ServerName server, RegionLoadStats stats) {
+    computeIfAbsent(windows, server, Window::new).update(isCongested(stats));
+  }
+
+  @Override
+  int getMaxConcurrentTasks(ServerName sn) {
+    Window window = windows.get(sn);
+    return window != null ? window.getSize() : maxConcurrentTasksPerServer;
+  }
+}
@@ -54,6 +54,16 @@ import org.apache.yetus.audience.InterfaceAudience;
 @InterfaceAudience.Private
 class AsyncConnectionConfiguration {
 
+  /**
+   * The number of calls a scanner may have in flight to its region server. With a window larger
+   * than one the next batches of a scan are requested before the current one is answered, so the
+   * server scans them back to back instead of waiting a round trip for each. Scans with a limit do
+   * not pipeline.
+   */
+  static final String SCANNER_PIPELINE_WINDOW_KEY = "hbase.client.scanner.pipeline.window";
+
+  static final int DEFAULT_SCANNER_PIPELINE_WINDOW = 1;
+
   private final long metaOperationTimeoutNs;
 
   // timeout for a whole operation such as get, put or delete. Notice that scan will not be effected
@@ -89,6 +99,8 @@ class AsyncConnectionConfiguration {
 
   private final long scannerMaxResultSize;
 
+  private final int scannerPipelineWindow;
+
   private final long writeBufferSize;
 
   @SuppressWarnings("deprecation")
@@ -116,6 +128,8 @@ class AsyncConnectionConfiguration {
     this.metaScannerCaching = conf.getInt(HBASE_META_SCANNER_CACHING, DEFAULT_HBASE_META_SCANNER_CACHING);
     this.scannerMaxResultSize = conf.getLong(HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE_KEY,
       DEFAULT_HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE);
+    this.scannerPipelineWindow =
+        Math.max(1, conf.getInt(SCANNER_PIPELINE_WINDOW_KEY, DEFAULT_SCANNER_PIPELINE_WINDOW));
     this.writeBufferSize =  conf.getLong(WRITE_BUFFER_SIZE_KEY, WRITE_BUFFER_SIZE_DEFAULT);
   }
 
@@ -167,6 +181,10 @@ class AsyncConnectionConfiguration {
     return scannerMaxResultSize;
   }
 
+  int getScannerPipelineWindow() {
+    return scannerPipelineWindow;
+  }
+
   long getWriteBufferSize() {
     return writeBufferSize;
   }
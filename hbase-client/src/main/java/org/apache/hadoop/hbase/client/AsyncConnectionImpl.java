@@ -37,6 +37,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.MasterNotRunningException;
 import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
@@ -89,6 +90,10 @@ class AsyncConnectionImpl implements AsyncConnection {
 
   final AsyncRpcRetryingCallerFactory callerFactory;
 
+  final AsyncHedgedReadPolicy hedgedReadPolicy;
+
+  private final ClusterStatusListener clusterStatusListener;
+
   private final NonceGenerator nonceGenerator;
 
   private final ConcurrentMap<String, ClientService.Interface> rsStubs = new ConcurrentHashMap<>();
@@ -112,6 +117,8 @@ class AsyncConnectionImpl implements AsyncConnection {
       TimeUnit.NANOSECONDS.toMillis(connConf.getRpcTimeoutNs()));
     this.locator = new AsyncRegionLocator(this, RETRY_TIMER);
     this.callerFactory = new AsyncRpcRetryingCallerFactory(this, RETRY_TIMER);
+    this.hedgedReadPolicy = new AsyncHedgedReadPolicy(conf);
+    this.clusterStatusListener = createClusterStatusListener();
     if (conf.getBoolean(CLIENT_NONCES_ENABLED_KEY, true)) {
       nonceGenerator = PerClientRandomNonceGenerator.get();
     } else {
@@ -119,6 +126,32 @@ class AsyncConnectionImpl implements AsyncConnection {
     }
   }
 
+  // Drop the cached locations on the dead servers the master tells us about, so we do not need to
+  // wait for the calls to them to fail before locating the regions again.
+  private ClusterStatusListener createClusterStatusListener() {
+    if (!conf.getBoolean(HConstants.STATUS_PUBLISHED, HConstants.STATUS_PUBLISHED_DEFAULT)) {
+      return null;
+    }
+    Class<? extends ClusterStatusListener.Listener> listenerClass =
+        conf.getClass(ClusterStatusListener.STATUS_LISTENER_CLASS,
+          ClusterStatusListener.DEFAULT_STATUS_LISTENER_CLASS,
+          ClusterStatusListener.Listener.class);
+    if (listenerClass == null) {
+      LOG.warn(HConstants.STATUS_PUBLISHED + " is true, but " +
+          ClusterStatusListener.STATUS_LISTENER_CLASS + " is not set - not listening status");
+      return null;
+    }
+    try {
+      return new ClusterStatusListener(sn -> {
+        locator.clearCache(sn);
+        rpcClient.cancelConnections(sn);
+      }, conf, listenerClass);
+    } catch (IOException e) {
+      LOG.warn("Failed to listen to the cluster status", e);
+      return null;
+    }
+  }
+
   @Override
   public Configuration getConfiguration() {
     return conf;
@@ -126,6 +159,7 @@ class AsyncConnectionImpl implements AsyncConnection {
 
   @Override
   public void close() {
+    IOUtils.closeQuietly(clusterStatusListener);
     IOUtils.closeQuietly(rpcClient);
     IOUtils.closeQuietly(registry);
   }
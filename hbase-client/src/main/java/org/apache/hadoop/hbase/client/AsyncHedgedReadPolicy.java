@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+
+/**
+ * Decides when a get with {@link Consistency#TIMELINE} consistency also goes to the secondary
+ * replicas of its region, for the async client. Instead of a fixed primary call timeout, the
+ * secondaries are contacted once the primary takes longer than the {@link #PERCENTILE} of the
+ * recent latencies of the gets, or as soon as the primary fails. Every get earns {@link #BUDGET}
+ * of a hedged call, and a hedged call is only sent if there is enough budget left, so the hedged
+ * calls add at most that fraction to the read load of the cluster, no matter how slow the
+ * primaries get.
+ */
+@InterfaceAudience.Private
+class AsyncHedgedReadPolicy {
+
+  public static final String ENABLED = "hbase.client.hedged-read.enabled";
+  static final boolean DEFAULT_ENABLED = false;
+  public static final String PERCENTILE = "hbase.client.hedged-read.percentile";
+  static final double DEFAULT_PERCENTILE = 0.95;
+  public static final String BUDGET = "hbase.client.hedged-read.budget";
+  static final double DEFAULT_BUDGET = 0.05;
+  public static final String MAX_BURST = "hbase.client.hedged-read.max.burst";
+  static final int DEFAULT_MAX_BURST = 10;
+  public static final String MIN_SAMPLES = "hbase.client.hedged-read.min.samples";
+  static final int DEFAULT_MIN_SAMPLES = 100;
+
+  // the fixed timeout of the primary call we use until we have enough samples
+  static final String PRIMARY_CALL_TIMEOUT = "hbase.client.primaryCallTimeout.get";
+  static final int DEFAULT_PRIMARY_CALL_TIMEOUT = 10000; // 10ms
+
+  private static final long DELAY_UPDATE_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final boolean enabled;
+  private final double percentile;
+  private final double budget;
+  private final int maxBurst;
+  private final int minSamples;
+  private final long primaryCallTimeoutNs;
+
+  // in microseconds, biased to the latencies of the last few minutes
+  private final Histogram latencies = new Histogram(new ExponentiallyDecayingReservoir());
+
+  private volatile long delayNs;
+  private final AtomicLong nextDelayUpdateNs;
+
+  // guarded by this
+  private double tokens;
+
+  private final AtomicLong hedgedReads = new AtomicLong();
+  private final AtomicLong hedgedReadWins = new AtomicLong();
+
+  AsyncHedgedReadPolicy(Configuration conf) {
+    this.enabled = conf.getBoolean(ENABLED, DEFAULT_ENABLED);
+    this.percentile = conf.getDouble(PERCENTILE, DEFAULT_PERCENTILE);
+    if (percentile <= 0 || percentile > 1) {
+      throw new IllegalArgumentException(PERCENTILE + "=" + percentile);
+    }
+    this.budget = conf.getDouble(BUDGET, DEFAULT_BUDGET);
+    this.maxBurst = Math.max(1, conf.getInt(MAX_BURST, DEFAULT_MAX_BURST));
+    this.minSamples = conf.getInt(MIN_SAMPLES, DEFAULT_MIN_SAMPLES);
+    this.primaryCallTimeoutNs = TimeUnit.MICROSECONDS
+        .toNanos(conf.getInt(PRIMARY_CALL_TIMEOUT, DEFAULT_PRIMARY_CALL_TIMEOUT));
+    this.delayNs = primaryCallTimeoutNs;
+    this.nextDelayUpdateNs = new AtomicLong(System.nanoTime());
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Called for every get sent to a primary, to earn the budget of the hedged calls.
+   */
+  synchronized void onRead() {
+    tokens = Math.min(maxBurst, tokens + budget);
+  }
+
+  /**
+   * Take the budget of hedged calls to the given number of secondaries.
+   */
+  synchronized boolean tryAcquire(int calls) {
+    if (tokens < calls) {
+      return false;
+    }
+    tokens -= calls;
+    hedgedReads.addAndGet(calls);
+    return true;
+  }
+
+  void onHedgedReadWin() {
+    hedgedReadWins.incrementAndGet();
+  }
+
+  /**
+   * Record the latency of a get served by a primary.
+   */
+  void updateLatency(long latencyNs) {
+    latencies.update(TimeUnit.NANOSECONDS.toMicros(latencyNs));
+  }
+
+  /**
+   * @return how long to wait for the primary before contacting the secondaries
+   */
+  long getDelayNs() {
+    long now = System.nanoTime();
+    long next = nextDelayUpdateNs.get();
+    // taking a snapshot sorts the samples, so only do it once in a while
+    if (now - next >= 0 && nextDelayUpdateNs.compareAndSet(next, now + DELAY_UPDATE_INTERVAL_NS)) {
+      if (latencies.getCount() >= minSamples) {
+        delayNs = TimeUnit.MICROSECONDS
+            .toNanos(Math.round(latencies.getSnapshot().getValue(percentile)));
+      } else {
+        delayNs = primaryCallTimeoutNs;
+      }
+    }
+    return delayNs;
+  }
+
+  @VisibleForTesting
+  long getHedgedReads() {
+    return hedgedReads.get();
+  }
+
+  @VisibleForTesting
+  long getHedgedReadWins() {
+    return hedgedReadWins.get();
+  }
+}
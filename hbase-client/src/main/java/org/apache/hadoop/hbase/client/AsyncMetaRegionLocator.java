@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.yetus.audience.InterfaceAudience;
 
 /**
@@ -121,4 +122,11 @@ class AsyncMetaRegionLocator {
   void clearCache() {
     metaRegionLocation.set(null);
   }
+
+  void clearCache(ServerName serverName) {
+    HRegionLocation oldLoc = metaRegionLocation.get();
+    if (oldLoc != null && serverName.equals(oldLoc.getServerName())) {
+      metaRegionLocation.compareAndSet(oldLoc, null);
+    }
+  }
 }
@@ -28,6 +28,7 @@ import static org.apache.hadoop.hbase.util.Bytes.BYTES_COMPARATOR;
 import static org.apache.hadoop.hbase.util.CollectionUtils.computeIfAbsent;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -41,6 +42,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -48,12 +50,16 @@ import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.MetaTableAccessor;
+import org.apache.hadoop.hbase.MetaTableAccessor.QueryType;
 import org.apache.hadoop.hbase.RegionLocations;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.TableNotFoundException;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+
 /**
  * The asynchronous locator for regions other than meta.
  */
@@ -67,10 +73,30 @@ class AsyncNonMetaRegionLocator {
 
   private static final int DEFAULT_MAX_CONCURRENT_LOCATE_REQUEST_PER_TABLE = 8;
 
+  /**
+   * The number of regions after a located region whose locations we also read from meta, with one
+   * scan, if the next region is not cached yet. 0 means only the located region.
+   */
+  static final String LOCATE_PREFETCH_LIMIT = "hbase.client.locate.prefetch.limit";
+
+  private static final int DEFAULT_LOCATE_PREFETCH_LIMIT = 0;
+
+  /**
+   * Whether to read the locations of all the regions of a table from meta, with one scan, the
+   * first time we locate a region of the table.
+   */
+  static final String LOCATE_PREFETCH_TABLE = "hbase.client.locate.prefetch.table";
+
+  private static final boolean DEFAULT_LOCATE_PREFETCH_TABLE = false;
+
   private final AsyncConnectionImpl conn;
 
   private final int maxConcurrentLocateRequestPerTable;
 
+  private final int locatePrefetchLimit;
+
+  private final boolean locatePrefetchTable;
+
   private final ConcurrentMap<TableName, TableCache> cache = new ConcurrentHashMap<>();
 
   private static final class LocateRequest {
@@ -104,11 +130,19 @@ class AsyncNonMetaRegionLocator {
     public final ConcurrentNavigableMap<byte[], HRegionLocation> cache =
         new ConcurrentSkipListMap<>(BYTES_COMPARATOR);
 
+    // the locations of all the replicas of the regions, by the start key of the region, as read
+    // from meta along with the primary location.
+    public final ConcurrentMap<byte[], RegionLocations> replicas =
+        new ConcurrentSkipListMap<>(BYTES_COMPARATOR);
+
     public final Set<LocateRequest> pendingRequests = new HashSet<>();
 
     public final Map<LocateRequest, CompletableFuture<HRegionLocation>> allRequests =
         new LinkedHashMap<>();
 
+    // whether the locations of the whole table are prefetched, or being prefetched
+    public final AtomicBoolean prefetched = new AtomicBoolean(false);
+
     public boolean hasQuota(int max) {
       return pendingRequests.size() < max;
     }
@@ -169,6 +203,10 @@ class AsyncNonMetaRegionLocator {
     this.conn = conn;
     this.maxConcurrentLocateRequestPerTable = conn.getConfiguration().getInt(
       MAX_CONCURRENT_LOCATE_REQUEST_PER_TABLE, DEFAULT_MAX_CONCURRENT_LOCATE_REQUEST_PER_TABLE);
+    this.locatePrefetchLimit =
+        conn.getConfiguration().getInt(LOCATE_PREFETCH_LIMIT, DEFAULT_LOCATE_PREFETCH_LIMIT);
+    this.locatePrefetchTable =
+        conn.getConfiguration().getBoolean(LOCATE_PREFETCH_TABLE, DEFAULT_LOCATE_PREFETCH_TABLE);
   }
 
   private TableCache getTableCache(TableName tableName) {
@@ -323,7 +361,69 @@ class AsyncNonMetaRegionLocator {
               info.getRegionNameAsString(), Bytes.toStringBinary(req.row), req.locateType)));
       return;
     }
+    getTableCache(tableName).replicas.put(info.getStartKey(), locs);
     complete(tableName, req, loc, null);
+    if (locatePrefetchLimit > 0 && !isEmptyStopRow(info.getEndKey()) &&
+        locateRowInCache(getTableCache(tableName), tableName, info.getEndKey()) == null) {
+      prefetch(tableName,
+        createRegionName(tableName, info.getEndKey(), ZEROES, false),
+        locatePrefetchLimit);
+    }
+  }
+
+  /**
+   * Read the locations of the regions from meta with one scan, and cache them. Also complete the
+   * locate requests which are waiting for them.
+   * @param limit the max number of regions to read, or a non positive value to read all the
+   *          regions of the table after the start row.
+   * @return whether the locations were read
+   */
+  private CompletableFuture<Boolean> prefetch(TableName tableName, byte[] startRow, int limit) {
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("Try prefetching the locations of '" + tableName + "' from meta row '" +
+          Bytes.toStringBinary(startRow) + "', limit=" + limit);
+    }
+    Scan scan = new Scan().withStartRow(startRow)
+        .withStopRow(MetaTableAccessor.getTableStopRowForMeta(tableName, QueryType.REGION))
+        .addFamily(CATALOG_FAMILY);
+    if (limit > 0) {
+      scan.setLimit(limit);
+    }
+    CompletableFuture<Boolean> future = new CompletableFuture<>();
+    conn.getRawTable(META_TABLE_NAME).scanAll(scan).whenComplete((results, error) -> {
+      if (error != null) {
+        LOG.warn("Failed to prefetch the locations of '" + tableName + "'", error);
+        future.complete(false);
+        return;
+      }
+      TableCache tableCache = getTableCache(tableName);
+      List<HRegionLocation> prefetched = new ArrayList<>(results.size());
+      for (Result result : results) {
+        RegionLocations locs = MetaTableAccessor.getRegionLocations(result);
+        if (locs == null) {
+          continue;
+        }
+        HRegionLocation loc = locs.getDefaultRegionLocation();
+        // skip the regions we can not use, locating them later tells why
+        if (loc == null || loc.getRegionInfo() == null || loc.getServerName() == null ||
+            !loc.getRegionInfo().getTable().equals(tableName) || loc.getRegionInfo().isSplit() ||
+            loc.getRegionInfo().isOffline()) {
+          continue;
+        }
+        tableCache.replicas.put(loc.getRegionInfo().getStartKey(), locs);
+        addToCache(tableCache, loc);
+        prefetched.add(loc);
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Prefetched the locations of " + prefetched.size() + " regions of '" +
+            tableName + "'");
+      }
+      synchronized (tableCache) {
+        prefetched.forEach(loc -> tableCache.clearCompletedRequests(Optional.of(loc)));
+      }
+      future.complete(true);
+    });
+    return future;
   }
 
   private HRegionLocation locateRowInCache(TableCache tableCache, TableName tableName, byte[] row) {
@@ -401,6 +501,15 @@ class AsyncNonMetaRegionLocator {
     // AFTER should be convert to CURRENT before calling this method
     assert !locateType.equals(RegionLocateType.AFTER);
     TableCache tableCache = getTableCache(tableName);
+    if (locatePrefetchTable && tableCache.prefetched.compareAndSet(false, true)) {
+      prefetch(tableName, MetaTableAccessor.getTableStartRowForMeta(tableName, QueryType.REGION),
+        -1).thenAccept(done -> {
+          if (!done) {
+            // let a later locate try again
+            tableCache.prefetched.set(false);
+          }
+        });
+    }
     if (!reload) {
       HRegionLocation loc = locateInCache(tableCache, tableName, row, locateType);
       if (loc != null) {
@@ -449,7 +558,87 @@ class AsyncNonMetaRegionLocator {
     }
   }
 
+  /**
+   * Get the locations of all the replicas of the region containing the given row. Only the
+   * primary location is cached by row, so if we do not know the replicas of the cached primary
+   * region, we read them from meta again.
+   */
+  CompletableFuture<RegionLocations> getRegionLocations(TableName tableName, byte[] row,
+      boolean reload) {
+    return getRegionLocation(tableName, row, RegionLocateType.CURRENT, reload).thenCompose(loc -> {
+      RegionLocations locs =
+          getTableCache(tableName).replicas.get(loc.getRegionInfo().getStartKey());
+      if (locs != null && locs.getDefaultRegionLocation() != null &&
+          locs.getDefaultRegionLocation().getRegionInfo().equals(loc.getRegionInfo())) {
+        return CompletableFuture.completedFuture(locs);
+      }
+      return locateReplicasInMeta(tableName, loc);
+    });
+  }
+
+  private CompletableFuture<RegionLocations> locateReplicasInMeta(TableName tableName,
+      HRegionLocation loc) {
+    HRegionInfo info = loc.getRegionInfo();
+    return conn.getRawTable(META_TABLE_NAME)
+        .get(new Get(info.getRegionName()).addFamily(CATALOG_FAMILY)).thenApply(result -> {
+          RegionLocations locs = MetaTableAccessor.getRegionLocations(result);
+          if (locs == null || locs.getDefaultRegionLocation() == null ||
+              !info.equals(locs.getDefaultRegionLocation().getRegionInfo())) {
+            // the region has been split or merged, just use the primary we know
+            return new RegionLocations(loc);
+          }
+          getTableCache(tableName).replicas.put(info.getStartKey(), locs);
+          return locs;
+        });
+  }
+
+  CompletableFuture<HRegionLocation> getRegionLocation(TableName tableName, byte[] row,
+      int replicaId, boolean reload) {
+    if (replicaId == RegionReplicaUtil.DEFAULT_REPLICA_ID) {
+      return getRegionLocation(tableName, row, RegionLocateType.CURRENT, reload);
+    }
+    CompletableFuture<HRegionLocation> future = new CompletableFuture<>();
+    getRegionLocations(tableName, row, reload).whenComplete((locs, error) -> {
+      if (error != null) {
+        future.completeExceptionally(error);
+        return;
+      }
+      HRegionLocation loc = locs.getRegionLocation(replicaId);
+      if (loc == null || loc.getServerName() == null) {
+        future.completeExceptionally(new NoServerForRegionException(
+            String.format("No server address listed for replica %d of '%s', row='%s'", replicaId,
+              tableName, Bytes.toStringBinary(row))));
+        return;
+      }
+      future.complete(loc);
+    });
+    return future;
+  }
+
+  private void removeReplicaFromCache(HRegionLocation loc) {
+    TableCache tableCache = cache.get(loc.getRegionInfo().getTable());
+    if (tableCache == null) {
+      return;
+    }
+    tableCache.replicas.computeIfPresent(loc.getRegionInfo().getStartKey(), (k, locs) -> {
+      HRegionLocation oldLoc = locs.getRegionLocation(loc.getRegionInfo().getReplicaId());
+      return oldLoc != null && oldLoc.getServerName().equals(loc.getServerName()) ? null : locs;
+    });
+  }
+
   void updateCachedLocation(HRegionLocation loc, Throwable exception) {
+    if (!RegionReplicaUtil.isDefaultReplica(loc.getRegionInfo())) {
+      // we will read the locations of all the replicas from meta again next time
+      AsyncRegionLocator.updateCachedLocation(loc, exception, l -> {
+        TableCache tableCache = cache.get(l.getRegionInfo().getTable());
+        if (tableCache == null) {
+          return null;
+        }
+        RegionLocations locs = tableCache.replicas.get(l.getRegionInfo().getStartKey());
+        return locs != null ? locs.getRegionLocation(l.getRegionInfo().getReplicaId()) : null;
+      }, this::removeReplicaFromCache, this::removeReplicaFromCache);
+      return;
+    }
     AsyncRegionLocator.updateCachedLocation(loc, exception, l -> {
       TableCache tableCache = cache.get(l.getRegionInfo().getTable());
       if (tableCache == null) {
@@ -459,6 +648,23 @@ class AsyncNonMetaRegionLocator {
     }, this::addToCache, this::removeFromCache);
   }
 
+  @VisibleForTesting
+  HRegionLocation getRegionLocationInCache(TableName tableName, byte[] row) {
+    TableCache tableCache = cache.get(tableName);
+    return tableCache != null ? locateRowInCache(tableCache, tableName, row) : null;
+  }
+
+  /**
+   * Remove all the cached locations on the given server, for example when we are told it is dead.
+   */
+  void clearCache(ServerName serverName) {
+    for (TableCache tableCache : cache.values()) {
+      tableCache.cache.values().removeIf(loc -> serverName.equals(loc.getServerName()));
+      tableCache.replicas.values().removeIf(locs -> Arrays.stream(locs.getRegionLocations())
+          .anyMatch(loc -> loc != null && serverName.equals(loc.getServerName())));
+    }
+  }
+
   void clearCache(TableName tableName) {
     TableCache tableCache = cache.remove(tableName);
     if (tableCache == null) {
@@ -32,7 +32,10 @@ import java.util.function.Supplier;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.RegionLocations;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.exceptions.RegionMovedException;
@@ -59,8 +62,8 @@ class AsyncRegionLocator {
     this.retryTimer = retryTimer;
   }
 
-  private CompletableFuture<HRegionLocation> withTimeout(CompletableFuture<HRegionLocation> future,
-      long timeoutNs, Supplier<String> timeoutMsg) {
+  private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeoutNs,
+      Supplier<String> timeoutMsg) {
     if (future.isDone() || timeoutNs <= 0) {
       return future;
     }
@@ -96,6 +99,42 @@ class AsyncRegionLocator {
     return getRegionLocation(tableName, row, type, false, timeoutNs);
   }
 
+  /**
+   * Locate the given replica of the region containing the row. The replicas of the meta region are
+   * not supported yet.
+   */
+  CompletableFuture<HRegionLocation> getRegionLocation(TableName tableName, byte[] row,
+      int replicaId, long timeoutNs) {
+    if (replicaId == RegionReplicaUtil.DEFAULT_REPLICA_ID) {
+      return getRegionLocation(tableName, row, RegionLocateType.CURRENT, timeoutNs);
+    }
+    if (tableName.equals(META_TABLE_NAME)) {
+      CompletableFuture<HRegionLocation> future = new CompletableFuture<>();
+      future.completeExceptionally(
+        new DoNotRetryIOException("Can not locate replica " + replicaId + " of meta"));
+      return future;
+    }
+    return withTimeout(nonMetaRegionLocator.getRegionLocation(tableName, row, replicaId, false),
+      timeoutNs, () -> "Timeout(" + TimeUnit.NANOSECONDS.toMillis(timeoutNs) +
+          "ms) waiting for location of replica " + replicaId + " for " + tableName + ", row='" +
+          Bytes.toStringBinary(row) + "'");
+  }
+
+  /**
+   * Locate all the replicas of the region containing the row.
+   */
+  CompletableFuture<RegionLocations> getRegionLocations(TableName tableName, byte[] row,
+      long timeoutNs) {
+    CompletableFuture<RegionLocations> future =
+        tableName.equals(META_TABLE_NAME)
+            ? metaRegionLocator.getRegionLocation(false).thenApply(loc -> new RegionLocations(loc))
+            : nonMetaRegionLocator.getRegionLocations(tableName, row, false);
+    return withTimeout(future, timeoutNs,
+      () -> "Timeout(" + TimeUnit.NANOSECONDS.toMillis(timeoutNs) +
+          "ms) waiting for region locations for " + tableName + ", row='" +
+          Bytes.toStringBinary(row) + "'");
+  }
+
   static boolean canUpdate(HRegionLocation loc, HRegionLocation oldLoc) {
     // Do not need to update if no such location, or the location is newer, or the location is not
     // same with us
@@ -149,6 +188,14 @@ class AsyncRegionLocator {
     }
   }
 
+  void clearCache(ServerName serverName) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Clear meta cache for " + serverName);
+    }
+    metaRegionLocator.clearCache(serverName);
+    nonMetaRegionLocator.clearCache(serverName);
+  }
+
   void clearCache(TableName tableName) {
     if (LOG.isDebugEnabled()) {
       LOG.debug("Clear meta cache for " + tableName);
@@ -946,15 +946,20 @@ class AsyncRequestFutureImpl<CResult> implements AsyncRequestFuture {
   protected void updateStats(ServerName server, Map<byte[], MultiResponse.RegionResult> results) {
     boolean metrics = asyncProcess.connection.getConnectionMetrics() != null;
     boolean stats = asyncProcess.connection.getStatisticsTracker() != null;
-    if (!stats && !metrics) {
+    boolean controller = asyncProcess.requestController instanceof AimdRequestController;
+    if (!stats && !metrics && !controller) {
       return;
     }
+    RegionLoadStats serverStats = null;
     for (Map.Entry<byte[], MultiResponse.RegionResult> regionStats : results.entrySet()) {
       byte[] regionName = regionStats.getKey();
       ClientProtos.RegionLoadStats stat = regionStats.getValue().getStat();
       if (stat == null) {
-        LOG.error("No ClientProtos.RegionLoadStats found for server=" + server
-          + ", region=" + Bytes.toStringBinary(regionName));
+        // the request controller makes do without the stats of the servers not sending them
+        if (stats || metrics) {
+          LOG.error("No ClientProtos.RegionLoadStats found for server=" + server
+            + ", region=" + Bytes.toStringBinary(regionName));
+        }
         continue;
       }
       RegionLoadStats regionLoadstats = ProtobufUtil.createRegionLoadStats(stat);
@@ -962,6 +967,12 @@ class AsyncRequestFutureImpl<CResult> implements AsyncRequestFuture {
           regionName, regionLoadstats);
       ResultStatsUtil.updateStats(asyncProcess.connection.getConnectionMetrics(),
           server, regionName, regionLoadstats);
+      serverStats = regionLoadstats;
+    }
+    if (controller && serverStats != null) {
+      // one step per response, on the values the server reports for all its regions alike
+      ((AimdRequestController) asyncProcess.requestController).updateServerStats(server,
+        serverStats);
     }
   }
 
@@ -73,6 +73,8 @@ class AsyncRpcRetryingCallerFactory {
 
     private long rpcTimeoutNs = -1L;
 
+    private int replicaId = RegionReplicaUtil.DEFAULT_REPLICA_ID;
+
     private RegionLocateType locateType = RegionLocateType.CURRENT;
 
     public SingleRequestCallerBuilder<T> table(TableName tableName) {
@@ -101,6 +103,11 @@ class AsyncRpcRetryingCallerFactory {
       return this;
     }
 
+    public SingleRequestCallerBuilder<T> replicaId(int replicaId) {
+      this.replicaId = replicaId;
+      return this;
+    }
+
     public SingleRequestCallerBuilder<T> locateType(RegionLocateType locateType) {
       this.locateType = locateType;
       return this;
@@ -124,6 +131,7 @@ class AsyncRpcRetryingCallerFactory {
     public AsyncSingleRequestRpcRetryingCaller<T> build() {
       return new AsyncSingleRequestRpcRetryingCaller<>(retryTimer, conn,
           checkNotNull(tableName, "tableName is null"), checkNotNull(row, "row is null"),
+          replicaId,
           checkNotNull(locateType, "locateType is null"), checkNotNull(callable, "action is null"),
           pauseNs, maxAttempts, operationTimeoutNs, rpcTimeoutNs, startLogErrorsCnt);
     }
@@ -34,8 +34,10 @@ import org.apache.hadoop.hbase.shaded.io.netty.util.HashedWheelTimer;
 import org.apache.hadoop.hbase.shaded.io.netty.util.Timeout;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -53,6 +55,7 @@ import org.apache.hadoop.hbase.client.metrics.ScanMetrics;
 import org.apache.hadoop.hbase.exceptions.OutOfOrderScannerNextException;
 import org.apache.hadoop.hbase.exceptions.ScannerResetException;
 import org.apache.hadoop.hbase.ipc.HBaseRpcController;
+import org.apache.hadoop.hbase.ipc.RpcControllerFactory;
 import org.apache.hadoop.hbase.regionserver.RegionServerStoppedException;
 import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.shaded.protobuf.RequestConverter;
@@ -110,6 +113,13 @@ class AsyncScanSingleRegionRpcRetryingCaller {
 
   private final HBaseRpcController controller;
 
+  private final RpcControllerFactory rpcControllerFactory;
+
+  private final int pipelineWindow;
+
+  // The calls sent ahead of the current one when pipelining, in call sequence order.
+  private final Deque<PipelinedCall> pipelinedCalls = new ArrayDeque<>();
+
   private byte[] nextStartRowWhenError;
 
   private boolean includeNextStartRowWhenError;
@@ -299,6 +309,45 @@ class AsyncScanSingleRegionRpcRetryingCaller {
     }
   }
 
+  // A call sent ahead of the current one. Its response is kept until it becomes the current call,
+  // and handled right away if it comes after that. The responses of the calls still pipelined when
+  // the scan of the region completes are dropped.
+  private final class PipelinedCall {
+
+    private final HBaseRpcController controller;
+
+    private boolean current;
+
+    private boolean completed;
+
+    private ScanResponse resp;
+
+    PipelinedCall(HBaseRpcController controller) {
+      this.controller = controller;
+    }
+
+    void onResponse(ScanResponse resp) {
+      synchronized (this) {
+        if (!current) {
+          completed = true;
+          this.resp = resp;
+          return;
+        }
+      }
+      onComplete(controller, resp);
+    }
+
+    void becomeCurrent() {
+      synchronized (this) {
+        current = true;
+        if (!completed) {
+          return;
+        }
+      }
+      onComplete(controller, resp);
+    }
+  }
+
   public AsyncScanSingleRegionRpcRetryingCaller(HashedWheelTimer retryTimer,
       AsyncConnectionImpl conn, Scan scan, ScanMetrics scanMetrics, long scannerId,
       ScanResultCache resultCache, RawScanResultConsumer consumer, Interface stub,
@@ -326,6 +375,10 @@ class AsyncScanSingleRegionRpcRetryingCaller {
     }
     this.future = new CompletableFuture<>();
     this.controller = conn.rpcControllerFactory.newController();
+    this.rpcControllerFactory = conn.rpcControllerFactory;
+    // The server stops a scan with a limit at the limit of the call, which does not account for the
+    // rows of the calls before it, so only pipeline the scans without a limit.
+    this.pipelineWindow = scan.getLimit() > 0 ? 1 : conn.connConf.getScannerPipelineWindow();
     this.exceptions = new ArrayList<>();
   }
 
@@ -561,8 +614,24 @@ class AsyncScanSingleRegionRpcRetryingCaller {
     }
     resetController(controller, callTimeoutNs);
     ScanRequest req = RequestConverter.buildScanRequest(scannerId, scan.getCaching(), false,
-      nextCallSeq, false, false, scan.getLimit());
+      nextCallSeq, false, false, scan.getLimit(), pipelineWindow);
     stub.scan(controller, req, resp -> onComplete(controller, resp));
+    fillPipeline(callTimeoutNs);
+  }
+
+  // Send the calls following the current one until the window is full.
+  private void fillPipeline(long callTimeoutNs) {
+    while (pipelinedCalls.size() < pipelineWindow - 1) {
+      long callSeq = nextCallSeq + pipelinedCalls.size() + 1;
+      incRPCCallsMetrics(scanMetrics, regionServerRemote);
+      HBaseRpcController controller = rpcControllerFactory.newController();
+      resetController(controller, callTimeoutNs);
+      ScanRequest req = RequestConverter.buildScanRequest(scannerId, scan.getCaching(), false,
+        callSeq, false, false, scan.getLimit(), pipelineWindow);
+      PipelinedCall call = new PipelinedCall(controller);
+      pipelinedCalls.add(call);
+      stub.scan(controller, req, call::onResponse);
+    }
   }
 
   private void next() {
@@ -570,10 +639,22 @@ class AsyncScanSingleRegionRpcRetryingCaller {
     tries = 1;
     exceptions.clear();
     nextCallStartNs = System.nanoTime();
-    call();
+    PipelinedCall call = pipelinedCalls.poll();
+    if (call == null) {
+      call();
+      return;
+    }
+    fillPipeline(scanTimeoutNs > 0 ? scanTimeoutNs : 0L);
+    call.becomeCurrent();
   }
 
   private void renewLease() {
+    if (!pipelinedCalls.isEmpty()) {
+      // The pipelined calls hold the call sequences after the current one, and the server renews
+      // the lease when it serves them. If the scan stays suspended longer than the lease, the next
+      // call finds the scanner closed and we open a new one.
+      return;
+    }
     incRPCCallsMetrics(scanMetrics, regionServerRemote);
     nextCallSeq++;
     resetController(controller, rpcTimeoutNs);
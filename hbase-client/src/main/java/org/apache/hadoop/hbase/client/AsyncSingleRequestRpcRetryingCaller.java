@@ -45,18 +45,21 @@ class AsyncSingleRequestRpcRetryingCaller<T> extends AsyncRpcRetryingCaller<T> {
 
   private final byte[] row;
 
+  private final int replicaId;
+
   private final RegionLocateType locateType;
 
   private final Callable<T> callable;
 
   public AsyncSingleRequestRpcRetryingCaller(HashedWheelTimer retryTimer, AsyncConnectionImpl conn,
-      TableName tableName, byte[] row, RegionLocateType locateType, Callable<T> callable,
-      long pauseNs, int maxAttempts, long operationTimeoutNs, long rpcTimeoutNs,
-      int startLogErrorsCnt) {
+      TableName tableName, byte[] row, int replicaId, RegionLocateType locateType,
+      Callable<T> callable, long pauseNs, int maxAttempts, long operationTimeoutNs,
+      long rpcTimeoutNs, int startLogErrorsCnt) {
     super(retryTimer, conn, pauseNs, maxAttempts, operationTimeoutNs, rpcTimeoutNs,
         startLogErrorsCnt);
     this.tableName = tableName;
     this.row = row;
+    this.replicaId = replicaId;
     this.locateType = locateType;
     this.callable = callable;
   }
@@ -98,18 +101,19 @@ class AsyncSingleRequestRpcRetryingCaller<T> extends AsyncRpcRetryingCaller<T> {
     } else {
       locateTimeoutNs = -1L;
     }
-    conn.getLocator()
-        .getRegionLocation(tableName, row, locateType, locateTimeoutNs)
-        .whenComplete(
-          (loc, error) -> {
-            if (error != null) {
-              onError(error, () -> "Locate '" + Bytes.toStringBinary(row) + "' in " + tableName
-                  + " failed", err -> {
-              });
-              return;
-            }
-            call(loc);
+    CompletableFuture<HRegionLocation> locateFuture =
+        replicaId == RegionReplicaUtil.DEFAULT_REPLICA_ID
+            ? conn.getLocator().getRegionLocation(tableName, row, locateType, locateTimeoutNs)
+            : conn.getLocator().getRegionLocation(tableName, row, replicaId, locateTimeoutNs);
+    locateFuture.whenComplete((loc, error) -> {
+      if (error != null) {
+        onError(error,
+          () -> "Locate '" + Bytes.toStringBinary(row) + "' in " + tableName + " failed", err -> {
           });
+        return;
+      }
+      call(loc);
+    });
   }
 
   @Override
@@ -26,12 +26,15 @@ import static org.apache.hadoop.hbase.client.ConnectionUtils.isEmptyStopRow;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import org.apache.hadoop.conf.Configuration;
@@ -46,6 +49,7 @@ import org.apache.hadoop.hbase.util.ReflectionUtils;
 import org.apache.yetus.audience.InterfaceAudience;
 
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.RpcCallback;
+import org.apache.hadoop.hbase.shaded.io.netty.util.Timeout;
 import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.shaded.protobuf.RequestConverter;
 import org.apache.hadoop.hbase.shaded.protobuf.ResponseConverter;
@@ -207,9 +211,8 @@ class RawAsyncTableImpl implements RawAsyncTable {
     return newCaller(row.getRow(), rpcTimeoutNs);
   }
 
-  @Override
-  public CompletableFuture<Result> get(Get get) {
-    return this.<Result> newCaller(get, readRpcTimeoutNs)
+  private CompletableFuture<Result> get(Get get, int replicaId) {
+    return this.<Result> newCaller(get, readRpcTimeoutNs).replicaId(replicaId)
         .action((controller, loc, stub) -> RawAsyncTableImpl
             .<Get, GetRequest, GetResponse, Result> call(controller, loc, stub, get,
               RequestConverter::buildGetRequest, (s, c, req, done) -> s.get(c, req, done),
@@ -217,6 +220,88 @@ class RawAsyncTableImpl implements RawAsyncTable {
         .call();
   }
 
+  @Override
+  public CompletableFuture<Result> get(Get get) {
+    if (!conn.hedgedReadPolicy.isEnabled()) {
+      return get(get, RegionReplicaUtil.DEFAULT_REPLICA_ID);
+    }
+    AsyncHedgedReadPolicy policy = conn.hedgedReadPolicy;
+    policy.onRead();
+    long startNs = System.nanoTime();
+    CompletableFuture<Result> primary = get(get, RegionReplicaUtil.DEFAULT_REPLICA_ID);
+    if (get.getConsistency() != Consistency.TIMELINE) {
+      primary.thenRun(() -> policy.updateLatency(System.nanoTime() - startNs));
+      return primary;
+    }
+    CompletableFuture<Result> future = new CompletableFuture<>();
+    // the number of calls which have not failed yet, counting the hedge until it is sent or given
+    // up
+    AtomicInteger pending = new AtomicInteger(2);
+    AtomicReference<Throwable> primaryError = new AtomicReference<>();
+    Timeout hedgeTask = AsyncConnectionImpl.RETRY_TIMER.newTimeout(
+      t -> hedge(get, future, pending, primaryError), policy.getDelayNs(), TimeUnit.NANOSECONDS);
+    primary.whenComplete((result, error) -> {
+      if (error == null) {
+        hedgeTask.cancel();
+        policy.updateLatency(System.nanoTime() - startNs);
+        future.complete(result);
+        return;
+      }
+      primaryError.set(error);
+      if (hedgeTask.cancel()) {
+        // no use waiting out the delay for a primary that failed already
+        hedge(get, future, pending, primaryError);
+      }
+      if (pending.decrementAndGet() == 0) {
+        future.completeExceptionally(error);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Also send the get to the secondary replicas, as the primary is slower than usual or failed.
+   * Only done if the hedged read budget allows, otherwise we just wait for the primary. Once all
+   * the calls failed, the get fails with the error of the primary.
+   */
+  private void hedge(Get get, CompletableFuture<Result> future, AtomicInteger pending,
+      AtomicReference<Throwable> primaryError) {
+    if (future.isDone()) {
+      return;
+    }
+    conn.getLocator().getRegionLocations(tableName, get.getRow(), readRpcTimeoutNs)
+        .whenComplete((locs, error) -> {
+          List<Integer> replicaIds = new ArrayList<>();
+          if (error == null && !future.isDone()) {
+            for (HRegionLocation loc : locs.getRegionLocations()) {
+              if (loc != null && loc.getServerName() != null &&
+                  !RegionReplicaUtil.isDefaultReplica(loc.getRegionInfo())) {
+                replicaIds.add(loc.getRegionInfo().getReplicaId());
+              }
+            }
+          }
+          if (replicaIds.isEmpty() || !conn.hedgedReadPolicy.tryAcquire(replicaIds.size())) {
+            if (pending.decrementAndGet() == 0) {
+              future.completeExceptionally(primaryError.get());
+            }
+            return;
+          }
+          // the hedge itself is done once the calls are sent
+          pending.addAndGet(replicaIds.size() - 1);
+          for (int replicaId : replicaIds) {
+            get(get, replicaId).whenComplete((result, err) -> {
+              if (err == null) {
+                if (future.complete(result)) {
+                  conn.hedgedReadPolicy.onHedgedReadWin();
+                }
+              } else if (pending.decrementAndGet() == 0) {
+                future.completeExceptionally(primaryError.get());
+              }
+            });
+          }
+        });
+  }
+
   @Override
   public CompletableFuture<Void> put(Put put) {
     return this.<Void> newCaller(put, writeRpcTimeoutNs)
@@ -386,6 +471,10 @@ class RawAsyncTableImpl implements RawAsyncTable {
     return batch(gets, readRpcTimeoutNs);
   }
 
+  private static boolean isTimelineGet(Row action) {
+    return action instanceof Get && ((Get) action).getConsistency() == Consistency.TIMELINE;
+  }
+
   @Override
   public List<CompletableFuture<Void>> put(List<Put> puts) {
     return voidMutate(puts);
@@ -406,7 +495,30 @@ class RawAsyncTableImpl implements RawAsyncTable {
         .map(f -> f.<Void> thenApply(r -> null)).collect(toList());
   }
 
+  @SuppressWarnings("unchecked")
   private <T> List<CompletableFuture<T>> batch(List<? extends Row> actions, long rpcTimeoutNs) {
+    if (conn.hedgedReadPolicy.isEnabled() &&
+        actions.stream().anyMatch(RawAsyncTableImpl::isTimelineGet)) {
+      // hedge the timeline gets one by one, and batch the others
+      List<Row> others = new ArrayList<>();
+      for (Row action : actions) {
+        if (!isTimelineGet(action)) {
+          others.add(action);
+        }
+      }
+      Iterator<CompletableFuture<T>> otherFutures = others.isEmpty() ? Collections.emptyIterator()
+          : this.<T> batch0(others, rpcTimeoutNs).iterator();
+      List<CompletableFuture<T>> futures = new ArrayList<>(actions.size());
+      for (Row action : actions) {
+        futures.add(isTimelineGet(action) ? (CompletableFuture<T>) get((Get) action)
+            : otherFutures.next());
+      }
+      return futures;
+    }
+    return batch0(actions, rpcTimeoutNs);
+  }
+
+  private <T> List<CompletableFuture<T>> batch0(List<? extends Row> actions, long rpcTimeoutNs) {
     return conn.callerFactory.batch().table(tableName).actions(actions)
         .operationTimeout(operationTimeoutNs, TimeUnit.NANOSECONDS)
         .rpcTimeout(rpcTimeoutNs, TimeUnit.NANOSECONDS).pause(pauseNs, TimeUnit.NANOSECONDS)
@@ -27,11 +27,20 @@ public class RegionLoadStats {
   int memstoreLoad;
   int heapOccupancy;
   int compactionPressure;
+  int rpcQueueTime;
+  int handlerOccupancy;
 
   public RegionLoadStats(int memstoreLoad, int heapOccupancy, int compactionPressure) {
+    this(memstoreLoad, heapOccupancy, compactionPressure, 0, 0);
+  }
+
+  public RegionLoadStats(int memstoreLoad, int heapOccupancy, int compactionPressure,
+      int rpcQueueTime, int handlerOccupancy) {
     this.memstoreLoad = memstoreLoad;
     this.heapOccupancy = heapOccupancy;
     this.compactionPressure = compactionPressure;
+    this.rpcQueueTime = rpcQueueTime;
+    this.handlerOccupancy = handlerOccupancy;
   }
 
   /**
@@ -54,4 +63,19 @@ public class RegionLoadStats {
   public int getCompactionPressure() {
     return this.compactionPressure;
   }
+
+  /**
+   * @return the average time in milliseconds the recent calls waited in the call queue of the
+   *         server
+   */
+  public int getRpcQueueTime() {
+    return this.rpcQueueTime;
+  }
+
+  /**
+   * @return the percent of the handlers of the general call queues of the server that are busy
+   */
+  public int getHandlerOccupancy() {
+    return this.handlerOccupancy;
+  }
 }
@@ -34,6 +34,7 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -228,7 +229,7 @@ class SimpleRequestController implements RequestController {
   public Checker newChecker() {
     List<RowChecker> checkers = new ArrayList<>(4);
     checkers.add(new TaskCountChecker(maxTotalConcurrentTasks,
-            maxConcurrentTasksPerServer,
+            this::getMaxConcurrentTasks,
             maxConcurrentTasksPerRegion,
             tasksInProgress,
             taskCounterPerServer,
@@ -239,6 +240,13 @@ class SimpleRequestController implements RequestController {
     return newChecker(checkers);
   }
 
+  /**
+   * @return the number of tasks that may run simultaneously on the given server
+   */
+  int getMaxConcurrentTasks(ServerName sn) {
+    return maxConcurrentTasksPerServer;
+  }
+
   @Override
   public void incTaskCounters(Collection<byte[]> regions, ServerName sn) {
     tasksInProgress.incrementAndGet();
@@ -373,7 +381,7 @@ class SimpleRequestController implements RequestController {
     private final Set<ServerName> serversIncluded = new HashSet<>();
     private final int maxConcurrentTasksPerRegion;
     private final int maxTotalConcurrentTasks;
-    private final int maxConcurrentTasksPerServer;
+    private final ToIntFunction<ServerName> maxConcurrentTasksPerServer;
     private final Map<byte[], AtomicInteger> taskCounterPerRegion;
     private final Map<ServerName, AtomicInteger> taskCounterPerServer;
     private final Set<byte[]> busyRegions = new TreeSet<>(Bytes.BYTES_COMPARATOR);
@@ -385,6 +393,16 @@ class SimpleRequestController implements RequestController {
             final AtomicLong tasksInProgress,
             final Map<ServerName, AtomicInteger> taskCounterPerServer,
             final Map<byte[], AtomicInteger> taskCounterPerRegion) {
+      this(maxTotalConcurrentTasks, sn -> maxConcurrentTasksPerServer, maxConcurrentTasksPerRegion,
+        tasksInProgress, taskCounterPerServer, taskCounterPerRegion);
+    }
+
+    TaskCountChecker(final int maxTotalConcurrentTasks,
+            final ToIntFunction<ServerName> maxConcurrentTasksPerServer,
+            final int maxConcurrentTasksPerRegion,
+            final AtomicLong tasksInProgress,
+            final Map<ServerName, AtomicInteger> taskCounterPerServer,
+            final Map<byte[], AtomicInteger> taskCounterPerRegion) {
       this.maxTotalConcurrentTasks = maxTotalConcurrentTasks;
       this.maxConcurrentTasksPerRegion = maxConcurrentTasksPerRegion;
       this.maxConcurrentTasksPerServer = maxConcurrentTasksPerServer;
@@ -455,7 +473,8 @@ class SimpleRequestController implements RequestController {
         return ReturnCode.SKIP;
       }
       AtomicInteger serverCnt = taskCounterPerServer.get(loc.getServerName());
-      if (serverCnt != null && serverCnt.get() >= maxConcurrentTasksPerServer) {
+      if (serverCnt != null
+          && serverCnt.get() >= maxConcurrentTasksPerServer.applyAsInt(loc.getServerName())) {
         // Too many tasks for this individual server
         return ReturnCode.SKIP;
       }
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client.backoff;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Exponential backoff policy that also backs off when the region server is short of RPC handlers.
+ * The recent call queue time of the server counts as load in proportion to
+ * {@link #MAX_QUEUE_TIME_KEY}, and the occupancy of its handlers above
+ * {@link #HANDLER_OCCUPANCY_LOW_WATERMARK_KEY} counts as load up to a full load when all of them
+ * are busy.
+ */
+@InterfaceAudience.Public
+public class AdaptiveClientBackoffPolicy extends ExponentialClientBackoffPolicy {
+
+  public static final String MAX_QUEUE_TIME_KEY = "hbase.client.adaptive-backoff.queue-time.max";
+  public static final long DEFAULT_MAX_QUEUE_TIME = 1000;
+  public static final String HANDLER_OCCUPANCY_LOW_WATERMARK_KEY =
+      "hbase.client.adaptive-backoff.handler-occupancy.low";
+  public static final float DEFAULT_HANDLER_OCCUPANCY_LOW_WATERMARK = 0.8f;
+
+  private final long maxQueueTime;
+  private final float handlerOccupancyLowWatermark;
+
+  public AdaptiveClientBackoffPolicy(Configuration conf) {
+    super(conf);
+    this.maxQueueTime = Math.max(1, conf.getLong(MAX_QUEUE_TIME_KEY, DEFAULT_MAX_QUEUE_TIME));
+    this.handlerOccupancyLowWatermark = Math.max(0f, Math.min(0.99f, conf.getFloat(
+      HANDLER_OCCUPANCY_LOW_WATERMARK_KEY, DEFAULT_HANDLER_OCCUPANCY_LOW_WATERMARK)));
+  }
+
+  @Override
+  protected double getLoad(ServerStatistics.RegionStatistics regionStats) {
+    double percent = super.getLoad(regionStats);
+
+    // Factor in the time the calls wait for a handler
+    percent = Math.max(percent, (double) regionStats.getRpcQueueTime() / maxQueueTime);
+
+    // Factor in handler occupancy
+    float handlerOccupancy = Math.min(1.0f, regionStats.getHandlerOccupancyPercent() / 100.0f);
+    if (handlerOccupancy >= handlerOccupancyLowWatermark) {
+      percent = Math.max(percent,
+          scale(handlerOccupancy, handlerOccupancyLowWatermark, 1.0, 0.1, 1.0));
+    }
+    return percent;
+  }
+}
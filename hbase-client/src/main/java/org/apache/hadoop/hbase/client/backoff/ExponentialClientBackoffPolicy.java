@@ -63,6 +63,20 @@ public class ExponentialClientBackoffPolicy implements ClientBackoffPolicy {
       return 0;
     }
 
+    double percent = getLoad(regionStats);
+    // square the percent as a value less than 1. Closer we move to 100 percent,
+    // the percent moves to 1, but squaring causes the exponential curve
+    double multiplier = Math.pow(percent, 4.0);
+    if (multiplier > 1) {
+      multiplier = 1;
+    }
+    return (long) (multiplier * maxBackoff);
+  }
+
+  /**
+   * @return the load of the region, where 1.0 and above means the client should back off the most
+   */
+  protected double getLoad(ServerStatistics.RegionStatistics regionStats) {
     // Factor in memstore load
     double percent = regionStats.getMemStoreLoadPercent() / 100.0;
 
@@ -81,18 +95,11 @@ public class ExponentialClientBackoffPolicy implements ClientBackoffPolicy {
           scale(heapOccupancy, heapOccupancyLowWatermark, heapOccupancyHighWatermark,
               0.1, 1.0));
     }
-    percent = Math.max(percent, compactionPressure);
-    // square the percent as a value less than 1. Closer we move to 100 percent,
-    // the percent moves to 1, but squaring causes the exponential curve
-    double multiplier = Math.pow(percent, 4.0);
-    if (multiplier > 1) {
-      multiplier = 1;
-    }
-    return (long) (multiplier * maxBackoff);
+    return Math.max(percent, compactionPressure);
   }
 
   /** Scale valueIn in the range [baseMin,baseMax] to the range [limitMin,limitMax] */
-  private static double scale(double valueIn, double baseMin, double baseMax, double limitMin,
+  static double scale(double valueIn, double baseMin, double baseMax, double limitMin,
       double limitMax) {
     Preconditions.checkArgument(baseMin <= baseMax, "Illegal source range [%s,%s]",
         baseMin, baseMax);
@@ -57,11 +57,15 @@ public class ServerStatistics {
     private int memstoreLoad = 0;
     private int heapOccupancy = 0;
     private int compactionPressure = 0;
+    private int rpcQueueTime = 0;
+    private int handlerOccupancy = 0;
 
     public void update(RegionLoadStats currentStats) {
       this.memstoreLoad = currentStats.getMemStoreLoad();
       this.heapOccupancy = currentStats.getHeapOccupancy();
       this.compactionPressure = currentStats.getCompactionPressure();
+      this.rpcQueueTime = currentStats.getRpcQueueTime();
+      this.handlerOccupancy = currentStats.getHandlerOccupancy();
     }
 
     public int getMemStoreLoadPercent(){
@@ -76,5 +80,13 @@ public class ServerStatistics {
       return compactionPressure;
     }
 
+    public int getRpcQueueTime() {
+      return rpcQueueTime;
+    }
+
+    public int getHandlerOccupancyPercent() {
+      return handlerOccupancy;
+    }
+
   }
 }
@@ -69,6 +69,16 @@ class CellBlockBuilder {
 
   private final int cellBlockBuildingInitialBufferSize;
 
+  /**
+   * The least serialized size of an off heap cell for it to be referenced rather than copied by the
+   * cell blocks built with references, 0 or less to always copy.
+   */
+  static final String CELL_BLOCK_REFERENCE_MIN_SIZE =
+      "hbase.ipc.server.cellblock.reference.min.size";
+  static final int DEFAULT_CELL_BLOCK_REFERENCE_MIN_SIZE = 4 * 1024;
+
+  private final int cellBlockReferenceMinSize;
+
   public CellBlockBuilder(Configuration conf) {
     this.conf = conf;
     this.cellBlockDecompressionMultiplier = conf
@@ -78,6 +88,9 @@ class CellBlockBuilder {
     // #buildCellBlock.
     this.cellBlockBuildingInitialBufferSize = ClassSize
         .align(conf.getInt("hbase.ipc.cellblock.building.initial.buffersize", 16 * 1024));
+    int referenceMinSize =
+        conf.getInt(CELL_BLOCK_REFERENCE_MIN_SIZE, DEFAULT_CELL_BLOCK_REFERENCE_MIN_SIZE);
+    this.cellBlockReferenceMinSize = referenceMinSize > 0 ? referenceMinSize : Integer.MAX_VALUE;
   }
 
   private interface OutputStreamSupplier {
@@ -218,6 +231,26 @@ class CellBlockBuilder {
    */
   public ByteBufferListOutputStream buildCellBlockStream(Codec codec, CompressionCodec compressor,
       CellScanner cellScanner, ByteBufferPool pool) throws IOException {
+    return buildCellBlockStream(codec, compressor, cellScanner, pool, false);
+  }
+
+  /**
+   * Puts CellScanner Cells into a cell block like
+   * {@link #buildCellBlockStream(Codec, CompressionCodec, CellScanner, ByteBufferPool)}, except
+   * that when <code>referenceCells</code> is true and there is no <code>compressor</code>, the
+   * bytes of the big off heap cells are not copied: the returned stream refers to them where they
+   * are, typically in the blocks of the BucketCache. The caller must then keep those cells in
+   * place until it is done with the stream, see {@link ByteBufferListOutputStream#hasReferences()}.
+   * @param codec to use for encoding
+   * @param compressor to use for encoding
+   * @param cellScanner to encode
+   * @param pool Pool of ByteBuffers to make use of.
+   * @param referenceCells whether the big off heap cells may be referenced rather than copied
+   * @return Null or a stream of the cellblock
+   * @throws IOException if encoding the cells fail
+   */
+  public ByteBufferListOutputStream buildCellBlockStream(Codec codec, CompressionCodec compressor,
+      CellScanner cellScanner, ByteBufferPool pool, boolean referenceCells) throws IOException {
     if (cellScanner == null) {
       return null;
     }
@@ -226,6 +259,9 @@ class CellBlockBuilder {
     }
     assert pool != null;
     ByteBufferListOutputStream bbos = new ByteBufferListOutputStream(pool);
+    if (referenceCells && compressor == null) {
+      bbos.setReferenceThreshold(cellBlockReferenceMinSize);
+    }
     encodeCellsTo(bbos, cellScanner, codec, compressor);
     if (bbos.size() == 0) {
       bbos.releaseResources();
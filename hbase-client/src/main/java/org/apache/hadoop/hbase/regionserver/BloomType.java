@@ -34,5 +34,11 @@ public enum BloomType {
   /**
    * Bloom enabled with Table row &amp; column (family+qualifier) as Key
    */
-  ROWCOL
+  ROWCOL,
+  /**
+   * Bloom enabled with a prefix of the Table row as Key. The prefix is either of a fixed length,
+   * or the row up to and including the first delimiter byte, as set in the column family
+   * configuration.
+   */
+  ROWPREFIX
 }
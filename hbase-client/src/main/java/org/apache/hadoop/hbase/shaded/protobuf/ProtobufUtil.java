@@ -3156,7 +3156,7 @@ public final class ProtobufUtil {
 
   public static RegionLoadStats createRegionLoadStats(ClientProtos.RegionLoadStats stats) {
     return new RegionLoadStats(stats.getMemStoreLoad(), stats.getHeapOccupancy(),
-        stats.getCompactionPressure());
+        stats.getCompactionPressure(), stats.getRpcQueueTime(), stats.getHandlerOccupancy());
   }
 
   /**
@@ -533,6 +533,21 @@ public final class RequestConverter {
    */
   public static ScanRequest buildScanRequest(long scannerId, int numberOfRows, boolean closeScanner,
       long nextCallSeq, boolean trackMetrics, boolean renew, int limitOfRows) {
+    return buildScanRequest(scannerId, numberOfRows, closeScanner, nextCallSeq, trackMetrics, renew,
+      limitOfRows, 1);
+  }
+
+  /**
+   * Create a protocol buffer ScanRequest for a scanner id
+   * @param scannerId
+   * @param numberOfRows
+   * @param closeScanner
+   * @param nextCallSeq
+   * @param pipelineWindow the number of calls the client may have in flight on the scanner
+   * @return a scan request
+   */
+  public static ScanRequest buildScanRequest(long scannerId, int numberOfRows, boolean closeScanner,
+      long nextCallSeq, boolean trackMetrics, boolean renew, int limitOfRows, int pipelineWindow) {
     ScanRequest.Builder builder = ScanRequest.newBuilder();
     builder.setNumberOfRows(numberOfRows);
     builder.setCloseScanner(closeScanner);
@@ -545,6 +560,9 @@ public final class RequestConverter {
     if (limitOfRows > 0) {
       builder.setLimitOfRows(limitOfRows);
     }
+    if (pipelineWindow > 1) {
+      builder.setPipelineWindow(pipelineWindow);
+    }
     return builder.build();
   }
 
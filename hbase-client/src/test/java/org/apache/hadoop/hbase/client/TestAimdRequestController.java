@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RequestController.ReturnCode;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ClientTests.class, SmallTests.class})
+public class TestAimdRequestController {
+
+  private static final ServerName SN = ServerName.valueOf("s1,1,1");
+  private static final ServerName SN2 = ServerName.valueOf("s2,2,2");
+  private static final byte[] REGION = Bytes.toBytes("region");
+  private static final RegionLoadStats IDLE = new RegionLoadStats(10, 30, 0, 1, 10);
+
+  private static AimdRequestController createController() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(HConstants.HBASE_CLIENT_MAX_PERSERVER_TASKS, 2);
+    conf.setInt(AimdRequestController.MAX_PERSERVER_TASKS, 8);
+    // decrease on each congested response
+    conf.setLong(AimdRequestController.DECREASE_INTERVAL, 0);
+    return new AimdRequestController(conf);
+  }
+
+  @Test
+  public void testCongestion() {
+    AimdRequestController controller = createController();
+    assertTrue(!controller.isCongested(IDLE));
+    assertTrue(controller.isCongested(new RegionLoadStats(10, 30, 0, 150, 10)));
+    assertTrue(controller.isCongested(new RegionLoadStats(10, 30, 0, 1, 95)));
+    assertTrue(controller.isCongested(new RegionLoadStats(10, 30, 100, 1, 10)));
+    assertTrue(controller.isCongested(new RegionLoadStats(10, 99, 0, 1, 10)));
+    // the memstore load is the region's own, and left to the tasks per region
+    assertTrue(!controller.isCongested(new RegionLoadStats(95, 30, 0, 1, 10)));
+  }
+
+  @Test
+  public void testAdditiveIncreaseMultiplicativeDecrease() {
+    AimdRequestController controller = createController();
+    assertEquals(2, controller.getMaxConcurrentTasks(SN));
+
+    // about one more task per window of responses
+    controller.updateServerStats(SN, IDLE);
+    controller.updateServerStats(SN, IDLE);
+    assertEquals(2, controller.getMaxConcurrentTasks(SN));
+    controller.updateServerStats(SN, IDLE);
+    assertEquals(3, controller.getMaxConcurrentTasks(SN));
+    for (int i = 0; i < 100; i++) {
+      controller.updateServerStats(SN, IDLE);
+    }
+    assertEquals(8, controller.getMaxConcurrentTasks(SN));
+    assertEquals(2, controller.getMaxConcurrentTasks(SN2));
+
+    RegionLoadStats congested = new RegionLoadStats(10, 30, 0, 500, 100);
+    controller.updateServerStats(SN, congested);
+    assertEquals(4, controller.getMaxConcurrentTasks(SN));
+    for (int i = 0; i < 10; i++) {
+      controller.updateServerStats(SN, congested);
+    }
+    assertEquals(1, controller.getMaxConcurrentTasks(SN));
+  }
+
+  @Test
+  public void testOnlyDecreaseOncePerInterval() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(HConstants.HBASE_CLIENT_MAX_PERSERVER_TASKS, 8);
+    conf.setLong(AimdRequestController.DECREASE_INTERVAL, 60000);
+    AimdRequestController controller = new AimdRequestController(conf);
+    RegionLoadStats congested = new RegionLoadStats(10, 30, 0, 500, 100);
+    controller.updateServerStats(SN, congested);
+    controller.updateServerStats(SN, congested);
+    assertEquals(4, controller.getMaxConcurrentTasks(SN));
+  }
+
+  @Test
+  public void testBusyRegionDoesNotMoveWindow() {
+    AimdRequestController controller = createController();
+    for (int i = 0; i < 100; i++) {
+      controller.updateServerStats(SN, IDLE);
+    }
+    assertEquals(8, controller.getMaxConcurrentTasks(SN));
+    // a region about to flush, on a server that is otherwise fine
+    controller.updateServerStats(SN, new RegionLoadStats(100, 30, 0, 1, 10));
+    assertEquals(8, controller.getMaxConcurrentTasks(SN));
+  }
+
+  @Test
+  public void testCheckerUsesWindow() throws Exception {
+    AimdRequestController controller = createController();
+    HRegionLocation loc = new HRegionLocation(
+        new HRegionInfo(TableName.valueOf("t"), HConstants.EMPTY_START_ROW,
+            HConstants.EMPTY_END_ROW, false, 1), SN);
+    controller.incTaskCounters(Collections.singleton(Bytes.toBytes("a")), SN);
+    controller.incTaskCounters(Collections.singleton(Bytes.toBytes("b")), SN);
+    assertEquals(ReturnCode.SKIP, controller.newChecker().canTakeRow(loc, new Put(REGION)));
+
+    for (int i = 0; i < 3; i++) {
+      controller.updateServerStats(SN, IDLE);
+    }
+    assertEquals(ReturnCode.INCLUDE, controller.newChecker().canTakeRow(loc, new Put(REGION)));
+  }
+}
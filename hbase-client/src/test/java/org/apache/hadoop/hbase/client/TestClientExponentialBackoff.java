@@ -19,6 +19,7 @@ package org.apache.hadoop.hbase.client;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.client.backoff.AdaptiveClientBackoffPolicy;
 import org.apache.hadoop.hbase.client.backoff.ExponentialClientBackoffPolicy;
 import org.apache.hadoop.hbase.client.backoff.ServerStatistics;
 import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
@@ -154,6 +155,43 @@ public class TestClientExponentialBackoff {
             ExponentialClientBackoffPolicy.DEFAULT_MAX_BACKOFF);
   }
 
+  @Test
+  public void testRpcLoadPolicy() {
+    Configuration conf = new Configuration(false);
+    ExponentialClientBackoffPolicy backoff = new AdaptiveClientBackoffPolicy(conf);
+
+    ServerStatistics stats = new ServerStatistics();
+    updateRpcLoad(stats, 0, 50);
+    assertEquals(0, backoff.getBackoffTime(server, regionname, stats));
+
+    updateRpcLoad(stats, 500, 50);
+    long previous = backoff.getBackoffTime(server, regionname, stats);
+    assertTrue("Queue time should back off", previous > 0);
+
+    updateRpcLoad(stats, 500, 90);
+    long backoffTime = backoff.getBackoffTime(server, regionname, stats);
+    assertTrue("Busy handlers should back off more", backoffTime > previous);
+
+    updateRpcLoad(stats, 0, 100);
+    assertEquals("all handlers busy", ExponentialClientBackoffPolicy.DEFAULT_MAX_BACKOFF,
+      backoff.getBackoffTime(server, regionname, stats));
+    updateRpcLoad(stats, 2000, 0);
+    assertEquals("calls queued too long", ExponentialClientBackoffPolicy.DEFAULT_MAX_BACKOFF,
+      backoff.getBackoffTime(server, regionname, stats));
+
+    // the exponential policy does not look at the rpc load
+    assertEquals(0, new ExponentialClientBackoffPolicy(conf).getBackoffTime(server, regionname,
+      stats));
+  }
+
+  private void updateRpcLoad(ServerStatistics stats, int rpcQueueTime, int handlerOccupancy) {
+    ClientProtos.RegionLoadStats stat = ClientProtos.RegionLoadStats.newBuilder()
+        .setRpcQueueTime(rpcQueueTime)
+        .setHandlerOccupancy(handlerOccupancy)
+        .build();
+    stats.update(regionname, ProtobufUtil.createRegionLoadStats(stat));
+  }
+
   private void update(ServerStatistics stats, int load) {
     ClientProtos.RegionLoadStats stat = ClientProtos.RegionLoadStats.newBuilder()
         .setMemStoreLoad
@@ -18,6 +18,8 @@
 package org.apache.hadoop.hbase.ipc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -27,13 +29,17 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.impl.Log4JLogger;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.codec.DeltaCellCodec;
 import org.apache.hadoop.hbase.codec.KeyValueCodec;
+import org.apache.hadoop.hbase.io.ByteBufferListOutputStream;
+import org.apache.hadoop.hbase.io.ByteBufferPool;
 import org.apache.hadoop.hbase.io.SizedCellScanner;
 import org.apache.hadoop.hbase.nio.SingleByteBuff;
 import org.apache.hadoop.hbase.testclassification.ClientTests;
@@ -65,6 +71,51 @@ public class TestCellBlockBuilder {
     doBuildCellBlockUndoCellBlock(this.builder, new KeyValueCodec(), null);
     doBuildCellBlockUndoCellBlock(this.builder, new KeyValueCodec(), new DefaultCodec());
     doBuildCellBlockUndoCellBlock(this.builder, new KeyValueCodec(), new GzipCodec());
+    doBuildCellBlockUndoCellBlock(this.builder, new DeltaCellCodec(), null);
+    doBuildCellBlockUndoCellBlock(this.builder, new DeltaCellCodec(), new DefaultCodec());
+  }
+
+  @Test
+  public void testBuildCellBlockStreamWithReferences() throws IOException {
+    Codec codec = new KeyValueCodec();
+    Cell[] cells = new Cell[] { toOffheapCell(getCells(1, 10)[0]),
+        toOffheapCell(getCells(1, 8 * 1024)[0]), toOffheapCell(getCells(1, 10)[0]) };
+    ByteBufferPool pool = new ByteBufferPool(1024, 10);
+    ByteBufferListOutputStream copied = this.builder.buildCellBlockStream(codec, null,
+      CellUtil.createCellScanner(Arrays.asList(cells).iterator()), pool, false);
+    assertFalse(copied.hasReferences());
+    ByteBufferListOutputStream referenced = this.builder.buildCellBlockStream(codec, null,
+      CellUtil.createCellScanner(Arrays.asList(cells).iterator()), pool, true);
+    // only the big cell is referenced
+    assertTrue(referenced.hasReferences());
+    assertEquals(copied.size(), referenced.size());
+    CellScanner scanner = this.builder.createCellScanner(codec, null, toBytes(referenced));
+    for (Cell cell : cells) {
+      assertTrue(scanner.advance());
+      assertTrue(CellUtil.equals(cell, scanner.current()));
+      assertTrue(CellUtil.matchingValue(cell, scanner.current()));
+    }
+    assertFalse(scanner.advance());
+    copied.releaseResources();
+    referenced.releaseResources();
+  }
+
+  private static Cell toOffheapCell(Cell cell) {
+    KeyValue kv = (KeyValue) cell;
+    ByteBuffer buf = ByteBuffer.allocateDirect(kv.getLength());
+    buf.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    return new ByteBufferKeyValue(buf, 0, kv.getLength());
+  }
+
+  private static byte[] toBytes(ByteBufferListOutputStream bbos) {
+    byte[] bytes = new byte[bbos.size()];
+    int offset = 0;
+    for (ByteBuffer buf : bbos.getByteBuffers()) {
+      int length = buf.remaining();
+      buf.duplicate().get(bytes, offset, length);
+      offset += length;
+    }
+    return bytes;
   }
 
   static void doBuildCellBlockUndoCellBlock(final CellBlockBuilder builder, final Codec codec,
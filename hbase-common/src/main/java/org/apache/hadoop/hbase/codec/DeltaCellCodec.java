@@ -0,0 +1,287 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellBuilderType;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.ExtendedCellBuilder;
+import org.apache.hadoop.hbase.ExtendedCellBuilderFactory;
+import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.apache.hadoop.hbase.io.ByteBuffInputStream;
+import org.apache.hadoop.hbase.io.util.StreamUtils;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Cell codec that encodes each Cell against the previous one in the cell block, like
+ * {@link org.apache.hadoop.hbase.io.encoding.FastDiffDeltaEncoder} does for the blocks of the
+ * HFiles. The row and the qualifier are written as the length of the prefix they share with the
+ * previous cell plus the rest of their bytes, the family, timestamp and type are skipped when they
+ * are the same as the previous cell, the timestamp is otherwise written as a variable length delta,
+ * and all the lengths are variable length ints. Wide rows, where most of the cells share the row,
+ * family and timestamp, take much less room than with {@link KeyValueCodec}, at the cost of little
+ * CPU compared to compressing the whole cell block.
+ * <p>
+ * Use it on both the client and the server by setting <code>hbase.client.rpc.codec</code>, the
+ * server picks the codec the client names in the connection header.
+ * <p>
+ * Note: This will not write tags of a Cell.
+ */
+@InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
+public class DeltaCellCodec implements Codec {
+
+  static final int FLAG_SAME_ROW = 1;
+  static final int FLAG_SAME_FAMILY = 1 << 1;
+  static final int FLAG_SAME_TIMESTAMP = 1 << 2;
+  static final int FLAG_SAME_TYPE = 1 << 3;
+  static final int FLAG_HAS_SEQUENCE_ID = 1 << 4;
+
+  static class DeltaCellEncoder extends BaseEncoder {
+
+    private byte[] prevRow = HConstants.EMPTY_BYTE_ARRAY;
+    private int prevRowLength = 0;
+    private byte[] prevFamily = HConstants.EMPTY_BYTE_ARRAY;
+    private int prevFamilyLength = 0;
+    private byte[] prevQualifier = HConstants.EMPTY_BYTE_ARRAY;
+    private int prevQualifierLength = 0;
+    private long prevTimestamp = 0;
+    // no cell has this type so the first cell always writes its type
+    private byte prevType = 0;
+
+    // scratch buffers to copy the row, family and qualifier of the current cell to, swapped with
+    // the buffers of the previous cell after each cell
+    private byte[] row = HConstants.EMPTY_BYTE_ARRAY;
+    private byte[] family = HConstants.EMPTY_BYTE_ARRAY;
+    private byte[] qualifier = HConstants.EMPTY_BYTE_ARRAY;
+
+    DeltaCellEncoder(final OutputStream out) {
+      super(out);
+    }
+
+    private static byte[] ensureCapacity(byte[] buf, int length) {
+      return buf.length >= length ? buf : new byte[Math.max(length, buf.length * 2)];
+    }
+
+    @Override
+    public void write(Cell cell) throws IOException {
+      checkFlushed();
+      int rowLength = cell.getRowLength();
+      row = ensureCapacity(row, rowLength);
+      CellUtil.copyRowTo(cell, row, 0);
+      int familyLength = cell.getFamilyLength();
+      family = ensureCapacity(family, familyLength);
+      CellUtil.copyFamilyTo(cell, family, 0);
+      int qualifierLength = cell.getQualifierLength();
+      qualifier = ensureCapacity(qualifier, qualifierLength);
+      CellUtil.copyQualifierTo(cell, qualifier, 0);
+      long timestamp = cell.getTimestamp();
+      byte type = cell.getTypeByte();
+      long seqId = cell.getSequenceId();
+
+      int flags = 0;
+      int rowCommonPrefix =
+          Bytes.findCommonPrefix(row, prevRow, rowLength, prevRowLength, 0, 0);
+      if (rowCommonPrefix == rowLength && rowLength == prevRowLength) {
+        flags |= FLAG_SAME_ROW;
+      }
+      if (Bytes.equals(family, 0, familyLength, prevFamily, 0, prevFamilyLength)) {
+        flags |= FLAG_SAME_FAMILY;
+      }
+      if (timestamp == prevTimestamp) {
+        flags |= FLAG_SAME_TIMESTAMP;
+      }
+      if (type == prevType) {
+        flags |= FLAG_SAME_TYPE;
+      }
+      if (seqId != 0) {
+        flags |= FLAG_HAS_SEQUENCE_ID;
+      }
+      out.write(flags);
+      if ((flags & FLAG_SAME_ROW) == 0) {
+        writeSuffix(row, rowLength, rowCommonPrefix);
+      }
+      if ((flags & FLAG_SAME_FAMILY) == 0) {
+        out.write(familyLength);
+        out.write(family, 0, familyLength);
+      }
+      writeSuffix(qualifier, qualifierLength,
+        Bytes.findCommonPrefix(qualifier, prevQualifier, qualifierLength, prevQualifierLength, 0,
+          0));
+      if ((flags & FLAG_SAME_TIMESTAMP) == 0) {
+        writeVLong(out, zigzag(timestamp - prevTimestamp));
+      }
+      if ((flags & FLAG_SAME_TYPE) == 0) {
+        out.write(type);
+      }
+      int valueLength = cell.getValueLength();
+      StreamUtils.writeRawVInt32(out, valueLength);
+      CellUtil.writeValue(out, cell, valueLength);
+      if ((flags & FLAG_HAS_SEQUENCE_ID) != 0) {
+        writeVLong(out, seqId);
+      }
+
+      byte[] tmp = prevRow;
+      prevRow = row;
+      row = tmp;
+      prevRowLength = rowLength;
+      tmp = prevFamily;
+      prevFamily = family;
+      family = tmp;
+      prevFamilyLength = familyLength;
+      tmp = prevQualifier;
+      prevQualifier = qualifier;
+      qualifier = tmp;
+      prevQualifierLength = qualifierLength;
+      prevTimestamp = timestamp;
+      prevType = type;
+    }
+
+    private void writeSuffix(byte[] bytes, int length, int commonPrefix) throws IOException {
+      StreamUtils.writeRawVInt32(out, commonPrefix);
+      StreamUtils.writeRawVInt32(out, length - commonPrefix);
+      out.write(bytes, commonPrefix, length - commonPrefix);
+    }
+  }
+
+  static class DeltaCellDecoder extends BaseDecoder {
+
+    private final ExtendedCellBuilder cellBuilder =
+        ExtendedCellBuilderFactory.create(CellBuilderType.SHALLOW_COPY);
+    private byte[] prevRow = HConstants.EMPTY_BYTE_ARRAY;
+    private byte[] prevFamily = HConstants.EMPTY_BYTE_ARRAY;
+    private byte[] prevQualifier = HConstants.EMPTY_BYTE_ARRAY;
+    private long prevTimestamp = 0;
+    private byte prevType = 0;
+
+    public DeltaCellDecoder(final InputStream in) {
+      super(in);
+    }
+
+    @Override
+    protected Cell parseCell() throws IOException {
+      int flags = readByte(in);
+      // the cells share the arrays of the parts which are the same as the previous cell
+      byte[] row = (flags & FLAG_SAME_ROW) != 0 ? prevRow : readSuffix(prevRow);
+      byte[] family;
+      if ((flags & FLAG_SAME_FAMILY) != 0) {
+        family = prevFamily;
+      } else {
+        family = new byte[readByte(in)];
+        IOUtils.readFully(in, family);
+      }
+      byte[] qualifier = readSuffix(prevQualifier);
+      long timestamp = (flags & FLAG_SAME_TIMESTAMP) != 0 ? prevTimestamp
+          : prevTimestamp + unzigzag(readVLong(in));
+      byte type = (flags & FLAG_SAME_TYPE) != 0 ? prevType : (byte) readByte(in);
+      byte[] value = new byte[StreamUtils.readRawVarint32(in)];
+      IOUtils.readFully(in, value);
+      long seqId = (flags & FLAG_HAS_SEQUENCE_ID) != 0 ? readVLong(in) : 0;
+
+      prevRow = row;
+      prevFamily = family;
+      prevQualifier = qualifier;
+      prevTimestamp = timestamp;
+      prevType = type;
+      return cellBuilder.clear()
+          .setRow(row)
+          .setFamily(family)
+          .setQualifier(qualifier)
+          .setTimestamp(timestamp)
+          .setType(type)
+          .setValue(value)
+          .setSequenceId(seqId)
+          .build();
+    }
+
+    private byte[] readSuffix(byte[] prev) throws IOException {
+      int commonPrefix = StreamUtils.readRawVarint32(in);
+      int suffixLength = StreamUtils.readRawVarint32(in);
+      if (commonPrefix > prev.length) {
+        throw new CodecException("Common prefix " + commonPrefix +
+            " is longer than the previous one " + prev.length);
+      }
+      byte[] bytes = new byte[commonPrefix + suffixLength];
+      System.arraycopy(prev, 0, bytes, 0, commonPrefix);
+      IOUtils.readFully(in, bytes, commonPrefix, suffixLength);
+      return bytes;
+    }
+  }
+
+  private static int readByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException();
+    }
+    return b;
+  }
+
+  private static long zigzag(long v) {
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static long unzigzag(long v) {
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  /**
+   * Write the unsigned long, 7 bits per byte, with the high bit set on all but the last byte.
+   */
+  private static void writeVLong(OutputStream out, long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  private static long readVLong(InputStream in) throws IOException {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte(in);
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new CodecException("Malformed variable length long");
+  }
+
+  @Override
+  public Decoder getDecoder(InputStream is) {
+    return new DeltaCellDecoder(is);
+  }
+
+  @Override
+  public Decoder getDecoder(ByteBuff buf) {
+    return getDecoder(new ByteBuffInputStream(buf));
+  }
+
+  @Override
+  public Encoder getEncoder(OutputStream os) {
+    return new DeltaCellEncoder(os);
+  }
+}
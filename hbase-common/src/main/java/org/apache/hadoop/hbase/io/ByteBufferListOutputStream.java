@@ -33,6 +33,9 @@ import org.apache.hadoop.hbase.util.ByteBufferUtils;
  * needed, from the passed pool. When pool is not giving a ByteBuffer it will create one on heap.
  * Make sure to call {@link #releaseResources()} method once the Stream usage is over and
  * data is transferred to the wanted destination.
+ * <p>
+ * Optionally, direct ByteBuffers of at least a given size written to the stream are not copied
+ * but referenced by the list of ByteBuffers of the stream, see {@link #setReferenceThreshold(int)}.
  * Not thread safe!
  */
 @InterfaceAudience.Private
@@ -48,6 +51,9 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
   protected List<ByteBuffer> bufsFromPool = new ArrayList<>();
 
   private boolean lastBufFlipped = false;// Indicate whether the curBuf/lastBuf is flipped already
+  // Direct BBs written with at least this many bytes are referenced instead of copied
+  private int referenceThreshold = Integer.MAX_VALUE;
+  private boolean hasReferences = false;
 
   public ByteBufferListOutputStream(ByteBufferPool pool) {
     this.pool = pool;
@@ -72,6 +78,38 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
     this.allBufs.add(this.curBuf);
   }
 
+  /**
+   * Makes the stream keep a reference to the bytes of the direct ByteBuffers written to it, when
+   * there are at least <code>threshold</code> of them, instead of copying them. The caller must
+   * make sure those bytes are neither changed nor released until it is done with the ByteBuffers
+   * of this stream.
+   * @param threshold the least number of bytes of a direct ByteBuffer write to reference them
+   */
+  public void setReferenceThreshold(int threshold) {
+    this.referenceThreshold = threshold;
+  }
+
+  /**
+   * @return true if the stream references bytes of ByteBuffers written to it
+   */
+  public boolean hasReferences() {
+    return this.hasReferences;
+  }
+
+  // Appends a read only slice of the given bytes to the list, and continues writing in what is
+  // left of the current BB.
+  private void reference(ByteBuffer b, int off, int len) {
+    ByteBuffer slice = b.asReadOnlyBuffer();
+    slice.limit(off + len);
+    slice.position(off);
+    ByteBuffer rest = this.curBuf.slice();
+    this.curBuf.flip();
+    this.allBufs.add(slice.slice());
+    this.curBuf = rest;
+    this.allBufs.add(this.curBuf);
+    this.hasReferences = true;
+  }
+
   @Override
   public int size() {
     int s = 0;
@@ -163,6 +201,10 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
 
   @Override
   public void write(ByteBuffer b, int off, int len) throws IOException {
+    if (len >= this.referenceThreshold && b.isDirect()) {
+      reference(b, off, len);
+      return;
+    }
     int toWrite = 0;
     while (len > 0) {
       toWrite = Math.min(len, this.curBuf.remaining());
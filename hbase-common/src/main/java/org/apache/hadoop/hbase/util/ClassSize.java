@@ -99,6 +99,12 @@ public class ClassSize {
   /** Overhead for Cell Chunk Map Entry */
   public static final int CELL_CHUNK_MAP_ENTRY;
 
+  /** Overhead for CellChunkSkipListMap */
+  public static final int CELL_CHUNK_SKIPLIST_MAP;
+
+  /** Overhead for Cell Chunk Skip List Map Entry */
+  public static final int CELL_CHUNK_SKIPLIST_MAP_ENTRY;
+
   /** Overhead for CellArrayMap */
   public static final int CELL_ARRAY_MAP;
 
@@ -320,6 +326,20 @@ public class ClassSize {
 
     ATOMIC_REFERENCE = align(OBJECT + REFERENCE);
 
+    // CELL_CHUNK_SKIPLIST_MAP is the size of an instance of CellChunkSkipListMap class, holding
+    // bounds for sub-maps, and of the index it shares with its sub-maps, which refers to an array
+    // of chunks and keeps the level and the size of the skip list
+    CELL_CHUNK_SKIPLIST_MAP = align(OBJECT + 3 * REFERENCE + 3 * Bytes.SIZEOF_BOOLEAN)
+        + align(OBJECT + 5 * REFERENCE + Bytes.SIZEOF_LONG) + ARRAY + 2 * ATOMIC_INTEGER;
+
+    // The node of a Cell in the CellChunkSkipListMap, kept in a chunk, the Cell object size
+    // shouldn't be counted in KeyValue.heapSize()
+    // each node holds the cell-representation of the CellChunkMap, its height, and one link per
+    // level; all nodes are on the bottom level and a quarter of the nodes of a level are on the
+    // level above, which adds a third of a link per node on average
+    CELL_CHUNK_SKIPLIST_MAP_ENTRY =
+        CELL_CHUNK_MAP_ENTRY + Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG + Bytes.SIZEOF_LONG / 3;
+
     COPYONWRITE_ARRAYSET = align(OBJECT + REFERENCE);
 
     COPYONWRITE_ARRAYLIST = align(OBJECT + (2 * REFERENCE) + ARRAY);
@@ -431,6 +431,59 @@ public final class UnsafeAccess {
     }
     return offset + Bytes.SIZEOF_LONG;
   }
+
+  // APIs to atomically access longs kept in native byte order in a ByteBuffer. These are meant for
+  // words shared by the threads of this process only, like links of an index laid out in a
+  // ByteBuffer. The offset must be 8 bytes aligned.
+  /**
+   * Reads a long value written in native byte order at the given buffer's offset, with volatile
+   * semantics.
+   * @param buf the byte buffer
+   * @param offset 8 bytes aligned position in the buffer
+   * @return long value at offset
+   */
+  public static long getLongVolatile(ByteBuffer buf, int offset) {
+    if (buf.isDirect()) {
+      return theUnsafe.getLongVolatile(null, ((DirectBuffer) buf).address() + offset);
+    }
+    return theUnsafe.getLongVolatile(buf.array(),
+        BYTE_ARRAY_BASE_OFFSET + buf.arrayOffset() + offset);
+  }
+
+  /**
+   * Put a long value out to the specified buffer's offset in native byte order, with volatile
+   * semantics.
+   * @param buf the byte buffer
+   * @param offset 8 bytes aligned position in the buffer
+   * @param val long to write out
+   */
+  public static void putLongVolatile(ByteBuffer buf, int offset, long val) {
+    if (buf.isDirect()) {
+      theUnsafe.putLongVolatile(null, ((DirectBuffer) buf).address() + offset, val);
+    } else {
+      theUnsafe.putLongVolatile(buf.array(), BYTE_ARRAY_BASE_OFFSET + buf.arrayOffset() + offset,
+          val);
+    }
+  }
+
+  /**
+   * Atomically sets the long value at the given buffer's offset, kept in native byte order, if it
+   * is the expected one.
+   * @param buf the byte buffer
+   * @param offset 8 bytes aligned position in the buffer
+   * @param expected the expected value
+   * @param val the new value
+   * @return true if the value was set
+   */
+  public static boolean compareAndSwapLong(ByteBuffer buf, int offset, long expected, long val) {
+    if (buf.isDirect()) {
+      return theUnsafe.compareAndSwapLong(null, ((DirectBuffer) buf).address() + offset, expected,
+          val);
+    }
+    return theUnsafe.compareAndSwapLong(buf.array(),
+        BYTE_ARRAY_BASE_OFFSET + buf.arrayOffset() + offset, expected, val);
+  }
+
   /**
    * Put a byte value out to the specified BB position in big-endian format.
    * @param buf the byte buffer
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.testclassification.MiscTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({MiscTests.class, SmallTests.class})
+public class TestDeltaCellCodec {
+
+  private static byte[] encode(Codec codec, List<? extends Cell> cells) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    Codec.Encoder encoder = codec.getEncoder(baos);
+    for (Cell cell : cells) {
+      encoder.write(cell);
+    }
+    encoder.flush();
+    return baos.toByteArray();
+  }
+
+  private static void assertRoundTrip(List<? extends Cell> cells) throws IOException {
+    Codec codec = new DeltaCellCodec();
+    Codec.Decoder decoder = codec.getDecoder(new ByteArrayInputStream(encode(codec, cells)));
+    for (Cell cell : cells) {
+      assertTrue(decoder.advance());
+      Cell c = decoder.current();
+      assertTrue(cell + " != " + c, CellUtil.equals(c, cell));
+      assertTrue(CellUtil.matchingValue(c, cell));
+      assertEquals(cell.getSequenceId(), c.getSequenceId());
+    }
+    assertFalse(decoder.advance());
+  }
+
+  @Test
+  public void testEmptyWorks() throws IOException {
+    Codec codec = new DeltaCellCodec();
+    byte[] encoded = encode(codec, new ArrayList<>());
+    assertEquals(0, encoded.length);
+    assertFalse(codec.getDecoder(new ByteArrayInputStream(encoded)).advance());
+  }
+
+  @Test
+  public void testThree() throws IOException {
+    List<KeyValue> cells = new ArrayList<>();
+    cells.add(new KeyValue(Bytes.toBytes("r"), Bytes.toBytes("f"), Bytes.toBytes("1"),
+        Bytes.toBytes("1")));
+    cells.add(new KeyValue(Bytes.toBytes("r"), Bytes.toBytes("f"), Bytes.toBytes("2"),
+        Bytes.toBytes("2")));
+    cells.add(new KeyValue(Bytes.toBytes("r"), Bytes.toBytes("f"), Bytes.toBytes("3"),
+        Bytes.toBytes("3")));
+    cells.get(1).setSequenceId(Long.MAX_VALUE);
+    assertRoundTrip(cells);
+  }
+
+  @Test
+  public void testMixedCells() throws IOException {
+    Random rand = new Random(12345);
+    List<Cell> cells = new ArrayList<>();
+    long ts = System.currentTimeMillis();
+    for (int i = 0; i < 1000; i++) {
+      byte[] row = Bytes.toBytes("row-" + (i / 10));
+      byte[] family = Bytes.toBytes(i % 3 == 0 ? "f1" : "family2");
+      byte[] qualifier = new byte[rand.nextInt(20)];
+      rand.nextBytes(qualifier);
+      byte[] value = new byte[rand.nextInt(100)];
+      rand.nextBytes(value);
+      // timestamps going back and forth
+      long timestamp = rand.nextBoolean() ? ts : ts - rand.nextInt(100000);
+      KeyValue.Type type = rand.nextInt(10) == 0 ? KeyValue.Type.Delete : KeyValue.Type.Put;
+      KeyValue kv = new KeyValue(row, family, qualifier, timestamp, type, value);
+      kv.setSequenceId(rand.nextBoolean() ? 0 : rand.nextLong() & Long.MAX_VALUE);
+      if (rand.nextBoolean()) {
+        ByteBuffer bb = ByteBuffer.allocateDirect(kv.getLength());
+        bb.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+        cells.add(new ByteBufferKeyValue(bb, 0, kv.getLength(), kv.getSequenceId()));
+      } else {
+        cells.add(kv);
+      }
+    }
+    // empty row and family, and a cell with the minimum timestamp
+    cells.add(new KeyValue(new byte[0], new byte[0], new byte[0], 0L, new byte[0]));
+    cells.add(new KeyValue(Bytes.toBytes("r"), Bytes.toBytes("f"), new byte[0], Long.MAX_VALUE,
+        new byte[0]));
+    assertRoundTrip(cells);
+  }
+
+  @Test
+  public void testWideRowIsCompact() throws IOException {
+    List<KeyValue> cells = new ArrayList<>();
+    byte[] row = Bytes.toBytes("a-fairly-long-row-key-of-a-wide-row");
+    byte[] family = Bytes.toBytes("family");
+    long ts = System.currentTimeMillis();
+    for (int i = 0; i < 1000; i++) {
+      cells.add(new KeyValue(row, family, Bytes.toBytes(String.format("qualifier-%06d", i)), ts,
+          Bytes.toBytes(i)));
+    }
+    assertRoundTrip(cells);
+    int deltaSize = encode(new DeltaCellCodec(), cells).length;
+    int keyValueSize = encode(new KeyValueCodec(), cells).length;
+    // each cell costs about the flags, the qualifier suffix and the value
+    assertTrue(deltaSize + " vs " + keyValueSize, deltaSize * 5 < keyValueSize);
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import java.nio.ByteBuffer;
 import java.util.List;
@@ -74,4 +75,38 @@ public class TestByteBufferListOutputStream {
     bbos.releaseResources();
     assertEquals(3, pool.getQueueSize());
   }
+
+  @Test
+  public void testReferences() throws Exception {
+    ByteBufferPool pool = new ByteBufferPool(10, 3);
+    ByteBufferListOutputStream bbos = new ByteBufferListOutputStream(pool);
+    bbos.setReferenceThreshold(8);
+    bbos.writeInt(100);
+    ByteBuffer big = ByteBuffer.allocateDirect(20);
+    big.put(Bytes.toBytes("row123_cf1_q1_value"));
+    // Only the direct ones with enough bytes are referenced
+    bbos.write(ByteBuffer.wrap(Bytes.toBytes("on_heap_bytes")), 0, 4);
+    bbos.write(big, 0, 4);
+    assertFalse(bbos.hasReferences());
+    bbos.write(big, 4, 15);
+    assertTrue(bbos.hasReferences());
+    bbos.writeInt(124);
+    assertEquals(4 + 4 + 4 + 15 + 4, bbos.size());
+    List<ByteBuffer> allBufs = bbos.getByteBuffers();
+    assertEquals(4, allBufs.size());
+    // the rest of the pooled BB is used after the referenced bytes
+    assertEquals(2, bbos.bufsFromPool.size());
+    ByteBuffer b1 = allBufs.get(0);
+    assertEquals(10, b1.remaining());
+    assertEquals(100, b1.getInt());
+    ByteBuffer ref = allBufs.get(2);
+    assertEquals(15, ref.remaining());
+    assertTrue(ref.isDirect());
+    assertTrue(ByteBufferUtils.equals(big, 4, 15, ref, 0, 15));
+    ByteBuffer b3 = allBufs.get(3);
+    assertEquals(4, b3.remaining());
+    assertEquals(124, b3.getInt());
+    bbos.releaseResources();
+    assertEquals(2, pool.getQueueSize());
+  }
 }
@@ -46,8 +46,10 @@ public interface MetricsIOSource extends BaseSource {
   String FS_READ_TIME_HISTO_KEY = "fsReadTime";
   String FS_PREAD_TIME_HISTO_KEY = "fsPReadTime";
   String FS_WRITE_HISTO_KEY = "fsWriteTime";
+  String BLOCK_LOAD_WAIT_TIME_HISTO_KEY = "blockLoadWaitTime";
 
   String CHECKSUM_FAILURES_KEY = "fsChecksumFailureCount";
+  String COALESCED_BLOCK_LOADS_KEY = "coalescedBlockLoadCount";
 
   String FS_READ_TIME_HISTO_DESC
     = "Latency of HFile's sequential reads on this region server in milliseconds";
@@ -55,9 +57,13 @@ public interface MetricsIOSource extends BaseSource {
     = "Latency of HFile's positional reads on this region server in milliseconds";
   String FS_WRITE_TIME_HISTO_DESC
     = "Latency of HFile's writes on this region server in milliseconds";
+  String BLOCK_LOAD_WAIT_TIME_HISTO_DESC
+    = "Time readers spent waiting for a concurrent load of the same HFile block in milliseconds";
 
   String CHECKSUM_FAILURES_DESC = "Number of checksum failures for the HBase HFile checksums at the"
       + " HBase level (separate from HDFS checksums)";
+  String COALESCED_BLOCK_LOADS_DESC = "Number of block cache misses that waited for a concurrent"
+      + " load of the same HFile block instead of reading it again";
 
 
   /**
@@ -77,4 +83,10 @@ public interface MetricsIOSource extends BaseSource {
    * @param t time it took, in milliseconds
    */
   void updateFsWriteTime(long t);
+
+  /**
+   * Update the time spent waiting for a concurrent load of the same block
+   * @param t time it took, in milliseconds
+   */
+  void updateBlockLoadWaitTime(long t);
 }
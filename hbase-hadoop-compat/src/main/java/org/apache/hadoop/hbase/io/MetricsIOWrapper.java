@@ -21,4 +21,6 @@ package org.apache.hadoop.hbase.io;
 public interface MetricsIOWrapper {
 
   long getChecksumFailures();
+
+  long getCoalescedBlockLoads();
 }
@@ -87,6 +87,13 @@ public interface MetricsHBaseServerSource extends ExceptionTrackingSource {
   String NUM_LIFO_MODE_SWITCHES_NAME = "numLifoModeSwitches";
   String NUM_LIFO_MODE_SWITCHES_DESC = "Total number of calls in general queue which " +
     "were served from the tail of the queue";
+  String EVENT_LOOP_PREFIX = "eventLoop";
+  String EVENT_LOOP_READ_BYTES_NAME = "ReadBytes";
+  String EVENT_LOOP_READ_BYTES_DESC = "Number of bytes read by the event loop.";
+  String EVENT_LOOP_WRITTEN_BYTES_NAME = "WrittenBytes";
+  String EVENT_LOOP_WRITTEN_BYTES_DESC = "Number of bytes written by the event loop.";
+  String EVENT_LOOP_PENDING_TASKS_NAME = "PendingTasks";
+  String EVENT_LOOP_PENDING_TASKS_DESC = "Number of tasks waiting for the event loop.";
 
   void authorizationSuccess();
 
@@ -47,4 +47,16 @@ public interface MetricsHBaseServerWrapper {
   int getActiveReadRpcHandlerCount();
 
   int getActiveScanRpcHandlerCount();
+
+  /**
+   * @return the number of event loops of the server, or 0 if the server does not run on event
+   *         loops
+   */
+  int getNumEventLoops();
+
+  long getEventLoopReadBytes(int eventLoop);
+
+  long getEventLoopWrittenBytes(int eventLoop);
+
+  int getEventLoopPendingTasks(int eventLoop);
 }
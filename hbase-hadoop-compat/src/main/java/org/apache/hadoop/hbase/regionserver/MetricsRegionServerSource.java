@@ -231,6 +231,9 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String STOREFILE_COUNT_DESC = "Number of Store Files";
   String MEMSTORE_SIZE = "memStoreSize";
   String MEMSTORE_SIZE_DESC = "Size of the memstore";
+  String MEMSTORE_HEAP_SIZE = "memStoreHeapSize";
+  String MEMSTORE_HEAP_SIZE_DESC =
+      "Heap occupied by the memstore, including the objects and index entries of its cells";
   String STOREFILE_SIZE = "storeFileSize";
   String MAX_STORE_FILE_AGE = "maxStoreFileAge";
   String MIN_STORE_FILE_AGE = "minStoreFileAge";
@@ -92,6 +92,12 @@ public interface MetricsRegionServerWrapper {
    */
   long getMemStoreSize();
 
+  /**
+   * Get the heap occupied by the memstore on this region server. Cells kept off heap and flat
+   * segments indexed in chunks add less to it than the cells of a skip list.
+   */
+  long getMemStoreHeapSize();
+
   /**
    * Get the total size of the store files this region server is serving from.
    */
@@ -47,6 +47,22 @@ public interface MetricsRegionSource extends Comparable<MetricsRegionSource> {
       "Sum of filesize on all files entering a finished, successful or aborted, compaction";
   String NUM_FILES_COMPACTED_DESC =
       "Number of files that were input for finished, successful or aborted, compactions";
+  String IN_MEMORY_FLATTEN_COUNT = "inMemoryFlattenCount";
+  String IN_MEMORY_MERGE_COUNT = "inMemoryMergeCount";
+  String IN_MEMORY_COMPACTION_COUNT = "inMemoryCompactionCount";
+  String IN_MEMORY_COMPACTION_ESTIMATED_SAVINGS = "inMemoryCompactionEstimatedSavings";
+  String IN_MEMORY_FLATTEN_DESC =
+      "Number of adaptive in-memory compactions that only flattened the youngest segment";
+  String IN_MEMORY_MERGE_DESC =
+      "Number of adaptive in-memory compactions that merged the segment indices";
+  String IN_MEMORY_COMPACTION_DESC =
+      "Number of adaptive in-memory compactions that compacted the data";
+  String IN_MEMORY_COMPACTION_ESTIMATED_SAVINGS_DESC =
+      "Estimated bytes eliminated from the memstore by adaptive in-memory data compactions";
+  String LEVEL_STORE_FILE_COUNT = "StoreFileCount";
+  String LEVEL_STORE_FILE_SIZE = "StoreFileSize";
+  String LEVEL_STORE_FILE_COUNT_DESC = "Number of store files in the level of leveled stores";
+  String LEVEL_STORE_FILE_SIZE_DESC = "Size of the store files in the level of leveled stores";
   String COPROCESSOR_EXECUTION_STATISTICS = "coprocessorExecutionStatistics";
   String COPROCESSOR_EXECUTION_STATISTICS_DESC = "Statistics for coprocessor execution times";
   String REPLICA_ID = "replicaid";
@@ -141,6 +141,38 @@ public interface MetricsRegionWrapper {
    */
   long getMaxFlushQueueSize();
 
+  /**
+   * @return the number of adaptive in-memory compactions that only flattened a segment
+   */
+  long getNumInMemoryFlattens();
+
+  /**
+   * @return the number of adaptive in-memory compactions that merged the segment indices
+   */
+  long getNumInMemoryMerges();
+
+  /**
+   * @return the number of adaptive in-memory compactions that compacted the data
+   */
+  long getNumInMemoryCompactions();
+
+  /**
+   * @return the bytes adaptive in-memory data compactions were estimated to eliminate
+   */
+  long getInMemoryCompactionEstimatedSavings();
+
+  /**
+   * @return the number of store files in each level of the stores using leveled compactions, from
+   *         L0 on, or an empty array if no store of the region does
+   */
+  long[] getLevelStoreFileCounts();
+
+  /**
+   * @return the size of the store files in each level of the stores using leveled compactions,
+   *         from L0 on, or an empty array if no store of the region does
+   */
+  long[] getLevelStoreFileSizes();
+
   int getRegionHashCode();
 
   /**
@@ -36,6 +36,12 @@ public interface MetricsTableSource extends Comparable<MetricsTableSource> {
   String STORE_FILE_SIZE_DESC = "The size of store files size";
   String TABLE_SIZE = "tableSize";
   String TABLE_SIZE_DESC = "Total size of the table in the region server";
+  String PREFETCH_REQUESTED_BYTES = "prefetchRequestedBytes";
+  String PREFETCH_REQUESTED_BYTES_DESC =
+      "Bytes of the table's store files queued for or visited by prefetch on open";
+  String PREFETCH_COMPLETED_BYTES = "prefetchCompletedBytes";
+  String PREFETCH_COMPLETED_BYTES_DESC =
+      "Bytes of the table's store files visited by prefetch on open, read or already cached";
 
   String getTableName();
 
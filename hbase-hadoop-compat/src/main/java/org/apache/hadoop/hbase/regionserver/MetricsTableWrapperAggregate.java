@@ -54,4 +54,14 @@ public interface MetricsTableWrapperAggregate {
    * Get the table region size against this table
    */
   long getTableSize(String table);
+
+  /**
+   * Get the bytes of this table's store files that prefetch on open was asked to load
+   */
+  long getPrefetchRequestedBytes(String table);
+
+  /**
+   * Get the bytes of this table's store files that prefetch on open has loaded so far
+   */
+  long getPrefetchCompletedBytes(String table);
 }
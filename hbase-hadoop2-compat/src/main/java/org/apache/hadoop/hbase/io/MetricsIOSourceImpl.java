@@ -31,6 +31,7 @@ public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSour
   private final MetricHistogram fsReadTimeHisto;
   private final MetricHistogram fsPReadTimeHisto;
   private final MetricHistogram fsWriteTimeHisto;
+  private final MetricHistogram blockLoadWaitTimeHisto;
 
   public MetricsIOSourceImpl(MetricsIOWrapper wrapper) {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT, wrapper);
@@ -51,6 +52,8 @@ public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSour
         .newTimeHistogram(FS_PREAD_TIME_HISTO_KEY, FS_PREAD_TIME_HISTO_DESC);
     fsWriteTimeHisto = getMetricsRegistry()
         .newTimeHistogram(FS_WRITE_HISTO_KEY, FS_WRITE_TIME_HISTO_DESC);
+    blockLoadWaitTimeHisto = getMetricsRegistry()
+        .newTimeHistogram(BLOCK_LOAD_WAIT_TIME_HISTO_KEY, BLOCK_LOAD_WAIT_TIME_HISTO_DESC);
   }
 
   @Override
@@ -68,6 +71,11 @@ public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSour
     fsWriteTimeHisto.add(t);
   }
 
+  @Override
+  public void updateBlockLoadWaitTime(long t) {
+    blockLoadWaitTimeHisto.add(t);
+  }
+
   @Override
   public void getMetrics(MetricsCollector metricsCollector, boolean all) {
     MetricsRecordBuilder mrb = metricsCollector.addRecord(metricsName);
@@ -76,6 +84,8 @@ public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSour
     if (wrapper != null) {
       mrb.addCounter(Interns.info(CHECKSUM_FAILURES_KEY, CHECKSUM_FAILURES_DESC),
         wrapper.getChecksumFailures());
+      mrb.addCounter(Interns.info(COALESCED_BLOCK_LOADS_KEY, COALESCED_BLOCK_LOADS_DESC),
+        wrapper.getCoalescedBlockLoads());
     }
 
     metricsRegistry.snapshot(mrb, all);
@@ -171,6 +171,15 @@ public class MetricsHBaseServerSourceImpl extends ExceptionTrackingSourceImpl
             wrapper.getActiveReadRpcHandlerCount())
           .addGauge(Interns.info(NUM_ACTIVE_SCAN_HANDLER_NAME, NUM_ACTIVE_SCAN_HANDLER_DESC),
             wrapper.getActiveScanRpcHandlerCount());
+      for (int i = 0, n = wrapper.getNumEventLoops(); i < n; i++) {
+        String prefix = EVENT_LOOP_PREFIX + i;
+        mrb.addCounter(Interns.info(prefix + EVENT_LOOP_READ_BYTES_NAME,
+              EVENT_LOOP_READ_BYTES_DESC), wrapper.getEventLoopReadBytes(i))
+            .addCounter(Interns.info(prefix + EVENT_LOOP_WRITTEN_BYTES_NAME,
+              EVENT_LOOP_WRITTEN_BYTES_DESC), wrapper.getEventLoopWrittenBytes(i))
+            .addGauge(Interns.info(prefix + EVENT_LOOP_PENDING_TASKS_NAME,
+              EVENT_LOOP_PENDING_TASKS_DESC), wrapper.getEventLoopPendingTasks(i));
+      }
     }
 
     metricsRegistry.snapshot(mrb, all);
@@ -289,6 +289,34 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
               regionNamePrefix + MetricsRegionSource.MAX_FLUSH_QUEUE_SIZE,
               MetricsRegionSource.MAX_FLUSH_QUEUE_DESC),
           this.regionWrapper.getMaxFlushQueueSize());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.IN_MEMORY_FLATTEN_COUNT,
+              MetricsRegionSource.IN_MEMORY_FLATTEN_DESC),
+          this.regionWrapper.getNumInMemoryFlattens());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.IN_MEMORY_MERGE_COUNT,
+              MetricsRegionSource.IN_MEMORY_MERGE_DESC),
+          this.regionWrapper.getNumInMemoryMerges());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.IN_MEMORY_COMPACTION_COUNT,
+              MetricsRegionSource.IN_MEMORY_COMPACTION_DESC),
+          this.regionWrapper.getNumInMemoryCompactions());
+      mrb.addCounter(Interns.info(
+              regionNamePrefix + MetricsRegionSource.IN_MEMORY_COMPACTION_ESTIMATED_SAVINGS,
+              MetricsRegionSource.IN_MEMORY_COMPACTION_ESTIMATED_SAVINGS_DESC),
+          this.regionWrapper.getInMemoryCompactionEstimatedSavings());
+      long[] levelCounts = this.regionWrapper.getLevelStoreFileCounts();
+      long[] levelSizes = this.regionWrapper.getLevelStoreFileSizes();
+      for (int level = 0; level < levelCounts.length; level++) {
+        mrb.addGauge(Interns.info(
+                regionNamePrefix + "level" + level + MetricsRegionSource.LEVEL_STORE_FILE_COUNT,
+                MetricsRegionSource.LEVEL_STORE_FILE_COUNT_DESC),
+            levelCounts[level]);
+        mrb.addGauge(Interns.info(
+                regionNamePrefix + "level" + level + MetricsRegionSource.LEVEL_STORE_FILE_SIZE,
+                MetricsRegionSource.LEVEL_STORE_FILE_SIZE_DESC),
+            levelSizes[level]);
+      }
     }
   }
 
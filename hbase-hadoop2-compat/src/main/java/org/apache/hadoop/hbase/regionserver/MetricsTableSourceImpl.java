@@ -140,6 +140,12 @@ public class MetricsTableSourceImpl implements MetricsTableSource {
         mrb.addGauge(Interns.info(tableNamePrefix + MetricsTableSource.TABLE_SIZE,
           MetricsTableSource.TABLE_SIZE_DESC),
           tableWrapperAgg.getTableSize(tableName.getNameAsString()));
+        mrb.addGauge(Interns.info(tableNamePrefix + MetricsTableSource.PREFETCH_REQUESTED_BYTES,
+          MetricsTableSource.PREFETCH_REQUESTED_BYTES_DESC),
+          tableWrapperAgg.getPrefetchRequestedBytes(tableName.getNameAsString()));
+        mrb.addGauge(Interns.info(tableNamePrefix + MetricsTableSource.PREFETCH_COMPLETED_BYTES,
+          MetricsTableSource.PREFETCH_COMPLETED_BYTES_DESC),
+          tableWrapperAgg.getPrefetchCompletedBytes(tableName.getNameAsString()));
       }
     }
   }
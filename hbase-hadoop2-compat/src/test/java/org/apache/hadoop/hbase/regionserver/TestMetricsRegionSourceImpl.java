@@ -193,5 +193,35 @@ public class TestMetricsRegionSourceImpl {
     public long getMaxFlushQueueSize() {
       return 0;
     }
+
+    @Override
+    public long getNumInMemoryFlattens() {
+      return 0;
+    }
+
+    @Override
+    public long getNumInMemoryMerges() {
+      return 0;
+    }
+
+    @Override
+    public long getNumInMemoryCompactions() {
+      return 0;
+    }
+
+    @Override
+    public long getInMemoryCompactionEstimatedSavings() {
+      return 0;
+    }
+
+    @Override
+    public long[] getLevelStoreFileCounts() {
+      return new long[0];
+    }
+
+    @Override
+    public long[] getLevelStoreFileSizes() {
+      return new long[0];
+    }
   }
 }
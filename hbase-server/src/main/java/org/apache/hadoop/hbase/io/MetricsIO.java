@@ -58,4 +58,8 @@ public class MetricsIO {
   public void updateFsWriteTime(long t) {
     source.updateFsWriteTime(t);
   }
+
+  public void updateBlockLoadWaitTime(long t) {
+    source.updateBlockLoadWaitTime(t);
+  }
 }
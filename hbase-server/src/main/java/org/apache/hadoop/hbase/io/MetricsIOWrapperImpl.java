@@ -26,4 +26,9 @@ public class MetricsIOWrapperImpl implements MetricsIOWrapper {
   public long getChecksumFailures() {
     return HFile.getAndResetChecksumFailuresCount();
   }
+
+  @Override
+  public long getCoalescedBlockLoads() {
+    return HFile.getAndResetCoalescedBlockLoadsCount();
+  }
 }
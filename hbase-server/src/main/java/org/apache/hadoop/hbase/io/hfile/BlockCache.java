@@ -59,6 +59,17 @@ public interface BlockCache extends Iterable<CachedBlock> {
   Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
     boolean updateCacheMetrics);
 
+  /**
+   * Fetch block from cache without counting a hit or a miss and without marking the block as
+   * accessed, for callers like prefetch which only check whether a block is already cached.
+   * Blocks whose memory is shared must be returned with {@link #returnBlock} as usual.
+   * @param cacheKey Block to fetch.
+   * @return Block or null if block is not in cache, or if the cache cannot peek at its blocks.
+   */
+  default Cacheable peekBlock(BlockCacheKey cacheKey) {
+    return null;
+  }
+
   /**
    * Evict block from cache.
    * @param cacheKey Block to evict
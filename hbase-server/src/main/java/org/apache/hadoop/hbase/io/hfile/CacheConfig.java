@@ -148,6 +148,13 @@ public class CacheConfig {
    */
   public static final String BLOCKCACHE_BLOCKSIZE_KEY = "hbase.offheapcache.minblocksize";
 
+  /**
+   * The eviction policy of the first level block cache: LRU for {@link LruBlockCache} or TinyLFU
+   * for {@link TinyLfuBlockCache}.
+   */
+  public static final String BLOCKCACHE_POLICY_KEY = "hfile.block.cache.policy";
+  public static final String BLOCKCACHE_POLICY_DEFAULT = "LRU";
+
   private static final String EXTERNAL_BLOCKCACHE_KEY = "hbase.blockcache.use.external";
   private static final boolean EXTERNAL_BLOCKCACHE_DEFAULT = false;
 
@@ -547,7 +554,7 @@ public class CacheConfig {
   // Clear this if in tests you'd make more than one block cache instance.
   @VisibleForTesting
   static BlockCache GLOBAL_BLOCK_CACHE_INSTANCE;
-  private static LruBlockCache GLOBAL_L1_CACHE_INSTANCE = null;
+  private static FirstLevelBlockCache GLOBAL_L1_CACHE_INSTANCE = null;
   private static BlockCache GLOBAL_L2_CACHE_INSTANCE = null;
 
   /** Boolean whether we have disabled the block cache entirely. */
@@ -556,9 +563,9 @@ public class CacheConfig {
 
   /**
    * @param c Configuration to use.
-   * @return An L1 instance.  Currently an instance of LruBlockCache.
+   * @return An L1 instance, see {@link #BLOCKCACHE_POLICY_KEY}.
    */
-  public static LruBlockCache getL1(final Configuration c) {
+  public static FirstLevelBlockCache getL1(final Configuration c) {
     return getL1Internal(c);
   }
 
@@ -578,19 +585,41 @@ public class CacheConfig {
 
   /**
    * @param c Configuration to use.
-   * @return An L1 instance.  Currently an instance of LruBlockCache.
+   * @return whether the L1 set by {@link #BLOCKCACHE_POLICY_KEY} is sized as a share of the heap,
+   *         see {@link HConstants#HFILE_BLOCK_CACHE_SIZE_KEY}. The TinyLFU L1 is not, it is kept
+   *         in direct memory.
+   */
+  public static boolean isL1OnHeap(final Configuration c) {
+    return !c.get(BLOCKCACHE_POLICY_KEY, BLOCKCACHE_POLICY_DEFAULT).equalsIgnoreCase("TinyLFU");
+  }
+
+  /**
+   * @param c Configuration to use.
+   * @return An L1 instance, see {@link #BLOCKCACHE_POLICY_KEY}.
    */
-  private synchronized static LruBlockCache getL1Internal(final Configuration c) {
+  private synchronized static FirstLevelBlockCache getL1Internal(final Configuration c) {
     if (GLOBAL_L1_CACHE_INSTANCE != null) return GLOBAL_L1_CACHE_INSTANCE;
-    final long lruCacheSize = MemorySizeUtil.getLruCacheSize(c);
+    String policy = c.get(BLOCKCACHE_POLICY_KEY, BLOCKCACHE_POLICY_DEFAULT);
+    // The TinyLFU cache is off heap and sized by its own key, so takes no share of the heap.
+    final long lruCacheSize = isL1OnHeap(c) ? MemorySizeUtil.getLruCacheSize(c) : 0;
     if (lruCacheSize < 0) {
       blockCacheDisabled = true;
     }
     if (blockCacheDisabled) return null;
     int blockSize = c.getInt(BLOCKCACHE_BLOCKSIZE_KEY, HConstants.DEFAULT_BLOCKSIZE);
-    LOG.info("Allocating LruBlockCache size=" +
-      StringUtils.byteDesc(lruCacheSize) + ", blockSize=" + StringUtils.byteDesc(blockSize));
-    GLOBAL_L1_CACHE_INSTANCE = new LruBlockCache(lruCacheSize, blockSize, true, c);
+    if (policy.equalsIgnoreCase("LRU")) {
+      LOG.info("Allocating LruBlockCache size=" +
+        StringUtils.byteDesc(lruCacheSize) + ", blockSize=" + StringUtils.byteDesc(blockSize));
+      GLOBAL_L1_CACHE_INSTANCE = new LruBlockCache(lruCacheSize, blockSize, true, c);
+    } else if (policy.equalsIgnoreCase("TinyLFU")) {
+      long tinyLfuCacheSize = TinyLfuBlockCache.getConfiguredSize(c);
+      LOG.info("Allocating TinyLfuBlockCache size=" +
+        StringUtils.byteDesc(tinyLfuCacheSize) + ", blockSize=" + StringUtils.byteDesc(blockSize));
+      GLOBAL_L1_CACHE_INSTANCE = new TinyLfuBlockCache(tinyLfuCacheSize, blockSize, c);
+    } else {
+      throw new IllegalArgumentException("Unknown policy '" + policy + "' for " +
+        BLOCKCACHE_POLICY_KEY + ", expected LRU or TinyLFU");
+    }
     return GLOBAL_L1_CACHE_INSTANCE;
   }
 
@@ -705,7 +734,7 @@ public class CacheConfig {
   public static synchronized BlockCache instantiateBlockCache(Configuration conf) {
     if (GLOBAL_BLOCK_CACHE_INSTANCE != null) return GLOBAL_BLOCK_CACHE_INSTANCE;
     if (blockCacheDisabled) return null;
-    LruBlockCache l1 = getL1Internal(conf);
+    FirstLevelBlockCache l1 = getL1Internal(conf);
     // blockCacheDisabled is set as a side-effect of getL1Internal(), so check it again after the call.
     if (blockCacheDisabled) return null;
     BlockCache l2 = getL2(conf);
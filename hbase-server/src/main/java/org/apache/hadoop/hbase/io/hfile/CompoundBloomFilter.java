@@ -63,7 +63,21 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
    */
   public CompoundBloomFilter(DataInput meta, HFile.Reader reader)
       throws IOException {
+    this(meta, reader, false);
+  }
+
+  /**
+   * De-serialization for compound Bloom filter metadata. Must be consistent
+   * with what {@link CompoundBloomFilterWriter} does.
+   *
+   * @param meta serialized Bloom filter metadata without any magic blocks
+   * @param blocked whether the chunks are blocked, see {@link #BLOCKED_VERSION}
+   * @throws IOException
+   */
+  public CompoundBloomFilter(DataInput meta, HFile.Reader reader, boolean blocked)
+      throws IOException {
     this.reader = reader;
+    this.blocked = blocked;
 
     totalByteSize = meta.readLong();
     hashCount = meta.readInt();
@@ -103,7 +117,8 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
     try {
       ByteBuff bloomBuf = bloomBlock.getBufferReadOnly();
       result = BloomFilterUtil.contains(key, keyOffset, keyLength, bloomBuf,
-          bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount);
+          bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount,
+          blocked);
     } finally {
       // After the use return back the block if it was served from a cache.
       reader.returnBlock(bloomBlock);
@@ -144,7 +159,7 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
     try {
       ByteBuff bloomBuf = bloomBlock.getBufferReadOnly();
       result = BloomFilterUtil.contains(keyCell, bloomBuf, bloomBlock.headerSize(),
-          bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount, type);
+          bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount, type, blocked);
     } finally {
       // After the use return back the block if it was served from a cache.
       reader.returnBlock(bloomBlock);
@@ -199,6 +214,7 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
     sb.append(BloomFilterUtil.formatStats(this));
     sb.append(BloomFilterUtil.STATS_RECORD_SEP + 
         "Number of chunks: " + numChunks);
+    sb.append(BloomFilterUtil.STATS_RECORD_SEP + "Blocked: " + blocked);
     sb.append(BloomFilterUtil.STATS_RECORD_SEP + 
         ((comparator != null) ? "Comparator: "
         + comparator.getClass().getSimpleName() : "Comparator: "
@@ -40,6 +40,15 @@ public class CompoundBloomFilterBase implements BloomFilterBase {
    */
   public static final int VERSION = 3;
 
+  /**
+   * The version of the Bloom filters whose chunks set all the bits of a key in the same cache
+   * line sized block. The metadata is the same as for {@link #VERSION}.
+   */
+  public static final int BLOCKED_VERSION = 4;
+
+  /** Whether the chunks are blocked, see {@link #BLOCKED_VERSION} */
+  protected boolean blocked;
+
   /** Target error rate for configuring the filter and for information */
   protected float errorRate;
 
@@ -99,8 +99,32 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
   public CompoundBloomFilterWriter(int chunkByteSizeHint, float errorRate,
       int hashType, int maxFold, boolean cacheOnWrite,
       CellComparator comparator, BloomType bloomType) {
+    this(chunkByteSizeHint, errorRate, hashType, maxFold, cacheOnWrite, comparator, bloomType,
+        false);
+  }
+
+  /**
+   * @param chunkByteSizeHint
+   *          each chunk's size in bytes. The real chunk size might be different
+   *          as required by the fold factor.
+   * @param errorRate
+   *          target false positive rate
+   * @param hashType
+   *          hash function type to use
+   * @param maxFold
+   *          maximum degree of folding allowed
+   * @param bloomType
+   *          the bloom type
+   * @param blocked
+   *          whether the chunks set all the bits of a key in the same cache line
+   *          sized block, see {@link BloomFilterUtil#BLOOM_BLOCK_BYTES}
+   */
+  public CompoundBloomFilterWriter(int chunkByteSizeHint, float errorRate,
+      int hashType, int maxFold, boolean cacheOnWrite,
+      CellComparator comparator, BloomType bloomType, boolean blocked) {
     chunkByteSize = BloomFilterUtil.computeFoldableByteSize(
         chunkByteSizeHint * 8L, maxFold);
+    this.blocked = blocked;
 
     this.errorRate = errorRate;
     this.hashType = hashType;
@@ -173,11 +197,11 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
             + Bytes.toStringBinary(firstKeyInChunk));
       }
       // This will be done only once per chunk
-      if (bloomType == BloomType.ROW) {
-        firstKeyInChunk = CellUtil.copyRow(cell);
-      } else {
+      if (bloomType == BloomType.ROWCOL) {
         firstKeyInChunk =
             CellUtil.getCellKeySerializedAsKeyValueKey(CellUtil.createFirstOnRowCol(cell));
+      } else {
+        firstKeyInChunk = CellUtil.copyRow(cell);
       }
       allocateNewChunk();
     }
@@ -203,7 +227,7 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
     if (prevChunk == null) {
       // First chunk
       chunk = BloomFilterUtil.createBySize(chunkByteSize, errorRate,
-          hashType, maxFold, bloomType);
+          hashType, maxFold, bloomType, blocked);
     } else {
       // Use the same parameters as the last chunk, but a new array and
       // a zero key count.
@@ -256,7 +280,7 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
      */
     @Override
     public void write(DataOutput out) throws IOException {
-      out.writeInt(VERSION);
+      out.writeInt(blocked ? BLOCKED_VERSION : VERSION);
 
       out.writeLong(getByteSize());
       out.writeInt(prevChunk.getHashCount());
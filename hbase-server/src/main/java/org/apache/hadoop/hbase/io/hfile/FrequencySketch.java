@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Probabilistic estimate of how often keys were accessed recently, used by
+ * {@link TinyLfuBlockCache} to decide whether a new block is worth more than the block it
+ * would displace.
+ * <p>
+ * This is a count-min sketch of 4-bit counters packed sixteen to a long. Each key maps to four
+ * counters, one per hash function, each in the long that hash function picks, and its frequency
+ * is the smallest of them. Once the number of increments reaches ten times the expected number
+ * of entries every counter is halved, so the sketch ages out keys which used to be popular.
+ * <p>
+ * The layout, seeds and aging follow the FrequencySketch of the Caffeine caching library,
+ * https://github.com/ben-manes/caffeine, by Ben Manes.
+ * <p>
+ * Not thread safe; callers serialize access.
+ */
+@InterfaceAudience.Private
+final class FrequencySketch {
+  private static final long[] SEED = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  private long[] table;
+  private int tableMask;
+  private int sampleSize;
+  private int size;
+
+  /**
+   * @param expectedEntries the number of keys the sketch should be able to tell apart
+   */
+  FrequencySketch(long expectedEntries) {
+    ensureCapacity(expectedEntries);
+  }
+
+  /**
+   * Grows the sketch to track {@code expectedEntries} keys. Growing discards all counts.
+   */
+  void ensureCapacity(long expectedEntries) {
+    int maximum = (int) Math.min(Math.max(expectedEntries, 1), MAXIMUM_CAPACITY);
+    if (table != null && table.length >= maximum) {
+      return;
+    }
+    table = new long[Math.max(ceilingPowerOfTwo(maximum), 8)];
+    tableMask = table.length - 1;
+    sampleSize = 10 * maximum > 0 ? 10 * maximum : Integer.MAX_VALUE;
+    size = 0;
+  }
+
+  /**
+   * @return the estimated number of recent occurrences of the key with the given hash, at most 15
+   */
+  int frequency(int hashCode) {
+    int hash = spread(hashCode);
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Records an occurrence of the key with the given hash.
+   */
+  void increment(int hashCode) {
+    int hash = spread(hashCode);
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int i, int j) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    if ((table[i] & mask) != mask) {
+      table[i] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halves every counter. Odd counters lose their remainder, which is accounted for in size.
+   */
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEED[i]) * SEED[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private static int ceilingPowerOfTwo(int x) {
+    return 1 << -Integer.numberOfLeadingZeros(x - 1);
+  }
+}
@@ -188,6 +188,9 @@ public class HFile {
   // For measuring number of checksum failures
   static final LongAdder CHECKSUM_FAILURES = new LongAdder();
 
+  // For measuring number of cache misses that found the block a concurrent load of it cached
+  static final LongAdder COALESCED_BLOCK_LOADS = new LongAdder();
+
   // For tests. Gets incremented when we read a block whether from HDFS or from Cache.
   public static final LongAdder DATABLOCK_READ_COUNT = new LongAdder();
 
@@ -210,6 +213,29 @@ public class HFile {
     return CHECKSUM_FAILURES.sum();
   }
 
+  /**
+   * Number of block cache misses which were served by a concurrent load of the same block. It
+   * also clears the counter.
+   */
+  public static final long getAndResetCoalescedBlockLoadsCount() {
+    return COALESCED_BLOCK_LOADS.sumThenReset();
+  }
+
+  /**
+   * Number of block cache misses which were served by a concurrent load of the same block.
+   */
+  public static final long getCoalescedBlockLoadsCount() {
+    return COALESCED_BLOCK_LOADS.sum();
+  }
+
+  static final void updateBlockLoadWait(long waitMillis) {
+    metrics.updateBlockLoadWaitTime(waitMillis);
+  }
+
+  static final void updateCoalescedBlockLoad() {
+    COALESCED_BLOCK_LOADS.increment();
+  }
+
   public static final void updateReadLatency(long latencyMillis, boolean pread) {
     if (pread) {
       metrics.updateFsPreadTime(latencyMillis);
@@ -439,6 +465,13 @@ public class HFile {
 
     Optional<Cell> midKey() throws IOException;
 
+    /**
+     * @return the first keys of the blocks at the root level of the data block index, in order.
+     *         Like {@link #midKey()} they are on block boundaries, and cut the file in parts of
+     *         about the same size.
+     */
+    List<Cell> getRootIndexKeys();
+
     long length();
 
     long getEntries();
@@ -671,6 +704,8 @@ public class HFile {
     static final byte [] COMPARATOR = Bytes.toBytes(RESERVED_PREFIX + "COMPARATOR");
     static final byte [] TAGS_COMPRESSED = Bytes.toBytes(RESERVED_PREFIX + "TAGS_COMPRESSED");
     public static final byte [] MAX_TAGS_LEN = Bytes.toBytes(RESERVED_PREFIX + "MAX_TAGS_LEN");
+    static final byte [] INDEX_FENCE_PREFIXES =
+        Bytes.toBytes(RESERVED_PREFIX + "INDEX_FENCE_PREFIXES");
     private final SortedMap<byte [], byte []> map = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
     public FileInfo() {
@@ -86,6 +86,20 @@ public class HFileBlockIndex {
 
   static final int DEFAULT_MIN_INDEX_NUM_ENTRIES = 16;
 
+  /**
+   * Whether to write fence prefixes into the non-root data index blocks. Those are the
+   * {@link #FENCE_PREFIX_LENGTH} row bytes of each entry that follow the row prefix all the entries
+   * of the block share, so that a seek with long row keys narrows down the entries of each level by
+   * comparing longs, and only compares whole keys for the entries whose fence prefix equals the
+   * one of the key it looks for. They are written after the entries, where readers that do not
+   * know about them never look, so the files can still be read by older versions. Can be set per
+   * column family.
+   */
+  public static final String FENCE_PREFIXES_KEY = "hfile.index.block.fence.prefixes";
+
+  /** The number of row bytes in a fence prefix. */
+  static final int FENCE_PREFIX_LENGTH = Bytes.SIZEOF_LONG;
+
   /**
    * The number of bytes stored in each "secondary index" entry in addition to
    * key bytes in the non-root index block format. The first long is the file
@@ -110,6 +124,83 @@ public class HFileBlockIndex {
   private static final int MID_KEY_METADATA_SIZE = Bytes.SIZEOF_LONG +
       2 * Bytes.SIZEOF_INT;
 
+  /**
+   * @return the {@link #FENCE_PREFIX_LENGTH} bytes of the row that follow its first commonLength
+   *         bytes as an unsigned long, padded with zeros if the row is shorter. The fence prefixes
+   *         of rows that share their first commonLength bytes sort like the rows.
+   */
+  static long getFencePrefix(byte[] row, int offset, int length, int commonLength) {
+    long prefix = 0;
+    for (int i = commonLength; i < commonLength + FENCE_PREFIX_LENGTH; i++) {
+      prefix <<= 8;
+      if (i < length) {
+        prefix |= row[offset + i] & 0xff;
+      }
+    }
+    return prefix;
+  }
+
+  static long getFencePrefix(Cell cell, int commonLength) {
+    long prefix = 0;
+    int length = cell.getRowLength();
+    for (int i = commonLength; i < commonLength + FENCE_PREFIX_LENGTH; i++) {
+      prefix <<= 8;
+      if (i < length) {
+        prefix |= CellUtil.getRowByte(cell, i) & 0xff;
+      }
+    }
+    return prefix;
+  }
+
+  private static boolean rowStartsWith(Cell cell, byte[] prefix) {
+    if (cell.getRowLength() < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (CellUtil.getRowByte(cell, i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the index of the first of the count fence prefixes from the offset of the buffer that
+   *         is greater than, or equal to if not after, the given fence prefix
+   */
+  private static int searchFencePrefixes(ByteBuff buf, int offset, int count, long prefix,
+      boolean after) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int cmp = Long.compareUnsigned(buf.getLongAfterPosition(offset + mid * Bytes.SIZEOF_LONG),
+        prefix);
+      if (cmp < 0 || (after && cmp == 0)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Same as {@link #searchFencePrefixes(ByteBuff, int, int, long, boolean)} for the root level. */
+  private static int searchFencePrefixes(long[] prefixes, long prefix, boolean after) {
+    int low = 0;
+    int high = prefixes.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int cmp = Long.compareUnsigned(prefixes[mid], prefix);
+      if (cmp < 0 || (after && cmp == 0)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   /**
    * An implementation of the BlockIndexReader that deals with block keys which are plain
    * byte[] like MetaBlock or the Bloom Block for ROW bloom.
@@ -242,6 +333,12 @@ public class HFileBlockIndex {
     private AtomicReference<Cell> midKey = new AtomicReference<>();
     /** Needed doing lookup on blocks. */
     private CellComparator comparator;
+    /** Whether the non-root index blocks have fence prefixes */
+    private boolean fencePrefixes;
+    /** The row prefix all the root level keys share, if the index has fence prefixes */
+    private byte[] rootCommonPrefix;
+    /** The fence prefixes of the root level keys, if the index has them */
+    private long[] rootFencePrefixes;
 
     public CellBasedKeyBlockIndexReader(final CellComparator c, final int treeLevel,
         final CachingBlockReader cachingBlockReader) {
@@ -269,9 +366,43 @@ public class HFileBlockIndex {
       }
       // Add comparator and the midkey atomicreference
       heapSize += 2 * ClassSize.REFERENCE;
+      // Add the fence prefixes
+      heapSize += Bytes.SIZEOF_BOOLEAN + 2 * ClassSize.REFERENCE;
+      if (rootFencePrefixes != null) {
+        heapSize += ClassSize.align(ClassSize.ARRAY + rootCommonPrefix.length);
+        heapSize += ClassSize.align(ClassSize.ARRAY + rootFencePrefixes.length * Bytes.SIZEOF_LONG);
+      }
       return heapSize;
     }
 
+    /**
+     * Sets whether the non-root index blocks have fence prefixes, see {@link #FENCE_PREFIXES_KEY},
+     * and computes the ones of the root level if they do. Must be called after the root level is
+     * read.
+     */
+    void setFencePrefixes(boolean fencePrefixes) {
+      this.fencePrefixes = fencePrefixes;
+      if (fencePrefixes && blockKeys != null && blockKeys.length > 0) {
+        Cell first = blockKeys[0];
+        Cell last = blockKeys[blockKeys.length - 1];
+        int commonLength = Bytes.findCommonPrefix(first.getRowArray(), last.getRowArray(),
+          first.getRowLength(), last.getRowLength(), first.getRowOffset(), last.getRowOffset());
+        long[] prefixes = new long[blockKeys.length];
+        for (int i = 0; i < blockKeys.length; i++) {
+          prefixes[i] = getFencePrefix(blockKeys[i], commonLength);
+        }
+        rootCommonPrefix = Bytes.copy(first.getRowArray(), first.getRowOffset(), commonLength);
+        rootFencePrefixes = prefixes;
+      } else {
+        rootCommonPrefix = null;
+        rootFencePrefixes = null;
+      }
+    }
+
+    boolean hasFencePrefixes() {
+      return fencePrefixes;
+    }
+
     @Override
     public boolean isEmpty() {
       return blockKeys.length == 0;
@@ -360,7 +491,7 @@ public class HFileBlockIndex {
           // Locate the entry corresponding to the given key in the non-root
           // (leaf or intermediate-level) index block.
           ByteBuff buffer = block.getBufferWithoutHeader();
-          index = locateNonRootIndexEntry(buffer, key, comparator);
+          index = locateNonRootIndexEntry(buffer, key, comparator, fencePrefixes);
           if (index == -1) {
             // This has to be changed
             // For now change this to key value
@@ -476,6 +607,29 @@ public class HFileBlockIndex {
 
     @Override
     public int rootBlockContainingKey(Cell key) {
+      long[] prefixes = rootFencePrefixes;
+      if (prefixes != null && rowStartsWith(key, rootCommonPrefix)) {
+        // Only the keys with the same fence prefix as the key can be equal to it, those before are
+        // smaller and those after greater.
+        long prefix = getFencePrefix(key, rootCommonPrefix.length);
+        int low = searchFencePrefixes(prefixes, prefix, false);
+        int high = searchFencePrefixes(prefixes, prefix, true);
+        // blockKeys[low - 1] < key < blockKeys[high + 1]
+        high--;
+        while (low <= high) {
+          int mid = (low + high) >>> 1;
+          int cmp = comparator.compare(key, blockKeys[mid]);
+          if (cmp > 0) {
+            low = mid + 1;
+          } else if (cmp < 0) {
+            high = mid - 1;
+          } else {
+            return mid;
+          }
+        }
+        return low - 1;
+      }
+
       // Here the comparator should not be null as this happens for the root-level block
       int pos = Bytes.binarySearch(blockKeys, key, comparator);
       // pos is between -(blockKeys.length + 1) to blockKeys.length - 1, see
@@ -727,6 +881,16 @@ public class HFileBlockIndex {
      */
     static int binarySearchNonRootIndex(Cell key, ByteBuff nonRootIndex,
         CellComparator comparator) {
+      return binarySearchNonRootIndex(key, nonRootIndex, comparator, false);
+    }
+
+    /**
+     * Same as {@link #binarySearchNonRootIndex(Cell, ByteBuff, CellComparator)}, but first narrows
+     * down the entries to those with the same fence prefix as the key if the block has fence
+     * prefixes, see {@link #FENCE_PREFIXES_KEY}.
+     */
+    static int binarySearchNonRootIndex(Cell key, ByteBuff nonRootIndex,
+        CellComparator comparator, boolean fencePrefixes) {
 
       int numEntries = nonRootIndex.getIntAfterPosition(0);
       int low = 0;
@@ -737,6 +901,29 @@ public class HFileBlockIndex {
       // The secondary index takes numEntries + 1 ints.
       int entriesOffset = Bytes.SIZEOF_INT * (numEntries + 2);
 
+      if (fencePrefixes && numEntries > 0) {
+        // The fence prefixes follow the entries, after the length of the row prefix all the
+        // entries share. The last element of the secondary index is the size of all the entries.
+        int prefixesOffset =
+            entriesOffset + nonRootIndex.getIntAfterPosition(Bytes.SIZEOF_INT * (numEntries + 1));
+        int commonLength = nonRootIndex.getIntAfterPosition(prefixesOffset);
+        // The row of the first entry, after its offset, on-disk size and row length
+        int firstRowOffset = entriesOffset + nonRootIndex.getIntAfterPosition(Bytes.SIZEOF_INT)
+            + SECONDARY_INDEX_ENTRY_OVERHEAD + Bytes.SIZEOF_SHORT;
+        boolean sharesPrefix = key.getRowLength() >= commonLength;
+        for (int i = 0; sharesPrefix && i < commonLength; i++) {
+          sharesPrefix = CellUtil.getRowByte(key, i) == nonRootIndex.get(firstRowOffset + i);
+        }
+        if (sharesPrefix) {
+          // Only the entries with the same fence prefix as the key can be equal to it, those
+          // before are smaller and those after greater.
+          long prefix = getFencePrefix(key, commonLength);
+          prefixesOffset += Bytes.SIZEOF_INT;
+          low = searchFencePrefixes(nonRootIndex, prefixesOffset, numEntries, prefix, false);
+          high = searchFencePrefixes(nonRootIndex, prefixesOffset, numEntries, prefix, true) - 1;
+        }
+      }
+
       // If we imagine that keys[-1] = -Infinity and
       // keys[numEntries] = Infinity, then we are maintaining an invariant that
       // keys[low - 1] < key < keys[high + 1] while narrowing down the range.
@@ -817,7 +1004,16 @@ public class HFileBlockIndex {
      */
     static int locateNonRootIndexEntry(ByteBuff nonRootBlock, Cell key,
         CellComparator comparator) {
-      int entryIndex = binarySearchNonRootIndex(key, nonRootBlock, comparator);
+      return locateNonRootIndexEntry(nonRootBlock, key, comparator, false);
+    }
+
+    /**
+     * Same as {@link #locateNonRootIndexEntry(ByteBuff, Cell, CellComparator)}, using the fence
+     * prefixes of the block if it has them.
+     */
+    static int locateNonRootIndexEntry(ByteBuff nonRootBlock, Cell key,
+        CellComparator comparator, boolean fencePrefixes) {
+      int entryIndex = binarySearchNonRootIndex(key, nonRootBlock, comparator, fencePrefixes);
 
       if (entryIndex != -1) {
         int numEntries = nonRootBlock.getIntAfterPosition(0);
@@ -1003,6 +1199,9 @@ public class HFileBlockIndex {
     /** Whether we require this block index to always be single-level. */
     private boolean singleLevelOnly;
 
+    /** Whether to write fence prefixes into the non-root index blocks */
+    private boolean fencePrefixes;
+
     /** CacheConfig, or null if cache-on-write is disabled */
     private CacheConfig cacheConf;
 
@@ -1049,6 +1248,15 @@ public class HFileBlockIndex {
       this.minIndexNumEntries = minIndexNumEntries;
     }
 
+    /**
+     * Sets whether to write fence prefixes into the non-root index blocks, see
+     * {@link HFileBlockIndex#FENCE_PREFIXES_KEY}. The keys must be serialized {@link KeyValue}
+     * keys ordered by {@link CellComparator#COMPARATOR}.
+     */
+    public void setFencePrefixes(boolean fencePrefixes) {
+      this.fencePrefixes = fencePrefixes;
+    }
+
     /**
      * Writes the root level and intermediate levels of the block index into
      * the output stream, generating the tree from bottom up. Assumes that the
@@ -1200,7 +1408,7 @@ public class HFileBlockIndex {
       long beginOffset = out.getPos();
       DataOutputStream dos = blockWriter.startWriting(
           BlockType.INTERMEDIATE_INDEX);
-      curChunk.writeNonRoot(dos);
+      curChunk.writeNonRoot(dos, fencePrefixes);
       byte[] curFirstKey = curChunk.getBlockKey(0);
       blockWriter.writeHeaderAndData(out);
 
@@ -1283,7 +1491,7 @@ public class HFileBlockIndex {
 
         return true;
       } else {
-        return curInlineChunk.getNonRootSize() >= maxChunkSize;
+        return curInlineChunk.getNonRootSize(fencePrefixes) >= maxChunkSize;
       }
     }
 
@@ -1300,7 +1508,7 @@ public class HFileBlockIndex {
 
       // Write the inline block index to the output stream in the non-root
       // index block format.
-      curInlineChunk.writeNonRoot(out);
+      curInlineChunk.writeNonRoot(out, fencePrefixes);
 
       // Save the first key of the inline block so that we can add it to the
       // parent-level index.
@@ -1585,6 +1793,16 @@ public class HFileBlockIndex {
      * @throws IOException
      */
     void writeNonRoot(DataOutput out) throws IOException {
+      writeNonRoot(out, false);
+    }
+
+    /**
+     * Same as {@link #writeNonRoot(DataOutput)}, followed, if asked and the chunk is not empty, by
+     * the length of the row prefix all the entries share and the fence prefix of each entry. See
+     * {@link HFileBlockIndex#FENCE_PREFIXES_KEY}. The keys must be serialized {@link KeyValue}
+     * keys.
+     */
+    void writeNonRoot(DataOutput out, boolean fencePrefixes) throws IOException {
       // The number of entries in the block.
       out.writeInt(blockKeys.size());
 
@@ -1610,6 +1828,17 @@ public class HFileBlockIndex {
         out.writeInt(onDiskDataSizes.get(i));
         out.write(blockKeys.get(i));
       }
+
+      if (fencePrefixes && !blockKeys.isEmpty()) {
+        byte[] first = blockKeys.get(0);
+        byte[] last = blockKeys.get(blockKeys.size() - 1);
+        int commonLength = Bytes.findCommonPrefix(first, last, Bytes.toShort(first),
+          Bytes.toShort(last), Bytes.SIZEOF_SHORT, Bytes.SIZEOF_SHORT);
+        out.writeInt(commonLength);
+        for (byte[] key : blockKeys) {
+          out.writeLong(getFencePrefix(key, Bytes.SIZEOF_SHORT, Bytes.toShort(key), commonLength));
+        }
+      }
     }
 
     /**
@@ -1622,6 +1851,17 @@ public class HFileBlockIndex {
           + curTotalNonRootEntrySize;                  // All entries
     }
 
+    /**
+     * @return the size of this chunk if stored in the non-root index block
+     *         format, with fence prefixes if asked
+     */
+    int getNonRootSize(boolean fencePrefixes) {
+      if (!fencePrefixes || blockKeys.isEmpty()) {
+        return getNonRootSize();
+      }
+      return getNonRootSize() + Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG * blockKeys.size();
+    }
+
     /**
      * Writes this chunk into the given output stream in the root block index
      * format. This format is similar to the {@link HFile} version 1 block
@@ -19,11 +19,17 @@ package org.apache.hadoop.hbase.io.hfile;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.security.Key;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
@@ -55,7 +61,6 @@ import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
 import org.apache.hadoop.hbase.security.EncryptionUtil;
 import org.apache.hadoop.hbase.util.ByteBufferUtils;
 import org.apache.hadoop.hbase.util.Bytes;
-import org.apache.hadoop.hbase.util.IdLock;
 import org.apache.hadoop.hbase.util.ObjectIntPair;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.htrace.Trace;
@@ -118,6 +123,12 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
   /** File name to be used for block names */
   private final String name;
 
+  /**
+   * Directory of the store this file belongs to, when its reads should count towards the store's
+   * prefetch priority. Null if the file is not prefetched.
+   */
+  private final Path prefetchStoreDir;
+
   private FileInfo fileInfo;
 
   private Configuration conf;
@@ -128,12 +139,14 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
   private HFileBlock.FSReader fsBlockReader;
 
   /**
-   * A "sparse lock" implementation allowing to lock on a particular block
-   * identified by offset. The purpose of this is to avoid two clients loading
-   * the same block, and have all but one client wait to get the block from the
-   * cache.
+   * Loads of blocks which are in flight, keyed by block offset. The purpose of this is to avoid
+   * two clients loading the same block: the first reader to miss the cache registers a future
+   * here and loads the block, all other readers missing on the same block wait for that future
+   * and then get the block from the cache. The future is completed and removed once the loader
+   * is done, whether or not it succeeded.
    */
-  private IdLock offsetLock = new IdLock();
+  private final ConcurrentMap<Long, CompletableFuture<Void>> pendingBlockLoads =
+      new ConcurrentHashMap<>();
 
   /**
    * Blocks read from the load-on-open section, excluding data root index, meta
@@ -193,6 +206,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     this.fileSize = fileSize;
     this.path = path;
     this.name = path.getName();
+    this.prefetchStoreDir = cacheConf.shouldPrefetchOnOpen() ? path.getParent() : null;
     this.conf = conf;
     this.primaryReplicaReader = primaryReplicaReader;
     checkFileVersion();
@@ -233,6 +247,10 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     }
     avgKeyLen = Bytes.toInt(fileInfo.get(FileInfo.AVG_KEY_LEN));
     avgValueLen = Bytes.toInt(fileInfo.get(FileInfo.AVG_VALUE_LEN));
+    byte[] fencePrefixes = fileInfo.get(FileInfo.INDEX_FENCE_PREFIXES);
+    if (fencePrefixes != null && Bytes.toBoolean(fencePrefixes)) {
+      dataBlockIndexReader.setFencePrefixes(true);
+    }
     byte [] keyValueFormatVersion = fileInfo.get(HFileWriterImpl.KEY_VALUE_VERSION);
     includesMemstoreTS = keyValueFormatVersion != null &&
         Bytes.toInt(keyValueFormatVersion) == HFileWriterImpl.KEY_VALUE_VER_WITH_MEMSTORE;
@@ -253,7 +271,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
 
     // Prefetch file blocks upon open if requested
     if (cacheConf.shouldPrefetchOnOpen()) {
-      PrefetchExecutor.request(path, new Runnable() {
+      PrefetchExecutor.request(path, trailer.getLoadOnOpenDataOffset(), new Runnable() {
         public void run() {
           long offset = 0;
           long end = 0;
@@ -268,6 +286,16 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
               if (Thread.interrupted()) {
                 break;
               }
+              // Skip blocks another reader already brought into the cache, so they cost neither
+              // a read nor prefetch bandwidth.
+              HFileBlock cachedBlock = getCachedBlockForPrefetch(offset);
+              if (cachedBlock != null) {
+                returnBlock(cachedBlock);
+                prevBlock = cachedBlock;
+                offset += cachedBlock.getOnDiskSizeWithHeader();
+                PrefetchExecutor.prefetched(path, cachedBlock.getOnDiskSizeWithHeader(), true);
+                continue;
+              }
               // Perhaps we got our block from cache? Unlikely as this may be, if it happens, then
               // the internal-to-hfileblock thread local which holds the overread that gets the
               // next header, will not have happened...so, pass in the onDiskSize gotten from the
@@ -282,6 +310,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
               returnBlock(block);
               prevBlock = block;
               offset += block.getOnDiskSizeWithHeader();
+              PrefetchExecutor.prefetched(path, block.getOnDiskSizeWithHeader(), false);
             }
           } catch (IOException e) {
             // IOExceptions are probably due to region closes (relocation, etc.)
@@ -366,6 +395,19 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     return fileSize;
   }
 
+  /**
+   * @return the block at the given offset if it is cached, without touching cache metrics or the
+   *         access order of the cache. The caller must return it with
+   *         {@link #returnBlock(HFileBlock)}.
+   */
+  private HFileBlock getCachedBlockForPrefetch(long offset) {
+    BlockCache blockCache = cacheConf.getBlockCache();
+    if (blockCache == null) {
+      return null;
+    }
+    return (HFileBlock) blockCache.peekBlock(new BlockCacheKey(name, offset));
+  }
+
   @Override
   public void returnBlock(HFileBlock block) {
     BlockCache blockCache = this.cacheConf.getBlockCache();
@@ -1425,28 +1467,27 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
         ", lastDataBlockOffset: " + trailer.getLastDataBlockOffset() +
         ", trailer.getLoadOnOpenDataOffset: " + trailerOffset);
     }
-    // For any given block from any given file, synchronize reads for said
-    // block.
-    // Without a cache, this synchronizing is needless overhead, but really
+    // For any given block from any given file, only one reader loads said
+    // block on a cache miss; the others wait for it and read it from the cache.
+    // Without a cache, this coalescing is needless overhead, but really
     // the other choice is to duplicate work (which the cache would prevent you
     // from doing).
 
     BlockCacheKey cacheKey = new BlockCacheKey(name, dataBlockOffset,
       this.isPrimaryReplicaReader(), expectedBlockType);
 
-    boolean useLock = false;
-    IdLock.Entry lockEntry = null;
+    boolean repeat = false;
+    boolean waitedForLoad = false;
+    CompletableFuture<Void> ourLoad = null;
     TraceScope traceScope = Trace.startSpan("HFileReaderImpl.readBlock");
     try {
       while (true) {
         // Check cache for block. If found return.
         if (cacheConf.shouldReadBlockFromCache(expectedBlockType)) {
-          if (useLock) {
-            lockEntry = offsetLock.getLockEntry(dataBlockOffset);
-          }
-          // Try and get the block from the block cache. If the useLock variable is true then this
-          // is the second time through the loop and it should not be counted as a block cache miss.
-          HFileBlock cachedBlock = getCachedBlock(cacheKey, cacheBlock, useLock, isCompaction,
+          // Try and get the block from the block cache. If the repeat variable is true then this
+          // is not the first time through the loop and it should not be counted as a block cache
+          // miss.
+          HFileBlock cachedBlock = getCachedBlock(cacheKey, cacheBlock, repeat, isCompaction,
             updateCacheMetrics, expectedBlockType, expectedDataBlockEncoding);
           if (cachedBlock != null) {
             if (LOG.isTraceEnabled()) {
@@ -1459,6 +1500,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
             if (cachedBlock.getBlockType().isData()) {
               if (updateCacheMetrics) {
                 HFile.DATABLOCK_READ_COUNT.increment();
+                recordStoreAccess(isCompaction);
               }
               // Validate encoding type for data blocks. We include encoding
               // type in the cache key, and we expect it to match on a cache hit.
@@ -1468,13 +1510,27 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
                   + dataBlockEncoder.getDataBlockEncoding() + ")");
               }
             }
+            if (waitedForLoad) {
+              // Only a waiter the concurrent load left the block in the cache for is spared a read
+              HFile.updateCoalescedBlockLoad();
+            }
             // Cache-hit. Return!
             return cachedBlock;
           }
 
-          if (!useLock && cacheBlock && cacheConf.shouldLockOnCacheMiss(expectedBlockType)) {
-            // check cache again with lock
-            useLock = true;
+          if (ourLoad == null && cacheBlock && cacheConf.shouldLockOnCacheMiss(expectedBlockType)) {
+            CompletableFuture<Void> load = new CompletableFuture<>();
+            CompletableFuture<Void> pendingLoad =
+                pendingBlockLoads.putIfAbsent(dataBlockOffset, load);
+            if (pendingLoad == null) {
+              ourLoad = load;
+            } else {
+              waitForBlockLoad(pendingLoad);
+              waitedForLoad = true;
+            }
+            // Check the cache again, either because the concurrent load we waited for is done, or
+            // because one may have completed between our cache check and registering our load.
+            repeat = true;
             continue;
           }
           // Carry on, please load.
@@ -1499,18 +1555,50 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
 
         if (updateCacheMetrics && hfileBlock.getBlockType().isData()) {
           HFile.DATABLOCK_READ_COUNT.increment();
+          recordStoreAccess(isCompaction);
         }
 
         return unpacked;
       }
     } finally {
       traceScope.close();
-      if (lockEntry != null) {
-        offsetLock.releaseLockEntry(lockEntry);
+      if (ourLoad != null) {
+        pendingBlockLoads.remove(dataBlockOffset, ourLoad);
+        ourLoad.complete(null);
       }
     }
   }
 
+  /**
+   * Counts a data block read by a user request towards the prefetch priority of this store.
+   */
+  private void recordStoreAccess(boolean isCompaction) {
+    if (prefetchStoreDir != null && !isCompaction) {
+      PrefetchExecutor.recordAccess(prefetchStoreDir);
+    }
+  }
+
+  @VisibleForTesting
+  ConcurrentMap<Long, CompletableFuture<Void>> getPendingBlockLoads() {
+    return pendingBlockLoads;
+  }
+
+  /**
+   * Waits for a concurrent reader to finish loading a block we missed in the cache.
+   */
+  private void waitForBlockLoad(CompletableFuture<Void> pendingLoad) throws IOException {
+    long startTime = System.nanoTime();
+    try {
+      pendingLoad.get();
+    } catch (InterruptedException e) {
+      throw (InterruptedIOException) new InterruptedIOException(
+          "Interrupted waiting for a concurrent block load").initCause(e);
+    } catch (ExecutionException e) {
+      // Loads are always completed normally; the waiter re-checks the cache regardless.
+    }
+    HFile.updateBlockLoadWait(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+  }
+
   @Override
   public boolean hasMVCCInfo() {
     return includesMemstoreTS && decodeMemstoreTS;
@@ -1562,6 +1650,16 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     return Optional.ofNullable(dataBlockIndexReader.midkey());
   }
 
+  @Override
+  public List<Cell> getRootIndexKeys() {
+    int count = dataBlockIndexReader.getRootBlockCount();
+    List<Cell> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(dataBlockIndexReader.getRootBlockKey(i));
+    }
+    return keys;
+  }
+
   @Override
   public void close() throws IOException {
     close(cacheConf.shouldEvictOnClose());
@@ -96,6 +96,9 @@ public class HFileWriterImpl implements HFile.Writer {
   /** Key comparator. Used to ensure we write in order. */
   protected final CellComparator comparator;
 
+  /** Whether the data block index has fence prefixes */
+  private boolean fencePrefixes;
+
   /** Meta block names. */
   protected List<byte[]> metaNames = new ArrayList<>();
 
@@ -303,6 +306,10 @@ public class HFileWriterImpl implements HFile.Writer {
         HFileBlockIndex.getMaxChunkSize(conf));
     dataBlockIndexWriter.setMinIndexNumEntries(
         HFileBlockIndex.getMinIndexNumEntries(conf));
+    // Fence prefixes follow the row order of the default comparator only
+    fencePrefixes = conf.getBoolean(HFileBlockIndex.FENCE_PREFIXES_KEY, false)
+        && comparator.getClass() == CellComparator.class;
+    dataBlockIndexWriter.setFencePrefixes(fencePrefixes);
     inlineBlockWriters.add(dataBlockIndexWriter);
 
     // Meta data block index writer
@@ -790,6 +797,9 @@ public class HFileWriterImpl implements HFile.Writer {
     int avgValueLen =
         entryCount == 0 ? 0 : (int) (totalValueLength / entryCount);
     fileInfo.append(FileInfo.AVG_VALUE_LEN, Bytes.toBytes(avgValueLen), false);
+    if (fencePrefixes) {
+      fileInfo.append(FileInfo.INDEX_FENCE_PREFIXES, Bytes.toBytes(true), false);
+    }
     if (hFileContext.getDataBlockEncoding() == DataBlockEncoding.PREFIX_TREE) {
       // In case of Prefix Tree encoding, we always write tags information into HFiles even if all
       // KVs are having no tags.
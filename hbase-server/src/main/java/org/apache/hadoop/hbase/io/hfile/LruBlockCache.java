@@ -97,7 +97,7 @@ import org.apache.hadoop.hbase.shaded.com.google.common.util.concurrent.ThreadFa
  */
 @InterfaceAudience.Private
 @JsonIgnoreProperties({"encodingCountsForTest"})
-public class LruBlockCache implements ResizableBlockCache, HeapSize {
+public class LruBlockCache implements FirstLevelBlockCache {
 
   private static final Log LOG = LogFactory.getLog(LruBlockCache.class);
 
@@ -509,11 +509,21 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     return cb.getBuffer();
   }
 
+  @Override
+  public Cacheable peekBlock(BlockCacheKey cacheKey) {
+    LruCachedBlock cb = map.get(cacheKey);
+    if (cb == null) {
+      return victimHandler == null ? null : victimHandler.peekBlock(cacheKey);
+    }
+    return cb.getBuffer();
+  }
+
   /**
    * Whether the cache contains block with specified cacheKey
    *
    * @return true if contains the block
    */
+  @Override
   public boolean containsBlock(BlockCacheKey cacheKey) {
     return map.containsKey(cacheKey);
   }
@@ -1168,6 +1178,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     return counts;
   }
 
+  @Override
   public void setVictimCache(BlockCache handler) {
     assert victimHandler == null;
     victimHandler = handler;
@@ -1196,7 +1207,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     // handler L2 cache. (when the Combined mode = false). So just try return this block to
     // L2 victim handler cache.
     // Note : In case of CombinedBlockCache, we will have this victimHandler configured for L1
-    // cache. But CombinedBlockCache will only call returnBlock on L2 cache.
+    // cache, and CombinedBlockCache returns blocks to L2 through it.
     if (this.victimHandler != null) {
       this.victimHandler.returnBlock(cacheKey, block);
     }
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.hbase.nio.MultiByteBuff;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.base.Preconditions;
+
+/**
+ * A bounded pool of fixed size pages of direct memory, which {@link TinyLfuBlockCache} keeps the
+ * bytes of its blocks in.
+ * <p>
+ * Pages are cut out of direct buffers of {@link #CHUNK_SIZE} bytes. Like the buffers of a
+ * {@link org.apache.hadoop.hbase.util.ByteBufferArray}, the chunks are never released, but they
+ * are only allocated as the pool fills up, and never past its capacity. A block takes as many
+ * pages as its serialized form needs, so the only waste is the tail of its last page, and freed
+ * pages are reused by the next blocks. The pool never allocates more direct memory than its
+ * capacity, and it counts every page in use.
+ * <p>
+ * Thread safe.
+ */
+@InterfaceAudience.Private
+final class OffHeapPagePool {
+
+  /** Size of the direct buffers the pages are cut out of */
+  static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+  private final int pageSize;
+  private final long maxPages;
+
+  /** Guarded by this */
+  private final ArrayDeque<ByteBuffer> freePages = new ArrayDeque<>();
+  private long allocatedPages;
+  private long usedPages;
+
+  /**
+   * @param capacity the most direct memory the pool allocates, in bytes
+   * @param pageSize the size of the pages, a divisor of {@link #CHUNK_SIZE}
+   */
+  OffHeapPagePool(long capacity, int pageSize) {
+    Preconditions.checkArgument(pageSize > 0 && CHUNK_SIZE % pageSize == 0,
+        "The page size must divide " + CHUNK_SIZE + ": " + pageSize);
+    this.pageSize = pageSize;
+    this.maxPages = Math.max(capacity, 0) / pageSize;
+  }
+
+  /**
+   * @return the number of pages taken by {@code length} bytes
+   */
+  int getPageCount(int length) {
+    return (length + pageSize - 1) / pageSize;
+  }
+
+  /**
+   * @return the pages to keep {@code length} bytes in, or null if the pool has not that many left
+   */
+  synchronized ByteBuffer[] allocate(int length) {
+    int count = getPageCount(length);
+    if (usedPages + count > maxPages) {
+      return null;
+    }
+    while (freePages.size() < count) {
+      addChunk();
+    }
+    ByteBuffer[] pages = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      pages[i] = freePages.poll();
+    }
+    usedPages += count;
+    return pages;
+  }
+
+  /**
+   * Gives back pages taken by {@link #allocate(int)}. Nobody may read them afterwards.
+   */
+  synchronized void free(ByteBuffer[] pages) {
+    for (ByteBuffer page : pages) {
+      freePages.push(page);
+    }
+    usedPages -= pages.length;
+  }
+
+  private void addChunk() {
+    int count = (int) Math.min(CHUNK_SIZE / pageSize, maxPages - allocatedPages);
+    ByteBuffer chunk = ByteBuffer.allocateDirect(count * pageSize);
+    for (int i = 0; i < count; i++) {
+      ByteBuffer page = chunk.duplicate();
+      page.position(i * pageSize);
+      page.limit((i + 1) * pageSize);
+      freePages.add(page.slice());
+    }
+    allocatedPages += count;
+  }
+
+  /**
+   * Copies {@code length} bytes of {@code src} from {@code offset} into the pages.
+   */
+  void write(ByteBuffer[] pages, byte[] src, int offset, int length) {
+    for (int i = 0, done = 0; done < length; i++) {
+      int n = Math.min(pageSize, length - done);
+      ByteBufferUtils.copyFromArrayToBuffer(pages[i], 0, src, offset + done, n);
+      done += n;
+    }
+  }
+
+  /**
+   * @return a copy of the first {@code length} bytes in the pages
+   */
+  byte[] read(ByteBuffer[] pages, int length) {
+    byte[] dst = new byte[length];
+    for (int i = 0, done = 0; done < length; i++) {
+      int n = Math.min(pageSize, length - done);
+      ByteBufferUtils.copyFromBufferToArray(dst, pages[i], 0, done, n);
+      done += n;
+    }
+    return dst;
+  }
+
+  /**
+   * @return a buffer over the first {@code length} bytes in the pages, without copying them. It
+   *         is only valid until the pages are freed.
+   */
+  ByteBuff wrap(ByteBuffer[] pages, int length) {
+    int count = getPageCount(length);
+    if (count == 1) {
+      return new SingleByteBuff(page(pages, 0, length));
+    }
+    ByteBuffer[] items = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      items[i] = page(pages, i, length);
+    }
+    return new MultiByteBuff(items);
+  }
+
+  private ByteBuffer page(ByteBuffer[] pages, int index, int length) {
+    ByteBuffer page = pages[index].duplicate();
+    page.limit(Math.min(pageSize, length - index * pageSize));
+    return page;
+  }
+
+  int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * @return the most direct memory the pool allocates, in bytes
+   */
+  long getCapacity() {
+    return maxPages * pageSize;
+  }
+
+  /**
+   * @return the direct memory in the pages taken, in bytes
+   */
+  synchronized long getUsedSize() {
+    return usedPages * pageSize;
+  }
+
+  /**
+   * @return the direct memory allocated so far, in bytes
+   */
+  synchronized long getAllocatedSize() {
+    return allocatedPages * pageSize;
+  }
+}
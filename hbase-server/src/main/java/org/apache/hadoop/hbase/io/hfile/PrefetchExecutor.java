@@ -20,13 +20,20 @@ package org.apache.hadoop.hbase.io.hfile;
 
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
@@ -36,19 +43,38 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.util.FSUtils;
 
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Runs the block prefetch of newly opened HFiles.
+ * <p>
+ * Requests wait out a short randomized delay and are then queued by the access heat of their
+ * store, so the files of stores that serve the most reads are warmed first. Heat is the decayed
+ * count of data blocks read by user requests from the store's files. Reads from the filesystem
+ * by prefetch are throttled to {@code hbase.hfile.prefetch.max.bytes.per.second} across all
+ * prefetch threads, and a prefetch stops as soon as its file is closed.
+ */
 public class PrefetchExecutor {
 
   private static final Log LOG = LogFactory.getLog(PrefetchExecutor.class);
 
-  /** Futures for tracking block prefetch activity */
-  private static final Map<Path,Future<?>> prefetchFutures = new ConcurrentSkipListMap<>();
-  /** Executor pool shared among all HFiles for block prefetch */
-  private static final ScheduledExecutorService prefetchExecutorPool;
+  /** Tasks for tracking block prefetch activity */
+  private static final Map<Path,PrefetchTask> prefetchTasks = new ConcurrentSkipListMap<>();
+  /** Holds requests until their delay passed, and decays store heat */
+  private static final ScheduledExecutorService prefetchScheduler;
+  /** Executor pool shared among all HFiles for block prefetch, hottest store first */
+  private static final ThreadPoolExecutor prefetchExecutorPool;
   /** Delay before beginning prefetch */
   private static final int prefetchDelayMillis;
   /** Variation in prefetch delay times, to mitigate stampedes */
   private static final float prefetchDelayVariation;
+  /** How often store heat is halved, so heat follows the current workload */
+  private static final long HEAT_DECAY_PERIOD_MS = 60 * 1000;
+  /** Upper bound on the rate at which prefetch reads from the filesystem; 0 for unbounded */
+  private static final long prefetchMaxBytesPerSecond;
   static {
     // Consider doing this on demand with a configuration passed in rather
     // than in a static initializer.
@@ -57,19 +83,32 @@ public class PrefetchExecutor {
     // Set to 0 for no delay
     prefetchDelayMillis = conf.getInt("hbase.hfile.prefetch.delay", 1000);
     prefetchDelayVariation = conf.getFloat("hbase.hfile.prefetch.delay.variation", 0.2f);
+    prefetchMaxBytesPerSecond = conf.getLong("hbase.hfile.prefetch.max.bytes.per.second", 0);
     int prefetchThreads = conf.getInt("hbase.hfile.thread.prefetch", 4);
-    prefetchExecutorPool = new ScheduledThreadPoolExecutor(prefetchThreads,
-      new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-          String name = "hfile-prefetch-" + System.currentTimeMillis();
-          Thread t = new Thread(r, name);
-          t.setDaemon(true);
-          return t;
-        }
-    });
+    prefetchScheduler =
+        new ScheduledThreadPoolExecutor(1, newThreadFactory("hfile-prefetch-delay-"));
+    prefetchExecutorPool = new ThreadPoolExecutor(prefetchThreads, prefetchThreads,
+        60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), newThreadFactory("hfile-prefetch-"));
+    prefetchScheduler.scheduleAtFixedRate(PrefetchExecutor::decayStoreHeat,
+        HEAT_DECAY_PERIOD_MS, HEAT_DECAY_PERIOD_MS, TimeUnit.MILLISECONDS);
   }
 
+  /** Data block reads per store directory, see {@link #recordAccess(Path)} */
+  private static final ConcurrentMap<Path,StoreHeat> storeHeat = new ConcurrentHashMap<>();
+
+  /** Prefetch progress per table, for the table metrics, of the files still open */
+  private static final ConcurrentMap<TableName,TableProgress> tableProgress =
+      new ConcurrentHashMap<>();
+  /** The prefetches of the open files, counted in the progress of their table until closed */
+  private static final ConcurrentMap<Path,PrefetchTask> openFiles = new ConcurrentHashMap<>();
+
+  /** Orders requests of equal heat by arrival */
+  private static final AtomicLong sequence = new AtomicLong();
+
+  /** The time at which the throttle allows prefetch to read again */
+  private static long throttleNextFreeNanos;
+  private static final Object throttleLock = new Object();
+
   private static final Random RNG = new Random();
 
   // TODO: We want HFile, which is where the blockcache lives, to handle
@@ -87,7 +126,27 @@ public class PrefetchExecutor {
             Path.SEPARATOR_CHAR +
         ")");
 
-  public static void request(Path path, Runnable runnable) {
+  private static ThreadFactory newThreadFactory(final String prefix) {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        String name = prefix + System.currentTimeMillis();
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+      }
+    };
+  }
+
+  /**
+   * Requests the prefetch of a file.
+   * @param path the file
+   * @param bytes the number of bytes the prefetch will visit, for progress reporting
+   * @param runnable does the prefetch; must call {@link #complete(Path)} when done, should report
+   *          each block visited with {@link #prefetched(Path, long, boolean)}, and should stop
+   *          when interrupted
+   */
+  public static void request(Path path, long bytes, Runnable runnable) {
     if (!prefetchPathExclude.matcher(path.toString()).find()) {
       long delay;
       if (prefetchDelayMillis > 0) {
@@ -96,44 +155,323 @@ public class PrefetchExecutor {
       } else {
         delay = 0;
       }
+      PrefetchTask task = new PrefetchTask(path, bytes, runnable);
       try {
         if (LOG.isDebugEnabled()) {
           LOG.debug("Prefetch requested for " + path + ", delay=" + delay + " ms");
         }
-        prefetchFutures.put(path, prefetchExecutorPool.schedule(runnable, delay,
-          TimeUnit.MILLISECONDS));
+        prefetchTasks.put(path, task);
+        PrefetchTask previous = openFiles.put(path, task);
+        if (previous != null) {
+          previous.release();
+        }
+        if (delay > 0) {
+          task.delayed = prefetchScheduler.schedule(() -> submit(task), delay,
+            TimeUnit.MILLISECONDS);
+        } else {
+          submit(task);
+        }
       } catch (RejectedExecutionException e) {
-        prefetchFutures.remove(path);
+        prefetchTasks.remove(path, task);
+        task.finish();
         LOG.warn("Prefetch request rejected for " + path);
       }
     }
   }
 
+  private static void submit(PrefetchTask task) {
+    if (task.cancelled) {
+      return;
+    }
+    task.heat = getStoreHeat(task.path.getParent());
+    try {
+      prefetchExecutorPool.execute(task);
+    } catch (RejectedExecutionException e) {
+      prefetchTasks.remove(task.path, task);
+      task.finish();
+      LOG.warn("Prefetch request rejected for " + task.path);
+    }
+  }
+
+  /**
+   * Reports a block visited by the prefetch of the given file. If the block had to be read from
+   * the filesystem this waits as long as needed to keep prefetch within its configured rate.
+   * When interrupted while waiting, returns early with the interrupt flag set.
+   * @param path the file being prefetched
+   * @param bytes on disk size of the block
+   * @param cached true if the block was found in the cache and nothing was read
+   */
+  public static void prefetched(Path path, long bytes, boolean cached) {
+    PrefetchTask task = prefetchTasks.get(path);
+    if (task != null) {
+      task.visited(bytes);
+    }
+    if (!cached && prefetchMaxBytesPerSecond > 0) {
+      throttle(bytes);
+    }
+  }
+
+  private static void throttle(long bytes) {
+    long waitNanos;
+    synchronized (throttleLock) {
+      long now = System.nanoTime();
+      long start = Math.max(now, throttleNextFreeNanos);
+      throttleNextFreeNanos = start + TimeUnit.SECONDS.toNanos(bytes) / prefetchMaxBytesPerSecond;
+      waitNanos = start - now;
+    }
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   public static void complete(Path path) {
-    prefetchFutures.remove(path);
+    PrefetchTask task = prefetchTasks.remove(path);
+    if (task != null) {
+      task.finish();
+    }
     if (LOG.isDebugEnabled()) {
       LOG.debug("Prefetch completed for " + path);
     }
   }
 
+  /**
+   * Cancels the prefetch of a file being closed, and stops counting the file in the prefetch
+   * progress of its table.
+   */
   public static void cancel(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
+    PrefetchTask task = prefetchTasks.remove(path);
+    if (task != null) {
       // ok to race with other cancellation attempts
-      future.cancel(true);
-      prefetchFutures.remove(path);
+      task.cancel();
       if (LOG.isDebugEnabled()) {
         LOG.debug("Prefetch cancelled for " + path);
       }
     }
+    PrefetchTask open = openFiles.remove(path);
+    if (open != null) {
+      open.release();
+    }
   }
 
   public static boolean isCompleted(Path path) {
-    Future<?> future = prefetchFutures.get(path);
-    if (future != null) {
-      return future.isDone(); 
+    PrefetchTask task = prefetchTasks.get(path);
+    if (task != null) {
+      return task.isDone();
     }
     return true;
   }
 
+  /**
+   * Counts a data block read by a user request from a file in the given store directory. The
+   * heat of a store decides which of its files' prefetches run first.
+   */
+  public static void recordAccess(Path storeDir) {
+    StoreHeat heat = storeHeat.get(storeDir);
+    if (heat == null) {
+      StoreHeat newHeat = new StoreHeat();
+      heat = storeHeat.putIfAbsent(storeDir, newHeat);
+      if (heat == null) {
+        heat = newHeat;
+      }
+    }
+    heat.recent.increment();
+  }
+
+  @VisibleForTesting
+  static long getStoreHeat(Path storeDir) {
+    StoreHeat heat = storeDir == null ? null : storeHeat.get(storeDir);
+    return heat == null ? 0 : heat.get();
+  }
+
+  private static void decayStoreHeat() {
+    for (Map.Entry<Path,StoreHeat> e : storeHeat.entrySet()) {
+      if (e.getValue().decay() == 0) {
+        storeHeat.remove(e.getKey(), e.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return bytes of the table's open files that are being or have been prefetched, not
+   *         counting the unvisited part of cancelled prefetches
+   */
+  public static long getRequestedBytes(TableName table) {
+    TableProgress progress = tableProgress.get(table);
+    return progress == null ? 0 : progress.requested.sum();
+  }
+
+  /**
+   * @return bytes of the table's open files visited by prefetch so far, whether read or found
+   *         cached
+   */
+  public static long getCompletedBytes(TableName table) {
+    TableProgress progress = tableProgress.get(table);
+    return progress == null ? 0 : progress.completed.sum();
+  }
+
+  private static TableName tableOf(Path path) {
+    // <table dir>/<region>/<family>/<hfile>
+    Path tableDir = path.getParent();
+    for (int i = 0; i < 2 && tableDir != null; i++) {
+      tableDir = tableDir.getParent();
+    }
+    if (tableDir == null || tableDir.getParent() == null) {
+      return null;
+    }
+    try {
+      return FSUtils.getTableName(tableDir);
+    } catch (IllegalArgumentException e) {
+      // Not laid out like a table, as in some tests
+      return null;
+    }
+  }
+
+  /**
+   * @return the progress of the table, counting one more open file of the given size
+   */
+  private static TableProgress addFile(TableName table, long bytes) {
+    return tableProgress.compute(table, (t, progress) -> {
+      if (progress == null) {
+        progress = new TableProgress();
+      }
+      progress.files++;
+      progress.requested.add(bytes);
+      return progress;
+    });
+  }
+
+  private static final class StoreHeat {
+    private final LongAdder recent = new LongAdder();
+    private volatile long decayed;
+
+    long get() {
+      return decayed + recent.sum();
+    }
+
+    long decay() {
+      decayed = decayed / 2 + recent.sumThenReset();
+      return decayed;
+    }
+  }
+
+  private static final class TableProgress {
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    /** Open files counted in this progress; only changed within compute of tableProgress */
+    private int files;
+  }
+
+  /**
+   * A prefetch, ordered hottest store first. Cancelling removes it from the queue if it has not
+   * started and interrupts it if it has.
+   */
+  private static final class PrefetchTask implements Runnable, Comparable<PrefetchTask> {
+    private final Path path;
+    private final long bytes;
+    private final Runnable runnable;
+    private final TableName table;
+    private final TableProgress progress;
+    private final long seq = sequence.incrementAndGet();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile long heat;
+    private volatile ScheduledFuture<?> delayed;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private Thread runner;
+    /** Bytes visited, and bytes counted as requested in the table progress; guarded by this */
+    private long visited;
+    private long requested;
+    /** Whether the file was closed and no longer counts in the table progress */
+    private boolean released;
+
+    PrefetchTask(Path path, long bytes, Runnable runnable) {
+      this.path = path;
+      this.bytes = bytes;
+      this.runnable = runnable;
+      this.table = tableOf(path);
+      this.progress = table == null ? null : addFile(table, bytes);
+      this.requested = bytes;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        runner = Thread.currentThread();
+      }
+      try {
+        runnable.run();
+      } finally {
+        synchronized (this) {
+          runner = null;
+          // Clear an interrupt meant for this prefetch before the thread picks up the next one
+          Thread.interrupted();
+        }
+        done = true;
+      }
+    }
+
+    synchronized void visited(long blockBytes) {
+      visited += blockBytes;
+      if (progress != null && !released) {
+        progress.completed.add(blockBytes);
+      }
+    }
+
+    void cancel() {
+      synchronized (this) {
+        cancelled = true;
+        if (runner != null) {
+          runner.interrupt();
+        }
+      }
+      ScheduledFuture<?> delayed = this.delayed;
+      if (delayed != null) {
+        delayed.cancel(false);
+      }
+      prefetchExecutorPool.remove(this);
+      finish();
+    }
+
+    /** Stops counting the part of the file this prefetch will no longer visit */
+    synchronized void finish() {
+      if (progress != null && !released && finished.compareAndSet(false, true)) {
+        long unvisited = Math.min(visited - bytes, 0);
+        progress.requested.add(unvisited);
+        requested += unvisited;
+      }
+    }
+
+    /** Takes the file out of the progress of its table once it is closed */
+    synchronized void release() {
+      if (progress == null || released) {
+        return;
+      }
+      released = true;
+      tableProgress.computeIfPresent(table, (t, p) -> {
+        if (p != progress) {
+          return p;
+        }
+        p.requested.add(-requested);
+        p.completed.add(-visited);
+        return --p.files == 0 ? null : p;
+      });
+    }
+
+    boolean isDone() {
+      return done || cancelled;
+    }
+
+    @Override
+    public int compareTo(PrefetchTask other) {
+      int c = Long.compare(other.heat, heat);
+      return c != 0 ? c : Long.compare(seq, other.seq);
+    }
+  }
 }
@@ -0,0 +1,1064 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache;
+import org.apache.hadoop.hbase.nio.SingleByteBuff;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.codehaus.jackson.annotate.JsonIgnore;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hbase.shaded.com.google.common.base.Preconditions;
+import org.apache.hadoop.hbase.shaded.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A first level block cache using the W-TinyLFU policy, as an alternative to
+ * {@link LruBlockCache}.
+ * <p>
+ * New blocks enter a small LRU admission window. Blocks falling out of the window are only let
+ * into the main region, a segmented LRU of a probation and a protected segment, if a
+ * {@link FrequencySketch} says they were requested more often recently than the block they would
+ * push out. A scan touching each block once therefore cycles through the window without
+ * displacing the working set, and the policy needs no background scan-and-sort of the whole map
+ * to pick victims. Blocks hit while in probation move to the protected segment; overflow of the
+ * protected segment is demoted back to probation. In-memory blocks skip the window and the
+ * admission filter and start out protected.
+ * <p>
+ * Lookups only touch the concurrent map and record the access in a lossy ring buffer. The
+ * policy is updated under a single lock, by writers and by the reader which fills the buffer;
+ * readers never wait for it.
+ * <p>
+ * The cached bytes live off heap, in the pages of an {@link OffHeapPagePool} of
+ * {@link #SIZE_CONFIG_NAME} MB, so the garbage collector never traverses them. The cache takes
+ * no share of the heap: it is sized from its own key only, and the
+ * {@link org.apache.hadoop.hbase.regionserver.HeapMemoryManager} does not tune it. Sizes are
+ * accounted exactly: the size of an entry is the pages its serialized block takes plus the heap
+ * overhead of its key and bookkeeping, and {@link #heapSize()} only reports the latter.
+ * <p>
+ * A hit is served without copying: the block is deserialized over its pages with
+ * {@link MemoryType#SHARED}, and the reader must hand it back with
+ * {@link #returnBlock(BlockCacheKey, Cacheable)}, as with the {@link BucketCache}. An evicted
+ * entry keeps its pages, and stays in the map so its blocks can be returned, until the last block
+ * lent out of it is; see {@link Node#refCount}. Only blocks handed to the victim cache on
+ * eviction are copied to the heap, since the victim cache may write them out after the pages are
+ * gone.
+ * <p>
+ * The policy and the {@link FrequencySketch} follow the design of the Caffeine caching library,
+ * https://github.com/ben-manes/caffeine, described in "TinyLFU: A Highly Efficient Cache
+ * Admission Policy" by Gil Einziger, Roy Friedman and Ben Manes.
+ */
+@InterfaceAudience.Private
+public final class TinyLfuBlockCache implements FirstLevelBlockCache {
+  private static final Log LOG = LogFactory.getLog(TinyLfuBlockCache.class);
+
+  /** Fraction of the capacity used as admission window */
+  static final String WINDOW_FACTOR_CONFIG_NAME = "hbase.tinylfu.blockcache.window.factor";
+  /** Fraction of the main region reserved for blocks accessed more than once */
+  static final String PROTECTED_FACTOR_CONFIG_NAME = "hbase.tinylfu.blockcache.protected.factor";
+  /** Size of the cache in MB, all of it in direct memory. Required, there is no default. */
+  static final String SIZE_CONFIG_NAME = "hbase.tinylfu.blockcache.size";
+  /** Size of the pages of direct memory blocks are kept in, a divisor of 4 MB */
+  static final String PAGE_SIZE_CONFIG_NAME = "hbase.tinylfu.blockcache.page.size";
+  private static final String MAX_BLOCK_SIZE_CONFIG_NAME = "hbase.tinylfu.max.block.size";
+
+  static final float DEFAULT_WINDOW_FACTOR = 0.01f;
+  static final float DEFAULT_PROTECTED_FACTOR = 0.80f;
+  static final int DEFAULT_PAGE_SIZE = 8 * 1024;
+  private static final long DEFAULT_MAX_BLOCK_SIZE = 16L * 1024L * 1024L;
+
+  /** Number of reads recorded before the policy is brought up to date; a power of two */
+  private static final int READ_BUFFER_SIZE = 128;
+
+  /* Statistics thread */
+  private static final int STAT_THREAD_PERIOD = 60 * 5;
+
+  /** Heap overhead of each entry besides the key and the array of its pages */
+  static final long PER_BLOCK_OVERHEAD = ClassSize.align(ClassSize.OBJECT
+      + 9 * ClassSize.REFERENCE + 2 * Bytes.SIZEOF_LONG + 2 * Bytes.SIZEOF_INT
+      + 2 * Bytes.SIZEOF_BOOLEAN) + ClassSize.ATOMIC_INTEGER + ClassSize.CONCURRENT_HASHMAP_ENTRY;
+
+  private enum Segment {
+    NONE, WINDOW, PROBATION, PROTECTED
+  }
+
+  private final ConcurrentMap<BlockCacheKey, Node> map;
+
+  /** Guards the access queues and the sketch */
+  private final ReentrantLock policyLock = new ReentrantLock();
+  private final AccessQueue window = new AccessQueue();
+  private final AccessQueue probation = new AccessQueue();
+  private final AccessQueue protectedQueue = new AccessQueue();
+  private final FrequencySketch sketch;
+
+  private final AtomicReferenceArray<Node> readBuffer =
+      new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+  private final AtomicLong readBufferWriteCount = new AtomicLong();
+
+  /** Current size of cache, on and off heap */
+  private final AtomicLong size = new AtomicLong();
+  /** Current size of cache held off heap */
+  private final LongAdder offHeapSize = new LongAdder();
+  private final LongAdder dataBlockSize = new LongAdder();
+  private final LongAdder elements = new LongAdder();
+  private final LongAdder dataBlockElements = new LongAdder();
+
+  private final CacheStats stats;
+  private final OffHeapPagePool pool;
+  private final long blockSize;
+  private final long maxBlockSize;
+  private final float windowFactor;
+  private final float protectedFactor;
+  private volatile long maxSize;
+
+  /** Where to send victims (blocks evicted/missing from the cache) */
+  private BlockCache victimCache;
+
+  /** Statistics thread schedule pool */
+  private final ScheduledExecutorService scheduleThreadPool = Executors.newScheduledThreadPool(1,
+      new ThreadFactoryBuilder().setNameFormat("TinyLfuBlockCacheStatsExecutor").setDaemon(true)
+          .build());
+
+  /**
+   * Creates a block cache.
+   *
+   * @param maxSize maximum size of this cache, in bytes
+   * @param blockSize expected average size of blocks, in bytes
+   * @param conf configuration to read the tuning knobs from
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize, Configuration conf) {
+    this(maxSize, blockSize,
+        conf.getFloat(WINDOW_FACTOR_CONFIG_NAME, DEFAULT_WINDOW_FACTOR),
+        conf.getFloat(PROTECTED_FACTOR_CONFIG_NAME, DEFAULT_PROTECTED_FACTOR),
+        conf.getLong(MAX_BLOCK_SIZE_CONFIG_NAME, DEFAULT_MAX_BLOCK_SIZE),
+        conf.getInt(PAGE_SIZE_CONFIG_NAME, DEFAULT_PAGE_SIZE));
+  }
+
+  /**
+   * Creates a block cache.
+   *
+   * @param maxSize maximum size of this cache, in bytes
+   * @param blockSize expected average size of blocks, in bytes
+   * @param windowFactor fraction of the capacity used as admission window
+   * @param protectedFactor fraction of the main region reserved for blocks accessed again
+   * @param maxBlockSize largest block to cache, in bytes
+   * @param pageSize size of the pages of direct memory blocks are kept in, in bytes
+   */
+  public TinyLfuBlockCache(long maxSize, long blockSize, float windowFactor,
+      float protectedFactor, long maxBlockSize, int pageSize) {
+    Preconditions.checkArgument(windowFactor > 0 && windowFactor < 1,
+        WINDOW_FACTOR_CONFIG_NAME + " must be between 0.0 and 1.0");
+    Preconditions.checkArgument(protectedFactor >= 0 && protectedFactor < 1,
+        PROTECTED_FACTOR_CONFIG_NAME + " must be between 0.0 and 1.0");
+    this.maxSize = maxSize;
+    this.blockSize = blockSize;
+    this.windowFactor = windowFactor;
+    this.protectedFactor = protectedFactor;
+    this.maxBlockSize = maxBlockSize;
+    this.pool = new OffHeapPagePool(maxSize, pageSize);
+    this.map = new ConcurrentHashMap<>((int) Math.min(Integer.MAX_VALUE,
+        Math.ceil(1.2 * maxSize / blockSize)));
+    this.sketch = new FrequencySketch(maxSize / blockSize);
+    this.stats = new CacheStats(getClass().getSimpleName());
+    this.scheduleThreadPool.scheduleAtFixedRate(this::logStats, STAT_THREAD_PERIOD,
+        STAT_THREAD_PERIOD, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void setVictimCache(BlockCache victimCache) {
+    if (this.victimCache != null) {
+      throw new IllegalArgumentException("The victim cache has already been set");
+    }
+    this.victimCache = victimCache;
+  }
+
+  /**
+   * @return the size of the cache set in the configuration, see {@link #SIZE_CONFIG_NAME}, in
+   *         bytes
+   * @throws IllegalArgumentException if no positive size is set
+   */
+  static long getConfiguredSize(Configuration conf) {
+    long sizeInMB = conf.getLong(SIZE_CONFIG_NAME, -1);
+    if (sizeInMB <= 0) {
+      throw new IllegalArgumentException(SIZE_CONFIG_NAME + " must be set to the size of the "
+          + "TinyLFU block cache in MB, which is allocated in direct memory: " + sizeInMB);
+    }
+    return sizeInMB * 1024 * 1024;
+  }
+
+  /**
+   * Sets the maximum size of the cache. It cannot grow past the direct memory of its pool, which
+   * is allocated as large as the cache was created. Not called by the
+   * {@link org.apache.hadoop.hbase.regionserver.HeapMemoryManager}, as the cache is not on heap.
+   */
+  @Override
+  public void setMaxSize(long size) {
+    this.maxSize = Math.min(size, pool.getCapacity());
+    List<Node> evicted;
+    policyLock.lock();
+    try {
+      sketch.ensureCapacity(size / blockSize);
+      evicted = evictEntries();
+    } finally {
+      policyLock.unlock();
+    }
+    releaseEvicted(evicted);
+  }
+
+  @Override
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public long getCurrentSize() {
+    return size.get();
+  }
+
+  @Override
+  public long getCurrentDataSize() {
+    return dataBlockSize.sum();
+  }
+
+  @Override
+  public long getFreeSize() {
+    return getMaxSize() - getCurrentSize();
+  }
+
+  @Override
+  public long size() {
+    return getMaxSize();
+  }
+
+  @Override
+  public long getBlockCount() {
+    return elements.sum();
+  }
+
+  @Override
+  public long getDataBlockCount() {
+    return dataBlockElements.sum();
+  }
+
+  /**
+   * @return the part of {@link #getCurrentSize()} which is on the java heap
+   */
+  @Override
+  public long heapSize() {
+    return getCurrentSize() - offHeapSize.sum();
+  }
+
+  /**
+   * @return the direct memory in the pages of the cached blocks, including the pages of evicted
+   *         blocks that readers have not returned yet
+   */
+  public long getOffHeapUsedSize() {
+    return pool.getUsedSize();
+  }
+
+  @Override
+  public CacheStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public boolean containsBlock(BlockCacheKey cacheKey) {
+    Node node = map.get(cacheKey);
+    return node != null && !node.evicted;
+  }
+
+  @Override
+  public Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
+      boolean updateCacheMetrics) {
+    Node node = map.get(cacheKey);
+    Cacheable block = node == null ? null : readBlock(node);
+    if (block == null) {
+      if (!repeat && updateCacheMetrics) {
+        stats.miss(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+      }
+      // If there is another block cache then try and read there.
+      // However if this is a retry ( second time in double checked locking )
+      // And it's already a miss then the l2 will also be a miss.
+      if (victimCache != null && !repeat) {
+        Cacheable result = victimCache.getBlock(cacheKey, caching, repeat, updateCacheMetrics);
+        // Promote this to L1. It is copied into our pages, and we did not lend it, so it is
+        // still returned to the victim cache as usual.
+        if (result != null && caching) {
+          cacheBlock(cacheKey, result, /* inMemory = */ false, /* cacheData = */ true);
+        }
+        return result;
+      }
+      return null;
+    }
+    if (updateCacheMetrics) {
+      stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+    }
+    recordRead(node);
+    return block;
+  }
+
+  @Override
+  public Cacheable peekBlock(BlockCacheKey cacheKey) {
+    Node node = map.get(cacheKey);
+    Cacheable block = node == null ? null : readBlock(node);
+    if (block == null) {
+      return victimCache == null ? null : victimCache.peekBlock(cacheKey);
+    }
+    return block;
+  }
+
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf) {
+    cacheBlock(cacheKey, buf, false, false);
+  }
+
+  @Override
+  public void cacheBlock(BlockCacheKey cacheKey, Cacheable buf, boolean inMemory,
+      boolean cacheDataInL1) {
+    int length = buf.getSerializedLength();
+    if (length <= 0) {
+      // Cannot be kept off heap
+      stats.failInsert();
+      return;
+    }
+    if (length > maxBlockSize) {
+      // If there are a lot of blocks that are too
+      // big this can make the logs way too noisy.
+      // So we log 2%
+      if (stats.failInsert() % 50 == 0) {
+        LOG.warn("Trying to cache too large a block " + cacheKey.getHfileName() + " @ "
+            + cacheKey.getOffset() + " is " + length + " which is larger than "
+            + maxBlockSize);
+      }
+      return;
+    }
+    Node existing = map.get(cacheKey);
+    if (existing != null) {
+      // An evicted entry stays until its lent blocks are returned, as in the BucketCache; the
+      // block is cached again on a later miss. Otherwise see HBASE-8547.
+      if (!existing.evicted && LOG.isDebugEnabled()) {
+        LOG.debug("Cached an already cached block: " + cacheKey + ". This is harmless and can "
+            + "happen in rare cases (see HBASE-8547)");
+      }
+      return;
+    }
+    ByteBuffer[] pages = allocatePages(length);
+    if (pages == null) {
+      stats.failInsert();
+      return;
+    }
+    ByteBuffer serialized = ByteBuffer.allocate(length);
+    buf.serialize(serialized);
+    pool.write(pages, serialized.array(), serialized.arrayOffset(), length);
+    Node node = new Node(cacheKey, buf.getDeserializer(), buf.getBlockType(), pages, length,
+        pool.getPageSize(), inMemory);
+    if (map.putIfAbsent(cacheKey, node) != null) {
+      pool.free(pages);
+      return;
+    }
+    updateSizeMetrics(node, false);
+
+    List<Node> evicted;
+    policyLock.lock();
+    try {
+      drainReadBuffer();
+      sketch.increment(cacheKey.hashCode());
+      // Evicted by someone else in the meantime
+      if (node.evicted) {
+        return;
+      }
+      if (inMemory) {
+        protectedQueue.add(node, Segment.PROTECTED);
+      } else {
+        window.add(node, Segment.WINDOW);
+      }
+      evicted = evictEntries();
+    } finally {
+      policyLock.unlock();
+    }
+    releaseEvicted(evicted);
+  }
+
+  /**
+   * @return pages for {@code length} bytes, evicting blocks to free them if the pool is full, or
+   *         null if not enough could be freed
+   */
+  private ByteBuffer[] allocatePages(int length) {
+    ByteBuffer[] pages = pool.allocate(length);
+    if (pages != null) {
+      return pages;
+    }
+    List<Node> evicted;
+    policyLock.lock();
+    try {
+      drainReadBuffer();
+      evicted = evictForPages(pool.getPageCount(length) * (long) pool.getPageSize());
+    } finally {
+      policyLock.unlock();
+    }
+    releaseEvicted(evicted);
+    return pool.allocate(length);
+  }
+
+  /**
+   * @return the block in the pages of {@code node}, lent out until it is returned with
+   *         {@link #returnBlock(BlockCacheKey, Cacheable)}, or null if the node was evicted
+   */
+  private Cacheable readBlock(Node node) {
+    if (!node.retain()) {
+      return null;
+    }
+    if (node.evicted) {
+      release(node);
+      return null;
+    }
+    Cacheable block;
+    try {
+      block = node.deserializer.deserialize(pool.wrap(node.pages, node.length), true,
+          MemoryType.SHARED);
+    } catch (IOException ioe) {
+      release(node);
+      // Only possible if the block's own deserializer rejects bytes it serialized itself.
+      LOG.warn("Failed deserializing cached block " + node.key + ", evicting it", ioe);
+      evictBlock(node.key);
+      return null;
+    }
+    node.lend(block);
+    return block;
+  }
+
+  /**
+   * @return a copy on the heap of the block in the pages of {@code node}, or null if its pages
+   *         are gone
+   */
+  private Cacheable copyBlock(Node node) {
+    if (!node.retain()) {
+      return null;
+    }
+    try {
+      byte[] bytes = pool.read(node.pages, node.length);
+      return node.deserializer.deserialize(new SingleByteBuff(ByteBuffer.wrap(bytes)), true,
+          MemoryType.EXCLUSIVE);
+    } catch (IOException ioe) {
+      LOG.warn("Failed deserializing cached block " + node.key, ioe);
+      return null;
+    } finally {
+      release(node);
+    }
+  }
+
+  /**
+   * Drops a reference to the pages of {@code node}. With the last, the node leaves the map and
+   * its pages go back to the pool.
+   */
+  private void release(Node node) {
+    if (node.refCount.decrementAndGet() == 0) {
+      map.remove(node.key, node);
+      pool.free(node.pages);
+    }
+  }
+
+  @Override
+  public boolean evictBlock(BlockCacheKey cacheKey) {
+    Node node = map.get(cacheKey);
+    if (node == null) {
+      return false;
+    }
+    policyLock.lock();
+    try {
+      if (node.evicted) {
+        return false;
+      }
+      node.evicted = true;
+      unlink(node);
+    } finally {
+      policyLock.unlock();
+    }
+    updateSizeMetrics(node, true);
+    release(node);
+    return true;
+  }
+
+  /**
+   * Evicts all blocks for a specific HFile. This is a linear-time search through all blocks in
+   * the cache.
+   *
+   * @return the number of blocks evicted
+   */
+  @Override
+  public int evictBlocksByHfileName(String hfileName) {
+    int numEvicted = 0;
+    for (BlockCacheKey key : map.keySet()) {
+      if (key.getHfileName().equals(hfileName) && evictBlock(key)) {
+        ++numEvicted;
+      }
+    }
+    if (victimCache != null) {
+      numEvicted += victimCache.evictBlocksByHfileName(hfileName);
+    }
+    return numEvicted;
+  }
+
+  @Override
+  public void returnBlock(BlockCacheKey cacheKey, Cacheable block) {
+    if (block.getMemoryType() == MemoryType.SHARED) {
+      Node node = map.get(cacheKey);
+      if (node != null && node.takeBack(block)) {
+        release(node);
+        return;
+      }
+    }
+    // Not lent by us, so served from the victim cache.
+    if (victimCache != null) {
+      victimCache.returnBlock(cacheKey, block);
+    }
+  }
+
+  /**
+   * @return the number of blocks lent out of the entry for {@code cacheKey} and not returned yet
+   */
+  @VisibleForTesting
+  int getRefCount(BlockCacheKey cacheKey) {
+    Node node = map.get(cacheKey);
+    return node == null ? 0 : node.getLentCount();
+  }
+
+  @Override
+  public void shutdown() {
+    if (victimCache != null) {
+      victimCache.shutdown();
+    }
+    this.scheduleThreadPool.shutdown();
+  }
+
+  @Override
+  @JsonIgnore
+  public BlockCache[] getBlockCaches() {
+    if (victimCache != null) {
+      return new BlockCache[] { this, this.victimCache };
+    }
+    return null;
+  }
+
+  @Override
+  public Iterator<CachedBlock> iterator() {
+    final Iterator<Node> iterator =
+        map.values().stream().filter(node -> !node.evicted).iterator();
+    return new Iterator<CachedBlock>() {
+      private final long now = System.nanoTime();
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public CachedBlock next() {
+        final Node node = iterator.next();
+        return new CachedBlock() {
+          @Override
+          public String toString() {
+            return BlockCacheUtil.toString(this, now);
+          }
+
+          @Override
+          public BlockPriority getBlockPriority() {
+            return node.getPriority();
+          }
+
+          @Override
+          public BlockType getBlockType() {
+            return node.blockType;
+          }
+
+          @Override
+          public long getOffset() {
+            return node.key.getOffset();
+          }
+
+          @Override
+          public long getSize() {
+            return node.weight;
+          }
+
+          @Override
+          public long getCachedTime() {
+            return node.cachedTime;
+          }
+
+          @Override
+          public String getFilename() {
+            return node.key.getHfileName();
+          }
+
+          @Override
+          public int compareTo(CachedBlock other) {
+            int diff = this.getFilename().compareTo(other.getFilename());
+            if (diff != 0) return diff;
+            diff = Long.compare(this.getOffset(), other.getOffset());
+            if (diff != 0) return diff;
+            if (other.getCachedTime() < 0 || this.getCachedTime() < 0) {
+              throw new IllegalStateException(this.getCachedTime() + ", " + other.getCachedTime());
+            }
+            return Long.compare(other.getCachedTime(), this.getCachedTime());
+          }
+
+          @Override
+          public int hashCode() {
+            return node.hashCode();
+          }
+
+          @Override
+          public boolean equals(Object obj) {
+            if (obj instanceof CachedBlock) {
+              CachedBlock cb = (CachedBlock) obj;
+              return compareTo(cb) == 0;
+            } else {
+              return false;
+            }
+          }
+        };
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  public void logStats() {
+    LOG.info("totalSize=" + StringUtils.byteDesc(getCurrentSize()) + ", "
+        + "heapSize=" + StringUtils.byteDesc(heapSize()) + ", "
+        + "offHeapUsedSize=" + StringUtils.byteDesc(getOffHeapUsedSize()) + ", "
+        + "freeSize=" + StringUtils.byteDesc(getFreeSize()) + ", "
+        + "max=" + StringUtils.byteDesc(this.maxSize) + ", "
+        + "blockCount=" + getBlockCount() + ", "
+        + "accesses=" + stats.getRequestCount() + ", "
+        + "hits=" + stats.getHitCount() + ", "
+        + "hitRatio=" + (stats.getHitCount() == 0
+          ? "0, " : (StringUtils.formatPercent(stats.getHitRatio(), 2) + ", "))
+        + "cachingAccesses=" + stats.getRequestCachingCount() + ", "
+        + "cachingHits=" + stats.getHitCachingCount() + ", "
+        + "cachingHitsRatio=" + (stats.getHitCachingCount() == 0
+          ? "0, " : (StringUtils.formatPercent(stats.getHitCachingRatio(), 2) + ", "))
+        + "evictions=" + stats.getEvictionCount() + ", "
+        + "evicted=" + stats.getEvictedCount());
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{maxSize=" + StringUtils.byteDesc(maxSize)
+        + ", currentSize=" + StringUtils.byteDesc(getCurrentSize())
+        + ", offHeapUsedSize=" + StringUtils.byteDesc(getOffHeapUsedSize()) + "}";
+  }
+
+  private void updateSizeMetrics(Node node, boolean evict) {
+    long weight = evict ? -node.weight : node.weight;
+    size.addAndGet(weight);
+    offHeapSize.add(evict ? -node.offHeapBytes() : node.offHeapBytes());
+    if (evict) {
+      elements.decrement();
+    } else {
+      elements.increment();
+    }
+    if (node.blockType != null && node.blockType.isData()) {
+      dataBlockSize.add(weight);
+      if (evict) {
+        dataBlockElements.decrement();
+      } else {
+        dataBlockElements.increment();
+      }
+    }
+  }
+
+  /**
+   * Records a hit on {@code node}, bringing the policy up to date once a buffer worth of hits has
+   * been recorded. Hits that are overwritten before they are drained are lost, which only makes
+   * the policy slightly less precise.
+   */
+  private void recordRead(Node node) {
+    long index = readBufferWriteCount.getAndIncrement();
+    readBuffer.lazySet((int) (index & (READ_BUFFER_SIZE - 1)), node);
+    if (((index + 1) & (READ_BUFFER_SIZE - 1)) == 0 && policyLock.tryLock()) {
+      try {
+        drainReadBuffer();
+      } finally {
+        policyLock.unlock();
+      }
+    }
+  }
+
+  private void drainReadBuffer() {
+    assert policyLock.isHeldByCurrentThread();
+    for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+      Node node = readBuffer.getAndSet(i, null);
+      if (node != null) {
+        onAccess(node);
+      }
+    }
+  }
+
+  private void onAccess(Node node) {
+    sketch.increment(node.key.hashCode());
+    switch (node.segment) {
+      case WINDOW:
+        window.moveToBack(node);
+        break;
+      case PROBATION:
+        probation.remove(node);
+        protectedQueue.add(node, Segment.PROTECTED);
+        demoteProtectedOverflow();
+        break;
+      case PROTECTED:
+        protectedQueue.moveToBack(node);
+        break;
+      default:
+        // Evicted since the read, nothing to do.
+        break;
+    }
+  }
+
+  private void demoteProtectedOverflow() {
+    long protectedMax = (long) ((maxSize - windowMax()) * protectedFactor);
+    while (protectedQueue.weight > protectedMax) {
+      Node demoted = protectedQueue.poll();
+      probation.add(demoted, Segment.PROBATION);
+    }
+  }
+
+  private long windowMax() {
+    return (long) (maxSize * windowFactor);
+  }
+
+  /**
+   * Moves blocks that overflow the admission window to the main region if the sketch rates them
+   * higher than what they would evict, and evicts until the cache fits in maxSize again.
+   * @return the blocks evicted, to be handed to the victim cache once the lock is released
+   */
+  private List<Node> evictEntries() {
+    assert policyLock.isHeldByCurrentThread();
+    List<Node> evicted = new ArrayList<>();
+    long windowMax = windowMax();
+    long mainMax = maxSize - windowMax;
+    while (window.weight > windowMax) {
+      Node candidate = window.poll();
+      while (candidate != null
+          && probation.weight + protectedQueue.weight + candidate.weight > mainMax) {
+        Node victim = probation.peek() != null ? probation.peek() : protectedQueue.peek();
+        if (victim == null) {
+          break;
+        }
+        if (sketch.frequency(candidate.key.hashCode())
+            > sketch.frequency(victim.key.hashCode())) {
+          evict(victim, evicted);
+        } else {
+          evict(candidate, evicted);
+          candidate = null;
+        }
+      }
+      if (candidate != null) {
+        probation.add(candidate, Segment.PROBATION);
+      }
+    }
+    demoteProtectedOverflow();
+    // In-memory blocks and shrinking may still leave us above the maximum.
+    while (size.get() > maxSize) {
+      Node victim = nextVictim();
+      if (victim == null) {
+        break;
+      }
+      evict(victim, evicted);
+    }
+    if (!evicted.isEmpty()) {
+      stats.evict();
+    }
+    return evicted;
+  }
+
+  /**
+   * Evicts until the pool has {@code bytes} of pages free once the evicted blocks are released.
+   * Needed when pages of evicted blocks are still being read, or when inserts race.
+   * @return the blocks evicted, to be released once the lock is released
+   */
+  private List<Node> evictForPages(long bytes) {
+    assert policyLock.isHeldByCurrentThread();
+    List<Node> evicted = new ArrayList<>();
+    long freed = 0;
+    while (pool.getUsedSize() - freed + bytes > pool.getCapacity()) {
+      Node victim = nextVictim();
+      if (victim == null) {
+        break;
+      }
+      evict(victim, evicted);
+      freed += victim.offHeapBytes();
+    }
+    if (!evicted.isEmpty()) {
+      stats.evict();
+    }
+    return evicted;
+  }
+
+  private Node nextVictim() {
+    Node victim = probation.peek();
+    if (victim == null) {
+      victim = window.peek();
+    }
+    if (victim == null) {
+      victim = protectedQueue.peek();
+    }
+    return victim;
+  }
+
+  private void evict(Node node, List<Node> evicted) {
+    // Linked nodes are not evicted yet, see evictBlock.
+    node.evicted = true;
+    unlink(node);
+    updateSizeMetrics(node, true);
+    stats.evicted(node.cachedTime, node.key.isPrimary());
+    evicted.add(node);
+  }
+
+  private void unlink(Node node) {
+    switch (node.segment) {
+      case WINDOW:
+        window.remove(node);
+        break;
+      case PROBATION:
+        probation.remove(node);
+        break;
+      case PROTECTED:
+        protectedQueue.remove(node);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Hands copies of the evicted blocks to the victim cache, if any, and releases their pages.
+   */
+  private void releaseEvicted(List<Node> evicted) {
+    for (Node node : evicted) {
+      Cacheable block = victimCache == null ? null : copyBlock(node);
+      release(node);
+      if (block == null) {
+        continue;
+      }
+      boolean inMemory = node.inMemory;
+      if (victimCache instanceof BucketCache) {
+        boolean wait = getCurrentSize() < maxSize;
+        ((BucketCache) victimCache).cacheBlockWithWait(node.key, block, inMemory, true, wait);
+      } else {
+        victimCache.cacheBlock(node.key, block, inMemory, false);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  long getWindowSize() {
+    return window.weight;
+  }
+
+  @VisibleForTesting
+  long getProtectedSize() {
+    return protectedQueue.weight;
+  }
+
+  @VisibleForTesting
+  void drainReadBufferForTest() {
+    policyLock.lock();
+    try {
+      drainReadBuffer();
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * A cached block and its position in the policy. Links and segment are guarded by policyLock.
+   */
+  private static final class Node {
+    final BlockCacheKey key;
+    final CacheableDeserializer<Cacheable> deserializer;
+    final BlockType blockType;
+    /** The pages the serialized block is in */
+    final ByteBuffer[] pages;
+    final int length;
+    final int pageSize;
+    final boolean inMemory;
+    final long weight;
+    final long cachedTime = System.nanoTime();
+    /**
+     * References to the pages: one held by the cache from the insert until the eviction, and one
+     * per block lent out of them or being copied out of them. The pages go back to the pool with
+     * the last reference, and cannot be referenced again after that.
+     */
+    final AtomicInteger refCount = new AtomicInteger(1);
+    /** Set once, under policyLock, when the cache drops its reference */
+    volatile boolean evicted;
+    /** The blocks lent out and not returned yet, by identity. Guarded by this. */
+    private Set<Cacheable> lent;
+
+    Segment segment = Segment.NONE;
+    Node prev;
+    Node next;
+
+    Node(BlockCacheKey key, CacheableDeserializer<Cacheable> deserializer, BlockType blockType,
+        ByteBuffer[] pages, int length, int pageSize, boolean inMemory) {
+      this.key = key;
+      this.deserializer = deserializer;
+      this.blockType = blockType;
+      this.pages = pages;
+      this.length = length;
+      this.pageSize = pageSize;
+      this.inMemory = inMemory;
+      this.weight = key.heapSize() + PER_BLOCK_OVERHEAD
+          + ClassSize.align(ClassSize.ARRAY + pages.length * ClassSize.REFERENCE)
+          + offHeapBytes();
+    }
+
+    long offHeapBytes() {
+      return (long) pages.length * pageSize;
+    }
+
+    /**
+     * @return false if the pages are already back in the pool
+     */
+    boolean retain() {
+      while (true) {
+        int count = refCount.get();
+        if (count == 0) {
+          return false;
+        }
+        if (refCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    synchronized void lend(Cacheable block) {
+      if (lent == null) {
+        lent = Collections.newSetFromMap(new IdentityHashMap<>());
+      }
+      lent.add(block);
+    }
+
+    /**
+     * @return false if {@code block} was not lent out of this node, and so is no reference to it
+     */
+    synchronized boolean takeBack(Cacheable block) {
+      return lent != null && lent.remove(block);
+    }
+
+    synchronized int getLentCount() {
+      return lent == null ? 0 : lent.size();
+    }
+
+    BlockPriority getPriority() {
+      if (inMemory) {
+        return BlockPriority.MEMORY;
+      }
+      return segment == Segment.PROTECTED ? BlockPriority.MULTI : BlockPriority.SINGLE;
+    }
+  }
+
+  /**
+   * Intrusive doubly linked list of nodes in access order, eldest first.
+   */
+  private static final class AccessQueue {
+    private Node head;
+    private Node tail;
+    long weight;
+
+    void add(Node node, Segment segment) {
+      node.segment = segment;
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      weight += node.weight;
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      node.segment = Segment.NONE;
+      weight -= node.weight;
+    }
+
+    void moveToBack(Node node) {
+      if (node != tail) {
+        Segment segment = node.segment;
+        remove(node);
+        add(node, segment);
+      }
+    }
+
+    Node peek() {
+      return head;
+    }
+
+    Node poll() {
+      Node node = head;
+      if (node != null) {
+        remove(node);
+      }
+      return node;
+    }
+  }
+}
@@ -549,6 +549,13 @@ public final class BucketAllocator {
     return this.buckets;
   }
 
+  /**
+   * @return the size of the region of the IOEngine each bucket spans
+   */
+  long getBucketCapacity() {
+    return this.bucketCapacity;
+  }
+
   void logStatistics() {
     IndexStatistics total = new IndexStatistics();
     IndexStatistics[] stats = getIndexStatistics(total);
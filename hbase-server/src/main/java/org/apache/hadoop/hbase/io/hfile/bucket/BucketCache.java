@@ -21,12 +21,8 @@
 package org.apache.hadoop.hbase.io.hfile.bucket;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -128,6 +124,11 @@ public class BucketCache implements BlockCache, HeapSize {
   /** Statistics thread */
   private static final int statThreadPeriod = 5 * 60;
 
+  /** Interval between checkpoints of the index of a persistent cache, in milliseconds */
+  static final String CHECKPOINT_INTERVAL_CONFIG_NAME =
+      "hbase.bucketcache.persistence.checkpoint.interval";
+  static final long DEFAULT_CHECKPOINT_INTERVAL = 5 * 60 * 1000;
+
   final static int DEFAULT_WRITER_THREADS = 3;
   final static int DEFAULT_WRITER_QUEUE_ITEMS = 64;
 
@@ -183,6 +184,8 @@ public class BucketCache implements BlockCache, HeapSize {
   private final BucketCacheStats cacheStats = new BucketCacheStats();
 
   private final String persistencePath;
+  // Journal and snapshot of backingMap, only set for a persistent IOEngine with a path
+  private final BucketCachePersistence persistence;
   private final long cacheCapacity;
   /** Approximate block size */
   private final long blockSize;
@@ -296,14 +299,21 @@ public class BucketCache implements BlockCache, HeapSize {
     this.backingMap = new ConcurrentHashMap<>((int) blockNumCapacity);
 
     if (ioEngine.isPersistent() && persistencePath != null) {
+      this.persistence = new BucketCachePersistence(new File(persistencePath), capacity,
+          ioEngine.getClass().getName());
       try {
         retrieveFromFile(bucketSizes);
       } catch (IOException ioex) {
         LOG.error("Can't restore from file because of", ioex);
-      } catch (ClassNotFoundException cnfe) {
-        LOG.error("Can't restore from file in rebuild because can't deserialise",cnfe);
-        throw new RuntimeException(cnfe);
       }
+      // Start journaling on top of a snapshot of whatever we restored.
+      try {
+        persistence.checkpoint(backingMap, deserialiserMap, bucketAllocator.getBucketCapacity());
+      } catch (IOException ioex) {
+        LOG.error("Can't persist restored bucket cache index", ioex);
+      }
+    } else {
+      this.persistence = null;
     }
     final String threadName = Thread.currentThread().getName();
     this.cacheEnabled = true;
@@ -319,6 +329,12 @@ public class BucketCache implements BlockCache, HeapSize {
     // every five minutes.
     this.scheduleThreadPool.scheduleAtFixedRate(new StatisticsThread(this),
         statThreadPeriod, statThreadPeriod, TimeUnit.SECONDS);
+    if (persistence != null) {
+      long checkpointInterval =
+          conf.getLong(CHECKPOINT_INTERVAL_CONFIG_NAME, DEFAULT_CHECKPOINT_INTERVAL);
+      this.scheduleThreadPool.scheduleAtFixedRate(this::checkpoint, checkpointInterval,
+          checkpointInterval, TimeUnit.MILLISECONDS);
+    }
     LOG.info("Started bucket cache; ioengine=" + ioEngineName +
         ", capacity=" + StringUtils.byteDesc(capacity) +
       ", blockSize=" + StringUtils.byteDesc(blockSize) + ", writerThreadNum=" +
@@ -487,6 +503,16 @@ public class BucketCache implements BlockCache, HeapSize {
   @Override
   public Cacheable getBlock(BlockCacheKey key, boolean caching, boolean repeat,
       boolean updateCacheMetrics) {
+    return getBlock(key, caching, repeat, updateCacheMetrics, true);
+  }
+
+  @Override
+  public Cacheable peekBlock(BlockCacheKey key) {
+    return getBlock(key, false, true, false, false);
+  }
+
+  private Cacheable getBlock(BlockCacheKey key, boolean caching, boolean repeat,
+      boolean updateCacheMetrics, boolean access) {
     if (!cacheEnabled) {
       return null;
     }
@@ -495,13 +521,16 @@ public class BucketCache implements BlockCache, HeapSize {
       if (updateCacheMetrics) {
         cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
       }
-      re.access(accessCount.incrementAndGet());
+      if (access) {
+        re.access(accessCount.incrementAndGet());
+      }
       return re.getData();
     }
     BucketEntry bucketEntry = backingMap.get(key);
     if (bucketEntry != null) {
       long start = System.nanoTime();
       ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
+      boolean staleEntry = false;
       try {
         lock.readLock().lock();
         // We can not read here even if backingMap does contain the given key because its offset
@@ -514,21 +543,33 @@ public class BucketCache implements BlockCache, HeapSize {
           if (LOG.isTraceEnabled()) {
             LOG.trace("Read offset=" + bucketEntry.offset() + ", len=" + len);
           }
-          Cacheable cachedBlock = ioEngine.read(bucketEntry.offset(), len,
-              bucketEntry.deserializerReference(this.deserialiserMap));
-          long timeTaken = System.nanoTime() - start;
-          if (updateCacheMetrics) {
-            cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
-            cacheStats.ioHit(timeTaken);
+          CacheableDeserializer<Cacheable> deserializer =
+              bucketEntry.deserializerReference(this.deserialiserMap);
+          if (bucketEntry.unverified) {
+            deserializer =
+                BucketCachePersistence.verifyingDeserializer(deserializer, bucketEntry.checksum);
           }
-          if (cachedBlock.getMemoryType() == MemoryType.SHARED) {
-            bucketEntry.refCount.incrementAndGet();
-          }
-          bucketEntry.access(accessCount.incrementAndGet());
-          if (this.ioErrorStartTime > 0) {
-            ioErrorStartTime = -1;
+          Cacheable cachedBlock = ioEngine.read(bucketEntry.offset(), len, deserializer);
+          if (cachedBlock != null) {
+            bucketEntry.unverified = false;
+            long timeTaken = System.nanoTime() - start;
+            if (updateCacheMetrics) {
+              cacheStats.hit(caching, key.isPrimary(), key.getBlockType());
+              cacheStats.ioHit(timeTaken);
+            }
+            if (cachedBlock.getMemoryType() == MemoryType.SHARED) {
+              bucketEntry.refCount.incrementAndGet();
+            }
+            if (access) {
+              bucketEntry.access(accessCount.incrementAndGet());
+            }
+            if (this.ioErrorStartTime > 0) {
+              ioErrorStartTime = -1;
+            }
+            return cachedBlock;
           }
-          return cachedBlock;
+          // Restored entry whose slot was rewritten after it was persisted.
+          staleEntry = true;
         }
       } catch (IOException ioex) {
         LOG.error("Failed reading block " + key + " from bucket cache", ioex);
@@ -536,6 +577,12 @@ public class BucketCache implements BlockCache, HeapSize {
       } finally {
         lock.readLock().unlock();
       }
+      if (staleEntry) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Checksum mismatch on restored block " + key + ", evicting it");
+        }
+        forceEvict(key);
+      }
     }
     if (!repeat && updateCacheMetrics) {
       cacheStats.miss(caching, key.isPrimary(), key.getBlockType());
@@ -545,6 +592,9 @@ public class BucketCache implements BlockCache, HeapSize {
 
   @VisibleForTesting
   void blockEvicted(BlockCacheKey cacheKey, BucketEntry bucketEntry, boolean decrementBlockNumber) {
+    if (persistence != null) {
+      persistence.logRemove(cacheKey);
+    }
     bucketAllocator.freeBlock(bucketEntry.offset());
     realCacheSize.add(-1 * bucketEntry.getLength());
     blocksByHFile.remove(cacheKey);
@@ -966,6 +1016,9 @@ public class BucketCache implements BlockCache, HeapSize {
           }
           BucketEntry bucketEntry =
             re.writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize);
+          if (persistence != null && bucketEntry != null) {
+            bucketEntry.setChecksum(BucketCachePersistence.checksum(re.getData()));
+          }
           // Successfully added.  Up index and add bucketEntry. Clear io exceptions.
           bucketEntries[index] = bucketEntry;
           if (ioErrorStartTime > 0) {
@@ -1018,6 +1071,9 @@ public class BucketCache implements BlockCache, HeapSize {
         RAMQueueEntry ramCacheEntry = ramCache.remove(key);
         if (ramCacheEntry != null) {
           heapSize.add(-1 * entries.get(i).getData().heapSize());
+          if (persistence != null && bucketEntries[i] != null) {
+            logAdd(key, bucketEntries[i]);
+          }
         } else if (bucketEntries[i] != null){
           // Block should have already been evicted. Remove it and free space.
           ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntries[i].offset());
@@ -1032,6 +1088,10 @@ public class BucketCache implements BlockCache, HeapSize {
         }
       }
 
+      if (persistence != null) {
+        persistence.flush();
+      }
+
       long used = bucketAllocator.getUsedSize();
       if (used > acceptableSize()) {
         freeSpace("Used=" + used + " > acceptable=" + acceptableSize());
@@ -1060,72 +1120,72 @@ public class BucketCache implements BlockCache, HeapSize {
     return receptacle;
   }
 
-  private void persistToFile() throws IOException {
-    assert !cacheEnabled;
-    FileOutputStream fos = null;
-    ObjectOutputStream oos = null;
+  /**
+   * Journals a block once it is in backingMap. Holding the offset lock keeps an eviction from
+   * journaling its REMOVE before our ADD.
+   */
+  private void logAdd(BlockCacheKey key, BucketEntry bucketEntry) {
+    ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
     try {
-      if (!ioEngine.isPersistent()) {
-        throw new IOException("Attempt to persist non-persistent cache mappings!");
+      lock.readLock().lock();
+      if (backingMap.get(key) == bucketEntry) {
+        persistence.logAdd(key, bucketEntry, deserialiserMap.unmap(bucketEntry.deserialiserIndex));
       }
-      fos = new FileOutputStream(persistencePath, false);
-      oos = new ObjectOutputStream(fos);
-      oos.writeLong(cacheCapacity);
-      oos.writeUTF(ioEngine.getClass().getName());
-      oos.writeUTF(backingMap.getClass().getName());
-      oos.writeObject(deserialiserMap);
-      oos.writeObject(backingMap);
     } finally {
-      if (oos != null) oos.close();
-      if (fos != null) fos.close();
+      lock.readLock().unlock();
     }
   }
 
-  @SuppressWarnings("unchecked")
-  private void retrieveFromFile(int[] bucketSizes) throws IOException, BucketAllocatorException,
-      ClassNotFoundException {
-    File persistenceFile = new File(persistencePath);
-    if (!persistenceFile.exists()) {
-      return;
+  private void persistToFile() throws IOException {
+    assert !cacheEnabled;
+    if (!ioEngine.isPersistent()) {
+      throw new IOException("Attempt to persist non-persistent cache mappings!");
     }
+    persistence.checkpoint(backingMap, deserialiserMap, bucketAllocator.getBucketCapacity());
+    persistence.close();
+  }
+
+  /**
+   * Rebuilds backingMap and the allocator from the persisted snapshot and journal. Works after
+   * both clean shutdowns and crashes; in the latter case entries whose content was overwritten
+   * after their last journal record are caught by checksum on first read.
+   */
+  private void retrieveFromFile(int[] bucketSizes) throws IOException {
     assert !cacheEnabled;
-    FileInputStream fis = null;
-    ObjectInputStream ois = null;
+    if (!ioEngine.isPersistent()) {
+      throw new IOException("Attempt to restore non-persistent cache mappings!");
+    }
+    BucketCachePersistence.RestoredIndex index = persistence.restore();
+    if (index.backingMap.isEmpty()) {
+      return;
+    }
+    LongAdder restoredSize = new LongAdder();
+    BucketAllocator allocator = new BucketAllocator(cacheCapacity, bucketSizes,
+        index.backingMap, restoredSize);
+    bucketAllocator = allocator;
+    realCacheSize.add(restoredSize.sum());
+    deserialiserMap = index.deserialiserMap;
+    backingMap = index.backingMap;
+    blocksByHFile.addAll(backingMap.keySet());
+    blockNumber.add(backingMap.size());
+    accessCount.set(index.maxAccessCounter);
+    LOG.info("Restored " + backingMap.size() + " blocks from " + persistencePath + ", replayed "
+        + index.replayedRecords + " journal records, dropped " + index.droppedSections
+        + " damaged sections");
+  }
+
+  /**
+   * Snapshots backingMap of a persistent cache so the journal to replay on restart stays short.
+   */
+  @VisibleForTesting
+  void checkpoint() {
+    if (!cacheEnabled || !persistence.needsCheckpoint()) {
+      return;
+    }
     try {
-      if (!ioEngine.isPersistent())
-        throw new IOException(
-            "Attempt to restore non-persistent cache mappings!");
-      fis = new FileInputStream(persistencePath);
-      ois = new ObjectInputStream(fis);
-      long capacitySize = ois.readLong();
-      if (capacitySize != cacheCapacity)
-        throw new IOException("Mismatched cache capacity:"
-            + StringUtils.byteDesc(capacitySize) + ", expected: "
-            + StringUtils.byteDesc(cacheCapacity));
-      String ioclass = ois.readUTF();
-      String mapclass = ois.readUTF();
-      if (!ioEngine.getClass().getName().equals(ioclass))
-        throw new IOException("Class name for IO engine mismatch: " + ioclass
-            + ", expected:" + ioEngine.getClass().getName());
-      if (!backingMap.getClass().getName().equals(mapclass))
-        throw new IOException("Class name for cache map mismatch: " + mapclass
-            + ", expected:" + backingMap.getClass().getName());
-      UniqueIndexMap<Integer> deserMap = (UniqueIndexMap<Integer>) ois
-          .readObject();
-      ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMapFromFile =
-          (ConcurrentHashMap<BlockCacheKey, BucketEntry>) ois.readObject();
-      BucketAllocator allocator = new BucketAllocator(cacheCapacity, bucketSizes,
-          backingMapFromFile, realCacheSize);
-      bucketAllocator = allocator;
-      deserialiserMap = deserMap;
-      backingMap = backingMapFromFile;
-    } finally {
-      if (ois != null) ois.close();
-      if (fis != null) fis.close();
-      if (!persistenceFile.delete()) {
-        throw new IOException("Failed deleting persistence file "
-            + persistenceFile.getAbsolutePath());
-      }
+      persistence.checkpoint(backingMap, deserialiserMap, bucketAllocator.getBucketCapacity());
+    } catch (IOException ioex) {
+      LOG.warn("Failed checkpointing bucket cache index to " + persistencePath, ioex);
     }
   }
 
@@ -1281,6 +1341,10 @@ public class BucketCache implements BlockCache, HeapSize {
     // Set this when we were not able to forcefully evict the block
     private volatile boolean markedForEvict;
     private AtomicInteger refCount = new AtomicInteger(0);
+    // CRC32 of the content written to the IOEngine, only maintained for a persistent cache
+    private int checksum;
+    // Set on entries read back from a persisted index until their content has been verified
+    private volatile boolean unverified;
 
     /**
      * Time this block was cached.  Presumes we are created just before we are added to the cache.
@@ -1342,6 +1406,27 @@ public class BucketCache implements BlockCache, HeapSize {
       return this.priority;
     }
 
+    long getAccessCounter() {
+      return accessCounter;
+    }
+
+    int getChecksum() {
+      return checksum;
+    }
+
+    void setChecksum(int checksum) {
+      this.checksum = checksum;
+    }
+
+    /**
+     * Marks this entry as read back from a persisted index. Its content is verified against
+     * {@code checksum} on first read as the slot may have been reused after it was persisted.
+     */
+    void setRestored(int checksum) {
+      this.checksum = checksum;
+      this.unverified = true;
+    }
+
     public long getCachedTime() {
       return cachedTime;
     }
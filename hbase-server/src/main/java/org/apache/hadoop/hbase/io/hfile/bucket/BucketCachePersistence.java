@@ -0,0 +1,584 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.Cacheable.MemoryType;
+import org.apache.hadoop.hbase.io.hfile.CacheableDeserializer;
+import org.apache.hadoop.hbase.io.hfile.HFileBlock;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Crash consistent on-disk index of a persistent {@link BucketCache}.
+ * <p>
+ * The index is a snapshot file plus a sequence of journal files. The snapshot holds the whole
+ * backing map as of the last checkpoint, written as one section per bucket with a CRC32 over each
+ * section, so a torn or damaged snapshot only loses the buckets whose sections fail verification.
+ * A journal is an append-only log of ADD and REMOVE records written as blocks are flushed to and
+ * evicted from the IOEngine. Every record carries its own CRC32 and replay stops at the first
+ * record failing it, which is what a crash in the middle of an append leaves behind.
+ * <p>
+ * A checkpoint rolls the journal over to a new generation, writes a fresh snapshot to a temporary
+ * file, renames it over the previous one and only then deletes the journals it supersedes.
+ * Restore loads the snapshot and replays every journal from the generation the snapshot names
+ * onwards, so a crash at any point of a checkpoint still recovers the latest journaled state.
+ * <p>
+ * The journal is flushed once per writer batch but not synced, so after a crash it may lag
+ * behind the IOEngine and a restored entry may point at a slot which was reused after its last
+ * record. Entries therefore carry the CRC32 of the block content they were written with, and
+ * {@link BucketCache} verifies it on the first read of each restored entry, see
+ * {@link #verifyingDeserializer(CacheableDeserializer, int)}.
+ */
+@InterfaceAudience.Private
+final class BucketCachePersistence {
+  private static final Log LOG = LogFactory.getLog(BucketCachePersistence.class);
+
+  private static final int MAGIC = 0x48424349; // "HBCI"
+  private static final int VERSION = 1;
+  private static final int END_OF_SECTIONS = -1;
+
+  private static final byte ADD = 1;
+  private static final byte REMOVE = 2;
+
+  private static final String JOURNAL_INFIX = ".journal.";
+  private static final String TMP_SUFFIX = ".tmp";
+  private static final int JOURNAL_BUFFER_SIZE = 64 * 1024;
+
+  private final File snapshotFile;
+  private final long capacity;
+  private final String ioEngineClass;
+
+  /** Serializes checkpoints against each other; journal appends are guarded by {@code this}. */
+  private final Object checkpointLock = new Object();
+
+  private FileOutputStream journalFileStream;
+  private DataOutputStream journal;
+  private long journalGeneration;
+  private long journalRecords;
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+  private final DataOutputStream record = new DataOutputStream(recordBuffer);
+  private final CRC32 recordCrc = new CRC32();
+
+  /**
+   * The backing map read back by {@link BucketCachePersistence#restore()}.
+   */
+  static final class RestoredIndex {
+    final ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMap = new ConcurrentHashMap<>();
+    final UniqueIndexMap<Integer> deserialiserMap = new UniqueIndexMap<>();
+    long maxAccessCounter;
+    int droppedSections;
+    long replayedRecords;
+  }
+
+  BucketCachePersistence(File snapshotFile, long capacity, String ioEngineClass) {
+    this.snapshotFile = snapshotFile;
+    this.capacity = capacity;
+    this.ioEngineClass = ioEngineClass;
+  }
+
+  /**
+   * Reads back the snapshot and replays the journals written after it. Returns an empty index if
+   * nothing was persisted or if it was persisted for an IOEngine of another type or capacity.
+   */
+  RestoredIndex restore() throws IOException {
+    RestoredIndex index = new RestoredIndex();
+    if (!snapshotFile.exists()) {
+      // Journals are only started by a checkpoint, so without a snapshot any journal left on disk
+      // is stale, for example from before a journal failure.
+      deleteJournals(Long.MAX_VALUE);
+      return index;
+    }
+    long firstGeneration;
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+      firstGeneration = readSnapshot(in, index);
+    }
+    if (firstGeneration < 0) {
+      return new RestoredIndex();
+    }
+    for (Map.Entry<Long, File> journalFile : listJournals().entrySet()) {
+      if (journalFile.getKey() >= firstGeneration) {
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(journalFile.getValue())))) {
+          replayJournal(in, index);
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Writes a snapshot of the given backing map and starts a new journal. Changes to the map made
+   * while the snapshot is being written must be logged to the journal by the caller.
+   * @param bucketCapacity the size of the IOEngine region each bucket spans
+   */
+  void checkpoint(Map<BlockCacheKey, BucketEntry> backingMap,
+      UniqueIndexMap<Integer> deserialiserMap, long bucketCapacity) throws IOException {
+    synchronized (checkpointLock) {
+      long generation = rollJournal();
+      File tmpFile = new File(snapshotFile.getPath() + TMP_SUFFIX);
+      try (FileOutputStream fos = new FileOutputStream(tmpFile, false)) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        writeSnapshot(out, generation, backingMap, deserialiserMap, bucketCapacity);
+        out.flush();
+        fos.getFD().sync();
+      }
+      if (!tmpFile.renameTo(snapshotFile)) {
+        // Not atomic but only reachable on platforms which do not replace on rename.
+        if (!snapshotFile.delete() || !tmpFile.renameTo(snapshotFile)) {
+          throw new IOException("Failed renaming " + tmpFile + " to " + snapshotFile);
+        }
+      }
+      deleteJournals(generation);
+    }
+  }
+
+  /**
+   * @return true if anything was journaled since the last checkpoint, or if journaling stopped
+   *   after a failure and only a checkpoint can resume it
+   */
+  synchronized boolean needsCheckpoint() {
+    return journal == null || journalRecords > 0;
+  }
+
+  /**
+   * Logs that {@code entry} was written to the IOEngine with the given deserialiser.
+   */
+  synchronized void logAdd(BlockCacheKey key, BucketEntry entry, int deserialiserId) {
+    if (journal == null) {
+      return;
+    }
+    try {
+      recordBuffer.reset();
+      writeKey(record, key);
+      writeEntry(record, entry, deserialiserId);
+      appendRecord(ADD);
+    } catch (IOException ioe) {
+      journalFailed(ioe);
+    }
+  }
+
+  /**
+   * Logs that the block cached under {@code key} was freed.
+   */
+  synchronized void logRemove(BlockCacheKey key) {
+    if (journal == null) {
+      return;
+    }
+    try {
+      recordBuffer.reset();
+      writeKey(record, key);
+      appendRecord(REMOVE);
+    } catch (IOException ioe) {
+      journalFailed(ioe);
+    }
+  }
+
+  /**
+   * Pushes buffered journal records to the OS. This does not sync them to the device; restore
+   * copes with a journal which lags behind the IOEngine.
+   */
+  synchronized void flush() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.flush();
+    } catch (IOException ioe) {
+      journalFailed(ioe);
+    }
+  }
+
+  /**
+   * Closes the current journal, deleting it if the last checkpoint already covers everything.
+   */
+  synchronized void close() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } catch (IOException ioe) {
+      LOG.warn("Failed closing bucket cache journal", ioe);
+    }
+    journal = null;
+    journalFileStream = null;
+    if (journalRecords == 0 && !journalFile(journalGeneration).delete()) {
+      LOG.warn("Failed deleting empty journal " + journalFile(journalGeneration));
+    }
+  }
+
+  private synchronized long rollJournal() throws IOException {
+    if (journal != null) {
+      journal.flush();
+      journalFileStream.getFD().sync();
+      journal.close();
+    }
+    long generation = journalGeneration + 1;
+    for (Long existing : listJournals().keySet()) {
+      generation = Math.max(generation, existing + 1);
+    }
+    journalFileStream = new FileOutputStream(journalFile(generation), false);
+    journal =
+        new DataOutputStream(new BufferedOutputStream(journalFileStream, JOURNAL_BUFFER_SIZE));
+    journalGeneration = generation;
+    journalRecords = 0;
+    return generation;
+  }
+
+  private void appendRecord(byte type) throws IOException {
+    record.flush();
+    recordCrc.reset();
+    recordCrc.update(type);
+    recordCrc.update(recordBuffer.toByteArray(), 0, recordBuffer.size());
+    journal.writeByte(type);
+    journal.writeInt(recordBuffer.size());
+    recordBuffer.writeTo(journal);
+    journal.writeInt((int) recordCrc.getValue());
+    journalRecords++;
+  }
+
+  /**
+   * Once an append failed the journal no longer describes the cache, so we stop journaling and
+   * drop what is on disk, the snapshot and all the journals, so that a restart before the next
+   * checkpoint does not replay a stale journal. The next checkpoint writes a complete snapshot
+   * again.
+   */
+  private void journalFailed(IOException ioe) {
+    LOG.warn("Failed appending to bucket cache journal, dropping persisted index until the next "
+        + "checkpoint", ioe);
+    try {
+      journal.close();
+    } catch (IOException e) {
+      // Ignore, we are discarding this journal anyway.
+    }
+    journal = null;
+    journalFileStream = null;
+    if (snapshotFile.exists() && !snapshotFile.delete()) {
+      LOG.warn("Failed deleting persistence file " + snapshotFile);
+    }
+    deleteJournals(Long.MAX_VALUE);
+  }
+
+  /**
+   * Deletes the journals of the generations before the given one.
+   */
+  private void deleteJournals(long beforeGeneration) {
+    for (Map.Entry<Long, File> journalFile : listJournals().entrySet()) {
+      if (journalFile.getKey() < beforeGeneration && !journalFile.getValue().delete()) {
+        LOG.warn("Failed deleting superseded journal " + journalFile.getValue());
+      }
+    }
+  }
+
+  private void writeSnapshot(DataOutputStream out, long generation,
+      Map<BlockCacheKey, BucketEntry> backingMap, UniqueIndexMap<Integer> deserialiserMap,
+      long bucketCapacity) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(capacity);
+    out.writeUTF(ioEngineClass);
+    out.writeLong(generation);
+
+    List<Map.Entry<BlockCacheKey, BucketEntry>> entries = new ArrayList<>(backingMap.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<BlockCacheKey, BucketEntry>>() {
+      @Override
+      public int compare(Map.Entry<BlockCacheKey, BucketEntry> a,
+          Map.Entry<BlockCacheKey, BucketEntry> b) {
+        return Long.compare(a.getValue().offset(), b.getValue().offset());
+      }
+    });
+    ByteArrayOutputStream sectionBuffer = new ByteArrayOutputStream();
+    DataOutputStream section = new DataOutputStream(sectionBuffer);
+    CRC32 crc = new CRC32();
+    int i = 0;
+    while (i < entries.size()) {
+      long bucketNo = entries.get(i).getValue().offset() / bucketCapacity;
+      sectionBuffer.reset();
+      int count = 0;
+      for (; i < entries.size() && entries.get(i).getValue().offset() / bucketCapacity == bucketNo;
+          i++) {
+        BucketEntry entry = entries.get(i).getValue();
+        writeKey(section, entries.get(i).getKey());
+        writeEntry(section, entry, deserialiserMap.unmap(entry.deserialiserIndex));
+        count++;
+      }
+      section.flush();
+      crc.reset();
+      crc.update(sectionBuffer.toByteArray(), 0, sectionBuffer.size());
+      out.writeInt((int) bucketNo);
+      out.writeInt(count);
+      out.writeInt(sectionBuffer.size());
+      sectionBuffer.writeTo(out);
+      out.writeLong(crc.getValue());
+    }
+    out.writeInt(END_OF_SECTIONS);
+  }
+
+  /**
+   * @return the first journal generation to replay on top of the snapshot, or -1 if the snapshot
+   *   is unusable
+   */
+  private long readSnapshot(DataInputStream in, RestoredIndex index) throws IOException {
+    long generation;
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        LOG.warn("Unknown format of persistence file " + snapshotFile + ", ignoring it");
+        return -1;
+      }
+      long persistedCapacity = in.readLong();
+      String persistedIOEngine = in.readUTF();
+      if (persistedCapacity != capacity || !ioEngineClass.equals(persistedIOEngine)) {
+        LOG.warn("Persistence file " + snapshotFile + " was written for " + persistedIOEngine
+            + " of capacity " + persistedCapacity + ", expected " + ioEngineClass + " of capacity "
+            + capacity + ", ignoring it");
+        return -1;
+      }
+      generation = in.readLong();
+    } catch (EOFException e) {
+      LOG.warn("Truncated persistence file " + snapshotFile + ", ignoring it");
+      return -1;
+    }
+    CRC32 crc = new CRC32();
+    long remaining = snapshotFile.length();
+    try {
+      while (true) {
+        int bucketNo = in.readInt();
+        if (bucketNo == END_OF_SECTIONS) {
+          break;
+        }
+        int count = in.readInt();
+        int length = in.readInt();
+        if (count < 0 || length < 0 || length > remaining) {
+          // The framing itself is damaged, nothing after this point can be trusted.
+          index.droppedSections++;
+          break;
+        }
+        byte[] section = new byte[length];
+        in.readFully(section);
+        long expected = in.readLong();
+        crc.reset();
+        crc.update(section, 0, length);
+        if (crc.getValue() != expected) {
+          index.droppedSections++;
+          continue;
+        }
+        DataInputStream sectionIn = new DataInputStream(new ByteArrayInputStream(section));
+        for (int i = 0; i < count; i++) {
+          BlockCacheKey key = readKey(sectionIn);
+          index.backingMap.put(key, readEntry(sectionIn, index));
+        }
+      }
+    } catch (EOFException e) {
+      index.droppedSections++;
+    }
+    if (index.droppedSections > 0) {
+      LOG.warn("Dropped " + index.droppedSections + " damaged sections of persistence file "
+          + snapshotFile);
+    }
+    return generation;
+  }
+
+  private void replayJournal(DataInputStream in, RestoredIndex index) throws IOException {
+    CRC32 crc = new CRC32();
+    while (true) {
+      byte type;
+      byte[] payload;
+      try {
+        type = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > JOURNAL_BUFFER_SIZE) {
+          return;
+        }
+        payload = new byte[length];
+        in.readFully(payload);
+        crc.reset();
+        crc.update(type);
+        crc.update(payload, 0, length);
+        if (in.readInt() != (int) crc.getValue()) {
+          return;
+        }
+      } catch (EOFException e) {
+        // A torn tail is expected after a crash.
+        return;
+      }
+      DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(payload));
+      BlockCacheKey key = readKey(recordIn);
+      if (type == ADD) {
+        index.backingMap.put(key, readEntry(recordIn, index));
+      } else if (type == REMOVE) {
+        index.backingMap.remove(key);
+      } else {
+        return;
+      }
+      index.replayedRecords++;
+    }
+  }
+
+  private static void writeKey(DataOutputStream out, BlockCacheKey key) throws IOException {
+    out.writeUTF(key.getHfileName());
+    out.writeLong(key.getOffset());
+    out.writeBoolean(key.isPrimary());
+    out.writeByte(key.getBlockType() == null ? -1 : key.getBlockType().ordinal());
+  }
+
+  private static BlockCacheKey readKey(DataInputStream in) throws IOException {
+    String hfileName = in.readUTF();
+    long offset = in.readLong();
+    boolean primary = in.readBoolean();
+    int blockType = in.readByte();
+    return new BlockCacheKey(hfileName, offset, primary,
+        blockType < 0 ? null : BlockType.values()[blockType]);
+  }
+
+  private static void writeEntry(DataOutputStream out, BucketEntry entry, int deserialiserId)
+      throws IOException {
+    out.writeLong(entry.offset());
+    out.writeInt(entry.getLength());
+    out.writeInt(deserialiserId);
+    out.writeLong(entry.getAccessCounter());
+    out.writeBoolean(entry.getPriority() == BlockPriority.MEMORY);
+    out.writeInt(entry.getChecksum());
+  }
+
+  private static BucketEntry readEntry(DataInputStream in, RestoredIndex index)
+      throws IOException {
+    long offset = in.readLong();
+    int length = in.readInt();
+    int deserialiserId = in.readInt();
+    long accessCounter = in.readLong();
+    boolean inMemory = in.readBoolean();
+    int checksum = in.readInt();
+    // Restored entries start out as single access so that blocks of files compacted away while
+    // we were down are the first to be evicted.
+    BucketEntry entry = new BucketEntry(offset, length, accessCounter, inMemory);
+    entry.deserialiserIndex = (byte) index.deserialiserMap.map(deserialiserId);
+    entry.setRestored(checksum);
+    index.maxAccessCounter = Math.max(index.maxAccessCounter, accessCounter);
+    return entry;
+  }
+
+  private File journalFile(long generation) {
+    return new File(snapshotFile.getPath() + JOURNAL_INFIX + generation);
+  }
+
+  private TreeMap<Long, File> listJournals() {
+    TreeMap<Long, File> journals = new TreeMap<>();
+    File dir = snapshotFile.getAbsoluteFile().getParentFile();
+    String prefix = snapshotFile.getName() + JOURNAL_INFIX;
+    File[] files = dir == null ? null : dir.listFiles();
+    if (files == null) {
+      return journals;
+    }
+    for (File file : files) {
+      if (file.getName().startsWith(prefix)) {
+        try {
+          journals.put(Long.parseLong(file.getName().substring(prefix.length())), file);
+        } catch (NumberFormatException e) {
+          // Not one of ours.
+        }
+      }
+    }
+    return journals;
+  }
+
+  /**
+   * @return the CRC32 of the bytes {@link BucketCache} writes to the IOEngine for {@code data}
+   */
+  static int checksum(Cacheable data) {
+    CRC32 crc = new CRC32();
+    if (data instanceof HFileBlock) {
+      // Mirrors RAMQueueEntry#writeToCache: the block buffer followed by its metadata.
+      HFileBlock block = (HFileBlock) data;
+      update(crc, block.getBufferReadOnly());
+      ByteBuffer metadata = block.getMetaData();
+      crc.update(metadata.array(), metadata.arrayOffset(), metadata.limit());
+    } else {
+      ByteBuffer bb = ByteBuffer.allocate(data.getSerializedLength());
+      data.serialize(bb);
+      crc.update(bb.array(), bb.arrayOffset(), bb.limit());
+    }
+    return (int) crc.getValue();
+  }
+
+  private static void update(CRC32 crc, ByteBuff buf) {
+    if (buf.hasArray()) {
+      crc.update(buf.array(), buf.arrayOffset(), buf.limit());
+    } else {
+      crc.update(buf.toBytes(0, buf.limit()), 0, buf.limit());
+    }
+  }
+
+  /**
+   * Wraps {@code deserializer} so that it returns null instead of a block when the bytes read
+   * back from the IOEngine do not match {@code checksum}.
+   */
+  static CacheableDeserializer<Cacheable> verifyingDeserializer(
+      final CacheableDeserializer<Cacheable> deserializer, final int checksum) {
+    return new CacheableDeserializer<Cacheable>() {
+      @Override
+      public Cacheable deserialize(ByteBuff b) throws IOException {
+        return deserialize(b, false, MemoryType.EXCLUSIVE);
+      }
+
+      @Override
+      public Cacheable deserialize(ByteBuff b, boolean reuse, MemoryType memType)
+          throws IOException {
+        CRC32 crc = new CRC32();
+        update(crc, b);
+        if ((int) crc.getValue() != checksum) {
+          return null;
+        }
+        return deserializer.deserialize(b, reuse, memType);
+      }
+
+      @Override
+      public int getDeserialiserIdentifier() {
+        return deserializer.getDeserialiserIdentifier();
+      }
+    };
+  }
+}
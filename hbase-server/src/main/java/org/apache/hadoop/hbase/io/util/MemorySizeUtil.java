@@ -25,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.regionserver.MemStoreLAB;
 import org.apache.hadoop.hbase.util.Pair;
@@ -202,13 +203,23 @@ public class MemorySizeUtil {
    * @param conf
    */
   public static float getBlockCacheHeapPercent(final Configuration conf) {
-    // L1 block cache is always on heap
-    float l1CachePercent = conf.getFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY,
-        HConstants.HFILE_BLOCK_CACHE_SIZE_DEFAULT);
+    float l1CachePercent = getL1BlockCacheHeapPercent(conf);
     float l2CachePercent = getL2BlockCacheHeapPercent(conf);
     return l1CachePercent + l2CachePercent;
   }
 
+  /**
+   * @param conf
+   * @return The on heap size for L1 block cache, 0 when it is kept off heap.
+   */
+  public static float getL1BlockCacheHeapPercent(Configuration conf) {
+    if (!CacheConfig.isL1OnHeap(conf)) {
+      return 0.0F;
+    }
+    return conf.getFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY,
+        HConstants.HFILE_BLOCK_CACHE_SIZE_DEFAULT);
+  }
+
   /**
    * @param conf
    * @return The on heap size for L2 block cache.
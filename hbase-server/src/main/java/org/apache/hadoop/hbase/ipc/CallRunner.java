@@ -159,6 +159,12 @@ public class CallRunner {
           sucessful = true;
         }
       }
+      if (call.parkIfDeferred()) {
+        // the call keeps its request until it runs again
+        this.status.markComplete("Deferred response");
+        this.status.pause("Waiting for a call");
+        return;
+      }
       // return back the RPC request read BB we can do here. It is done by now.
       call.cleanup();
       // Set the response
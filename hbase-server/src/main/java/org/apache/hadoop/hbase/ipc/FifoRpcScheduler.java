@@ -109,6 +109,11 @@ public class FifoRpcScheduler extends RpcScheduler {
     return executor.getActiveCount();
   }
 
+  @Override
+  public int getGeneralHandlerOccupancy() {
+    return executor.getActiveCount() * 100 / handlerCount;
+  }
+
   @Override
   public long getNumGeneralCallsDropped() {
     return 0;
@@ -33,8 +33,13 @@ import org.apache.hadoop.hbase.exceptions.ScannerResetException;
 
 @InterfaceAudience.Private
 public class MetricsHBaseServer {
+  // The weight of the last call in the moving average of the queue time
+  private static final double QUEUE_TIME_WEIGHT = 0.05;
+
   private MetricsHBaseServerSource source;
   private MetricsHBaseServerWrapper serverWrapper;
+  // Concurrent handlers may lose each other's updates, which is fine for an average
+  private volatile double averageQueueTime;
 
   public MetricsHBaseServer(String serverName, MetricsHBaseServerWrapper wrapper) {
     serverWrapper = wrapper;
@@ -76,6 +81,14 @@ public class MetricsHBaseServer {
 
   void dequeuedCall(int qTime) {
     source.dequeuedCall(qTime);
+    averageQueueTime += (qTime - averageQueueTime) * QUEUE_TIME_WEIGHT;
+  }
+
+  /**
+   * @return the moving average of the time the recent calls waited in the call queue, in ms
+   */
+  public int getAverageQueueTime() {
+    return (int) averageQueueTime;
   }
 
   void processedCall(int processingTime) {
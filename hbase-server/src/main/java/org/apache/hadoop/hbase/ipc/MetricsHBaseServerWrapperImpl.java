@@ -142,4 +142,35 @@ public class MetricsHBaseServerWrapperImpl implements MetricsHBaseServerWrapper
     }
     return server.getScheduler().getActiveScanRpcHandlerCount();
   }
+
+  private NettyRpcServerTrafficHandler getTrafficHandler() {
+    if (!isServerStarted() || !(server instanceof NettyRpcServer)) {
+      return null;
+    }
+    return ((NettyRpcServer) server).getTrafficHandler();
+  }
+
+  @Override
+  public int getNumEventLoops() {
+    NettyRpcServerTrafficHandler handler = getTrafficHandler();
+    return handler != null ? handler.getNumEventLoops() : 0;
+  }
+
+  @Override
+  public long getEventLoopReadBytes(int eventLoop) {
+    NettyRpcServerTrafficHandler handler = getTrafficHandler();
+    return handler != null ? handler.getReadBytes(eventLoop) : 0;
+  }
+
+  @Override
+  public long getEventLoopWrittenBytes(int eventLoop) {
+    NettyRpcServerTrafficHandler handler = getTrafficHandler();
+    return handler != null ? handler.getWrittenBytes(eventLoop) : 0;
+  }
+
+  @Override
+  public int getEventLoopPendingTasks(int eventLoop) {
+    NettyRpcServerTrafficHandler handler = getTrafficHandler();
+    return handler != null ? handler.getPendingTasks(eventLoop) : 0;
+  }
 }
@@ -23,14 +23,10 @@ import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelInitializer;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelOption;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelPipeline;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.EventLoopGroup;
-import org.apache.hadoop.hbase.shaded.io.netty.channel.ServerChannel;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.group.ChannelGroup;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.group.DefaultChannelGroup;
-import org.apache.hadoop.hbase.shaded.io.netty.channel.nio.NioEventLoopGroup;
-import org.apache.hadoop.hbase.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.hadoop.hbase.shaded.io.netty.handler.codec.FixedLengthFrameDecoder;
 import org.apache.hadoop.hbase.shaded.io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import org.apache.hadoop.hbase.shaded.io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.hadoop.hbase.shaded.io.netty.util.concurrent.GlobalEventExecutor;
 
 import java.io.IOException;
@@ -69,24 +65,30 @@ public class NettyRpcServer extends RpcServer {
   private final CountDownLatch closed = new CountDownLatch(1);
   private final Channel serverChannel;
   private final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+  private final NettyRpcServerTrafficHandler trafficHandler;
+  // Only set when the event loops are not shared with the region server, so we should shut them
+  // down when stopping.
+  private final EventLoopGroup ownedEventLoopGroup;
 
   public NettyRpcServer(Server server, String name, List<BlockingServiceAndInterface> services,
       InetSocketAddress bindAddress, Configuration conf, RpcScheduler scheduler)
       throws IOException {
     super(server, name, services, bindAddress, conf, scheduler);
     this.bindAddress = bindAddress;
-    EventLoopGroup eventLoopGroup;
-    Class<? extends ServerChannel> channelClass;
+    NettyEventLoopGroupConfig config;
     if (server instanceof HRegionServer) {
-      NettyEventLoopGroupConfig config = ((HRegionServer) server).getEventLoopGroupConfig();
-      eventLoopGroup = config.group();
-      channelClass = config.serverChannelClass();
+      config = ((HRegionServer) server).getEventLoopGroupConfig();
+      ownedEventLoopGroup = null;
     } else {
-      eventLoopGroup = new NioEventLoopGroup(0,
-          new DefaultThreadFactory("NettyRpcServer", true, Thread.MAX_PRIORITY));
-      channelClass = NioServerSocketChannel.class;
+      config = new NettyEventLoopGroupConfig(conf, "NettyRpcServer");
+      ownedEventLoopGroup = config.group();
     }
-    ServerBootstrap bootstrap = new ServerBootstrap().group(eventLoopGroup).channel(channelClass)
+    EventLoopGroup eventLoopGroup = config.group();
+    LOG.info("Using " + (config.isNativeTransport() ? "epoll" : "nio") + " transport with "
+        + config.allocator().getClass().getSimpleName());
+    trafficHandler = new NettyRpcServerTrafficHandler(eventLoopGroup);
+    ServerBootstrap bootstrap = new ServerBootstrap().group(eventLoopGroup)
+        .channel(config.serverChannelClass())
         .childOption(ChannelOption.TCP_NODELAY, tcpNoDelay)
         .childOption(ChannelOption.SO_KEEPALIVE, tcpKeepAlive)
         .childHandler(new ChannelInitializer<Channel>() {
@@ -94,6 +96,7 @@ public class NettyRpcServer extends RpcServer {
           @Override
           protected void initChannel(Channel ch) throws Exception {
             ChannelPipeline pipeline = ch.pipeline();
+            pipeline.addLast("traffic", trafficHandler);
             FixedLengthFrameDecoder preambleDecoder = new FixedLengthFrameDecoder(6);
             preambleDecoder.setSingleDecode(true);
             pipeline.addLast("preambleDecoder", preambleDecoder);
@@ -105,6 +108,7 @@ public class NettyRpcServer extends RpcServer {
             pipeline.addLast("encoder", new NettyRpcServerResponseEncoder(metrics));
           }
         });
+    config.configureChildren(bootstrap);
     try {
       serverChannel = bootstrap.bind(this.bindAddress).sync().channel();
       LOG.info("NettyRpcServer bind to address=" + serverChannel.localAddress());
@@ -144,6 +148,10 @@ public class NettyRpcServer extends RpcServer {
     allChannels.close().awaitUninterruptibly();
     serverChannel.close();
     scheduler.stop();
+    callbackExecutor.shutdown();
+    if (ownedEventLoopGroup != null) {
+      ownedEventLoopGroup.shutdownGracefully();
+    }
     closed.countDown();
     running = false;
   }
@@ -153,6 +161,10 @@ public class NettyRpcServer extends RpcServer {
     closed.await();
   }
 
+  NettyRpcServerTrafficHandler getTrafficHandler() {
+    return trafficHandler;
+  }
+
   @Override
   public synchronized InetSocketAddress getListenerAddress() {
     return ((InetSocketAddress) serverChannel.localAddress());
@@ -181,7 +193,7 @@ public class NettyRpcServer extends RpcServer {
       Message param, CellScanner cellScanner, long receiveTime, MonitoredRPCHandler status,
       long startTime, int timeout) throws IOException {
     NettyServerCall fakeCall = new NettyServerCall(-1, service, md, null, param, cellScanner, null,
-        -1, null, null, receiveTime, timeout, reservoir, cellBlockBuilder, null);
+        -1, null, null, receiveTime, timeout, reservoir, cellBlockBuilder, callbackExecutor, null);
     return call(fakeCall, status);
   }
 }
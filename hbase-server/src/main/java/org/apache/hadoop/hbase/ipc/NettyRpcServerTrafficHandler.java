@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import org.apache.hadoop.hbase.shaded.io.netty.buffer.ByteBuf;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelDuplexHandler;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelHandler.Sharable;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelHandlerContext;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelPromise;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.EventLoopGroup;
+import org.apache.hadoop.hbase.shaded.io.netty.util.concurrent.EventExecutor;
+import org.apache.hadoop.hbase.shaded.io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Counts the bytes read and written by each event loop of the server. It is placed at the head of
+ * the pipeline so it sees the raw bytes of the connections.
+ */
+@Sharable
+@InterfaceAudience.Private
+class NettyRpcServerTrafficHandler extends ChannelDuplexHandler {
+
+  private final List<EventExecutor> eventLoops = new ArrayList<>();
+
+  private final Map<EventExecutor, Integer> indexes = new IdentityHashMap<>();
+
+  private final LongAdder[] readBytes;
+
+  private final LongAdder[] writtenBytes;
+
+  NettyRpcServerTrafficHandler(EventLoopGroup group) {
+    for (EventExecutor eventLoop : group) {
+      indexes.put(eventLoop, eventLoops.size());
+      eventLoops.add(eventLoop);
+    }
+    readBytes = new LongAdder[eventLoops.size()];
+    writtenBytes = new LongAdder[eventLoops.size()];
+    for (int i = 0; i < eventLoops.size(); i++) {
+      readBytes[i] = new LongAdder();
+      writtenBytes[i] = new LongAdder();
+    }
+  }
+
+  private static int size(Object msg) {
+    return msg instanceof ByteBuf ? ((ByteBuf) msg).readableBytes() : 0;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    Integer index = indexes.get(ctx.channel().eventLoop());
+    if (index != null) {
+      readBytes[index].add(size(msg));
+    }
+    ctx.fireChannelRead(msg);
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    Integer index = indexes.get(ctx.channel().eventLoop());
+    if (index != null) {
+      // count the bytes before they are released by the write
+      writtenBytes[index].add(size(msg));
+    }
+    ctx.write(msg, promise);
+  }
+
+  int getNumEventLoops() {
+    return eventLoops.size();
+  }
+
+  long getReadBytes(int eventLoop) {
+    return readBytes[eventLoop].sum();
+  }
+
+  long getWrittenBytes(int eventLoop) {
+    return writtenBytes[eventLoop].sum();
+  }
+
+  int getPendingTasks(int eventLoop) {
+    EventExecutor executor = eventLoops.get(eventLoop);
+    return executor instanceof SingleThreadEventExecutor
+        ? ((SingleThreadEventExecutor) executor).pendingTasks() : 0;
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.hadoop.hbase.ipc;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.concurrent.Executor;
 
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -41,9 +42,10 @@ class NettyServerCall extends ServerCall<NettyServerRpcConnection> {
   NettyServerCall(int id, BlockingService service, MethodDescriptor md, RequestHeader header,
       Message param, CellScanner cellScanner, NettyServerRpcConnection connection, long size,
       TraceInfo tinfo, InetAddress remoteAddress, long receiveTime, int timeout,
-      ByteBufferPool reservoir, CellBlockBuilder cellBlockBuilder, CallCleanup reqCleanup) {
+      ByteBufferPool reservoir, CellBlockBuilder cellBlockBuilder, Executor callbackExecutor,
+      CallCleanup reqCleanup) {
     super(id, service, md, header, param, cellScanner, connection, size, tinfo, remoteAddress,
-        receiveTime, timeout, reservoir, cellBlockBuilder, reqCleanup);
+        receiveTime, timeout, reservoir, cellBlockBuilder, callbackExecutor, reqCleanup);
   }
 
   /**
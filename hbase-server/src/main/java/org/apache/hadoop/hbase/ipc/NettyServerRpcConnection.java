@@ -123,7 +123,7 @@ class NettyServerRpcConnection extends ServerRpcConnection {
       CallCleanup reqCleanup) {
     return new NettyServerCall(id, service, md, header, param, cellScanner, this, size, tinfo,
         remoteAddress, System.currentTimeMillis(), timeout, this.rpcServer.reservoir,
-        this.rpcServer.cellBlockBuilder, reqCleanup);
+        this.rpcServer.cellBlockBuilder, this.rpcServer.callbackExecutor, reqCleanup);
   }
 
   @Override
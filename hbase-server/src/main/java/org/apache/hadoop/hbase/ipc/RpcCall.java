@@ -138,4 +138,19 @@ public interface RpcCall extends RpcCallContext {
    * @return TraceInfo attached to this call.
    */
   TraceInfo getTraceInfo();
+
+  /**
+   * Holds back the response of this call, so the handler running it is free once the call returns.
+   * What the call returns is dropped, and the call runs again, as if just received, when the
+   * returned task runs. The task does nothing once the call runs again or is deferred anew.
+   * @return the task running the call again
+   */
+  Runnable deferResponse();
+
+  /**
+   * Called by the handler once the call returns.
+   * @return true if the response of the call is deferred, in which case the handler neither cleans
+   *         up the call nor sends a response
+   */
+  boolean parkIfDeferred();
 }
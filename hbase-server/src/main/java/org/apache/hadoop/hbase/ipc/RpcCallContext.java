@@ -74,7 +74,9 @@ public interface RpcCallContext {
 
   /**
    * Sets a callback which has to be executed at the end of this RPC call. Such a callback is an
-   * optional one for any Rpc call.
+   * optional one for any Rpc call. The cells of the response are expected to stay in place until
+   * the callback runs: it may run once the response has been sent rather than once it is built,
+   * and then on a thread other than the handler's.
    *
    * @param callback
    */
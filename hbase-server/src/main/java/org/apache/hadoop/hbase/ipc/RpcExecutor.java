@@ -59,11 +59,13 @@ public abstract class RpcExecutor {
   /**
    * The default, 'fifo', has the least friction but is dumb. If set to 'deadline', uses a priority
    * queue and deprioritizes long-running scans. Sorting by priority comes at a cost, reduced
-   * throughput.
+   * throughput. If set to 'fair', the handlers are shared among the tenants of the calls, see
+   * {@link WeightedFairCallQueue}.
    */
   public static final String CALL_QUEUE_TYPE_CODEL_CONF_VALUE = "codel";
   public static final String CALL_QUEUE_TYPE_DEADLINE_CONF_VALUE = "deadline";
   public static final String CALL_QUEUE_TYPE_FIFO_CONF_VALUE = "fifo";
+  public static final String CALL_QUEUE_TYPE_FAIR_CONF_VALUE = "fair";
   public static final String CALL_QUEUE_TYPE_CONF_KEY = "hbase.ipc.server.callqueue.type";
   public static final String CALL_QUEUE_TYPE_CONF_DEFAULT = CALL_QUEUE_TYPE_FIFO_CONF_VALUE;
 
@@ -76,6 +78,10 @@ public abstract class RpcExecutor {
   public static final int CALL_QUEUE_CODEL_DEFAULT_INTERVAL = 100;
   public static final double CALL_QUEUE_CODEL_DEFAULT_LIFO_THRESHOLD = 0.8;
 
+  /** What the 'fair' call queue shares the handlers by: 'user', 'namespace' or 'table' */
+  public static final String CALL_QUEUE_FAIR_TENANT = "hbase.ipc.server.callqueue.fair.tenant";
+  public static final String CALL_QUEUE_FAIR_DEFAULT_TENANT = "user";
+
   private LongAdder numGeneralCallsDropped = new LongAdder();
   private LongAdder numLifoModeSwitches = new LongAdder();
 
@@ -136,6 +142,11 @@ public abstract class RpcExecutor {
       queueInitArgs = new Object[] { maxQueueLength, codelTargetDelay, codelInterval,
           codelLifoThreshold, numGeneralCallsDropped, numLifoModeSwitches };
       queueClass = AdaptiveLifoCoDelCallQueue.class;
+    } else if (isFairQueueType(callQueueType)) {
+      this.name += ".Fair";
+      queueInitArgs = new Object[] { maxQueueLength,
+          conf.get(CALL_QUEUE_FAIR_TENANT, CALL_QUEUE_FAIR_DEFAULT_TENANT) };
+      queueClass = WeightedFairCallQueue.class;
     } else {
       this.name += ".Fifo";
       queueInitArgs = new Object[] { maxQueueLength };
@@ -384,6 +395,10 @@ public abstract class RpcExecutor {
     return callQueueType.equals(CALL_QUEUE_TYPE_FIFO_CONF_VALUE);
   }
 
+  public static boolean isFairQueueType(final String callQueueType) {
+    return callQueueType.equals(CALL_QUEUE_TYPE_FAIR_CONF_VALUE);
+  }
+
   public long getNumGeneralCallsDropped() {
     return numGeneralCallsDropped.longValue();
   }
@@ -396,6 +411,10 @@ public abstract class RpcExecutor {
     return activeHandlerCount.get();
   }
 
+  public int getHandlerCount() {
+    return handlerCount;
+  }
+
   public int getActiveWriteHandlerCount() {
     return 0;
   }
@@ -445,6 +464,17 @@ public abstract class RpcExecutor {
     currentQueueLimit = conf.getInt(configKey, currentQueueLimit);
   }
 
+  /**
+   * Sets how the 'fair' call queues weigh the tenants of the calls.
+   */
+  public void setCallWeigher(WeightedFairCallQueue.Weigher weigher) {
+    for (BlockingQueue<CallRunner> queue : queues) {
+      if (queue instanceof WeightedFairCallQueue) {
+        ((WeightedFairCallQueue) queue).setWeigher(weigher);
+      }
+    }
+  }
+
   public void onConfigurationChange(Configuration conf) {
     // update CoDel Scheduler tunables
     int codelTargetDelay = conf.getInt(CALL_QUEUE_CODEL_TARGET_DELAY,
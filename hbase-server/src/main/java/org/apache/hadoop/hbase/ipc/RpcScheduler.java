@@ -65,6 +65,13 @@ public abstract class RpcScheduler {
    */
   public abstract boolean dispatch(CallRunner task) throws IOException, InterruptedException;
 
+  /**
+   * Sets how to weigh the tenants of the calls, for the schedulers sharing their handlers among
+   * tenants. Does nothing by default.
+   */
+  public void setCallWeigher(WeightedFairCallQueue.Weigher weigher) {
+  }
+
   /** Retrieves length of the general queue for metrics. */
   public abstract int getGeneralQueueLength();
 
@@ -77,6 +84,14 @@ public abstract class RpcScheduler {
   /** Retrieves the number of active handler. */
   public abstract int getActiveRpcHandlerCount();
 
+  /**
+   * Retrieves the percent, between 0 and 100, of the handlers of the general queue that are busy;
+   * returns 0 if not known.
+   */
+  public int getGeneralHandlerOccupancy() {
+    return 0;
+  }
+
   /**
    * If CoDel-based RPC executors are used, retrieves the number of Calls that were dropped
    * from general queue because RPC executor is under high load; returns 0 otherwise.
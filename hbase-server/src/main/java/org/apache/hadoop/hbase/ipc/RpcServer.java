@@ -34,6 +34,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.logging.Log;
@@ -60,6 +62,7 @@ import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.security.UserProvider;
 import org.apache.hadoop.hbase.security.token.AuthenticationTokenSecretManager;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.hbase.util.Threads;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.authorize.AuthorizationException;
 import org.apache.hadoop.security.authorize.PolicyProvider;
@@ -207,6 +210,20 @@ public abstract class RpcServer implements RpcServerInterface,
   protected UserProvider userProvider;
 
   protected final ByteBufferPool reservoir;
+
+  /**
+   * The number of threads running the callbacks of calls whose response refers to the cells the
+   * callback releases, once the response is sent.
+   */
+  public static final String CALLBACK_THREADS_KEY = "hbase.ipc.server.callback.threads";
+  public static final int DEFAULT_CALLBACK_THREADS = 4;
+
+  /**
+   * Runs the callbacks deferred until the response is sent. The response is sent from the
+   * transport threads, the netty event loops or the simple server responder, which must not run
+   * callbacks like the shipped() of a scanner as those may read store files.
+   */
+  protected final ThreadPoolExecutor callbackExecutor;
   // The requests and response will use buffers from ByteBufferPool, when the size of the
   // request/response is at least this size.
   // We make this to be 1/6th of the pool buffer size.
@@ -307,6 +324,9 @@ public abstract class RpcServer implements RpcServerInterface,
     this.tcpKeepAlive = conf.getBoolean("hbase.ipc.server.tcpkeepalive", true);
 
     this.cellBlockBuilder = new CellBlockBuilder(conf);
+    this.callbackExecutor = Threads.getBoundedCachedThreadPool(
+      conf.getInt(CALLBACK_THREADS_KEY, DEFAULT_CALLBACK_THREADS), 60, TimeUnit.SECONDS,
+      Threads.newDaemonThreadFactory(name + ".callback"));
 
     this.authorize = conf.getBoolean(HADOOP_SECURITY_AUTHORIZATION, false);
     this.userProvider = UserProvider.instantiate(conf);
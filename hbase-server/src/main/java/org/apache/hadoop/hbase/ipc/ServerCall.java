@@ -23,6 +23,8 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
@@ -86,6 +88,10 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
   protected final User user;
   protected final InetAddress remoteAddress;
   protected RpcCallback rpcCallback;
+  // The callback to run once the response is sent, as the response refers to cells it releases
+  private RpcCallback deferredRpcCallback;
+  // Runs the deferred callback, off the transport thread that sent the response
+  private final Executor callbackExecutor;
 
   private long responseCellSize = 0;
   private long responseBlockSize = 0;
@@ -93,12 +99,21 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
   private long exceptionSize = 0;
   private final boolean retryImmediatelySupported;
 
+  // Where the call is at when its response is deferred, see deferResponse()
+  private static final int NOT_DEFERRED = 0;
+  private static final int DEFERRED = 1;
+  private static final int PARKED = 2;
+  private static final int RESUMED = 3;
+  private int deferState = NOT_DEFERRED;
+  // the number of times the response was deferred, so a task of an earlier one does nothing
+  private int deferrals = 0;
+
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value="NP_NULL_ON_SOME_PATH",
       justification="Can't figure why this complaint is happening... see below")
   ServerCall(int id, BlockingService service, MethodDescriptor md, RequestHeader header,
       Message param, CellScanner cellScanner, T connection, long size, TraceInfo tinfo,
       InetAddress remoteAddress, long receiveTime, int timeout, ByteBufferPool reservoir,
-      CellBlockBuilder cellBlockBuilder, CallCleanup reqCleanup) {
+      CellBlockBuilder cellBlockBuilder, Executor callbackExecutor, CallCleanup reqCleanup) {
     this.id = id;
     this.service = service;
     this.md = md;
@@ -123,17 +138,30 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
     this.deadline = this.timeout > 0 ? this.receiveTime + this.timeout : Long.MAX_VALUE;
     this.reservoir = reservoir;
     this.cellBlockBuilder = cellBlockBuilder;
+    this.callbackExecutor = callbackExecutor;
     this.reqCleanup = reqCleanup;
   }
 
   /**
    * Call is done. Execution happened and we returned results to client. It is
-   * now safe to cleanup.
+   * now safe to cleanup, and to run the callback if the response referred to the cells it
+   * releases. That callback is handed to the callback executor, as done() runs on the transport
+   * thread that sent the response, and the shipped() of a scanner may read store files.
    */
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "IS2_INCONSISTENT_SYNC",
       justification = "Presume the lock on processing request held by caller is protection enough")
   @Override
   public void done() {
+    if (this.deferredRpcCallback != null) {
+      RpcCallback callback = this.deferredRpcCallback;
+      this.deferredRpcCallback = null;
+      try {
+        this.callbackExecutor.execute(() -> runCallback(callback));
+      } catch (RejectedExecutionException e) {
+        // The server is stopping, the cells still have to be let go
+        runCallback(callback);
+      }
+    }
     if (this.cellBlockStream != null) {
       // This will return back the BBs which we got from pool.
       this.cellBlockStream.releaseResources();
@@ -203,11 +231,18 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
       List<ByteBuffer> cellBlock = null;
       int cellBlockSize = 0;
       if (this.reservoir != null) {
+        // The cells of a call having a callback, like a scan, stay where they are until the
+        // callback runs. So the big off heap ones, from the BucketCache say, can be sent from there
+        // rather than copied, the callback then waiting for the response to be sent.
+        boolean referenceCells = this.rpcCallback != null && !this.connection.useWrap;
         this.cellBlockStream = this.cellBlockBuilder.buildCellBlockStream(this.connection.codec,
-          this.connection.compressionCodec, cells, this.reservoir);
+          this.connection.compressionCodec, cells, this.reservoir, referenceCells);
         if (this.cellBlockStream != null) {
           cellBlock = this.cellBlockStream.getByteBuffers();
           cellBlockSize = this.cellBlockStream.size();
+          if (this.cellBlockStream.hasReferences()) {
+            this.deferredRpcCallback = this.rpcCallback;
+          }
         }
       } else {
         ByteBuffer b = this.cellBlockBuilder.buildCellBlock(this.connection.codec,
@@ -248,17 +283,23 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
       }
     } catch (IOException e) {
       RpcServer.LOG.warn("Exception while creating response " + e);
+      // Nothing refers to the cells anymore
+      this.deferredRpcCallback = null;
     }
     this.response = bc;
     // Once a response message is created and set to this.response, this Call can be treated as
     // done. The Responder thread will do the n/w write of this message back to client.
-    if (this.rpcCallback != null) {
-      try {
-        this.rpcCallback.run();
-      } catch (Exception e) {
-        // Don't allow any exception here to kill this handler thread.
-        RpcServer.LOG.warn("Exception while running the Rpc Callback.", e);
-      }
+    if (this.rpcCallback != null && this.deferredRpcCallback == null) {
+      runCallback(this.rpcCallback);
+    }
+  }
+
+  private static void runCallback(RpcCallback callback) {
+    try {
+      callback.run();
+    } catch (Exception e) {
+      // Don't allow any exception here to kill this handler thread.
+      RpcServer.LOG.warn("Exception while running the Rpc Callback.", e);
     }
   }
 
@@ -456,6 +497,77 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
     this.rpcCallback = callback;
   }
 
+  @Override
+  public synchronized Runnable deferResponse() {
+    this.deferState = DEFERRED;
+    final int deferral = ++this.deferrals;
+    return () -> resume(deferral);
+  }
+
+  @Override
+  public boolean parkIfDeferred() {
+    synchronized (this) {
+      if (this.deferState == NOT_DEFERRED) {
+        return false;
+      }
+      if (this.deferState == DEFERRED) {
+        this.deferState = PARKED;
+        return true;
+      }
+      // resumed before the handler got here
+      this.deferState = NOT_DEFERRED;
+    }
+    dispatch();
+    return true;
+  }
+
+  private void resume(int deferral) {
+    synchronized (this) {
+      if (deferral != this.deferrals) {
+        return;
+      }
+      if (this.deferState == DEFERRED) {
+        // still running, the handler dispatches it again once done
+        this.deferState = RESUMED;
+        return;
+      }
+      if (this.deferState != PARKED) {
+        return;
+      }
+      this.deferState = NOT_DEFERRED;
+    }
+    dispatch();
+  }
+
+  /**
+   * Queues the call to run again, like the connection does when the call is received.
+   */
+  private void dispatch() {
+    RpcServer rpcServer = this.connection.rpcServer;
+    rpcServer.addCallSize(this.size);
+    boolean dispatched;
+    try {
+      dispatched = rpcServer.scheduler.dispatch(new CallRunner(rpcServer, this));
+    } catch (IOException e) {
+      RpcServer.LOG.warn("Exception while dispatching " + toShortString(), e);
+      dispatched = false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      dispatched = false;
+    }
+    if (!dispatched) {
+      rpcServer.addCallSize(-1 * this.size);
+      rpcServer.metrics.exception(RpcServer.CALL_QUEUE_TOO_BIG_EXCEPTION);
+      setResponse(null, null, RpcServer.CALL_QUEUE_TOO_BIG_EXCEPTION,
+        "Call queue is full on " + rpcServer.server.getServerName() + ", too many items queued ?");
+      try {
+        sendResponseIfReady();
+      } catch (IOException e) {
+        RpcServer.LOG.warn("Exception while sending the response of " + toShortString(), e);
+      }
+    }
+  }
+
   @Override
   public boolean isRetryImmediatelySupported() {
     return retryImmediatelySupported;
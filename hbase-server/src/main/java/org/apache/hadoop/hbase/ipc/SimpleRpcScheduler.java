@@ -75,11 +75,16 @@ public class SimpleRpcScheduler extends RpcScheduler implements ConfigurationObs
     String callQueueType = conf.get(RpcExecutor.CALL_QUEUE_TYPE_CONF_KEY,
       RpcExecutor.CALL_QUEUE_TYPE_CONF_DEFAULT);
     float callqReadShare = conf.getFloat(RWQueueRpcExecutor.CALL_QUEUE_READ_SHARE_CONF_KEY, 0);
+    float callqSmallShare = conf.getFloat(SmallCallRpcExecutor.CALL_QUEUE_SMALL_SHARE_CONF_KEY, 0);
 
     if (callqReadShare > 0) {
       // at least 1 read handler and 1 write handler
       callExecutor = new RWQueueRpcExecutor("default.RWQ", Math.max(2, handlerCount),
         maxQueueLength, priority, conf, server);
+    } else if (callqSmallShare > 0) {
+      // at least 1 small call handler and 1 general handler
+      callExecutor = new SmallCallRpcExecutor("default.SCQ", Math.max(2, handlerCount),
+        maxQueueLength, priority, conf, server);
     } else {
       if (RpcExecutor.isFifoQueueType(callQueueType) || RpcExecutor.isCodelQueueType(callQueueType)) {
         callExecutor = new FastPathBalancedQueueRpcExecutor("default.FPBQ", handlerCount,
@@ -132,6 +137,11 @@ public class SimpleRpcScheduler extends RpcScheduler implements ConfigurationObs
     }
   }
 
+  @Override
+  public void setCallWeigher(WeightedFairCallQueue.Weigher weigher) {
+    callExecutor.setCallWeigher(weigher);
+  }
+
   @Override
   public void init(Context context) {
     this.port = context.getListenerAddress().getPort();
@@ -190,6 +200,11 @@ public class SimpleRpcScheduler extends RpcScheduler implements ConfigurationObs
            (replicationExecutor == null ? 0 : replicationExecutor.getActiveHandlerCount());
   }
 
+  @Override
+  public int getGeneralHandlerOccupancy() {
+    return callExecutor.getActiveHandlerCount() * 100 / callExecutor.getHandlerCount();
+  }
+
   @Override
   public long getNumGeneralCallsDropped() {
     return callExecutor.getNumGeneralCallsDropped();
@@ -447,6 +447,7 @@ public class SimpleRpcServer extends RpcServer {
     listener.doStop();
     responder.interrupt();
     scheduler.stop();
+    callbackExecutor.shutdown();
     notifyAll();
   }
 
@@ -489,7 +490,8 @@ public class SimpleRpcServer extends RpcServer {
       Message param, CellScanner cellScanner, long receiveTime, MonitoredRPCHandler status,
       long startTime, int timeout) throws IOException {
     SimpleServerCall fakeCall = new SimpleServerCall(-1, service, md, null, param, cellScanner,
-        null, -1, null, null, receiveTime, timeout, reservoir, cellBlockBuilder, null, null);
+        null, -1, null, null, receiveTime, timeout, reservoir, cellBlockBuilder, callbackExecutor,
+        null, null);
     return call(fakeCall, status);
   }
 
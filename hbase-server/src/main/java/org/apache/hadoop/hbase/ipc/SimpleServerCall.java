@@ -19,6 +19,7 @@ package org.apache.hadoop.hbase.ipc;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.concurrent.Executor;
 
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -45,9 +46,10 @@ class SimpleServerCall extends ServerCall<SimpleServerRpcConnection> {
       RequestHeader header, Message param, CellScanner cellScanner,
       SimpleServerRpcConnection connection, long size, TraceInfo tinfo,
       final InetAddress remoteAddress, long receiveTime, int timeout, ByteBufferPool reservoir,
-      CellBlockBuilder cellBlockBuilder, CallCleanup reqCleanup, SimpleRpcServerResponder responder) {
+      CellBlockBuilder cellBlockBuilder, Executor callbackExecutor, CallCleanup reqCleanup,
+      SimpleRpcServerResponder responder) {
     super(id, service, md, header, param, cellScanner, connection, size, tinfo, remoteAddress,
-        receiveTime, timeout, reservoir, cellBlockBuilder, reqCleanup);
+        receiveTime, timeout, reservoir, cellBlockBuilder, callbackExecutor, reqCleanup);
     this.responder = responder;
   }
 
@@ -213,7 +213,8 @@ class SimpleServerRpcConnection extends ServerRpcConnection {
           // Notify the client about the offending request
           SimpleServerCall reqTooBig = new SimpleServerCall(header.getCallId(), this.service, null,
               null, null, null, this, 0, null, this.addr, System.currentTimeMillis(), 0,
-              this.rpcServer.reservoir, this.rpcServer.cellBlockBuilder, null, responder);
+              this.rpcServer.reservoir, this.rpcServer.cellBlockBuilder,
+              this.rpcServer.callbackExecutor, null, responder);
           this.rpcServer.metrics.exception(SimpleRpcServer.REQUEST_TOO_BIG_EXCEPTION);
           // Make sure the client recognizes the underlying exception
           // Otherwise, throw a DoNotRetryIOException.
@@ -313,6 +314,10 @@ class SimpleServerRpcConnection extends ServerRpcConnection {
     disposeSasl();
     data = null;
     callCleanup = null;
+    // The responses left will never be sent, release the buffers and cells they hold
+    for (RpcResponse resp; (resp = responseQueue.pollFirst()) != null;) {
+      resp.done();
+    }
     if (!channel.isOpen()) return;
     try {
       socket.shutdownOutput();
@@ -347,7 +352,8 @@ class SimpleServerRpcConnection extends ServerRpcConnection {
       InetAddress remoteAddress, int timeout, CallCleanup reqCleanup) {
     return new SimpleServerCall(id, service, md, header, param, cellScanner, this, size, tinfo,
         remoteAddress, System.currentTimeMillis(), timeout, this.rpcServer.reservoir,
-        this.rpcServer.cellBlockBuilder, reqCleanup, this.responder);
+        this.rpcServer.cellBlockBuilder, this.rpcServer.callbackExecutor, reqCleanup,
+        this.responder);
   }
 
   @Override
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Abortable;
+import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.util.StealJobQueue;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.apache.yetus.audience.InterfaceStability;
+
+import org.apache.hadoop.hbase.shaded.com.google.protobuf.Message;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.Action;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.GetRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.MultiRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.RegionAction;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.RPCProtos.RequestHeader;
+
+/**
+ * RPC Executor that runs the small calls, gets and multi gets of a few rows, on handlers of their
+ * own so they do not wait behind scans and big batches of mutations. The other handlers take the
+ * small calls too when they have no other call to run, so the small calls do not wait for their
+ * handlers while the others are idle. The calls of each queue are run in the order they came in.
+ */
+@InterfaceAudience.LimitedPrivate({HBaseInterfaceAudience.COPROC, HBaseInterfaceAudience.PHOENIX})
+@InterfaceStability.Evolving
+public class SmallCallRpcExecutor extends RpcExecutor {
+  private static final Log LOG = LogFactory.getLog(SmallCallRpcExecutor.class);
+
+  /**
+   * The share of the handlers dedicated to the small calls, 0 to not separate them.
+   */
+  public static final String CALL_QUEUE_SMALL_SHARE_CONF_KEY =
+      "hbase.ipc.server.callqueue.small.ratio";
+
+  /**
+   * The max number of gets of a multi call for it to be small.
+   */
+  public static final String CALL_QUEUE_SMALL_MAX_ACTIONS_CONF_KEY =
+      "hbase.ipc.server.callqueue.small.max.actions";
+  static final int DEFAULT_CALL_QUEUE_SMALL_MAX_ACTIONS = 10;
+
+  private static final Comparator<CallRunner> RECEIVE_ORDER =
+      Comparator.comparingLong(cr -> cr.getRpcCall().getReceiveTime());
+
+  private final int maxSmallActions;
+  private final int generalHandlersCount;
+  private final int smallHandlersCount;
+  private final BlockingQueue<CallRunner> generalQueue;
+  private final BlockingQueue<CallRunner> smallQueue;
+
+  private final AtomicInteger activeGeneralHandlerCount = new AtomicInteger(0);
+  private final AtomicInteger activeSmallHandlerCount = new AtomicInteger(0);
+
+  public SmallCallRpcExecutor(final String name, final int handlerCount, final int maxQueueLength,
+      final PriorityFunction priority, final Configuration conf, final Abortable abortable) {
+    super(name, handlerCount, CALL_QUEUE_TYPE_FIFO_CONF_VALUE, maxQueueLength, priority, conf,
+        abortable);
+    float smallShare = conf.getFloat(CALL_QUEUE_SMALL_SHARE_CONF_KEY, 0);
+    this.maxSmallActions =
+        conf.getInt(CALL_QUEUE_SMALL_MAX_ACTIONS_CONF_KEY, DEFAULT_CALL_QUEUE_SMALL_MAX_ACTIONS);
+    int handlers = getHandlerCount();
+    this.smallHandlersCount =
+        Math.min(handlers - 1, Math.max(1, Math.round(handlers * smallShare)));
+    this.generalHandlersCount = handlers - smallHandlersCount;
+
+    // The general handlers take from the small queue when theirs is empty.
+    StealJobQueue<CallRunner> stealJobQueue = new StealJobQueue<>(RECEIVE_ORDER);
+    this.generalQueue = stealJobQueue;
+    this.smallQueue = stealJobQueue.getStealFromQueue();
+    this.queues.add(generalQueue);
+    this.queues.add(smallQueue);
+    this.currentQueueLimit = maxQueueLength;
+
+    LOG.info(getName() + " generalHandlers=" + generalHandlersCount + " smallHandlers="
+        + smallHandlersCount + " smallMaxActions=" + maxSmallActions);
+  }
+
+  @Override
+  protected int computeNumCallQueues(final int handlerCount, final float callQueuesHandlersFactor) {
+    // one queue for the general calls and one for the small ones, and a handler for each at least
+    return 2;
+  }
+
+  @Override
+  protected void startHandlers(final int port) {
+    startHandlers(".general", generalHandlersCount, queues, 0, 1, port,
+      activeGeneralHandlerCount);
+    startHandlers(".small", smallHandlersCount, queues, 1, 1, port, activeSmallHandlerCount);
+  }
+
+  @Override
+  public boolean dispatch(final CallRunner callTask) throws InterruptedException {
+    RpcCall call = callTask.getRpcCall();
+    BlockingQueue<CallRunner> queue =
+        isSmallCall(call.getHeader(), call.getParam()) ? smallQueue : generalQueue;
+    if (queue.size() >= currentQueueLimit) {
+      return false;
+    }
+    return queue.offer(callTask);
+  }
+
+  /**
+   * @return whether the call only reads a few rows, which we estimate from the request
+   */
+  boolean isSmallCall(final RequestHeader header, final Message param) {
+    if (param instanceof GetRequest) {
+      return true;
+    }
+    if (param instanceof MultiRequest) {
+      int actions = 0;
+      for (RegionAction regionAction : ((MultiRequest) param).getRegionActionList()) {
+        for (Action action : regionAction.getActionList()) {
+          if (!action.hasGet() || ++actions > maxSmallActions) {
+            return false;
+          }
+        }
+      }
+      return actions > 0;
+    }
+    return false;
+  }
+
+  @Override
+  public int getActiveHandlerCount() {
+    return activeGeneralHandlerCount.get() + activeSmallHandlerCount.get();
+  }
+
+  /**
+   * The small calls are reads, so we report them as the read queue.
+   */
+  @Override
+  public int getReadQueueLength() {
+    return smallQueue.size();
+  }
+
+  @Override
+  public int getActiveReadHandlerCount() {
+    return activeSmallHandlerCount.get();
+  }
+}
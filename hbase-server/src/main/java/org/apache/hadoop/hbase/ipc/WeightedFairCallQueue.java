@@ -0,0 +1,345 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.protobuf.Message;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.GetRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.MultiRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.MutateRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ScanRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier.RegionSpecifierType;
+
+/**
+ * Blocking queue that shares its handlers among the tenants of the calls with deficit round
+ * robin. Calls are kept in one FIFO per tenant, and the tenants having calls waiting are served in
+ * turn, each taking as many calls as its weight before the next one gets its turn. A tenant
+ * flooding the server with calls only makes its own FIFO longer, and the calls of the others wait
+ * for at most one turn of every busy tenant.
+ * <p>
+ * A tenant is the user of the call, or the namespace or the table of the region it targets. Calls
+ * naming no region, like the next calls of an open scanner, fall back to their user. Weights come
+ * from the {@link Weigher} given with {@link #setWeigher(Weigher)}, every tenant weighing 1 until
+ * one is set. The weight of a tenant is read when it gets a call while having none waiting, so
+ * new weights apply from the next busy period of a tenant.
+ * <p>
+ * Implementing {@link BlockingQueue} interface to be compatible with {@link RpcExecutor}.
+ */
+@InterfaceAudience.Private
+public class WeightedFairCallQueue extends AbstractQueue<CallRunner>
+    implements BlockingQueue<CallRunner> {
+
+  /** What the calls are shared by. */
+  public enum TenantType {
+    USER, NAMESPACE, TABLE;
+
+    public static TenantType fromString(String type) {
+      return valueOf(type.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /** Gives the weight of the tenant of a call. */
+  @FunctionalInterface
+  public interface Weigher {
+    /**
+     * @param type how the tenant of the call is identified, {@link TenantType#USER} when the call
+     *          names no region
+     * @param call the first call of the tenant since it had none waiting
+     * @return the number of calls the tenant may run in its turn
+     */
+    int getWeight(TenantType type, CallRunner call);
+  }
+
+  private static final Weigher DEFAULT_WEIGHER = (type, call) -> 1;
+
+  /** The calls of a tenant and what is left of its turn. */
+  private static final class Flow {
+    final String key;
+    final int weight;
+    final ArrayDeque<CallRunner> calls = new ArrayDeque<>();
+    int deficit;
+
+    Flow(String key, int weight) {
+      this.key = key;
+      this.weight = weight;
+    }
+  }
+
+  private final int capacity;
+  private final TenantType tenantType;
+  private volatile Weigher weigher = DEFAULT_WEIGHER;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  // the tenants having calls waiting, the one at the head having its turn
+  private final Map<String, Flow> flows = new HashMap<>();
+  private final ArrayDeque<Flow> activeFlows = new ArrayDeque<>();
+  private int count;
+
+  public WeightedFairCallQueue(int capacity, String tenantType) {
+    this.capacity = capacity;
+    this.tenantType = TenantType.fromString(tenantType);
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher == null ? DEFAULT_WEIGHER : weigher;
+  }
+
+  /**
+   * @return the table of the region the call targets, or null if the call names no region by its
+   *         full name
+   */
+  public static TableName getTable(RpcCall call) {
+    Message param = call.getParam();
+    RegionSpecifier region = null;
+    if (param instanceof GetRequest) {
+      region = ((GetRequest) param).getRegion();
+    } else if (param instanceof MutateRequest) {
+      region = ((MutateRequest) param).getRegion();
+    } else if (param instanceof ScanRequest) {
+      ScanRequest request = (ScanRequest) param;
+      region = request.hasRegion() ? request.getRegion() : null;
+    } else if (param instanceof MultiRequest) {
+      MultiRequest request = (MultiRequest) param;
+      region = request.getRegionActionCount() > 0 ? request.getRegionAction(0).getRegion() : null;
+    }
+    if (region == null || region.getType() != RegionSpecifierType.REGION_NAME) {
+      return null;
+    }
+    return RegionInfo.getTable(region.getValue().toByteArray());
+  }
+
+  private static String getUserKey(RpcCall call) {
+    return "u:" + call.getRequestUser().map(User::getShortName).orElse("");
+  }
+
+  private String getTenantKey(CallRunner callRunner) {
+    RpcCall call = callRunner.getRpcCall();
+    if (tenantType != TenantType.USER) {
+      TableName table = getTable(call);
+      if (table != null) {
+        return tenantType == TenantType.TABLE ? "t:" + table.getNameAsString()
+            : "n:" + table.getNamespaceAsString();
+      }
+    }
+    return getUserKey(call);
+  }
+
+  private TenantType getTenantType(String key) {
+    switch (key.charAt(0)) {
+      case 't':
+        return TenantType.TABLE;
+      case 'n':
+        return TenantType.NAMESPACE;
+      default:
+        return TenantType.USER;
+    }
+  }
+
+  @Override
+  public boolean offer(CallRunner callRunner) {
+    String key = getTenantKey(callRunner);
+    // The weigher may look up quotas, so it is not run under the lock. When the tenant turns out
+    // to have no call waiting, the weight is read and the lock taken again.
+    int weight = 0;
+    while (true) {
+      lock.lock();
+      try {
+        if (count >= capacity) {
+          return false;
+        }
+        Flow flow = flows.get(key);
+        if (flow == null && weight > 0) {
+          flow = new Flow(key, weight);
+          flows.put(key, flow);
+          activeFlows.addLast(flow);
+        }
+        if (flow != null) {
+          flow.calls.addLast(callRunner);
+          count++;
+          notEmpty.signal();
+          return true;
+        }
+      } finally {
+        lock.unlock();
+      }
+      weight = Math.max(1, weigher.getWeight(getTenantType(key), callRunner));
+    }
+  }
+
+  // Takes the next call of the tenant having its turn. The lock must be held and a call waiting.
+  private CallRunner dequeue() {
+    Flow flow = activeFlows.peekFirst();
+    if (flow.deficit == 0) {
+      flow.deficit = flow.weight;
+    }
+    CallRunner callRunner = flow.calls.pollFirst();
+    flow.deficit--;
+    count--;
+    if (flow.calls.isEmpty()) {
+      // an idle tenant keeps nothing of its turn
+      activeFlows.pollFirst();
+      flows.remove(flow.key);
+    } else if (flow.deficit == 0) {
+      activeFlows.addLast(activeFlows.pollFirst());
+    }
+    return callRunner;
+  }
+
+  @Override
+  public CallRunner poll() {
+    lock.lock();
+    try {
+      return count == 0 ? null : dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public CallRunner poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public CallRunner take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (count == 0) {
+        notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public CallRunner peek() {
+    lock.lock();
+    try {
+      return count == 0 ? null : activeFlows.peekFirst().calls.peekFirst();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return capacity - size();
+  }
+
+  /** @return the number of tenants having calls waiting */
+  int getActiveTenantCount() {
+    lock.lock();
+    try {
+      return activeFlows.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super CallRunner> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super CallRunner> c, int maxElements) {
+    lock.lock();
+    try {
+      int n = 0;
+      for (; n < maxElements && count > 0; n++) {
+        c.add(dequeue());
+      }
+      return n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.lock();
+    try {
+      return "WeightedFairCallQueue(size=" + count + ", tenants=" + activeFlows.size() + ")";
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // This class does NOT provide generic purpose BlockingQueue implementation,
+  // so to prevent misuse the methods waiting for room throw UnsupportedOperationException.
+
+  @Override
+  public void put(CallRunner callRunner) throws InterruptedException {
+    throw new UnsupportedOperationException("This class doesn't support waiting for room,"
+      + " use offer()");
+  }
+
+  @Override
+  public boolean offer(CallRunner callRunner, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    throw new UnsupportedOperationException("This class doesn't support waiting for room,"
+      + " use offer()");
+  }
+
+  @Override
+  public Iterator<CallRunner> iterator() {
+    throw new UnsupportedOperationException("This class doesn't support iteration");
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.master;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.CompactionDemand;
+
+/**
+ * Splits a cluster wide compaction throughput budget between the region servers, so that a
+ * compaction storm, after a bulk load or the failure of a region server say, does not saturate the
+ * file system on all the nodes at once. The region servers report the compactions they have to
+ * run with each of their reports, and get back their share of the budget, which their compaction
+ * throughput controller then honors.
+ * <p>
+ * The cost of the demand of a server is the number of compactions it has queued or running, times
+ * the read amplification of its worst store, so that the servers whose reads suffer the most get
+ * their files compacted first, times one plus its compaction pressure, so that the servers about
+ * to block writes get theirs compacted first too. Every server is granted at least a minimum
+ * throughput, so that the compactions queued between two reports do not stall, and the rest of the
+ * budget is split in proportion to the costs.
+ */
+@InterfaceAudience.Private
+public class CompactionThroughputBudget {
+  private static final Log LOG = LogFactory.getLog(CompactionThroughputBudget.class);
+
+  /** The compaction throughput of the whole cluster, in bytes per second. Disabled if not set. */
+  public static final String CLUSTER_THROUGHPUT_KEY = "hbase.master.compaction.throughput";
+
+  /** The compaction throughput every region server is granted at least, in bytes per second. */
+  public static final String MIN_SERVER_THROUGHPUT_KEY =
+      "hbase.master.compaction.throughput.min.per.server";
+
+  private static final long DEFAULT_MIN_SERVER_THROUGHPUT = 1024L * 1024;
+
+  private static final class Demand {
+    final double cost;
+    final long time;
+    /** The throughput granted to the server for the demand, above the minimum */
+    final double share;
+
+    Demand(double cost, long time, double share) {
+      this.cost = cost;
+      this.time = time;
+      this.share = share;
+    }
+  }
+
+  private final long clusterThroughput;
+
+  private final long minServerThroughput;
+
+  /** How long the last report of a server counts for, and how often the silent ones are dropped. */
+  private final long reportInterval;
+
+  private final Map<ServerName, Demand> demands = new HashMap<>();
+
+  /** The total cost of the last demands of the servers */
+  private double totalCost;
+
+  /** The total throughput granted to the servers above their minimums */
+  private double totalShare;
+
+  private long lastExpireTime;
+
+  public CompactionThroughputBudget(Configuration conf) {
+    this.clusterThroughput = conf.getLong(CLUSTER_THROUGHPUT_KEY, 0);
+    this.minServerThroughput =
+        conf.getLong(MIN_SERVER_THROUGHPUT_KEY, DEFAULT_MIN_SERVER_THROUGHPUT);
+    this.reportInterval = conf.getInt("hbase.regionserver.msginterval", 3 * 1000);
+    if (isEnabled()) {
+      LOG.info("Cluster compaction throughput " + clusterThroughput + " bytes/s, at least "
+          + minServerThroughput + " bytes/s per region server");
+    }
+  }
+
+  public boolean isEnabled() {
+    return clusterThroughput > 0;
+  }
+
+  static double getCost(CompactionDemand demand) {
+    int compactions = demand.getQueuedCompactions() + demand.getRunningCompactions();
+    return compactions * (double) Math.max(1, demand.getReadAmplification())
+        * (1 + Math.max(0, demand.getCompactionPressure()));
+  }
+
+  /**
+   * Records the compactions the region server has to run, and hands it its share of the budget.
+   * The other servers keep the throughput they were granted until they report again, so the
+   * server gets no more than what they leave of the budget.
+   * @return the compaction throughput granted to the server, in bytes per second
+   */
+  public synchronized long grant(ServerName serverName, CompactionDemand demand) {
+    long now = EnvironmentEdgeManager.currentTime();
+    if (now - lastExpireTime >= reportInterval) {
+      expireDemands(now);
+    }
+    double cost = getCost(demand);
+    Demand last = demands.remove(serverName);
+    if (last != null) {
+      totalCost -= last.cost;
+      totalShare -= last.share;
+    }
+    totalCost += cost;
+    int servers = demands.size() + 1;
+    long min = Math.min(minServerThroughput, clusterThroughput / servers);
+    long rest = clusterThroughput - min * servers;
+    double share = totalCost <= 0 ? (double) rest / servers : rest * cost / totalCost;
+    share = Math.max(0, Math.min(share, rest - totalShare));
+    demands.put(serverName, new Demand(cost, now, share));
+    totalShare += share;
+    return min + (long) share;
+  }
+
+  private void expireDemands(long now) {
+    // Forget the servers that stopped reporting, the dead ones and the ones cut off from us
+    for (Iterator<Demand> iter = demands.values().iterator(); iter.hasNext();) {
+      Demand demand = iter.next();
+      if (now - demand.time > 10 * reportInterval) {
+        iter.remove();
+        totalCost -= demand.cost;
+        totalShare -= demand.share;
+      }
+    }
+    if (demands.isEmpty()) {
+      // Do not carry the rounding errors of the sums over
+      totalCost = 0;
+      totalShare = 0;
+    }
+    lastExpireTime = now;
+  }
+}
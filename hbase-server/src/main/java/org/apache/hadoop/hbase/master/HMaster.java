@@ -57,6 +57,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.ClusterStatus;
 import org.apache.hadoop.hbase.ClusterStatus.Option;
+import org.apache.hadoop.hbase.CompoundConfiguration;
 import org.apache.hadoop.hbase.CoordinatedStateException;
 import org.apache.hadoop.hbase.CoordinatedStateManager;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
@@ -166,6 +167,7 @@ import org.apache.hadoop.hbase.replication.regionserver.Replication;
 import org.apache.hadoop.hbase.security.AccessDeniedException;
 import org.apache.hadoop.hbase.security.UserProvider;
 import org.apache.hadoop.hbase.util.Addressing;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CompressionTest;
 import org.apache.hadoop.hbase.util.EncryptionTest;
@@ -329,6 +331,9 @@ public class HMaster extends HRegionServer implements MasterServices {
   // operations/debugging.
   MemoryBoundedLogMessageBuffer rsFatals;
 
+  // Cluster wide compaction throughput split between the region servers
+  private final CompactionThroughputBudget compactionThroughputBudget;
+
   // flag set after we become the active master (used for testing)
   private volatile boolean activeMaster = false;
 
@@ -498,6 +503,8 @@ public class HMaster extends HRegionServer implements MasterServices {
 
     this.metricsMaster = new MetricsMaster(new MetricsMasterWrapperImpl(this));
 
+    this.compactionThroughputBudget = new CompactionThroughputBudget(conf);
+
     // preload table descriptor at startup
     this.preLoadTableDescriptors = conf.getBoolean("hbase.master.preload.tabledescriptors", true);
 
@@ -1904,6 +1911,17 @@ public class HMaster extends HRegionServer implements MasterServices {
         warnOrThrowExceptionForFailure(logWarn, CONF_KEY, message, null);
       }
 
+      // check the row prefix of a row prefix Bloom filter, as the store will see it
+      try {
+        BloomFilterUtil.getBloomFilterParam(hcd.getBloomFilterType(),
+          new CompoundConfiguration().add(conf).addBytesMap(htd.getValues())
+              .addStringMap(hcd.getConfiguration()).addBytesMap(hcd.getValues()));
+      } catch (IllegalArgumentException e) {
+        String message = "Bloom filter of column family " + hcd.getNameAsString()
+            + " is misconfigured: " + e.getMessage();
+        warnOrThrowExceptionForFailure(logWarn, CONF_KEY, message, null);
+      }
+
       // TODO: should we check coprocessors and encryption ?
     }
   }
@@ -2657,6 +2675,10 @@ public class HMaster extends HRegionServer implements MasterServices {
     return cpHost;
   }
 
+  public CompactionThroughputBudget getCompactionThroughputBudget() {
+    return compactionThroughputBudget;
+  }
+
   @Override
   public MasterQuotaManager getMasterQuotaManager() {
     return quotaManager;
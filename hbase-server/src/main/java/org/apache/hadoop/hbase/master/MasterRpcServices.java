@@ -427,6 +427,12 @@ public class MasterRpcServices extends RSRpcServices
         master.metricsMaster.incrementRequests(sl.getTotalNumberOfRequests()
             - (oldLoad != null ? oldLoad.getTotalNumberOfRequests() : 0));
       }
+      CompactionThroughputBudget budget = master.getCompactionThroughputBudget();
+      if (request.hasCompactionDemand() && budget.isEnabled()) {
+        return RegionServerReportResponse.newBuilder()
+            .setCompactionThroughput(budget.grant(serverName, request.getCompactionDemand()))
+            .build();
+      }
     } catch (IOException ioe) {
       throw new ServiceException(ioe);
     }
@@ -68,4 +68,10 @@ public interface QuotaLimiter {
 
   /** @return the number of bytes available to write to avoid exceeding the quota */
   long getWriteAvailable();
+
+  /**
+   * @return the number of requests allowed per second, Long.MAX_VALUE if the number of requests
+   *         is not throttled
+   */
+  long getRequestNumLimit();
 }
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.quotas;
+
+import java.util.Optional;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.ipc.CallRunner;
+import org.apache.hadoop.hbase.ipc.WeightedFairCallQueue;
+import org.apache.hadoop.hbase.ipc.WeightedFairCallQueue.TenantType;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Weighs the tenants of the calls by their request number throttle. A throttled tenant gets one
+ * unit of weight per "hbase.ipc.server.callqueue.fair.weight.unit" requests per second it is
+ * allowed, up to "hbase.ipc.server.callqueue.fair.max.weight", which is the weight of the tenants
+ * without a request number throttle and of the system tables.
+ */
+@InterfaceAudience.Private
+class QuotaWeigher implements WeightedFairCallQueue.Weigher {
+  static final String WEIGHT_UNIT_KEY = "hbase.ipc.server.callqueue.fair.weight.unit";
+  static final long DEFAULT_WEIGHT_UNIT = 100;
+  static final String MAX_WEIGHT_KEY = "hbase.ipc.server.callqueue.fair.max.weight";
+  static final int DEFAULT_MAX_WEIGHT = 10;
+
+  private final QuotaCache quotaCache;
+  private final long weightUnit;
+  private final int maxWeight;
+
+  QuotaWeigher(Configuration conf, QuotaCache quotaCache) {
+    this.quotaCache = quotaCache;
+    this.weightUnit = Math.max(1, conf.getLong(WEIGHT_UNIT_KEY, DEFAULT_WEIGHT_UNIT));
+    this.maxWeight = Math.max(1, conf.getInt(MAX_WEIGHT_KEY, DEFAULT_MAX_WEIGHT));
+  }
+
+  @Override
+  public int getWeight(TenantType type, CallRunner call) {
+    TableName table = WeightedFairCallQueue.getTable(call.getRpcCall());
+    if (table != null && table.isSystemTable()) {
+      return maxWeight;
+    }
+    QuotaLimiter limiter;
+    switch (type) {
+      case TABLE:
+        limiter = quotaCache.getTableLimiter(table);
+        break;
+      case NAMESPACE:
+        limiter = quotaCache.getNamespaceLimiter(table.getNamespaceAsString());
+        break;
+      default:
+        Optional<User> user = call.getRpcCall().getRequestUser();
+        if (!user.isPresent()) {
+          return maxWeight;
+        }
+        limiter = table != null ? quotaCache.getUserLimiter(user.get().getUGI(), table)
+            : quotaCache.getUserQuotaState(user.get().getUGI()).getGlobalLimiter();
+        break;
+    }
+    return getWeight(limiter.getRequestNumLimit());
+  }
+
+  int getWeight(long requestNumLimit) {
+    if (requestNumLimit == Long.MAX_VALUE) {
+      return maxWeight;
+    }
+    long weight = (requestNumLimit + weightUnit - 1) / weightUnit;
+    return (int) Math.max(1, Math.min(maxWeight, weight));
+  }
+}
@@ -68,6 +68,11 @@ public class RegionServerRpcQuotaManager {
     // Initialize quota cache
     quotaCache = new QuotaCache(rsServices);
     quotaCache.start();
+
+    // Let the scheduler weigh the tenants of the calls by their quotas
+    if (rpcScheduler != null) {
+      rpcScheduler.setCallWeigher(new QuotaWeigher(rsServices.getConfiguration(), quotaCache));
+    }
   }
 
   public void stop() {
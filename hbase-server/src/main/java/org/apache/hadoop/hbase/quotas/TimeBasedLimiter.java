@@ -182,6 +182,14 @@ public class TimeBasedLimiter implements QuotaLimiter {
     return readSizeLimiter.getAvailable();
   }
 
+  @Override
+  public long getRequestNumLimit() {
+    if (reqsLimiter.isBypass()) {
+      return Long.MAX_VALUE;
+    }
+    return (long) (reqsLimiter.getLimit() * 1000.0 / reqsLimiter.getTimeUnitInMillis());
+  }
+
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
@@ -84,10 +84,17 @@ public abstract class AbstractMemStore implements MemStore {
 
   protected void resetActive() {
     // Reset heap to not include any keys
-    this.active = SegmentFactory.instance().createMutableSegment(conf, comparator);
+    this.active = createActiveSegment();
     this.timeOfOldestEdit = Long.MAX_VALUE;
   }
 
+  /**
+   * @return a new empty segment to absorb the write operations. Called by the constructor too
+   */
+  protected MutableSegment createActiveSegment() {
+    return SegmentFactory.instance().createMutableSegment(conf, comparator);
+  }
+
   /**
    * Updates the wal with the lowest sequence id (oldest entry) that is still in memory
    * @param onlyIfMoreRecent a flag that marks whether to update the sequence id no matter what or
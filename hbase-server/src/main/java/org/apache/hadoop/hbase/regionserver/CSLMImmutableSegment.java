@@ -47,6 +47,13 @@ public class CSLMImmutableSegment extends ImmutableSegment {
     return ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY;
   }
 
+  /**
+   * @return the heap overhead of the segment metadata, which flattening replaces by its own
+   */
+  protected long getDeepOverhead() {
+    return DEEP_OVERHEAD_CSLM;
+  }
+
   @Override protected boolean canBeFlattened() {
     return true;
   }
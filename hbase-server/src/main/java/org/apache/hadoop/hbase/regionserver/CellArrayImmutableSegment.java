@@ -56,13 +56,13 @@ public class CellArrayImmutableSegment extends ImmutableSegment {
    */
   protected CellArrayImmutableSegment(CSLMImmutableSegment segment, MemStoreSize memstoreSize) {
     super(segment); // initiailize the upper class
-    incSize(0, DEEP_OVERHEAD_CAM - CSLMImmutableSegment.DEEP_OVERHEAD_CSLM);
+    incSize(0, DEEP_OVERHEAD_CAM - segment.getDeepOverhead());
     int numOfCells = segment.getCellsCount();
     // build the new CellSet based on CellChunkMap and update the CellSet of this Segment
     reinitializeCellSet(numOfCells, segment.getScanner(Long.MAX_VALUE), segment.getCellSet());
     // arrange the meta-data size, decrease all meta-data sizes related to SkipList;
     // add sizes of CellArrayMap entry (reinitializeCellSet doesn't take the care for the sizes)
-    long newSegmentSizeDelta = numOfCells*(indexEntrySize()-ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY);
+    long newSegmentSizeDelta = numOfCells*(indexEntrySize()-segment.indexEntrySize());
     incSize(0, newSegmentSizeDelta);
     memstoreSize.incMemStoreSize(0, newSegmentSizeDelta);
   }
@@ -21,6 +21,7 @@ package org.apache.hadoop.hbase.regionserver;
 import org.apache.hadoop.hbase.ByteBufferKeyValue;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.ExtendedCell;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -62,14 +63,15 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
    */
   protected CellChunkImmutableSegment(CSLMImmutableSegment segment, MemStoreSize memstoreSize) {
     super(segment); // initiailize the upper class
-    incSize(0,-CSLMImmutableSegment.DEEP_OVERHEAD_CSLM+ CellChunkImmutableSegment.DEEP_OVERHEAD_CCM);
+    incSize(0, -segment.getDeepOverhead() + CellChunkImmutableSegment.DEEP_OVERHEAD_CCM);
     int numOfCells = segment.getCellsCount();
     // build the new CellSet based on CellChunkMap
-    reinitializeCellSet(numOfCells, segment.getScanner(Long.MAX_VALUE), segment.getCellSet());
+    reinitializeCellSet(numOfCells, segment.getScanner(Long.MAX_VALUE), segment.getCellSet(),
+        memstoreSize);
     // arrange the meta-data size, decrease all meta-data sizes related to SkipList;
     // add sizes of CellChunkMap entry, decrease also Cell object sizes
     // (reinitializeCellSet doesn't take the care for the sizes)
-    long newSegmentSizeDelta = numOfCells*(indexEntrySize()-ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY);
+    long newSegmentSizeDelta = numOfCells*(indexEntrySize()-segment.indexEntrySize());
 
     incSize(0, newSegmentSizeDelta);
     memstoreSize.incMemStoreSize(0, newSegmentSizeDelta);
@@ -80,6 +82,18 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
     return (ClassSize.CELL_CHUNK_MAP_ENTRY - KeyValue.FIXED_OVERHEAD);
   }
 
+  /**
+   * A cell in a jumbo chunk also takes the heap of the chunk, which is not shared with other cells
+   */
+  @Override
+  protected long heapSizeChange(Cell cell, boolean succ) {
+    long heapSize = super.heapSizeChange(cell, succ);
+    if (succ && isInJumboChunk(cell)) {
+      heapSize += ChunkCreator.JUMBO_CHUNK_OVERHEAD;
+    }
+    return heapSize;
+  }
+
   @Override
   protected boolean canBeFlattened() {
     return false;
@@ -106,14 +120,18 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
     while (iterator.hasNext()) {        // the iterator hides the elimination logic for compaction
       Cell c = iterator.next();
       numOfCellsAfterCompaction++;
-      assert (c instanceof ByteBufferKeyValue); // shouldn't get here anything but ByteBufferKeyValue
       if (offsetInCurentChunk + ClassSize.CELL_CHUNK_MAP_ENTRY > chunkSize) {
         currentChunkIdx++;              // continue to the next index chunk
         offsetInCurentChunk = ChunkCreator.SIZEOF_CHUNK_HEADER;
       }
       if (action == MemStoreCompactor.Action.COMPACT) {
-        c = maybeCloneWithAllocator(c); // for compaction copy cell to the new segment (MSLAB copy)
+        // for compaction copy cell to the new segment (MSLAB copy), big cells included
+        c = maybeCloneWithAllocator(c, true);
+      } else if (!isChunkBased(c)) {
+        // merge keeps cells where they are, but this one is not in any chunk
+        c = getMemStoreLAB().forceCopyOfBigCellInto(c);
       }
+      assert (c instanceof ByteBufferKeyValue); // shouldn't get here anything but ByteBufferKeyValue
       offsetInCurentChunk = // add the Cell reference to the index chunk
           createCellReference((ByteBufferKeyValue)c, chunks[currentChunkIdx].getData(),
               offsetInCurentChunk);
@@ -132,9 +150,9 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
   // Create CellSet based on CellChunkMap from current ConcurrentSkipListMap based CellSet
   // (without compacting iterator)
   // This is a service for not-flat immutable segments
-  // Assumption: cells do not exceed chunk size!
-  private void reinitializeCellSet(
-      int numOfCells, KeyValueScanner segmentScanner, CellSet oldCellSet) {
+  // Cells that are not in any chunk are copied into the MSLAB on the way
+  private void reinitializeCellSet(int numOfCells, KeyValueScanner segmentScanner,
+      CellSet oldCellSet, MemStoreSize memstoreSize) {
     Cell curCell;
     // calculate how many chunks we will need for metadata
     int chunkSize = ChunkCreator.getInstance().getChunkSize();
@@ -151,6 +169,9 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
 
     try {
       while ((curCell = segmentScanner.next()) != null) {
+        if (!isChunkBased(curCell)) {
+          curCell = copyCellIntoMSLAB(curCell, memstoreSize);
+        }
         assert (curCell instanceof ByteBufferKeyValue); // shouldn't get here anything but ByteBufferKeyValue
         if (offsetInCurentChunk + ClassSize.CELL_CHUNK_MAP_ENTRY > chunkSize) {
           // continue to the next metadata chunk
@@ -171,6 +192,35 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
     this.setCellSet(oldCellSet, new CellSet(ccm)); // update the CellSet of this Segment
   }
 
+  /*------------------------------------------------------------------------*/
+  // Upserted cells and cells bigger than the MSLAB maximal allocation are not copied into the
+  // MSLAB when they are added, so they have no chunk a CellChunkMap could refer to
+  private static boolean isChunkBased(Cell cell) {
+    return cell instanceof ByteBufferKeyValue
+        && ((ByteBufferKeyValue) cell).getChunkId() != ExtendedCell.CELL_NOT_BASED_ON_CHUNK;
+  }
+
+  /*------------------------------------------------------------------------*/
+  static boolean isInJumboChunk(Cell cell) {
+    return isChunkBased(cell)
+        && ChunkCreator.getInstance().isJumboChunk(((ByteBufferKeyValue) cell).getChunkId());
+  }
+
+  /*------------------------------------------------------------------------*/
+  // Copy a cell that is not in any chunk into the MSLAB of this segment. Only the heap size
+  // changes, as the cell's POJO and data are replaced by a cell over the copied data, and by the
+  // jumbo chunk the copy may have needed
+  private Cell copyCellIntoMSLAB(Cell cell, MemStoreSize memstoreSize) {
+    long oldHeapSize = heapSizeChange(cell, true);
+    Cell copy = maybeCloneWithAllocator(cell, true);
+    long heapOverhead = heapSizeChange(copy, true) - oldHeapSize;
+    incSize(0, heapOverhead);
+    if (memstoreSize != null) {
+      memstoreSize.incMemStoreSize(0, heapOverhead);
+    }
+    return copy;
+  }
+
   /*------------------------------------------------------------------------*/
   // for a given cell, write the cell representation on the index chunk
   private int createCellReference(ByteBufferKeyValue cell, ByteBuffer idxBuffer, int idxOffset) {
@@ -0,0 +1,68 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.apache.hadoop.hbase.util.ClassSize;
+
+/**
+ * CellChunkSkipListImmutableSegment is the not-flat immutable segment a
+ * {@link CellChunkSkipListMutableSegment} becomes when it is pushed into the compaction pipeline.
+ * It is working with CellSet with CellChunkSkipListMap delegatee, and can be flattened like a
+ * {@link CSLMImmutableSegment}.
+ */
+@InterfaceAudience.Private
+public class CellChunkSkipListImmutableSegment extends CSLMImmutableSegment {
+  public static final long DEEP_OVERHEAD_CCSLM =
+      ImmutableSegment.DEEP_OVERHEAD + ClassSize.CELL_CHUNK_SKIPLIST_MAP;
+
+  /**------------------------------------------------------------------------
+   * Copy C-tor to be used when new CellChunkSkipListImmutableSegment is being built from a
+   * CellChunkSkipListMutableSegment, when it is pushed into the compaction pipeline.
+   */
+  protected CellChunkSkipListImmutableSegment(CellChunkSkipListMutableSegment segment) {
+    // the index is the same, so the metadata heap size only changes from the one of a mutable
+    // segment to the one of an immutable segment, as CSLMImmutableSegment counts
+    super(segment);
+  }
+
+  @Override
+  protected long indexEntrySize() {
+    return (ClassSize.CELL_CHUNK_SKIPLIST_MAP_ENTRY - KeyValue.FIXED_OVERHEAD);
+  }
+
+  @Override
+  protected long getDeepOverhead() {
+    return DEEP_OVERHEAD_CCSLM;
+  }
+
+  /**
+   * A cell in a jumbo chunk also takes the heap of the chunk, which is not shared with other cells
+   */
+  @Override
+  protected long heapSizeChange(Cell cell, boolean succ) {
+    long heapSize = super.heapSizeChange(cell, succ);
+    if (succ && CellChunkImmutableSegment.isInJumboChunk(cell)) {
+      heapSize += ChunkCreator.JUMBO_CHUNK_OVERHEAD;
+    }
+    return heapSize;
+  }
+}
@@ -0,0 +1,770 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.ExtendedCell;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.UnsafeAccess;
+import org.apache.hadoop.hbase.util.UnsafeAvailChecker;
+
+/**
+ * CellChunkSkipListMap is a concurrent skip list of Cells whose nodes are kept in chunks, so it
+ * can index the active segment of a memstore without the per Cell objects of a
+ * ConcurrentSkipListMap. The chunks of the nodes are taken from the MemStoreLAB of the segment,
+ * so they are off-heap when the chunk pool is. The Cells must be in chunks of that MemStoreLAB
+ * too, as a node refers to its Cell like CellChunkMap does, by the chunk id, offset, length and
+ * seqId of the Cell.
+ *
+ * The node memory layout, 8 bytes aligned:
+ *
+ * <----------------- cell-representation -----------------> <---------- links ---------->
+ * -------------------------------------------------------------------------------------- ...
+ *  long     | integer      | integer      | integer | integer | long       | long
+ *  8 bytes  | 4 bytes      | 4 bytes      | 4 bytes | 4 bytes | 8 bytes    | 8 bytes
+ *  sequence | chunkID of   | offset where | length  | height  | next node  | next node  ...
+ *  ID of    | chunk with   | Cell's data  | of the  | of the  | on level 0 | on level 1
+ *  the Cell | Cell data    | starts       | Cell    | node    |            |
+ * -------------------------------------------------------------------------------------- ...
+ *
+ * A link is the index of the chunk among those of the map in its upper half and the offset of
+ * the node in its lower half. Links are only ever set by compare-and-swap and nodes are never
+ * unlinked: removing a Cell marks the bottom level link of its node, and readers skip the marked
+ * nodes. Putting a Cell that is in the map already links a new node before the old one, which
+ * is marked then. Each key is put by one thread at a time, as is the case in a memstore.
+ *
+ * Sub-maps share the skip list and only add bounds, like the ones of ConcurrentSkipListMap.
+ * Methods not needed by CellSet are not supported.
+ */
+@InterfaceAudience.Private
+public class CellChunkSkipListMap implements NavigableMap<Cell, Cell> {
+
+  // the number of levels is enough for a quarter of the nodes of a level to be on the level above
+  // up to billions of cells
+  static final int MAX_LEVEL = 16;
+
+  private static final int SEQ_ID_OFFSET = 0;
+  private static final int CHUNK_ID_OFFSET = SEQ_ID_OFFSET + Bytes.SIZEOF_LONG;
+  private static final int CELL_OFFSET_OFFSET = CHUNK_ID_OFFSET + Bytes.SIZEOF_INT;
+  private static final int LENGTH_OFFSET = CELL_OFFSET_OFFSET + Bytes.SIZEOF_INT;
+  private static final int HEIGHT_OFFSET = LENGTH_OFFSET + Bytes.SIZEOF_INT;
+  private static final int LINKS_OFFSET = HEIGHT_OFFSET + Bytes.SIZEOF_INT;
+
+  private static final long NIL = 0;
+  // the mark of the bottom level link of a removed node, links are to 8 bytes aligned offsets
+  private static final long REMOVED = 1;
+
+  private final Index index;
+  // bounds of a sub-map, in ascending order whether the map is descending or not
+  private final Cell lo;
+  private final boolean loInclusive;
+  private final Cell hi;
+  private final boolean hiInclusive;
+  private final boolean descending;
+
+  /**
+   * C-tor for creating an empty CellChunkSkipListMap
+   * @param comparator a tool for comparing cells
+   * @param memStoreLAB the MemStoreLAB holding the cells, out of which the nodes are allocated
+   */
+  public CellChunkSkipListMap(Comparator<? super Cell> comparator, MemStoreLAB memStoreLAB) {
+    this(new Index(comparator, memStoreLAB), null, false, null, false, false);
+  }
+
+  private CellChunkSkipListMap(Index index, Cell lo, boolean loInclusive, Cell hi,
+      boolean hiInclusive, boolean descending) {
+    this.index = index;
+    this.lo = lo;
+    this.loInclusive = loInclusive;
+    this.hi = hi;
+    this.hiInclusive = hiInclusive;
+    this.descending = descending;
+  }
+
+  /**
+   * @return whether the links between nodes can be swapped atomically in chunks, which needs
+   *         Unsafe and 8 bytes aligned data of on-heap chunks
+   */
+  static boolean isSupported() {
+    return UnsafeAvailChecker.isAvailable()
+        && UnsafeAccess.BYTE_ARRAY_BASE_OFFSET % Bytes.SIZEOF_LONG == 0;
+  }
+
+  /**
+   * The skip list shared by a map and its sub-maps
+   */
+  private static final class Index {
+    private final Comparator<? super Cell> comparator;
+    private final MemStoreLAB memStoreLAB;
+    // the chunks holding the nodes, a link refers to a chunk by its index in this array
+    private volatile Chunk[] chunks = new Chunk[0];
+    // the number of levels in use
+    private final AtomicInteger level = new AtomicInteger(1);
+    // the number of cells that are not removed
+    private final AtomicInteger size = new AtomicInteger();
+    private final long head;
+
+    private Index(Comparator<? super Cell> comparator, MemStoreLAB memStoreLAB) {
+      this.comparator = comparator;
+      this.memStoreLAB = memStoreLAB;
+      this.head = allocate(nodeSize(MAX_LEVEL));
+      // chunks may come from the pool, nothing in them can be taken as zeroed
+      ByteBufferUtils.putInt(buffer(head), offset(head) + HEIGHT_OFFSET, MAX_LEVEL);
+      for (int i = 0; i < MAX_LEVEL; i++) {
+        setNext(head, i, NIL);
+      }
+    }
+
+    private static int nodeSize(int height) {
+      return LINKS_OFFSET + height * Bytes.SIZEOF_LONG;
+    }
+
+    // Allocates the given number of bytes, a multiple of 8, in the chunks of the nodes
+    private long allocate(int size) {
+      while (true) {
+        Chunk[] cs = this.chunks;
+        if (cs.length > 0) {
+          int offset = cs[cs.length - 1].alloc(size);
+          if (offset != -1) {
+            return ((long) (cs.length - 1) << Integer.SIZE) | offset;
+          }
+        }
+        synchronized (this) {
+          // another thread may have added a chunk in the meanwhile
+          if (this.chunks == cs) {
+            Chunk chunk = memStoreLAB.getNewExternalChunk();
+            // skip the bytes following the chunk id, for the nodes to be 8 bytes aligned
+            chunk.alloc(Bytes.SIZEOF_LONG - ChunkCreator.SIZEOF_CHUNK_HEADER);
+            Chunk[] newChunks = Arrays.copyOf(cs, cs.length + 1);
+            newChunks[cs.length] = chunk;
+            this.chunks = newChunks;
+          }
+        }
+      }
+    }
+
+    private ByteBuffer buffer(long node) {
+      return chunks[(int) (node >>> Integer.SIZE)].getData();
+    }
+
+    private static int offset(long node) {
+      return (int) node;
+    }
+
+    private static int linkOffset(long node, int level) {
+      return offset(node) + LINKS_OFFSET + level * Bytes.SIZEOF_LONG;
+    }
+
+    // Returns the link out of the node on the given level, which is marked if the node is removed
+    private long getNext(long node, int level) {
+      return UnsafeAccess.getLongVolatile(buffer(node), linkOffset(node, level));
+    }
+
+    private long next(long node) {
+      return getNext(node, 0) & ~REMOVED;
+    }
+
+    private void setNext(long node, int level, long link) {
+      UnsafeAccess.putLongVolatile(buffer(node), linkOffset(node, level), link);
+    }
+
+    private boolean casNext(long node, int level, long expected, long link) {
+      return UnsafeAccess.compareAndSwapLong(buffer(node), linkOffset(node, level), expected, link);
+    }
+
+    private boolean isRemoved(long node) {
+      return (getNext(node, 0) & REMOVED) != 0;
+    }
+
+    private Cell getCell(long node) {
+      ByteBuffer block = buffer(node);
+      int offset = offset(node);
+      int chunkId = ByteBufferUtils.toInt(block, offset + CHUNK_ID_OFFSET);
+      Chunk chunk = ChunkCreator.getInstance().getChunk(chunkId);
+      if (chunk == null) {
+        // this should not happen
+        throw new IllegalArgumentException("In CellChunkSkipListMap, cell must be associated "
+            + "with chunk. We were looking for the cell of chunk " + chunkId);
+      }
+      return new ByteBufferChunkCell(chunk.getData(),
+          ByteBufferUtils.toInt(block, offset + CELL_OFFSET_OFFSET),
+          ByteBufferUtils.toInt(block, offset + LENGTH_OFFSET),
+          ByteBufferUtils.toLong(block, offset + SEQ_ID_OFFSET));
+    }
+
+    private int compare(long node, Cell key) {
+      return comparator.compare(getCell(node), key);
+    }
+
+    // Whether the node comes before the key, a null key being after all the nodes
+    private boolean isBefore(long node, Cell key, boolean inclusive) {
+      if (key == null) {
+        return true;
+      }
+      int res = compare(node, key);
+      return res < 0 || (inclusive && res == 0);
+    }
+
+    /**
+     * Finds the last node before the key on each level from the given one down, that is whose
+     * cell is smaller than the key, or not greater when inclusive, and the link out of it.
+     * @return the last node before the key on the bottom level, or the head
+     */
+    private long findPredecessors(Cell key, boolean inclusive, int top, long[] preds,
+        long[] links) {
+      long pred = head;
+      for (int i = top - 1; i >= 0; i--) {
+        long link = getNext(pred, i);
+        long node = link & ~REMOVED;
+        while (node != NIL && isBefore(node, key, inclusive)) {
+          pred = node;
+          link = getNext(pred, i);
+          node = link & ~REMOVED;
+        }
+        if (preds != null) {
+          preds[i] = pred;
+          links[i] = link;
+        }
+      }
+      return pred;
+    }
+
+    private long findPredecessor(Cell key, boolean inclusive) {
+      return findPredecessors(key, inclusive, level.get(), null, null);
+    }
+
+    /**
+     * @return the first node that is not removed after the key, that is whose cell is greater
+     *         than the key, or not smaller when inclusive, or NIL
+     */
+    private long findFirstAfter(Cell key, boolean inclusive) {
+      return skipRemoved(next(findPredecessor(key, !inclusive)));
+    }
+
+    private long skipRemoved(long node) {
+      while (node != NIL) {
+        long link = getNext(node, 0);
+        if ((link & REMOVED) == 0) {
+          return node;
+        }
+        node = link & ~REMOVED;
+      }
+      return NIL;
+    }
+
+    /**
+     * @return the last node that is not removed before the key, that is whose cell is smaller
+     *         than the key, or not greater when inclusive, or NIL. A null key finds the last node
+     */
+    private long findLastBefore(Cell key, boolean inclusive) {
+      while (true) {
+        long pred = findPredecessor(key, inclusive);
+        if (pred == head) {
+          return NIL;
+        }
+        // the node ends the run of the nodes of its key, of which at most one is not removed
+        Cell predCell = getCell(pred);
+        for (long node = next(findPredecessor(predCell, false));
+            node != NIL && compare(node, predCell) == 0; node = next(node)) {
+          if (!isRemoved(node)) {
+            return node;
+          }
+        }
+        key = predCell;
+        inclusive = false;
+      }
+    }
+
+    /**
+     * @return the node of the key that is not removed, or NIL
+     */
+    private long find(Cell key) {
+      for (long node = next(findPredecessor(key, false));
+          node != NIL && compare(node, key) == 0; node = next(node)) {
+        if (!isRemoved(node)) {
+          return node;
+        }
+      }
+      return NIL;
+    }
+
+    private Cell put(Cell cell) {
+      if (!(cell instanceof ByteBufferKeyValue)
+          || ((ByteBufferKeyValue) cell).getChunkId() == ExtendedCell.CELL_NOT_BASED_ON_CHUNK) {
+        throw new IllegalArgumentException("In CellChunkSkipListMap, cell must be in a chunk");
+      }
+      ByteBufferKeyValue chunkCell = (ByteBufferKeyValue) cell;
+      int height = randomHeight();
+      long node = allocate(nodeSize(height));
+      ByteBuffer block = buffer(node);
+      int offset = offset(node);
+      ByteBufferUtils.putLong(block, offset + SEQ_ID_OFFSET, chunkCell.getSequenceId());
+      ByteBufferUtils.putInt(block, offset + CHUNK_ID_OFFSET, chunkCell.getChunkId());
+      ByteBufferUtils.putInt(block, offset + CELL_OFFSET_OFFSET, chunkCell.getOffset());
+      ByteBufferUtils.putInt(block, offset + LENGTH_OFFSET, KeyValueUtil.length(chunkCell));
+      ByteBufferUtils.putInt(block, offset + HEIGHT_OFFSET, height);
+
+      // link the node before all the nodes of the same key on the bottom level, keeping the mark
+      // of its predecessor. Once linked there, the cell is in the map
+      int top = Math.max(level.get(), height);
+      long[] preds = new long[top];
+      long[] links = new long[top];
+      while (true) {
+        findPredecessors(cell, false, top, preds, links);
+        setNext(node, 0, links[0] & ~REMOVED);
+        if (casNext(preds[0], 0, links[0], node | (links[0] & REMOVED))) {
+          break;
+        }
+      }
+      size.incrementAndGet();
+
+      int curLevel;
+      while ((curLevel = level.get()) < height && !level.compareAndSet(curLevel, height)) {
+        // retry until the level is at least the height of the node
+      }
+      for (int i = 1; i < height; i++) {
+        while (true) {
+          setNext(node, i, links[i]);
+          if (casNext(preds[i], i, links[i], node)) {
+            break;
+          }
+          findPredecessors(cell, false, top, preds, links);
+        }
+      }
+
+      // remove the older node of the key, if any
+      Cell replaced = null;
+      for (long old = next(node); old != NIL && compare(old, cell) == 0; old = next(old)) {
+        if (remove(old) && replaced == null) {
+          replaced = getCell(old);
+        }
+      }
+      return replaced;
+    }
+
+    // Marks the node as removed, returns false if it was already
+    private boolean remove(long node) {
+      while (true) {
+        long link = getNext(node, 0);
+        if ((link & REMOVED) != 0) {
+          return false;
+        }
+        if (casNext(node, 0, link, link | REMOVED)) {
+          size.decrementAndGet();
+          return true;
+        }
+      }
+    }
+
+    private static int randomHeight() {
+      int rnd = ThreadLocalRandom.current().nextInt();
+      int height = 1;
+      // a quarter of the nodes of a level are on the level above
+      while ((rnd & 3) == 0 && height < MAX_LEVEL) {
+        height++;
+        rnd >>>= 2;
+      }
+      return height;
+    }
+  }
+
+  // -------------------------------- Bounds --------------------------------
+  private boolean tooLow(Cell key) {
+    if (lo == null) {
+      return false;
+    }
+    int res = index.comparator.compare(key, lo);
+    return res < 0 || (res == 0 && !loInclusive);
+  }
+
+  private boolean tooHigh(Cell key) {
+    if (hi == null) {
+      return false;
+    }
+    int res = index.comparator.compare(key, hi);
+    return res > 0 || (res == 0 && !hiInclusive);
+  }
+
+  private boolean inRange(Cell key) {
+    return !tooLow(key) && !tooHigh(key);
+  }
+
+  // The lowest node in the bounds, in ascending order
+  private long lowestNode() {
+    long node = lo == null ? index.skipRemoved(index.next(index.head))
+        : index.findFirstAfter(lo, loInclusive);
+    return (node == NIL || tooHigh(index.getCell(node))) ? NIL : node;
+  }
+
+  // The highest node in the bounds, in ascending order
+  private long highestNode() {
+    long node = index.findLastBefore(hi, hi == null || hiInclusive);
+    return (node == NIL || tooLow(index.getCell(node))) ? NIL : node;
+  }
+
+  // The first node in the bounds after the key, in ascending order
+  private long ceilingNode(Cell key, boolean inclusive) {
+    if (tooLow(key)) {
+      return lowestNode();
+    }
+    long node = index.findFirstAfter(key, inclusive);
+    return (node == NIL || tooHigh(index.getCell(node))) ? NIL : node;
+  }
+
+  // The last node in the bounds before the key, in ascending order
+  private long floorNode(Cell key, boolean inclusive) {
+    if (tooHigh(key)) {
+      return highestNode();
+    }
+    long node = index.findLastBefore(key, inclusive);
+    return (node == NIL || tooLow(index.getCell(node))) ? NIL : node;
+  }
+
+  private Cell getCell(long node) {
+    return node == NIL ? null : index.getCell(node);
+  }
+
+  private Entry<Cell, Cell> getEntry(long node) {
+    if (node == NIL) {
+      return null;
+    }
+    Cell cell = index.getCell(node);
+    return new AbstractMap.SimpleImmutableEntry<>(cell, cell);
+  }
+
+  // Creates a sub-map of the bounds, narrowed to the bounds of this map
+  private CellChunkSkipListMap createSubMap(Cell fromKey, boolean fromInclusive, Cell toKey,
+      boolean toInclusive, boolean descending) {
+    if (lo != null && (fromKey == null || tooLow(fromKey))) {
+      fromKey = lo;
+      fromInclusive = loInclusive;
+    }
+    if (hi != null && (toKey == null || tooHigh(toKey))) {
+      toKey = hi;
+      toInclusive = hiInclusive;
+    }
+    return new CellChunkSkipListMap(index, fromKey, fromInclusive, toKey, toInclusive, descending);
+  }
+
+  @Override
+  public Comparator<? super Cell> comparator() {
+    return descending ? Collections.reverseOrder(index.comparator) : index.comparator;
+  }
+
+  @Override
+  public int size() {
+    if (lo == null && hi == null) {
+      return index.size.get();
+    }
+    int count = 0;
+    for (Iterator<Cell> it = values().iterator(); it.hasNext(); it.next()) {
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return lowestNode() == NIL;
+  }
+
+  // ---------------- Sub-Maps ----------------
+  @Override
+  public NavigableMap<Cell, Cell> subMap(Cell fromKey, boolean fromInclusive, Cell toKey,
+      boolean toInclusive) {
+    return descending ? createSubMap(toKey, toInclusive, fromKey, fromInclusive, true)
+        : createSubMap(fromKey, fromInclusive, toKey, toInclusive, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> headMap(Cell toKey, boolean inclusive) {
+    return descending ? createSubMap(toKey, inclusive, null, false, true)
+        : createSubMap(null, false, toKey, inclusive, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> tailMap(Cell fromKey, boolean inclusive) {
+    return descending ? createSubMap(null, false, fromKey, inclusive, true)
+        : createSubMap(fromKey, inclusive, null, false, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> descendingMap() {
+    return new CellChunkSkipListMap(index, lo, loInclusive, hi, hiInclusive, !descending);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> subMap(Cell fromKey, Cell toKey) {
+    return subMap(fromKey, true, toKey, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> headMap(Cell toKey) {
+    return headMap(toKey, false);
+  }
+
+  @Override
+  public NavigableMap<Cell, Cell> tailMap(Cell fromKey) {
+    return tailMap(fromKey, true);
+  }
+
+  // -------------------------------- Key's getters --------------------------------
+  @Override
+  public Cell firstKey() {
+    return getCell(descending ? highestNode() : lowestNode());
+  }
+
+  @Override
+  public Cell lastKey() {
+    return getCell(descending ? lowestNode() : highestNode());
+  }
+
+  @Override
+  public Cell lowerKey(Cell k) {
+    return getCell(descending ? ceilingNode(k, false) : floorNode(k, false));
+  }
+
+  @Override
+  public Cell floorKey(Cell k) {
+    return getCell(descending ? ceilingNode(k, true) : floorNode(k, true));
+  }
+
+  @Override
+  public Cell ceilingKey(Cell k) {
+    return getCell(descending ? floorNode(k, true) : ceilingNode(k, true));
+  }
+
+  @Override
+  public Cell higherKey(Cell k) {
+    return getCell(descending ? floorNode(k, false) : ceilingNode(k, false));
+  }
+
+  @Override
+  public boolean containsKey(Object o) {
+    Cell key = (Cell) o;
+    return inRange(key) && index.find(key) != NIL;
+  }
+
+  @Override
+  public boolean containsValue(Object o) { // use containsKey(Object o) instead
+    throw new UnsupportedOperationException("Use containsKey(Object o) instead");
+  }
+
+  @Override
+  public Cell get(Object o) {
+    Cell key = (Cell) o;
+    return inRange(key) ? getCell(index.find(key)) : null;
+  }
+
+  // -------------------------------- Entry's getters --------------------------------
+  @Override
+  public Entry<Cell, Cell> lowerEntry(Cell k) {
+    return getEntry(descending ? ceilingNode(k, false) : floorNode(k, false));
+  }
+
+  @Override
+  public Entry<Cell, Cell> floorEntry(Cell k) {
+    return getEntry(descending ? ceilingNode(k, true) : floorNode(k, true));
+  }
+
+  @Override
+  public Entry<Cell, Cell> ceilingEntry(Cell k) {
+    return getEntry(descending ? floorNode(k, true) : ceilingNode(k, true));
+  }
+
+  @Override
+  public Entry<Cell, Cell> higherEntry(Cell k) {
+    return getEntry(descending ? floorNode(k, false) : ceilingNode(k, false));
+  }
+
+  @Override
+  public Entry<Cell, Cell> firstEntry() {
+    return getEntry(descending ? highestNode() : lowestNode());
+  }
+
+  @Override
+  public Entry<Cell, Cell> lastEntry() {
+    return getEntry(descending ? lowestNode() : highestNode());
+  }
+
+  // The following 2 methods (pollFirstEntry, pollLastEntry) are unsupported because these are
+  // not needed by CellSet.
+  @Override
+  public Entry<Cell, Cell> pollFirstEntry() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Entry<Cell, Cell> pollLastEntry() {
+    throw new UnsupportedOperationException();
+  }
+
+  // -------------------------------- Updates --------------------------------
+  /**
+   * Puts the given value, a Cell in a chunk of the MemStoreLAB of the map, replacing the Cell of
+   * the same key if any
+   * @return the replaced Cell, or null
+   */
+  @Override
+  public Cell put(Cell k, Cell v) {
+    if (!inRange(k)) {
+      throw new IllegalArgumentException("key out of range");
+    }
+    return index.put(v);
+  }
+
+  @Override
+  public Cell remove(Object o) {
+    Cell key = (Cell) o;
+    if (!inRange(key)) {
+      return null;
+    }
+    long node = index.find(key);
+    return (node != NIL && index.remove(node)) ? index.getCell(node) : null;
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void putAll(Map<? extends Cell, ? extends Cell> map) {
+    throw new UnsupportedOperationException();
+  }
+
+  // -------------------------------- Sub-Sets --------------------------------
+  @Override
+  public NavigableSet<Cell> navigableKeySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public NavigableSet<Cell> descendingKeySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public NavigableSet<Cell> keySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Collection<Cell> values() {
+    return new CellChunkSkipListCollection();
+  }
+
+  @Override
+  public Set<Entry<Cell, Cell>> entrySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  // -------------------------------- Iterator K --------------------------------
+  // Weakly consistent iterator, which sees the cells put after it was created only if it did not
+  // pass their position yet
+  private final class CellChunkSkipListIterator implements Iterator<Cell> {
+    private long next;
+    private Cell nextCell;
+    private long lastReturned = NIL;
+
+    private CellChunkSkipListIterator() {
+      next = descending ? highestNode() : lowestNode();
+      nextCell = getCell(next);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != NIL;
+    }
+
+    @Override
+    public Cell next() {
+      if (next == NIL) {
+        throw new NoSuchElementException();
+      }
+      Cell result = nextCell;
+      lastReturned = next;
+      if (descending) {
+        next = index.findLastBefore(result, false);
+      } else {
+        // the node is never unlinked, so its link leads to the next node even if it is removed
+        next = index.skipRemoved(index.next(next));
+      }
+      nextCell = getCell(next);
+      if (next != NIL && (descending ? tooLow(nextCell) : tooHigh(nextCell))) {
+        next = NIL;
+        nextCell = null;
+      }
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned == NIL) {
+        throw new IllegalStateException();
+      }
+      index.remove(lastReturned);
+      lastReturned = NIL;
+    }
+  }
+
+  // -------------------------------- Collection --------------------------------
+  private final class CellChunkSkipListCollection extends AbstractCollection<Cell> {
+
+    @Override
+    public int size() {
+      return CellChunkSkipListMap.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return CellChunkSkipListMap.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return containsKey(o);
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+      return new CellChunkSkipListIterator();
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.apache.hadoop.hbase.util.ClassSize;
+
+/**
+ * CellChunkSkipListMutableSegment is the active segment working with CellSet with
+ * CellChunkSkipListMap delegatee, which keeps the index of the segment in the chunks of its
+ * MemStoreLAB instead of the ConcurrentSkipListMap objects. All its cells are copied into the
+ * MemStoreLAB, including the cells bigger than its maximal allocation and the upserted ones.
+ */
+@InterfaceAudience.Private
+public class CellChunkSkipListMutableSegment extends MutableSegment {
+
+  public static final long DEEP_OVERHEAD_CCSLM =
+      Segment.DEEP_OVERHEAD + ClassSize.CELL_CHUNK_SKIPLIST_MAP;
+
+  protected CellChunkSkipListMutableSegment(CellComparator comparator, MemStoreLAB memStoreLAB) {
+    super(new CellSet(new CellChunkSkipListMap(comparator, memStoreLAB)), comparator,
+        memStoreLAB);
+    // update the mutable segment metadata
+    incSize(0, DEEP_OVERHEAD_CCSLM - MutableSegment.DEEP_OVERHEAD);
+  }
+
+  /**
+   * Clones a cell too big for the chunks of the MemStoreLAB into a dedicated chunk, so that the
+   * index can refer to it
+   */
+  @Override
+  public Cell maybeCloneWithAllocator(Cell cell) {
+    return maybeCloneWithAllocator(cell, true);
+  }
+
+  @Override
+  protected void internalAdd(Cell cell, boolean mslabUsed, MemStoreSize memstoreSize) {
+    if (!mslabUsed) {
+      // upserted cells are not cloned by the memstore
+      cell = maybeCloneWithAllocator(cell);
+    }
+    super.internalAdd(cell, true, memstoreSize);
+  }
+
+  @Override
+  protected long indexEntrySize() {
+    return (ClassSize.CELL_CHUNK_SKIPLIST_MAP_ENTRY - KeyValue.FIXED_OVERHEAD);
+  }
+
+  /**
+   * A cell in a jumbo chunk also takes the heap of the chunk, which is not shared with other cells
+   */
+  @Override
+  protected long heapSizeChange(Cell cell, boolean succ) {
+    long heapSize = super.heapSizeChange(cell, succ);
+    if (succ && CellChunkImmutableSegment.isInJumboChunk(cell)) {
+      heapSize += ChunkCreator.JUMBO_CHUNK_OVERHEAD;
+    }
+    return heapSize;
+  }
+}
@@ -54,6 +54,9 @@ public abstract class Chunk {
   // indicates if the chunk is formed by ChunkCreator#MemstorePool
   private final boolean fromPool;
 
+  // indicates if the chunk is sized for a single cell, see ChunkCreator#getJumboChunk
+  private final boolean jumbo;
+
   /**
    * Create an uninitialized chunk. Note that memory is not allocated yet, so
    * this is cheap.
@@ -72,9 +75,22 @@ public abstract class Chunk {
    * @param fromPool if the chunk is formed by pool
    */
   public Chunk(int size, int id, boolean fromPool) {
+    this(size, id, fromPool, false);
+  }
+
+  /**
+   * Create an uninitialized chunk. Note that memory is not allocated yet, so
+   * this is cheap.
+   * @param size in bytes
+   * @param id the chunk id
+   * @param fromPool if the chunk is formed by pool
+   * @param jumbo if the chunk holds a single cell too big for a regular chunk
+   */
+  public Chunk(int size, int id, boolean fromPool, boolean jumbo) {
     this.size = size;
     this.id = id;
     this.fromPool = fromPool;
+    this.jumbo = jumbo;
   }
 
   int getId() {
@@ -85,6 +101,10 @@ public abstract class Chunk {
     return this.fromPool;
   }
 
+  boolean isJumbo() {
+    return this.jumbo;
+  }
+
   /**
    * Actually claim the memory for this chunk. This should only be called from the thread that
    * constructed the chunk. It is thread-safe against other threads calling alloc(), who will block
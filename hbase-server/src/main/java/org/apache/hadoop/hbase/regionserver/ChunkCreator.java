@@ -35,6 +35,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.regionserver.HeapMemoryManager.HeapMemoryTuneObserver;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.hadoop.util.StringUtils;
 
 import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
@@ -56,6 +57,11 @@ public class ChunkCreator {
   // chunk id of each chunk is the first integer written on each chunk,
   // the header size need to be changed in case chunk id size is changed
   public static final int SIZEOF_CHUNK_HEADER = Bytes.SIZEOF_INT;
+  // Heap a jumbo chunk takes besides the cell in it: the chunk and its buffer, the header of the
+  // backing array and the chunk header. The cell's own heap size covers the cell's bytes.
+  public static final long JUMBO_CHUNK_OVERHEAD = ClassSize.align(ClassSize.OBJECT
+      + 3 * ClassSize.REFERENCE + 2 * ClassSize.ATOMIC_INTEGER + 2 * Bytes.SIZEOF_INT
+      + 2 * Bytes.SIZEOF_BOOLEAN) + ClassSize.BYTE_BUFFER + ClassSize.ARRAY + SIZEOF_CHUNK_HEADER;
 
   // mapping from chunk IDs to chunks
   private Map<Integer, Chunk> chunkIdMap = new ConcurrentHashMap<Integer, Chunk>();
@@ -143,6 +149,22 @@ public class ChunkCreator {
     return chunk;
   }
 
+  /**
+   * Creates and inits a chunk of the given size that holds a single cell too big for a regular
+   * chunk. Jumbo chunks are never pooled, but are mapped by id so that CellChunkMap can refer to
+   * the cell, until they are put back.
+   * @param jumboSize the size of the chunk, including its header
+   * @return the chunk that was initialized
+   */
+  Chunk getJumboChunk(int jumboSize) {
+    int id = chunkID.getAndIncrement();
+    assert id > 0;
+    Chunk chunk = new OnheapChunk(jumboSize, id, false, true);
+    this.chunkIdMap.put(chunk.getId(), chunk);
+    chunk.init();
+    return chunk;
+  }
+
   /**
    * Creates the chunk either onheap or offheap
    * @param pool indicates if the chunks have to be created which will be used by the Pool
@@ -173,6 +195,14 @@ public class ChunkCreator {
     return chunkIdMap.get(id);
   }
 
+  /**
+   * @return true if the chunk of this id is a jumbo chunk that is still mapped
+   */
+  boolean isJumboChunk(int id) {
+    Chunk chunk = chunkIdMap.get(id);
+    return chunk != null && chunk.isJumbo();
+  }
+
   int getChunkSize() {
     return this.chunkSize;
   }
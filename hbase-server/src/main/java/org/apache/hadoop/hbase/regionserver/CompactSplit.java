@@ -362,6 +362,13 @@ public class CompactSplit implements PropagatingConfigurationObserver {
     return longCompactions.getQueue().size() + shortCompactions.getQueue().size();
   }
 
+  /**
+   * @return The number of compactions running.
+   */
+  public int getRunningCompactionCount() {
+    return longCompactions.getActiveCount() + shortCompactions.getActiveCount();
+  }
+
   public int getLargeCompactionQueueSize() {
     return longCompactions.getQueue().size();
   }
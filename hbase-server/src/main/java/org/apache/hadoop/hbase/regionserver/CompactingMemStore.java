@@ -57,12 +57,15 @@ public class CompactingMemStore extends AbstractMemStore {
       "hbase.hregion.compacting.memstore.type";
   public static final String COMPACTING_MEMSTORE_TYPE_DEFAULT =
       String.valueOf(MemoryCompactionPolicy.BASIC);
-  // The external setting of the compacting MemStore behaviour
+  // The external setting of the index used by flat segments. As the store's configuration is
+  // passed in, it can be set per column family.
   public static final String COMPACTING_MEMSTORE_INDEX_KEY =
       "hbase.hregion.compacting.memstore.index";
-  // usage of CellArrayMap is default, later it will be decided how to use CellChunkMap
+  // usage of CellChunkMap is default. It keeps the index of flat segments in MSLAB chunks (off heap
+  // when the chunk pool is), and so does the skip list of the active segment. Without MSLAB to
+  // hold the cells, CellArrayMap is used instead and the active segment is a ConcurrentSkipListMap
   public static final String COMPACTING_MEMSTORE_INDEX_DEFAULT =
-      String.valueOf(IndexType.ARRAY_MAP);
+      String.valueOf(IndexType.CHUNK_MAP);
   // Default fraction of in-memory-flush size w.r.t. flush-to-disk size
   public static final String IN_MEMORY_FLUSH_THRESHOLD_FACTOR_KEY =
       "hbase.memstore.inmemoryflush.threshold.factor";
@@ -114,8 +117,34 @@ public class CompactingMemStore extends AbstractMemStore {
     this.pipeline = new CompactionPipeline(getRegionServices());
     this.compactor = createMemStoreCompactor(compactionPolicy);
     initInmemoryFlushSize(conf);
-    indexType = IndexType.valueOf(conf.get(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
-        CompactingMemStore.COMPACTING_MEMSTORE_INDEX_DEFAULT));
+    indexType = getIndexType(conf);
+  }
+
+  /**
+   * @return the index type configured for flat segments, or ARRAY_MAP if CHUNK_MAP is configured
+   *         but cells are not allocated in MSLAB chunks, so could not be referenced from it
+   */
+  private static IndexType getIndexType(Configuration conf) {
+    IndexType type = IndexType.valueOf(conf.get(COMPACTING_MEMSTORE_INDEX_KEY,
+        COMPACTING_MEMSTORE_INDEX_DEFAULT));
+    if (type == IndexType.CHUNK_MAP
+        && (!MemStoreLAB.isEnabled(conf) || ChunkCreator.getInstance() == null)) {
+      LOG.debug("MSLAB is not in use, flattening to " + IndexType.ARRAY_MAP + " instead of "
+          + IndexType.CHUNK_MAP);
+      return IndexType.ARRAY_MAP;
+    }
+    return type;
+  }
+
+  /**
+   * The active segment keeps its index in MSLAB chunks when flat segments are CellChunkMap based.
+   * The index type is read from the configuration, as this is called by the constructor of
+   * AbstractMemStore before it is set
+   */
+  @Override
+  protected MutableSegment createActiveSegment() {
+    return SegmentFactory.instance().createMutableSegment(getConfiguration(), getComparator(),
+        getIndexType(getConfiguration()));
   }
 
   @VisibleForTesting
@@ -320,9 +349,7 @@ public class CompactingMemStore extends AbstractMemStore {
   // setter is used only for testability
   @VisibleForTesting
   public void setIndexType() {
-    indexType = IndexType.valueOf(getConfiguration().get(
-        CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
-        CompactingMemStore.COMPACTING_MEMSTORE_INDEX_DEFAULT));
+    indexType = getIndexType(getConfiguration());
   }
 
   public IndexType getIndexType() {
@@ -519,7 +546,7 @@ public class CompactingMemStore extends AbstractMemStore {
     }
   }
 
-  private RegionServicesForStores getRegionServices() {
+  RegionServicesForStores getRegionServices() {
     return regionServices;
   }
 
@@ -136,6 +136,7 @@ import org.apache.hadoop.hbase.ipc.CallerDisconnectedException;
 import org.apache.hadoop.hbase.ipc.CoprocessorRpcUtils;
 import org.apache.hadoop.hbase.ipc.RpcCall;
 import org.apache.hadoop.hbase.ipc.RpcServer;
+import org.apache.hadoop.hbase.ipc.RpcServerInterface;
 import org.apache.hadoop.hbase.monitoring.MonitoredTask;
 import org.apache.hadoop.hbase.monitoring.TaskMonitor;
 import org.apache.hadoop.hbase.regionserver.MultiVersionConcurrencyControl.WriteEntry;
@@ -289,6 +290,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   final LongAdder compactionsQueued = new LongAdder();
   final LongAdder flushesQueued = new LongAdder();
 
+  // Adaptive in-memory compaction LongAdders
+  final LongAdder inMemoryFlattens = new LongAdder();
+  final LongAdder inMemoryMerges = new LongAdder();
+  final LongAdder inMemoryCompactions = new LongAdder();
+  final LongAdder inMemoryCompactionEstimatedSavings = new LongAdder();
+
   private final WAL wal;
   private final HRegionFileSystem fs;
   protected final Configuration conf;
@@ -6971,8 +6978,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         stats.setHeapOccupancy((int)(occupancy * 100));
       }
     }
-    stats.setCompactionPressure((int)rsServices.getCompactionPressure()*100 > 100 ? 100 :
-                (int)rsServices.getCompactionPressure()*100);
+    stats.setCompactionPressure((int) Math.min(100, rsServices.getCompactionPressure() * 100));
+    RpcServerInterface rpcServer = rsServices.getRpcServer();
+    if (rpcServer != null && rpcServer.getMetrics() != null) {
+      stats.setRpcQueueTime(rpcServer.getMetrics().getAverageQueueTime());
+    }
+    if (rpcServer != null && rpcServer.getScheduler() != null) {
+      stats.setHandlerOccupancy(rpcServer.getScheduler().getGeneralHandlerOccupancy());
+    }
     return stats.build();
   }
 
@@ -7539,7 +7552,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   public static final long FIXED_OVERHEAD = ClassSize.align(
       ClassSize.OBJECT +
       ClassSize.ARRAY +
-      51 * ClassSize.REFERENCE + 2 * Bytes.SIZEOF_INT +
+      55 * ClassSize.REFERENCE + 2 * Bytes.SIZEOF_INT +
       (15 * Bytes.SIZEOF_LONG) +
       6 * Bytes.SIZEOF_BOOLEAN);
 
@@ -8012,6 +8025,23 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     compactionsFailed.increment();
   }
 
+  void reportInMemoryCompaction(MemStoreCompactor.Action action, long estimatedSavings) {
+    switch (action) {
+      case FLATTEN:
+        inMemoryFlattens.increment();
+        break;
+      case MERGE:
+        inMemoryMerges.increment();
+        break;
+      case COMPACT:
+        inMemoryCompactions.increment();
+        inMemoryCompactionEstimatedSavings.add(estimatedSavings);
+        break;
+      default:
+        break;
+    }
+  }
+
   public void incrementCompactionsQueuedCount() {
     compactionsQueued.increment();
   }
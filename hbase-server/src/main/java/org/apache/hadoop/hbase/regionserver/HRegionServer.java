@@ -131,6 +131,7 @@ import org.apache.hadoop.hbase.regionserver.handler.CloseMetaHandler;
 import org.apache.hadoop.hbase.regionserver.handler.CloseRegionHandler;
 import org.apache.hadoop.hbase.regionserver.handler.RegionReplicaFlushHandler;
 import org.apache.hadoop.hbase.regionserver.throttle.FlushThroughputControllerFactory;
+import org.apache.hadoop.hbase.regionserver.throttle.PressureAwareCompactionThroughputController;
 import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
 import org.apache.hadoop.hbase.regionserver.wal.MetricsWAL;
 import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
@@ -200,9 +201,11 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionServe
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.HBaseProtos.RegionSpecifier.RegionSpecifierType;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.LockServiceProtos.LockService;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.CompactionDemand;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.GetLastFlushedSequenceIdRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.GetLastFlushedSequenceIdResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionServerReportRequest;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionServerReportResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionServerStartupRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionServerStartupResponse;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.RegionServerStatusService;
@@ -1270,7 +1273,20 @@ public class HRegionServer extends HasThread implements
         this.serverName.getVersionedBytes());
       request.setServer(ProtobufUtil.toServerName(sn));
       request.setLoad(sl);
-      rss.regionServerReport(null, request.build());
+      CompactSplit compactSplit = this.compactSplitThread;
+      if (compactSplit != null) {
+        request.setCompactionDemand(buildCompactionDemand(compactSplit));
+      }
+      RegionServerReportResponse response = rss.regionServerReport(null, request.build());
+      if (compactSplit != null) {
+        // Honor our share of the cluster wide compaction budget, if there is one
+        ThroughputController controller = compactSplit.getCompactionThroughputController();
+        if (controller instanceof PressureAwareCompactionThroughputController) {
+          ((PressureAwareCompactionThroughputController) controller).setClusterMaxThroughput(
+            response.hasCompactionThroughput() ? response.getCompactionThroughput()
+                : Double.MAX_VALUE);
+        }
+      }
     } catch (ServiceException se) {
       IOException ioe = ProtobufUtil.getRemoteException(se);
       if (ioe instanceof YouAreDeadException) {
@@ -1286,6 +1302,26 @@ public class HRegionServer extends HasThread implements
     }
   }
 
+  private CompactionDemand buildCompactionDemand(CompactSplit compactSplit) {
+    double compactionPressure = 0;
+    int readAmplification = 0;
+    for (Region region : onlineRegions.values()) {
+      for (Store store : region.getStores()) {
+        compactionPressure = Math.max(compactionPressure, store.getCompactionPressure());
+        if (store instanceof HStore) {
+          readAmplification = Math.max(readAmplification,
+            ((HStore) store).getStoreEngine().getStoreFileManager().getReadAmplification());
+        }
+      }
+    }
+    return CompactionDemand.newBuilder()
+        .setQueuedCompactions(compactSplit.getCompactionQueueSize())
+        .setRunningCompactions(compactSplit.getRunningCompactionCount())
+        .setCompactionPressure(compactionPressure)
+        .setReadAmplification(readAmplification)
+        .build();
+  }
+
   /**
    * Reports the given map of Regions and their size on the filesystem to the active Master.
    *
@@ -3250,6 +3286,10 @@ public class HRegionServer extends HasThread implements
       addToMovedRegions(r.getRegionInfo().getEncodedName(), destination, closeSeqNum);
     }
     this.regionFavoredNodesMap.remove(r.getRegionInfo().getEncodedName());
+    if (this.walFactory != null) {
+      // Closes on abort write no close marker, tell the wal provider here too
+      this.walFactory.regionClosed(r.getRegionInfo().getEncodedNameAsBytes());
+    }
     return toReturn != null;
   }
 
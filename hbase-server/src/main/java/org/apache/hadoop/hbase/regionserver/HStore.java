@@ -273,6 +273,7 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
     switch (inMemoryCompaction) {
       case BASIC :
       case EAGER :
+      case ADAPTIVE :
         Class<? extends CompactingMemStore> clz = conf.getClass(MEMSTORE_CLASS_NAME,
           CompactingMemStore.class, CompactingMemStore.class);
         className = clz.getName();
@@ -2350,7 +2351,8 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
 
   @Override
   public boolean hasTooManyStoreFiles() {
-    return getStorefilesCount() > this.blockingFileCount;
+    return this.storeEngine.getStoreFileManager().getStorefileCountForBlocking() >
+        this.blockingFileCount;
   }
 
   @Override
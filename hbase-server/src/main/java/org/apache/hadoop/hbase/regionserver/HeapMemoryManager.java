@@ -108,6 +108,11 @@ public class HeapMemoryManager {
 
   public static HeapMemoryManager create(Configuration conf, FlushRequester memStoreFlusher,
       Server server, RegionServerAccounting regionServerAccounting) {
+    // An off heap L1 has no share of the heap to trade with the memstores.
+    if (!CacheConfig.isL1OnHeap(conf)) {
+      LOG.info("Not tuning the heap, the L1 block cache is off heap");
+      return null;
+    }
     ResizableBlockCache l1Cache = CacheConfig.getL1(conf);
     if (l1Cache != null) {
       return new HeapMemoryManager(l1Cache, memStoreFlusher, server, regionServerAccounting);
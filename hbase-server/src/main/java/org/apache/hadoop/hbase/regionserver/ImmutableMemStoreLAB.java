@@ -45,6 +45,13 @@ public class ImmutableMemStoreLAB implements MemStoreLAB {
     throw new IllegalStateException("This is an Immutable MemStoreLAB.");
   }
 
+  @Override
+  // use the first MemStoreLABImpl in the list, as getNewExternalChunk does
+  public Cell forceCopyOfBigCellInto(Cell cell) {
+    MemStoreLAB mslab = this.mslabs.get(0);
+    return mslab.forceCopyOfBigCellInto(cell);
+  }
+
   @Override
   // returning a new chunk, without replacing current chunk,
   // the space on this chunk will be allocated externally
@@ -25,7 +25,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -50,7 +49,7 @@ import org.apache.hadoop.hbase.regionserver.ScannerContext.NextState;
 public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
     implements KeyValueScanner, InternalScanner {
   private static final Log LOG = LogFactory.getLog(KeyValueHeap.class);
-  protected PriorityQueue<KeyValueScanner> heap = null;
+  protected TournamentTree<KeyValueScanner> heap = null;
   // Holds the scanners when a ever a eager close() happens.  All such eagerly closed
   // scans are collected and when the final scanner.close() happens will perform the
   // actual close.
@@ -59,7 +58,7 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
   /**
    * The current sub-scanner, i.e. the one that contains the next key/value
    * to return to the client. This scanner is NOT included in {@link #heap}
-   * (but we frequently add it back to the heap and pull the new winner out).
+   * (but we frequently swap it with the winner at the top of the heap).
    * We maintain an invariant that the current sub-scanner has already done
    * a real seek, and that current.peek() is always a real key/value (or null)
    * except for the fake last-key-on-row-column supplied by the multi-column
@@ -92,7 +91,7 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
     this.comparator = comparator;
     this.scannersForDelayedClose = new ArrayList<>(scanners.size());
     if (!scanners.isEmpty()) {
-      this.heap = new PriorityQueue<>(scanners.size(), this.comparator);
+      this.heap = new TournamentTree<>(scanners.size(), this.comparator);
       for (KeyValueScanner scanner : scanners) {
         if (scanner.peek() != null) {
           this.heap.add(scanner);
@@ -124,13 +123,66 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
     } else {
       KeyValueScanner topScanner = this.heap.peek();
       // no need to add current back to the heap if it is the only scanner left
-      if (topScanner != null && this.comparator.compare(kvNext, topScanner.peek()) >= 0) {
-        this.heap.add(this.current);
+      if (topScanner != null && this.comparator.compare(this.current, topScanner) > 0) {
+        swapCurrentWithTop();
+      }
+    }
+    return kvReturn;
+  }
+
+  /**
+   * Swaps the current scanner with the winner at the top of the heap, which must sort before it,
+   * making sure the new current scanner has done a real seek.
+   */
+  protected void swapCurrentWithTop() throws IOException {
+    KeyValueScanner top = this.heap.replaceTop(this.current);
+    this.current = null;
+    this.current = top.realSeekDone() ? top : pollRealKV(top);
+  }
+
+  /**
+   * Takes runs from the current scanner for as long as its cells sort before the top of the rest of
+   * the heap, and rebalances the heap as {@link #next()} does when they no longer do.
+   */
+  @Override
+  public int nextRun(Cell bound, CellComparator cellComparator, CellRunVisitor visitor)
+      throws IOException {
+    int accepted = 0;
+    while (this.current != null) {
+      KeyValueScanner topScanner = this.heap.peek();
+      Cell runBound = bound;
+      if (topScanner != null
+          && (runBound == null || cellComparator.compare(topScanner.peek(), runBound) < 0)) {
+        runBound = topScanner.peek();
+      }
+      accepted += this.current.nextRun(runBound, cellComparator, visitor);
+      Cell kvNext = this.current.peek();
+      if (kvNext == null) {
+        this.scannersForDelayedClose.add(this.current);
         this.current = null;
         this.current = pollRealKV();
+      } else if (runBound != null && cellComparator.compare(kvNext, runBound) >= 0) {
+        KeyValueScanner previous = this.current;
+        if (topScanner != null && this.comparator.compare(this.current, topScanner) > 0) {
+          swapCurrentWithTop();
+        }
+        if (bound != null && cellComparator.compare(peek(), bound) >= 0) {
+          break;
+        }
+        if (this.current == previous) {
+          // The cell equals the top of the heap but is from the newer scanner, so it comes first
+          if (!visitor.visit(kvNext)) {
+            break;
+          }
+          next();
+          accepted++;
+        }
+      } else {
+        // The visitor ended the run
+        break;
       }
     }
-    return kvReturn;
+    return accepted;
   }
 
   /**
@@ -165,14 +217,15 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
      * the heap. This is also required for certain optimizations.
      */
 
+    KeyValueScanner previous = this.current;
+    this.current = null;
     if (pee == null || !moreCells) {
       // add the scanner that is to be closed
-      this.scannersForDelayedClose.add(this.current);
+      this.scannersForDelayedClose.add(previous);
+      this.current = pollRealKV();
     } else {
-      this.heap.add(this.current);
+      this.current = pollRealKV(previous);
     }
-    this.current = null;
-    this.current = pollRealKV();
     if (this.current == null) {
       moreCells = scannerContext.setScannerState(NextState.NO_MORE_VALUES).hasMoreValues();
     }
@@ -307,9 +360,9 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
           // invariant that the top scanner has done a real seek. This way
           // StoreScanner and RegionScanner do not have to worry about fake
           // keys.
-          heap.add(scanner);
+          KeyValueScanner seeked = scanner;
           scanner = null;
-          current = pollRealKV();
+          current = pollRealKV(seeked);
           return current != null;
         }
 
@@ -324,10 +377,10 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
 
         if (!seekResult) {
           this.scannersForDelayedClose.add(scanner);
+          scanner = heap.poll();
         } else {
-          heap.add(scanner);
+          scanner = heap.pushPop(scanner);
         }
-        scanner = heap.poll();
         if (scanner == null) {
           current = null;
         }
@@ -348,7 +401,7 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
   }
 
   /**
-   * Fetches the top sub-scanner from the priority queue, ensuring that a real
+   * Fetches the top sub-scanner from the heap, ensuring that a real
    * seek has been done on it. Works by fetching the top sub-scanner, and if it
    * has not done a real seek, making it do so (which will modify its top KV),
    * putting it back, and repeating this until success. Relies on the fact that
@@ -359,11 +412,17 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
    * among all top KVs (some of which are fake) in the scanner heap.
    */
   protected KeyValueScanner pollRealKV() throws IOException {
-    KeyValueScanner kvScanner = heap.poll();
-    if (kvScanner == null) {
-      return null;
-    }
+    return pollRealKV(null);
+  }
 
+  /**
+   * Same as {@link #pollRealKV()}, but first puts the given scanner, which is not in the heap,
+   * back into it. Costs at most a single pass up the tournament tree when no lazy seek has to be
+   * enforced.
+   * @param scanner the scanner to add back, or null
+   */
+  protected KeyValueScanner pollRealKV(KeyValueScanner scanner) throws IOException {
+    KeyValueScanner kvScanner = scanner == null ? heap.poll() : heap.pushPop(scanner);
     while (kvScanner != null && !kvScanner.realSeekDone()) {
       if (kvScanner.peek() != null) {
         try {
@@ -373,31 +432,16 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
           this.scannersForDelayedClose.add(kvScanner);
           throw ioe;
         }
-        Cell curKV = kvScanner.peek();
-        if (curKV != null) {
-          KeyValueScanner nextEarliestScanner = heap.peek();
-          if (nextEarliestScanner == null) {
-            // The heap is empty. Return the only possible scanner.
-            return kvScanner;
-          }
-
-          // Compare the current scanner to the next scanner. We try to avoid
-          // putting the current one back into the heap if possible.
-          Cell nextKV = nextEarliestScanner.peek();
-          if (nextKV == null || comparator.compare(curKV, nextKV) < 0) {
-            // We already have the scanner with the earliest KV, so return it.
-            return kvScanner;
-          }
-
-          // Otherwise, put the scanner back into the heap and let it compete
-          // against all other scanners (both those that have done a "real
-          // seek" and a "lazy seek").
-          heap.add(kvScanner);
-        } else {
-          // Close the scanner because we did a real seek and found out there
-          // are no more KVs.
-          this.scannersForDelayedClose.add(kvScanner);
+        if (kvScanner.peek() != null) {
+          // Let the real KV compete against the top KVs of all other scanners (both those
+          // that have done a "real seek" and a "lazy seek"). If it still comes first the heap
+          // is not touched.
+          kvScanner = heap.pushPop(kvScanner);
+          continue;
         }
+        // Close the scanner because we did a real seek and found out there
+        // are no more KVs.
+        this.scannersForDelayedClose.add(kvScanner);
       } else {
         // Close the scanner because it has already run out of KVs even before
         // we had to do a real seek on it.
@@ -405,14 +449,13 @@ public class KeyValueHeap extends NonReversedNonLazyKeyValueScanner
       }
       kvScanner = heap.poll();
     }
-
     return kvScanner;
   }
 
   /**
    * @return the current Heap
    */
-  public PriorityQueue<KeyValueScanner> getHeap() {
+  public TournamentTree<KeyValueScanner> getHeap() {
     return this.heap;
   }
 
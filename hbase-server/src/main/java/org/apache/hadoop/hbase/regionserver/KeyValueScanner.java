@@ -24,6 +24,7 @@ import java.io.IOException;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Scan;
 
@@ -55,6 +56,33 @@ public interface KeyValueScanner extends Shipper, Closeable {
    */
   Cell next() throws IOException;
 
+  /**
+   * Hands the cells from the current one onwards to the visitor, moving past each cell the
+   * visitor accepts, so that a caller can consume a run of cells without a peek and next per cell.
+   * The run ends at the first cell the visitor rejects, which is left as the current cell, at the
+   * first cell not sorting before {@code bound}, or at the end of the scanner.
+   * <p>
+   * Scanners backed by blocks or memstore segments override this to check the bound once per block
+   * or segment rather than once per cell. Only for forward scans.
+   * @param bound cells from this one on are not part of the run; null for no bound
+   * @param comparator the comparator the scanner's cells are sorted by
+   * @param visitor decides for each cell whether the run goes on
+   * @return the number of cells the visitor accepted
+   */
+  default int nextRun(Cell bound, CellComparator comparator, CellRunVisitor visitor)
+      throws IOException {
+    int accepted = 0;
+    Cell cell;
+    while ((cell = peek()) != null && (bound == null || comparator.compare(cell, bound) < 0)) {
+      if (!visitor.visit(cell)) {
+        break;
+      }
+      next();
+      accepted++;
+    }
+    return accepted;
+  }
+
   /**
    * Seek the scanner at or after the specified KeyValue.
    * @param key seek value
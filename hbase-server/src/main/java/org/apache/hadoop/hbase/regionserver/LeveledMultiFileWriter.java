@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * class for cell sink that writes the provided cells into files of about a target size for
+ * leveled compaction. A row is never cut across files, and the files record their level in
+ * {@link LeveledStoreFileManager#LEVEL_KEY}.
+ */
+@InterfaceAudience.Private
+public class LeveledMultiFileWriter extends AbstractMultiFileWriter {
+
+  private final List<StoreFileWriter> writers = new ArrayList<>();
+
+  private final int level;
+
+  private final long targetSize;
+
+  private final boolean needEmptyFile;
+
+  private StoreFileWriter currentWriter;
+
+  private long sizeInCurrentWriter;
+
+  /** Once the current writer is big enough, the row to write out before starting a new one. */
+  private byte[] lastRowInCurrentWriter;
+
+  /**
+   * @param level the level of the files
+   * @param targetSize the size of the cells after which a file is closed at the end of the row.
+   * @param needEmptyFile whether need to create an empty store file if we haven't written out
+   *          anything.
+   */
+  public LeveledMultiFileWriter(int level, long targetSize, boolean needEmptyFile) {
+    this.level = level;
+    this.targetSize = targetSize;
+    this.needEmptyFile = needEmptyFile;
+  }
+
+  @Override
+  public void append(Cell cell) throws IOException {
+    if (currentWriter == null || (lastRowInCurrentWriter != null
+        && !CellUtil.matchingRow(cell, lastRowInCurrentWriter))) {
+      currentWriter = writerFactory.createWriter();
+      writers.add(currentWriter);
+      sizeInCurrentWriter = 0;
+      lastRowInCurrentWriter = null;
+    }
+    currentWriter.append(cell);
+    sizeInCurrentWriter += KeyValueUtil.length(cell);
+    if (lastRowInCurrentWriter == null && sizeInCurrentWriter >= targetSize) {
+      lastRowInCurrentWriter = CellUtil.cloneRow(cell); // make a copy
+    }
+  }
+
+  @Override
+  protected Collection<StoreFileWriter> writers() {
+    return writers;
+  }
+
+  @Override
+  protected void preCommitWriters() throws IOException {
+    if (needEmptyFile && writers.isEmpty()) {
+      // we haven't written out any data, create an empty file to retain metadata
+      writers.add(writerFactory.createWriter());
+    }
+  }
+
+  @Override
+  protected void preCloseWriter(StoreFileWriter writer) throws IOException {
+    writer.appendFileInfo(LeveledStoreFileManager.LEVEL_KEY, Bytes.toBytes(level));
+  }
+}
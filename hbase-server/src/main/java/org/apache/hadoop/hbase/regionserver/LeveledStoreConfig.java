@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Configuration class for leveled store and compactions.
+ * See {@link LeveledStoreFileManager} for general documentation.
+ * See getters for the description of each setting.
+ */
+@InterfaceAudience.Private
+public class LeveledStoreConfig {
+  private static final Log LOG = LogFactory.getLog(LeveledStoreConfig.class);
+
+  /** The number of L0 files of about the same size that are merged into one L0 file. */
+  public static final String MIN_FILES_L0_KEY = "hbase.store.leveled.compaction.minFilesL0";
+  /**
+   * The maximum number of L0 files to compact at once. L0 is compacted into L1 once it has that
+   * many files, whatever their size.
+   */
+  public static final String MAX_FILES_L0_KEY = "hbase.store.leveled.compaction.maxFilesL0";
+  /** How many times the smallest of the L0 files merged together the biggest one can be. */
+  public static final String LEVEL0_SIZE_RATIO_KEY = "hbase.store.leveled.level0.ratio";
+  /** The size L0 can grow to before its files are compacted into L1. */
+  public static final String LEVEL0_SIZE_KEY = "hbase.store.leveled.level0.size";
+  /** The number of levels below L0. Files are never compacted out of the last one. */
+  public static final String MAX_LEVELS_KEY = "hbase.store.leveled.maxLevels";
+  /** The size L1 can grow to before its files are compacted into L2. */
+  public static final String LEVEL1_SIZE_KEY = "hbase.store.leveled.level1.size";
+  /** How many times the size of a level the next level can grow to. */
+  public static final String LEVEL_SIZE_MULTIPLIER_KEY = "hbase.store.leveled.level.multiplier";
+  /** The size of the files compactions write out to the levels below L0. */
+  public static final String FILE_SIZE_KEY = "hbase.store.leveled.file.size";
+
+  private final int level0CompactMinFiles;
+  private final int level0CompactMaxFiles;
+  private final float level0SizeRatio;
+  private final long level0Size;
+  private final int maxLevels;
+  private final long level1Size;
+  private final int levelSizeMultiplier;
+  private final long fileSize;
+
+  public LeveledStoreConfig(Configuration config) {
+    this.level0CompactMinFiles = Math.max(1, config.getInt(MIN_FILES_L0_KEY, 4));
+    this.level0CompactMaxFiles =
+        Math.max(level0CompactMinFiles, config.getInt(MAX_FILES_L0_KEY, 32));
+    float ratio = config.getFloat(LEVEL0_SIZE_RATIO_KEY, 2.0f);
+    if (ratio < 1.0f) {
+      LOG.warn(LEVEL0_SIZE_RATIO_KEY + " is set to " + ratio + "; using 1.0");
+      ratio = 1.0f;
+    }
+    this.level0SizeRatio = ratio;
+    this.level0Size = config.getLong(LEVEL0_SIZE_KEY, 256L * 1024 * 1024);
+    this.maxLevels = Math.max(1, config.getInt(MAX_LEVELS_KEY, 6));
+    this.level1Size = config.getLong(LEVEL1_SIZE_KEY, 512L * 1024 * 1024);
+    int multiplier = config.getInt(LEVEL_SIZE_MULTIPLIER_KEY, 10);
+    if (multiplier < 2) {
+      LOG.warn(LEVEL_SIZE_MULTIPLIER_KEY + " is set to " + multiplier + "; using 2");
+      multiplier = 2;
+    }
+    this.levelSizeMultiplier = multiplier;
+    this.fileSize = config.getLong(FILE_SIZE_KEY, 128L * 1024 * 1024);
+  }
+
+  public int getLevel0MinFiles() {
+    return level0CompactMinFiles;
+  }
+
+  public int getLevel0MaxFiles() {
+    return level0CompactMaxFiles;
+  }
+
+  public float getLevel0SizeRatio() {
+    return level0SizeRatio;
+  }
+
+  /**
+   * @return the size L0 can grow to before its files are compacted into L1.
+   */
+  public long getLevel0Size() {
+    return level0Size;
+  }
+
+  public int getMaxLevels() {
+    return maxLevels;
+  }
+
+  /**
+   * @param level from 1 to {@link #getMaxLevels()}
+   * @return the size the level can grow to before its files are compacted into the next level.
+   */
+  public long getLevelSize(int level) {
+    double size = level1Size * Math.pow(levelSizeMultiplier, level - 1);
+    return size >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) size;
+  }
+
+  public long getFileSize() {
+    return fileSize;
+  }
+}
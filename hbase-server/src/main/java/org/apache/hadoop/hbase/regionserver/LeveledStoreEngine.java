@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionContext;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequestImpl;
+import org.apache.hadoop.hbase.regionserver.compactions.LeveledCompactionPolicy;
+import org.apache.hadoop.hbase.regionserver.compactions.LeveledCompactionRequest;
+import org.apache.hadoop.hbase.regionserver.compactions.LeveledCompactor;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.base.Preconditions;
+
+/**
+ * The storage engine that implements the leveled store/compaction scheme. Flushes go to L0, and
+ * compactions move the data down the levels of non overlapping files. See
+ * {@link LeveledStoreFileManager} for the layout.
+ */
+@InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
+public class LeveledStoreEngine extends StoreEngine<DefaultStoreFlusher,
+  LeveledCompactionPolicy, LeveledCompactor, LeveledStoreFileManager> {
+  private static final Log LOG = LogFactory.getLog(LeveledStoreEngine.class);
+  private LeveledStoreConfig config;
+
+  @Override
+  public boolean needsCompaction(List<HStoreFile> filesCompacting) {
+    return this.compactionPolicy.needsCompaction(this.storeFileManager, filesCompacting);
+  }
+
+  @Override
+  public CompactionContext createCompaction() {
+    return new LeveledCompaction();
+  }
+
+  @Override
+  protected void createComponents(
+      Configuration conf, HStore store, CellComparator comparator) throws IOException {
+    this.config = new LeveledStoreConfig(conf);
+    this.compactionPolicy = new LeveledCompactionPolicy(conf, store, config);
+    this.storeFileManager = new LeveledStoreFileManager(comparator, conf, this.config);
+    this.storeFlusher = new DefaultStoreFlusher(conf, store);
+    this.compactor = new LeveledCompactor(conf, store);
+  }
+
+  /**
+   * Represents one instance of leveled compaction, with the necessary context and flow.
+   */
+  private class LeveledCompaction extends CompactionContext {
+
+    @Override
+    public List<HStoreFile> preSelect(List<HStoreFile> filesCompacting) {
+      return compactionPolicy.preSelectFilesForCoprocessor(storeFileManager, filesCompacting);
+    }
+
+    @Override
+    public boolean select(List<HStoreFile> filesCompacting, boolean isUserCompaction,
+        boolean mayUseOffPeak, boolean forceMajor) throws IOException {
+      LeveledCompactionRequest leveledRequest = compactionPolicy.selectCompaction(
+        storeFileManager, filesCompacting, isUserCompaction, forceMajor);
+      this.request = leveledRequest == null ? new CompactionRequestImpl(new ArrayList<>())
+          : leveledRequest;
+      return leveledRequest != null;
+    }
+
+    @Override
+    public void forceSelect(CompactionRequestImpl request) {
+      if (!(request instanceof LeveledCompactionRequest)) {
+        // An arbitrary file list may overlap anything, so it can only be written out to L0
+        LOG.warn("Leveled store is forced to take an arbitrary file list and compact it.");
+      }
+      super.forceSelect(request);
+    }
+
+    @Override
+    public List<Path> compact(ThroughputController throughputController, User user)
+        throws IOException {
+      Preconditions.checkArgument(this.request != null, "Cannot compact without selection");
+      int level = request instanceof LeveledCompactionRequest
+          ? ((LeveledCompactionRequest) request).getTargetLevel() : 0;
+      return compactor.compact(request, level, level == 0 ? Long.MAX_VALUE : config.getFileSize(),
+        throughputController, user);
+    }
+  }
+}
@@ -0,0 +1,498 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.collect.ImmutableCollection;
+import org.apache.hadoop.hbase.shaded.com.google.common.collect.ImmutableList;
+import org.apache.hadoop.hbase.shaded.com.google.common.collect.Iterables;
+
+/**
+ * Store file manager of the leveled store engine. The files of the store are kept in levels. L0
+ * holds the flushed and bulk loaded files, which overlap each other like in the default layout.
+ * Its files of about the same size are merged together within L0, and it is compacted into L1 once
+ * it grows to {@link LeveledStoreConfig#getLevel0Size()}. Each
+ * level from L1 on holds files that do not overlap each other, so a read of a row needs at most
+ * one file per level besides the L0 files. A level can grow to
+ * {@link LeveledStoreConfig#getLevelSize(int)}, some times the size of the level above, before its
+ * files are compacted one by one into the next level, so a cell is rewritten a bounded number of
+ * times per level.
+ * <p>
+ * The level of a file is kept in its metadata under {@link #LEVEL_KEY}. Files without it, files
+ * without cells, and files that overlap another file of their level when loaded or added are put
+ * in L0.
+ * <p>
+ * Like the other managers it is not thread safe, but the files are kept in an immutable state that
+ * is replaced as a whole on changes, so that readers always see a consistent snapshot.
+ */
+@InterfaceAudience.Private
+public class LeveledStoreFileManager implements StoreFileManager {
+  private static final Log LOG = LogFactory.getLog(LeveledStoreFileManager.class);
+
+  /** The file metadata key for the level of the file. */
+  public static final byte[] LEVEL_KEY = Bytes.toBytes("LEVEL");
+
+  private final CellComparator cellComparator;
+  private final LeveledStoreConfig config;
+  private final int blockingFileCount;
+
+  /**
+   * The files of the store, replaced as a whole on changes.
+   */
+  private static final class State {
+    /** Files of L0, sorted by sequence id. */
+    final ImmutableList<HStoreFile> level0Files;
+    /** Files of the levels from L1 on, each sorted by row; the list of L1 comes first. */
+    final ImmutableList<ImmutableList<HStoreFile>> levelFiles;
+    /** All the files, sorted by sequence id. */
+    final ImmutableList<HStoreFile> allFiles;
+
+    State(ImmutableList<HStoreFile> level0Files,
+        ImmutableList<ImmutableList<HStoreFile>> levelFiles) {
+      this.level0Files = level0Files;
+      this.levelFiles = levelFiles;
+      this.allFiles = ImmutableList.sortedCopyOf(StoreFileComparators.SEQ_ID,
+        Iterables.concat(level0Files, Iterables.concat(levelFiles)));
+    }
+  }
+
+  private volatile State state = new State(ImmutableList.of(), ImmutableList.of());
+
+  /**
+   * List of compacted files inside this store that needs to be excluded in reads
+   * because further new reads will be using only the newly created files out of compaction.
+   */
+  private volatile ImmutableList<HStoreFile> compactedFiles = ImmutableList.of();
+
+  public LeveledStoreFileManager(CellComparator cellComparator, Configuration conf,
+      LeveledStoreConfig config) {
+    this.cellComparator = cellComparator;
+    this.config = config;
+    this.blockingFileCount =
+        conf.getInt(HStore.BLOCKING_STOREFILES_KEY, HStore.DEFAULT_BLOCKING_STOREFILE_COUNT);
+  }
+
+  /**
+   * @return the level in the metadata of the file, 0 if there is none or the file has no cells.
+   */
+  static int getLevel(HStoreFile sf) {
+    byte[] level = sf.getMetadataValue(LEVEL_KEY);
+    if (level == null || !sf.getReader().getFirstKey().isPresent()) {
+      return 0;
+    }
+    return Math.max(0, Bytes.toInt(level));
+  }
+
+  private static Cell firstKey(HStoreFile sf) {
+    return sf.getReader().getFirstKey().get();
+  }
+
+  private static Cell lastKey(HStoreFile sf) {
+    return sf.getReader().getLastKey().get();
+  }
+
+  /**
+   * Creates a state out of the files of each level. Files that overlap another file of their level
+   * are moved to L0.
+   * @param levels the files of the levels from L1 on
+   */
+  private State createState(List<HStoreFile> level0, List<List<HStoreFile>> levels) {
+    List<HStoreFile> newLevel0 = new ArrayList<>(level0);
+    List<ImmutableList<HStoreFile>> newLevels = new ArrayList<>(levels.size());
+    for (int i = 0; i < levels.size(); i++) {
+      List<HStoreFile> files = new ArrayList<>(levels.get(i));
+      files.sort((sf1, sf2) -> cellComparator.compareRows(firstKey(sf1), firstKey(sf2)));
+      List<HStoreFile> kept = new ArrayList<>(files.size());
+      for (HStoreFile sf : files) {
+        if (!kept.isEmpty()
+            && cellComparator.compareRows(lastKey(kept.get(kept.size() - 1)), firstKey(sf)) >= 0) {
+          LOG.warn("File " + sf.getPath() + " overlaps " + kept.get(kept.size() - 1).getPath()
+              + " in L" + (i + 1) + "; moving it to L0");
+          newLevel0.add(sf);
+        } else {
+          kept.add(sf);
+        }
+      }
+      newLevels.add(ImmutableList.copyOf(kept));
+    }
+    // Levels emptied at the bottom do not count
+    while (!newLevels.isEmpty() && newLevels.get(newLevels.size() - 1).isEmpty()) {
+      newLevels.remove(newLevels.size() - 1);
+    }
+    return new State(ImmutableList.sortedCopyOf(StoreFileComparators.SEQ_ID, newLevel0),
+        ImmutableList.copyOf(newLevels));
+  }
+
+  private static void addToLevel(List<HStoreFile> level0, List<List<HStoreFile>> levels,
+      HStoreFile sf, int level) {
+    if (level == 0) {
+      level0.add(sf);
+      return;
+    }
+    while (levels.size() < level) {
+      levels.add(new ArrayList<>());
+    }
+    levels.get(level - 1).add(sf);
+  }
+
+  @Override
+  public void loadFiles(List<HStoreFile> storeFiles) {
+    List<HStoreFile> level0 = new ArrayList<>();
+    List<List<HStoreFile>> levels = new ArrayList<>();
+    for (HStoreFile sf : storeFiles) {
+      addToLevel(level0, levels, sf, getLevel(sf));
+    }
+    this.state = createState(level0, levels);
+  }
+
+  @Override
+  public void insertNewFiles(Collection<HStoreFile> sfs) throws IOException {
+    // Flushed and bulk loaded files may overlap anything, they all go to L0
+    State state = this.state;
+    this.state = new State(ImmutableList.sortedCopyOf(StoreFileComparators.SEQ_ID,
+      Iterables.concat(state.level0Files, sfs)), state.levelFiles);
+  }
+
+  @Override
+  public void addCompactionResults(Collection<HStoreFile> newCompactedFiles,
+      Collection<HStoreFile> results) throws IOException {
+    State state = this.state;
+    List<HStoreFile> level0 = state.level0Files.stream()
+        .filter(sf -> !newCompactedFiles.contains(sf)).collect(Collectors.toList());
+    List<List<HStoreFile>> levels = new ArrayList<>(state.levelFiles.size());
+    for (ImmutableList<HStoreFile> files : state.levelFiles) {
+      levels.add(files.stream().filter(sf -> !newCompactedFiles.contains(sf))
+          .collect(Collectors.toList()));
+    }
+    for (HStoreFile sf : results) {
+      addToLevel(level0, levels, sf, getLevel(sf));
+    }
+    // The policy never selects compactions whose results overlap other files of their level, but
+    // the results are already in the store directory here, so any that do go to L0 like they would
+    // when the store is opened again
+    State newState = createState(level0, levels);
+    for (HStoreFile sf : results) {
+      if (getLevel(sf) > 0 && newState.level0Files.contains(sf)) {
+        LOG.warn("Compaction result " + sf.getPath() + " overlaps other files of L" + getLevel(sf)
+            + " and was moved to L0; the compaction selection missed files of the level");
+      }
+    }
+    this.state = newState;
+    // Mark the files as compactedAway once the storefiles and compactedfiles list is finalized
+    // Let a background thread close the actual reader on these compacted files and also
+    // ensure to evict the blocks from block cache so that they are no longer in
+    // cache
+    newCompactedFiles.forEach(HStoreFile::markCompactedAway);
+    this.compactedFiles = ImmutableList.sortedCopyOf(StoreFileComparators.SEQ_ID,
+      Iterables.concat(this.compactedFiles, newCompactedFiles));
+  }
+
+  @Override
+  public void removeCompactedFiles(Collection<HStoreFile> removedCompactedFiles)
+      throws IOException {
+    this.compactedFiles = this.compactedFiles.stream()
+        .filter(sf -> !removedCompactedFiles.contains(sf)).sorted(StoreFileComparators.SEQ_ID)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  @Override
+  public ImmutableCollection<HStoreFile> clearFiles() {
+    ImmutableList<HStoreFile> result = state.allFiles;
+    this.state = new State(ImmutableList.of(), ImmutableList.of());
+    return result;
+  }
+
+  @Override
+  public Collection<HStoreFile> clearCompactedFiles() {
+    List<HStoreFile> result = compactedFiles;
+    compactedFiles = ImmutableList.of();
+    return result;
+  }
+
+  @Override
+  public Collection<HStoreFile> getStorefiles() {
+    return state.allFiles;
+  }
+
+  @Override
+  public Collection<HStoreFile> getCompactedfiles() {
+    return compactedFiles;
+  }
+
+  @Override
+  public int getStorefileCount() {
+    return state.allFiles.size();
+  }
+
+  @Override
+  public int getCompactedFilesCount() {
+    return compactedFiles.size();
+  }
+
+  /**
+   * Only the L0 files can pile up faster than compactions go, the levels are bounded in size.
+   */
+  @Override
+  public int getStorefileCountForBlocking() {
+    return state.level0Files.size();
+  }
+
+  /**
+   * A row is in at most one file of each level.
+   */
+  @Override
+  public int getReadAmplification() {
+    State state = this.state;
+    int files = state.level0Files.size();
+    for (ImmutableList<HStoreFile> level : state.levelFiles) {
+      if (!level.isEmpty()) {
+        files++;
+      }
+    }
+    return files;
+  }
+
+  /**
+   * @return the files of L0, sorted by sequence id.
+   */
+  public List<HStoreFile> getLevel0Files() {
+    return state.level0Files;
+  }
+
+  /**
+   * @return the number of levels from L1 on that have files, or that are above such a level.
+   */
+  public int getLevelCount() {
+    return state.levelFiles.size();
+  }
+
+  /**
+   * @param level from 1 on
+   * @return the files of the level, sorted by row.
+   */
+  public List<HStoreFile> getLevelFiles(int level) {
+    ImmutableList<ImmutableList<HStoreFile>> levelFiles = state.levelFiles;
+    return level <= levelFiles.size() ? levelFiles.get(level - 1) : ImmutableList.of();
+  }
+
+  /**
+   * @param level from 0 on
+   * @return the total size of the files of the level.
+   */
+  public long getLevelSize(int level) {
+    return getSize(level == 0 ? getLevel0Files() : getLevelFiles(level));
+  }
+
+  public static long getSize(Collection<HStoreFile> files) {
+    long size = 0;
+    for (HStoreFile sf : files) {
+      size += sf.getReader().length();
+    }
+    return size;
+  }
+
+  /**
+   * @param level from 1 on
+   * @param firstKey the first row to look for, or null for the first row of the store
+   * @param lastKey the last row to look for, or null for the last row of the store
+   * @return the files of the level that have rows between the rows of both keys, both inclusive,
+   *         sorted by row.
+   */
+  public List<HStoreFile> getOverlappingFiles(int level, Cell firstKey, Cell lastKey) {
+    return getOverlappingFiles(getLevelFiles(level), firstKey, lastKey);
+  }
+
+  /**
+   * @param level from 1 on
+   * @param files the files whose rows to look for, files without cells are ignored
+   * @return the files of the level that have rows between the first and the last row of all the
+   *         given files, both inclusive, sorted by row.
+   */
+  public List<HStoreFile> getOverlappingFiles(int level, Collection<HStoreFile> files) {
+    Cell first = null;
+    Cell last = null;
+    for (HStoreFile sf : files) {
+      if (!sf.getReader().getFirstKey().isPresent()) {
+        continue;
+      }
+      if (first == null || cellComparator.compareRows(firstKey(sf), first) < 0) {
+        first = firstKey(sf);
+      }
+      if (last == null || cellComparator.compareRows(lastKey(sf), last) > 0) {
+        last = lastKey(sf);
+      }
+    }
+    return first == null ? ImmutableList.of() : getOverlappingFiles(level, first, last);
+  }
+
+  private List<HStoreFile> getOverlappingFiles(List<HStoreFile> files, Cell firstKey,
+      Cell lastKey) {
+    // The files do not overlap, so their last rows are sorted too
+    int from = 0;
+    if (firstKey != null) {
+      int low = 0;
+      int high = files.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (cellComparator.compareRows(lastKey(files.get(mid)), firstKey) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      from = low;
+    }
+    int to = from;
+    while (to < files.size()
+        && (lastKey == null || cellComparator.compareRows(firstKey(files.get(to)), lastKey) <= 0)) {
+      to++;
+    }
+    return files.subList(from, to);
+  }
+
+  @Override
+  public Collection<HStoreFile> getFilesForScan(byte[] startRow, boolean includeStartRow,
+      byte[] stopRow, boolean includeStopRow) {
+    State state = this.state;
+    if (state.levelFiles.isEmpty()) {
+      return state.level0Files;
+    }
+    Cell first = isOpen(startRow) ? null : CellUtil.createFirstOnRow(startRow);
+    Cell last = isOpen(stopRow) ? null : CellUtil.createFirstOnRow(stopRow);
+    if (first != null && last != null && cellComparator.compareRows(first, last) > 0) {
+      // Reversed scans go from the start row down to the stop row
+      Cell tmp = first;
+      first = last;
+      last = tmp;
+    }
+    List<HStoreFile> files = new ArrayList<>(state.level0Files);
+    for (ImmutableList<HStoreFile> levelFiles : state.levelFiles) {
+      files.addAll(getOverlappingFiles(levelFiles, first, last));
+    }
+    return files;
+  }
+
+  private static boolean isOpen(byte[] row) {
+    return row == null || row.length == 0;
+  }
+
+  @Override
+  public Iterator<HStoreFile> getCandidateFilesForRowKeyBefore(KeyValue targetKey) {
+    return state.allFiles.reverse().iterator();
+  }
+
+  @Override
+  public Iterator<HStoreFile> updateCandidateFilesForRowKeyBefore(
+      Iterator<HStoreFile> candidateFiles, KeyValue targetKey, Cell candidate) {
+    return candidateFiles;
+  }
+
+  /**
+   * Splits the biggest level in two halves of the same size, in the middle of the file that
+   * crosses the middle of the level.
+   */
+  @Override
+  public Optional<byte[]> getSplitPoint() throws IOException {
+    State state = this.state;
+    List<HStoreFile> biggest = Collections.emptyList();
+    long biggestSize = 0;
+    for (ImmutableList<HStoreFile> levelFiles : state.levelFiles) {
+      long size = getSize(levelFiles);
+      if (size > biggestSize) {
+        biggest = levelFiles;
+        biggestSize = size;
+      }
+    }
+    if (biggest.isEmpty() || getSize(state.level0Files) > biggestSize) {
+      return StoreUtils.getSplitPoint(state.allFiles, cellComparator);
+    }
+    long size = 0;
+    for (HStoreFile sf : biggest) {
+      size += sf.getReader().length();
+      if (size >= biggestSize / 2) {
+        return StoreUtils.getFileSplitPoint(sf, cellComparator);
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public int getStoreCompactionPriority() {
+    int priority = blockingFileCount - state.level0Files.size();
+    return (priority == HStore.PRIORITY_USER) ? priority + 1 : priority;
+  }
+
+  @Override
+  public Collection<HStoreFile> getUnneededFiles(long maxTs, List<HStoreFile> filesCompacting) {
+    ImmutableList<HStoreFile> files = state.allFiles;
+    // We can never get rid of the last file which has the maximum seqid.
+    return files.stream().limit(Math.max(0, files.size() - 1)).filter(sf -> {
+      long fileTs = sf.getReader().getMaxTimestamp();
+      if (fileTs < maxTs && !filesCompacting.contains(sf)) {
+        LOG.info("Found an expired store file: " + sf.getPath() + " whose maxTimeStamp is " +
+            fileTs + ", which is below " + maxTs);
+        return true;
+      } else {
+        return false;
+      }
+    }).collect(Collectors.toList());
+  }
+
+  /**
+   * The pressure is 0 when L0 and all the levels are within their bounds, and 1 when L0 holds
+   * twice the files or the size that trigger its compaction into L1, or a level twice its size.
+   */
+  @Override
+  public double getCompactionPressure() {
+    State state = this.state;
+    int level0MaxFiles = Math.max(1, Math.min(config.getLevel0MaxFiles(), blockingFileCount));
+    double pressure = Math.max((double) state.level0Files.size() / level0MaxFiles,
+      (double) getSize(state.level0Files) / Math.max(1, config.getLevel0Size())) - 1;
+    // Files are never compacted out of the last level, so it has no bound
+    int levels = Math.min(state.levelFiles.size(), config.getMaxLevels() - 1);
+    for (int level = 1; level <= levels; level++) {
+      pressure = Math.max(pressure,
+        (double) getSize(state.levelFiles.get(level - 1)) / config.getLevelSize(level) - 1);
+    }
+    return Math.max(0.0, pressure);
+  }
+
+  @Override
+  public Comparator<HStoreFile> getStoreFileComparator() {
+    return StoreFileComparators.SEQ_ID;
+  }
+}
@@ -21,6 +21,8 @@ package org.apache.hadoop.hbase.regionserver;
 import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.MemoryCompactionPolicy;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -38,6 +40,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * the compacting ratio and aborts the compaction if it is not worthy.
  * The MemStoreScanner is used to traverse the compaction pipeline. The MemStoreScanner
  * is included in internal store scanner, where all compaction logic is implemented.
+ * Under the ADAPTIVE policy the action is chosen on every invocation: a sample of the pipeline
+ * tells which fraction of the cells a data compaction would eliminate, and the pipeline is
+ * compacted only when that fraction is high enough.
  * Threads safety: It is assumed that the compaction pipeline is immutable,
  * therefore no special synchronization is required.
  */
@@ -52,13 +57,25 @@ public class MemStoreCompactor {
   // remaining with the same ("infinity") but configurable default for now
   public static final int COMPACTING_MEMSTORE_THRESHOLD_DEFAULT = 1;
 
+  // The number of cells the ADAPTIVE policy samples from the pipeline on every invocation
+  public static final String ADAPTIVE_SAMPLE_SIZE_KEY =
+      "hbase.hregion.compacting.memstore.adaptive.sample.size";
+  public static final int ADAPTIVE_SAMPLE_SIZE_DEFAULT = 1000;
+  // The ADAPTIVE policy compacts the data once at least this fraction of the sampled cells
+  // would be eliminated by the compaction, and merges the indices otherwise
+  public static final String ADAPTIVE_COMPACTION_THRESHOLD_KEY =
+      "hbase.hregion.compacting.memstore.adaptive.compaction.threshold";
+  public static final double ADAPTIVE_COMPACTION_THRESHOLD_DEFAULT = 0.5;
+
   public static final long DEEP_OVERHEAD = ClassSize
       .align(ClassSize.OBJECT
           + 4 * ClassSize.REFERENCE
           // compactingMemStore, versionedList, action, isInterrupted (the reference)
           // "action" is an enum and thus it is a class with static final constants,
           // so counting only the size of the reference to it and not the size of the internals
-          + 2 * Bytes.SIZEOF_INT        // compactionKVMax, pipelineThreshold
+          + 3 * Bytes.SIZEOF_INT        // compactionKVMax, pipelineThreshold, adaptiveSampleSize
+          + Bytes.SIZEOF_DOUBLE         // adaptiveCompactionThreshold
+          + Bytes.SIZEOF_BOOLEAN        // adaptive
           + ClassSize.ATOMIC_BOOLEAN    // isInterrupted (the internals)
       );
 
@@ -88,6 +105,10 @@ public class MemStoreCompactor {
   }
 
   private Action action = Action.FLATTEN;
+  // whether the action is chosen per invocation, by the ADAPTIVE policy
+  private boolean adaptive = false;
+  private final int adaptiveSampleSize;
+  private final double adaptiveCompactionThreshold;
 
   public MemStoreCompactor(CompactingMemStore compactingMemStore,
       MemoryCompactionPolicy compactionPolicy) {
@@ -98,6 +119,10 @@ public class MemStoreCompactor {
     pipelineThreshold =         // get the limit on the number of the segments in the pipeline
         compactingMemStore.getConfiguration().getInt(COMPACTING_MEMSTORE_THRESHOLD_KEY,
             COMPACTING_MEMSTORE_THRESHOLD_DEFAULT);
+    adaptiveSampleSize = compactingMemStore.getConfiguration().getInt(ADAPTIVE_SAMPLE_SIZE_KEY,
+        ADAPTIVE_SAMPLE_SIZE_DEFAULT);
+    adaptiveCompactionThreshold = compactingMemStore.getConfiguration().getDouble(
+        ADAPTIVE_COMPACTION_THRESHOLD_KEY, ADAPTIVE_COMPACTION_THRESHOLD_DEFAULT);
   }
 
   /**----------------------------------------------------------------------
@@ -152,12 +177,16 @@ public class MemStoreCompactor {
    * Decide what to do with the new and old segments in the compaction pipeline.
    * Implements basic in-memory compaction policy.
    */
-  private Action policy() {
+  private Action policy() throws IOException {
 
     if (isInterrupted.get()) {      // if the entire process is interrupted cancel flattening
       return Action.NOOP;           // the compaction also doesn't start when interrupted
     }
 
+    if (adaptive) {
+      return adaptivePolicy();
+    }
+
     if (action == Action.COMPACT) { // compact according to the user request
       LOG.debug("In-Memory Compaction Pipeline for store " + compactingMemStore.getFamilyName()
           + " is going to be compacted to the " + compactingMemStore.getIndexType() + ". Number of"
@@ -182,6 +211,71 @@ public class MemStoreCompactor {
     return Action.FLATTEN;
   }
 
+  /**----------------------------------------------------------------------
+   * Decide what to do with the pipeline according to a sample of its cells. The data is compacted
+   * when enough of it would be eliminated, otherwise the indices are merged or only the youngest
+   * segment is flattened, as under the basic policy. The decision is reported to the region.
+   */
+  private Action adaptivePolicy() throws IOException {
+    double eliminatedFraction = sampleEliminatedFraction();
+    int numOfSegments = versionedList.getNumOfSegments();
+    Action decision;
+    long estimatedSavings = 0;
+    if (eliminatedFraction >= adaptiveCompactionThreshold) {
+      decision = Action.COMPACT;
+      long pipelineDataSize = 0;
+      for (ImmutableSegment s : versionedList.getStoreSegments()) {
+        pipelineDataSize += s.keySize();
+      }
+      estimatedSavings = (long) (eliminatedFraction * pipelineDataSize);
+    } else if (numOfSegments > pipelineThreshold) {
+      decision = Action.MERGE;
+    } else {
+      decision = Action.FLATTEN;
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("In-Memory Compaction Pipeline for store " + compactingMemStore.getFamilyName()
+          + " with " + numOfSegments + " segments is going to be " + decision + " to the "
+          + compactingMemStore.getIndexType() + ", as an estimated "
+          + String.format("%.2f", eliminatedFraction) + " of its cells would be eliminated"
+          + " by compacting it");
+    }
+    compactingMemStore.getRegionServices().reportInMemoryCompaction(decision, estimatedSavings);
+    return decision;
+  }
+
+  /**----------------------------------------------------------------------
+   * Sample the first cells of the pipeline in merged order and return the fraction of them that
+   * a data compaction would eliminate, as versions beyond the ones the family keeps. Sampling the
+   * head of the key space keeps the cost bounded, assuming the updates are spread over the keys.
+   */
+  private double sampleEliminatedFraction() throws IOException {
+    int maxVersions = compactingMemStore.getStore().getScanInfo().getMaxVersions();
+    MemStoreMergerSegmentsIterator iterator = new MemStoreMergerSegmentsIterator(
+        versionedList.getStoreSegments(), compactingMemStore.getComparator(), compactionKVMax);
+    int sampled = 0;
+    int eliminated = 0;
+    int versions = 0;
+    Cell previous = null;
+    try {
+      while (sampled < adaptiveSampleSize && iterator.hasNext()) {
+        Cell cell = iterator.next();
+        if (previous != null && CellUtil.matchingRowColumn(previous, cell)) {
+          if (++versions > maxVersions) {
+            eliminated++;
+          }
+        } else {
+          versions = 1;
+        }
+        previous = cell;
+        sampled++;
+      }
+    } finally {
+      iterator.close();
+    }
+    return sampled == 0 ? 0 : (double) eliminated / sampled;
+  }
+
   /**----------------------------------------------------------------------
   * The worker thread performs the compaction asynchronously.
   * The solo (per compactor) thread only reads the compaction pipeline.
@@ -206,13 +300,13 @@ public class MemStoreCompactor {
       // Create one segment representing all segments in the compaction pipeline,
       // either by compaction or by merge
       if (!isInterrupted.get()) {
-        result = createSubstitution();
+        result = createSubstitution(nextStep);
       }
 
       // Substitute the pipeline with one segment
       if (!isInterrupted.get()) {
         if (resultSwapped = compactingMemStore.swapCompactedSegments(
-            versionedList, result, (action==Action.MERGE))) {
+            versionedList, result, (nextStep==Action.MERGE))) {
           // update the wal so it can be truncated and not get too long
           compactingMemStore.updateLowestUnflushedSequenceIdInWAL(true); // only if greater
         }
@@ -240,12 +334,12 @@ public class MemStoreCompactor {
    * Creation of the ImmutableSegment either by merge or copy-compact of the segments of the
    * pipeline, based on the Compactor Iterator. The new ImmutableSegment is returned.
    */
-  private ImmutableSegment createSubstitution() throws IOException {
+  private ImmutableSegment createSubstitution(Action nextStep) throws IOException {
 
     ImmutableSegment result = null;
     MemStoreSegmentsIterator iterator = null;
 
-    switch (action) {
+    switch (nextStep) {
       case COMPACT:
         iterator = new MemStoreCompactorSegmentsIterator(versionedList.getStoreSegments(),
             compactingMemStore.getComparator(), compactionKVMax, compactingMemStore.getStore());
@@ -266,7 +360,7 @@ public class MemStoreCompactor {
         iterator.close();
         break;
       default:
-        throw new RuntimeException("Unknown action " + action); // sanity check
+        throw new RuntimeException("Unknown action " + nextStep); // sanity check
     }
 
     return result;
@@ -278,6 +372,7 @@ public class MemStoreCompactor {
   @VisibleForTesting
   void initiateAction(MemoryCompactionPolicy compType) {
 
+    adaptive = false;
     switch (compType){
     case NONE: action = Action.NOOP;
       break;
@@ -285,6 +380,9 @@ public class MemStoreCompactor {
       break;
     case EAGER: action = Action.COMPACT;
       break;
+    case ADAPTIVE: action = Action.MERGE; // the action is chosen per invocation
+      adaptive = true;
+      break;
     default:
       throw new RuntimeException("Unknown memstore type " + compType); // sanity check
     }
@@ -68,6 +68,13 @@ public interface MemStoreLAB {
    */
   Cell copyCellInto(Cell cell);
 
+  /**
+   * Allocates a dedicated chunk for a Cell too big to be copied by {@link #copyCellInto(Cell)} and
+   * copies the Cell into it, so that it can be referenced from a CellChunkMap like any other Cell
+   * of the memstore. Returns new Cell instance over the copied data.
+   */
+  Cell forceCopyOfBigCellInto(Cell cell);
+
   /**
    * Close instance since it won't be used any more, try to put the chunks back to pool
    */
@@ -139,6 +139,18 @@ public class MemStoreLABImpl implements MemStoreLAB {
     return copyToChunkCell(cell, c.getData(), allocOffset, size);
   }
 
+  @Override
+  public Cell forceCopyOfBigCellInto(Cell cell) {
+    int size = KeyValueUtil.length(cell);
+    Preconditions.checkArgument(size >= 0, "negative size");
+    // The jumbo chunk holds this cell only and is never made the current chunk
+    Chunk c = this.chunkCreator.getJumboChunk(size + ChunkCreator.SIZEOF_CHUNK_HEADER);
+    chunks.add(c.getId());
+    int allocOffset = c.alloc(size);
+    assert allocOffset != -1;
+    return copyToChunkCell(cell, c.getData(), allocOffset, size);
+  }
+
   /**
    * Clone the passed cell by copying its data into the passed buf and create a cell with a chunkid
    * out of it
@@ -67,6 +67,7 @@ class MetricsRegionServerWrapperImpl
   private volatile long walFileSize = 0;
   private volatile long numStoreFiles = 0;
   private volatile long memstoreSize = 0;
+  private volatile long memstoreHeapSize = 0;
   private volatile long storeFileSize = 0;
   private volatile long maxStoreFileAge = 0;
   private volatile long minStoreFileAge = 0;
@@ -504,6 +505,11 @@ class MetricsRegionServerWrapperImpl
     return memstoreSize;
   }
 
+  @Override
+  public long getMemStoreHeapSize() {
+    return memstoreHeapSize;
+  }
+
   @Override
   public long getStoreFileSize() {
     return storeFileSize;
@@ -723,6 +729,7 @@ class MetricsRegionServerWrapperImpl
             new HDFSBlocksDistribution();
 
         long tempNumStores = 0, tempNumStoreFiles = 0, tempMemstoreSize = 0, tempStoreFileSize = 0;
+        long tempMemstoreHeapSize = 0;
         long tempMaxStoreFileAge = 0, tempNumReferenceFiles = 0;
         long avgAgeNumerator = 0, numHFiles = 0;
         long tempMinStoreFileAge = Long.MAX_VALUE;
@@ -767,7 +774,9 @@ class MetricsRegionServerWrapperImpl
           tempNumStores += storeList.size();
           for (Store store : storeList) {
             tempNumStoreFiles += store.getStorefilesCount();
-            tempMemstoreSize += store.getMemStoreSize().getDataSize();
+            MemStoreSize storeMemStoreSize = store.getMemStoreSize();
+            tempMemstoreSize += storeMemStoreSize.getDataSize();
+            tempMemstoreHeapSize += storeMemStoreSize.getHeapSize();
             tempStoreFileSize += store.getStorefilesSize();
 
             OptionalLong storeMaxStoreFileAge = store.getMaxStoreFileAge();
@@ -857,6 +866,7 @@ class MetricsRegionServerWrapperImpl
         numStores = tempNumStores;
         numStoreFiles = tempNumStoreFiles;
         memstoreSize = tempMemstoreSize;
+        memstoreHeapSize = tempMemstoreHeapSize;
         storeFileSize = tempStoreFileSize;
         maxStoreFileAge = tempMaxStoreFileAge;
         if (regionCount > 0) {
@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.regionserver;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.OptionalDouble;
 import java.util.OptionalLong;
@@ -56,6 +57,8 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
   private long numReferenceFiles;
   private long maxFlushQueueSize;
   private long maxCompactionQueueSize;
+  private long[] levelStoreFileCounts = new long[0];
+  private long[] levelStoreFileSizes = new long[0];
 
   private ScheduledFuture<?> regionMetricsUpdateTask;
 
@@ -186,6 +189,36 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return maxFlushQueueSize;
   }
 
+  @Override
+  public long getNumInMemoryFlattens() {
+    return this.region.inMemoryFlattens.sum();
+  }
+
+  @Override
+  public long getNumInMemoryMerges() {
+    return this.region.inMemoryMerges.sum();
+  }
+
+  @Override
+  public long getNumInMemoryCompactions() {
+    return this.region.inMemoryCompactions.sum();
+  }
+
+  @Override
+  public long getInMemoryCompactionEstimatedSavings() {
+    return this.region.inMemoryCompactionEstimatedSavings.sum();
+  }
+
+  @Override
+  public long[] getLevelStoreFileCounts() {
+    return levelStoreFileCounts;
+  }
+
+  @Override
+  public long[] getLevelStoreFileSizes() {
+    return levelStoreFileSizes;
+  }
+
   @Override
   public long getMaxStoreFileAge() {
     return maxStoreFileAge;
@@ -224,10 +257,13 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       long tempMaxCompactionQueueSize = 0;
       long tempMaxFlushQueueSize = 0;
 
+      long[] tempLevelStoreFileCounts = new long[0];
+      long[] tempLevelStoreFileSizes = new long[0];
+
       long avgAgeNumerator = 0;
       long numHFiles = 0;
       if (region.stores != null) {
-        for (Store store : region.stores.values()) {
+        for (HStore store : region.stores.values()) {
           tempNumStoreFiles += store.getStorefilesCount();
           tempMemstoreSize += store.getMemStoreSize().getDataSize();
           tempStoreFileSize += store.getStorefilesSize();
@@ -251,6 +287,22 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
           if (storeAvgStoreFileAge.isPresent()) {
             avgAgeNumerator += storeAvgStoreFileAge.getAsDouble() * storeHFiles;
           }
+
+          StoreFileManager sfm = store.getStoreEngine().getStoreFileManager();
+          if (sfm instanceof LeveledStoreFileManager) {
+            LeveledStoreFileManager leveled = (LeveledStoreFileManager) sfm;
+            int levels = leveled.getLevelCount() + 1;
+            if (levels > tempLevelStoreFileCounts.length) {
+              tempLevelStoreFileCounts = Arrays.copyOf(tempLevelStoreFileCounts, levels);
+              tempLevelStoreFileSizes = Arrays.copyOf(tempLevelStoreFileSizes, levels);
+            }
+            tempLevelStoreFileCounts[0] += leveled.getLevel0Files().size();
+            tempLevelStoreFileSizes[0] += leveled.getLevelSize(0);
+            for (int level = 1; level < levels; level++) {
+              tempLevelStoreFileCounts[level] += leveled.getLevelFiles(level).size();
+              tempLevelStoreFileSizes[level] += leveled.getLevelSize(level);
+            }
+          }
         }
       }
 
@@ -267,6 +319,8 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
       }
 
       numReferenceFiles = tempNumReferenceFiles;
+      levelStoreFileCounts = tempLevelStoreFileCounts;
+      levelStoreFileSizes = tempLevelStoreFileSizes;
       tempMaxCompactionQueueSize = getNumCompactionsQueued();
       tempMaxFlushQueueSize = getNumFlushesQueued();
       if (tempMaxCompactionQueueSize > maxCompactionQueueSize) {
@@ -31,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.io.hfile.PrefetchExecutor;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.metrics2.MetricsExecutor;
 
@@ -82,6 +83,8 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
 
       for(Map.Entry<TableName, MetricsTableValues> entry : localMetricsTableMap.entrySet()) {
         TableName tbl = entry.getKey();
+        entry.getValue().setPrefetchRequestedBytes(PrefetchExecutor.getRequestedBytes(tbl));
+        entry.getValue().setPrefetchCompletedBytes(PrefetchExecutor.getCompletedBytes(tbl));
         if (metricsTableMap.get(tbl) == null) {
           MetricsTableSource tableSource = CompatibilitySingletonFactory
               .getInstance(MetricsRegionServerSourceFactory.class).createTable(tbl.getNameAsString(),
@@ -159,6 +162,24 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
       return metricsTable.getTableSize();
   }
 
+  @Override
+  public long getPrefetchRequestedBytes(String table) {
+    MetricsTableValues metricsTable = metricsTableMap.get(TableName.valueOf(table));
+    if (metricsTable == null)
+      return 0;
+    else
+      return metricsTable.getPrefetchRequestedBytes();
+  }
+
+  @Override
+  public long getPrefetchCompletedBytes(String table) {
+    MetricsTableValues metricsTable = metricsTableMap.get(TableName.valueOf(table));
+    if (metricsTable == null)
+      return 0;
+    else
+      return metricsTable.getPrefetchCompletedBytes();
+  }
+
   @Override
   public void close() throws IOException {
     tableMetricsUpdateTask.cancel(true);
@@ -172,6 +193,8 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
     private long memstoresSize;
     private long storeFilesSize;
     private long tableSize;
+    private long prefetchRequestedBytes;
+    private long prefetchCompletedBytes;
 
     public long getTotalRequestsCount() {
       return totalRequestsCount;
@@ -220,6 +243,22 @@ public class MetricsTableWrapperAggregateImpl implements MetricsTableWrapperAggr
     public void setTableSize(long tableSize) {
       this.tableSize = tableSize;
     }
+
+    public long getPrefetchRequestedBytes() {
+      return prefetchRequestedBytes;
+    }
+
+    public void setPrefetchRequestedBytes(long prefetchRequestedBytes) {
+      this.prefetchRequestedBytes = prefetchRequestedBytes;
+    }
+
+    public long getPrefetchCompletedBytes() {
+      return prefetchCompletedBytes;
+    }
+
+    public void setPrefetchCompletedBytes(long prefetchCompletedBytes) {
+      this.prefetchCompletedBytes = prefetchCompletedBytes;
+    }
   }
 
 }
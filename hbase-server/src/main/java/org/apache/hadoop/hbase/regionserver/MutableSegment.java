@@ -68,8 +68,8 @@ public class MutableSegment extends Segment {
     while (it.hasNext()) {
       Cell cur = it.next();
 
-      if (cell == cur) {
-        // ignore the one just put in
+      if (cell == cur || getComparator().compare(cell, cur) == 0) {
+        // ignore the one just put in, which an index kept in chunks returns as another object
         continue;
       }
       // check that this is the row and column we are interested in, otherwise bail
@@ -35,6 +35,10 @@ public class OnheapChunk extends Chunk {
     super(size, id, fromPool);
   }
 
+  OnheapChunk(int size, int id, boolean fromPool, boolean jumbo) {
+    super(size, id, fromPool, jumbo);
+  }
+
   @Override
   void allocateDataBuffer() {
     if (data == null) {
@@ -29,15 +29,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -58,6 +62,7 @@ import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.DroppedSnapshotException;
 import org.apache.hadoop.hbase.HBaseIOException;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.MultiActionResultTooLarge;
 import org.apache.hadoop.hbase.NotServingRegionException;
 import org.apache.hadoop.hbase.ServerName;
@@ -87,6 +92,7 @@ import org.apache.hadoop.hbase.ipc.HBaseRPCErrorHandler;
 import org.apache.hadoop.hbase.ipc.HBaseRpcController;
 import org.apache.hadoop.hbase.ipc.PriorityFunction;
 import org.apache.hadoop.hbase.ipc.QosPriority;
+import org.apache.hadoop.hbase.ipc.RpcCall;
 import org.apache.hadoop.hbase.ipc.RpcCallContext;
 import org.apache.hadoop.hbase.ipc.RpcCallback;
 import org.apache.hadoop.hbase.ipc.RpcServer;
@@ -120,6 +126,7 @@ import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.util.ServerRegionReplicaUtil;
 import org.apache.hadoop.hbase.util.Strings;
+import org.apache.hadoop.hbase.util.Threads;
 import org.apache.hadoop.hbase.wal.WAL;
 import org.apache.hadoop.hbase.wal.WALEdit;
 import org.apache.hadoop.hbase.wal.WALKey;
@@ -256,6 +263,20 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
    */
   static final int BATCH_ROWS_THRESHOLD_DEFAULT = 5000;
 
+  /**
+   * Whether to scan the next batch of a scanner once the response of the current batch is sent,
+   * so the scan overlaps with the round trip to the client. Scans with a limit of rows are not
+   * scanned ahead.
+   */
+  public static final String SCAN_PREFETCH_ENABLED_KEY = "hbase.regionserver.scan.prefetch.enabled";
+  static final boolean DEFAULT_SCAN_PREFETCH_ENABLED = false;
+
+  /**
+   * The max number of threads scanning ahead.
+   */
+  public static final String SCAN_PREFETCH_THREADS_KEY = "hbase.regionserver.scan.prefetch.threads";
+  static final int DEFAULT_SCAN_PREFETCH_THREADS = 10;
+
   // Request counter. (Includes requests that are not serviced by regions.)
   // Count only once for requests with multiple actions like multi/caching-scan/replayBatch
   final LongAdder requestCount = new LongAdder();
@@ -270,6 +291,9 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
   // Request counter for rpc scan
   final LongAdder rpcScanRequestCount = new LongAdder();
 
+  // Counter of the scan calls served with the batch scanned ahead of them
+  final LongAdder scanPrefetchTakenCount = new LongAdder();
+
   // Request counter for rpc multi
   final LongAdder rpcMultiRequestCount = new LongAdder();
 
@@ -307,6 +331,11 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
    */
   private final long minimumScanTimeLimitDelta;
 
+  /**
+   * The pool scanning ahead, or null if disabled
+   */
+  private final ThreadPoolExecutor scanPrefetchPool;
+
   /**
    * Row size threshold for multi requests above which a warning is logged
    */
@@ -332,13 +361,25 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
   }
 
   /**
-   * An Rpc callback for doing shipped() call on a RegionScanner.
+   * An Rpc callback for doing shipped() call on a RegionScanner. It runs once per call it is set
+   * on, which may be after the response is sent when the response refers to the scanned cells.
    */
   private class RegionScannerShippedCallBack implements RpcCallback {
 
     private final String scannerName;
     private final RegionScanner scanner;
     private final Lease lease;
+    // the next batch to scan once the cells of the last call are shipped
+    private ScanPrefetch prefetch;
+    // the number of calls this callback was set on, and whether the last one did not run it yet
+    private long calls;
+    private boolean pending;
+    // the number of calls being served on the scanner
+    private int serving;
+    // the calls pipelined ahead of their turn by call sequence, with the tasks running them again
+    private final Map<Long, Pair<RpcCall, Runnable>> parked = new HashMap<>();
+    // the parked calls a retry took the turn of
+    private final Set<RpcCall> superseded = Collections.newSetFromMap(new IdentityHashMap<>());
 
     public RegionScannerShippedCallBack(String scannerName, RegionScanner scanner, Lease lease) {
       this.scannerName = scannerName;
@@ -346,14 +387,260 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
       this.lease = lease;
     }
 
+    /**
+     * @return the callback to set on a call, shipping the cells of that call unless a later call
+     *         did it already
+     */
+    synchronized RpcCallback forCall(ScanPrefetch prefetch) {
+      final long call = ++this.calls;
+      this.pending = true;
+      this.prefetch = prefetch;
+      return () -> run(call);
+    }
+
+    /**
+     * Ships the cells of the last call this callback was set on, if not done yet.
+     */
     @Override
     public void run() throws IOException {
-      this.scanner.shipped();
-      // We're done. On way out re-add the above removed lease. The lease was temp removed for this
-      // Rpc call and we are at end of the call now. Time to add it back.
-      if (scanners.containsKey(scannerName)) {
-        if (lease != null) regionServer.leases.addLease(lease);
+      long call;
+      synchronized (this) {
+        call = this.calls;
+      }
+      run(call);
+    }
+
+    private void run(long call) throws IOException {
+      try {
+        ship(call);
+      } finally {
+        resumeParked();
+      }
+    }
+
+    private synchronized void ship(long call) throws IOException {
+      if (!this.pending || call != this.calls) {
+        return;
+      }
+      this.pending = false;
+      try {
+        this.scanner.shipped();
+        // We're done. On way out re-add the above removed lease. The lease was temp removed for
+        // this Rpc call and we are at end of the call now. Time to add it back.
+        if (scanners.containsKey(scannerName)) {
+          if (lease != null) regionServer.leases.addLease(lease);
+          // The cells of the call are shipped, so the next batch can be scanned now.
+          if (prefetch != null) {
+            try {
+              scanPrefetchPool.execute(prefetch);
+            } catch (RejectedExecutionException e) {
+              // the next call will scan itself
+            }
+          }
+        }
+      } finally {
+        this.prefetch = null;
+      }
+    }
+
+    /**
+     * Counts a call as served on the scanner, unless the client pipelined it ahead of its turn.
+     * Such a call is parked without holding a handler, and runs again once the calls before it are
+     * served and their responses sent, or once the scanner is closed.
+     * <p>
+     * A call whose call sequence is taken already, which is a retry of a call the client timed out,
+     * does not wait for the parked ones. It is served right away and fails as out of order, so the
+     * client opens a new scanner. A retry of a parked call takes its turn, and the parked call,
+     * which the client gave up on, fails as out of order when it runs again.
+     * @return false if the call is parked, in which case its response is dropped
+     */
+    boolean startCall(RegionScannerHolder rsh, ScanRequest request)
+        throws OutOfOrderScannerNextException {
+      Runnable supersededCall;
+      synchronized (this) {
+        Optional<RpcCall> call = RpcServer.getCurrentCall();
+        if (call.isPresent() && superseded.remove(call.get())) {
+          throw new OutOfOrderScannerNextException("Expected nextCallSeq: " + rsh.getNextCallSeq()
+              + " But the nextCallSeq got from client: " + request.getNextCallSeq()
+              + "; a retry of the call took its turn");
+        }
+        if (call.isPresent() && request.getPipelineWindow() > 1 && request.hasNextCallSeq()
+            && scanners.get(scannerName) == rsh) {
+          long callSeq = request.getNextCallSeq();
+          long ahead = callSeq - rsh.getNextCallSeq();
+          if (ahead > 0 && ahead < request.getPipelineWindow()
+              || ahead == 0 && (serving > 0 || pending)) {
+            Pair<RpcCall, Runnable> previous =
+                parked.put(callSeq, new Pair<>(call.get(), call.get().deferResponse()));
+            if (previous == null) {
+              return false;
+            }
+            superseded.add(previous.getFirst());
+            supersededCall = previous.getSecond();
+          } else {
+            serving++;
+            return true;
+          }
+        } else {
+          serving++;
+          return true;
+        }
+      }
+      supersededCall.run();
+      return false;
+    }
+
+    void endCall() {
+      synchronized (this) {
+        serving--;
+      }
+      resumeParked();
+    }
+
+    /**
+     * Runs again the parked calls which may go on now. These are all of them once the scanner is
+     * closed, else the one in turn once the calls before it are served and their responses sent.
+     */
+    void resumeParked() {
+      List<Runnable> resumable = new ArrayList<>();
+      synchronized (this) {
+        RegionScannerHolder rsh = scanners.get(scannerName);
+        if (rsh == null || rsh.shippedCallback != this) {
+          parked.values().forEach(p -> resumable.add(p.getSecond()));
+          parked.clear();
+        } else if (serving == 0 && !pending) {
+          Pair<RpcCall, Runnable> next = parked.remove(rsh.getNextCallSeq());
+          if (next != null) {
+            resumable.add(next.getSecond());
+          }
+        }
+      }
+      resumable.forEach(Runnable::run);
+    }
+  }
+
+  /**
+   * Scans the next batch of a scanner ahead of the call asking for it. It runs once the cells of
+   * the current call are shipped, so the scanned cells stay referenced until the next call ships
+   * them, and the scan respects the size and time limits of a call as if the next call did it.
+   * <p>
+   * The scan runs outside of any RPC call, so the coprocessor hooks and the metrics of the scan are
+   * left to the call taking the batch, which has the user and the response to check and count.
+   */
+  private final class ScanPrefetch implements Runnable {
+
+    private final RegionScannerHolder rsh;
+    private final ScanRequest request;
+    private final int rows;
+    private final List<Result> results = new ArrayList<>();
+    private final ScanResponse.Builder builder = ScanResponse.newBuilder();
+    private IOException error;
+    private long scanTime;
+    private boolean started;
+    private boolean done;
+
+    ScanPrefetch(RegionScannerHolder rsh, ScanRequest request, int rows) {
+      this.rsh = rsh;
+      this.request = request;
+      this.rows = rows;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (started) {
+          return;
+        }
+        started = true;
+      }
+      try {
+        // the scanner may have been closed, by a lease expiry for example, before we run
+        if (scanners.get(rsh.scannerName) == rsh) {
+          scanAhead();
+        } else {
+          builder.setMoreResultsInRegion(false);
+        }
+      } catch (IOException e) {
+        error = e;
+      } catch (RuntimeException e) {
+        error = new IOException(e);
+      } finally {
+        synchronized (this) {
+          done = true;
+          notifyAll();
+        }
+      }
+    }
+
+    private void scanAhead() throws IOException {
+      scanTime = scan(null, request, rsh, maxScannerResultSize, rows, -1, results, builder,
+        new MutableObject<>(), null);
+    }
+
+    /**
+     * Takes the batch scanned ahead, waiting for the scan if it is running.
+     * @return false if the scan did not start, in which case it will not
+     */
+    boolean take(List<Result> results, ScanResponse.Builder builder) throws IOException {
+      if (!awaitDone()) {
+        return false;
+      }
+      if (error != null) {
+        throw error;
+      }
+      results.addAll(this.results);
+      builder.mergeFrom(this.builder.buildPartial());
+      return true;
+    }
+
+    /**
+     * @return the time the scan of the batch took
+     */
+    long getScanTime() {
+      return scanTime;
+    }
+
+    /**
+     * Keeps the batch scanned ahead for the call after this one, as this call did not take it. The
+     * cells are copied, since the ones scanned are only good until this call ships.
+     * @return false if the scan did not start, in which case it will not
+     */
+    boolean keep() throws IOException {
+      if (!awaitDone()) {
+        return false;
+      }
+      for (int i = 0; i < results.size(); i++) {
+        Result r = results.get(i);
+        Cell[] cells = r.rawCells();
+        if (cells == null) {
+          continue;
+        }
+        Cell[] copies = new Cell[cells.length];
+        for (int j = 0; j < cells.length; j++) {
+          copies[j] = KeyValueUtil.copyToNewKeyValue(cells[j]);
+        }
+        results.set(i, Result.create(copies, null, r.isStale(), r.mayHaveMoreCellsInRow()));
       }
+      return true;
+    }
+
+    void discard() throws InterruptedIOException {
+      awaitDone();
+    }
+
+    private synchronized boolean awaitDone() throws InterruptedIOException {
+      if (!started) {
+        started = true;
+        return false;
+      }
+      while (!done) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+        }
+      }
+      return true;
     }
   }
 
@@ -390,12 +677,15 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     private final RegionScanner s;
     private final Region r;
     private final RpcCallback closeCallBack;
-    private final RpcCallback shippedCallback;
+    private final RegionScannerShippedCallBack shippedCallback;
     private byte[] rowOfLastPartialResult;
     private boolean needCursor;
+    // the next batch, scanned ahead of the call asking for it
+    private volatile ScanPrefetch prefetch;
 
     public RegionScannerHolder(String scannerName, RegionScanner s, Region r,
-        RpcCallback closeCallBack, RpcCallback shippedCallback, boolean needCursor) {
+        RpcCallback closeCallBack, RegionScannerShippedCallBack shippedCallback,
+        boolean needCursor) {
       this.scannerName = scannerName;
       this.s = s;
       this.r = r;
@@ -429,6 +719,7 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     public void leaseExpired() {
       RegionScannerHolder rsh = scanners.remove(this.scannerName);
       if (rsh != null) {
+        rsh.shippedCallback.resumeParked();
         RegionScanner s = rsh.s;
         LOG.info("Scanner " + this.scannerName + " lease expired on region "
           + s.getRegionInfo().getRegionNameAsString());
@@ -1218,6 +1509,13 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     minimumScanTimeLimitDelta = rs.conf.getLong(
       REGION_SERVER_RPC_MINIMUM_SCAN_TIME_LIMIT_DELTA,
       DEFAULT_REGION_SERVER_RPC_MINIMUM_SCAN_TIME_LIMIT_DELTA);
+    if (rs.conf.getBoolean(SCAN_PREFETCH_ENABLED_KEY, DEFAULT_SCAN_PREFETCH_ENABLED)) {
+      scanPrefetchPool = Threads.getBoundedCachedThreadPool(
+        rs.conf.getInt(SCAN_PREFETCH_THREADS_KEY, DEFAULT_SCAN_PREFETCH_THREADS), 60,
+        TimeUnit.SECONDS, Threads.newDaemonThreadFactory(name + "-scan-prefetch"));
+    } else {
+      scanPrefetchPool = null;
+    }
 
     InetSocketAddress address = rpcServer.getListenerAddress();
     if (address == null) {
@@ -1339,7 +1637,8 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
       boolean needCursor) throws LeaseStillHeldException {
     Lease lease = regionServer.leases.createLease(scannerName, this.scannerLeaseTimeoutPeriod,
       new ScannerListener(scannerName));
-    RpcCallback shippedCallback = new RegionScannerShippedCallBack(scannerName, s, lease);
+    RegionScannerShippedCallBack shippedCallback =
+        new RegionScannerShippedCallBack(scannerName, s, lease);
     RpcCallback closeCallback;
     if (s instanceof RpcCallback) {
       closeCallback = (RpcCallback) s;
@@ -1404,6 +1703,9 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
   }
 
   void stop() {
+    if (scanPrefetchPool != null) {
+      scanPrefetchPool.shutdownNow();
+    }
     closeAllScanners();
     rpcServer.stop();
   }
@@ -2874,6 +3176,7 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
           + hri.getRegionNameAsString() + ", scannerRegionName=" + rsh.r;
       LOG.warn(msg + ", closing...");
       scanners.remove(scannerName);
+      rsh.shippedCallback.resumeParked();
       try {
         rsh.s.close();
       } catch (IOException e) {
@@ -2987,8 +3290,12 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     }
   }
 
-  // return whether we have more results in region.
-  private void scan(HBaseRpcController controller, ScanRequest request, RegionScannerHolder rsh,
+  /**
+   * Scans the next batch of the scanner. The caller runs the coprocessor hooks and updates the
+   * metrics of the scan.
+   * @return the time the scan took
+   */
+  private long scan(HBaseRpcController controller, ScanRequest request, RegionScannerHolder rsh,
       long maxQuotaResultSize, int maxResults, int limitOfRows, List<Result> results,
       ScanResponse.Builder builder, MutableObject lastBlock, RpcCallContext context)
       throws IOException {
@@ -3149,19 +3456,18 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
       }
       region.updateReadRequestsCount(numOfResults);
       requestRowActionCount.add(numOfResults);
-      long end = EnvironmentEdgeManager.currentTime();
-      long responseCellSize = context != null ? context.getResponseCellSize() : 0;
-      region.getMetrics().updateScanTime(end - before);
-      if (regionServer.metricsRegionServer != null) {
-        regionServer.metricsRegionServer.updateScanSize(responseCellSize);
-        regionServer.metricsRegionServer.updateScanTime(end - before);
-      }
+      return EnvironmentEdgeManager.currentTime() - before;
     } finally {
       region.closeRegionOperation();
     }
-    // coprocessor postNext hook
-    if (region.getCoprocessorHost() != null) {
-      region.getCoprocessorHost().postScannerNext(scanner, results, maxResults, true);
+  }
+
+  private void updateScanMetrics(Region region, RpcCallContext context, long scanTime) {
+    long responseCellSize = context != null ? context.getResponseCellSize() : 0;
+    region.getMetrics().updateScanTime(scanTime);
+    if (regionServer.metricsRegionServer != null) {
+      regionServer.metricsRegionServer.updateScanSize(responseCellSize);
+      regionServer.metricsRegionServer.updateScanTime(scanTime);
     }
   }
 
@@ -3226,8 +3532,37 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
       }
       throw new ServiceException(e);
     }
+    try {
+      if (!rsh.shippedCallback.startCall(rsh, request)) {
+        // The call is parked until its turn, and this response is dropped.
+        return builder.build();
+      }
+    } catch (OutOfOrderScannerNextException e) {
+      throw new ServiceException(e);
+    }
+    try {
+      return scan(controller, request, rsh, builder);
+    } finally {
+      rsh.shippedCallback.endCall();
+    }
+  }
+
+  private ScanResponse scan(RpcController controller, ScanRequest request,
+      RegionScannerHolder rsh, ScanResponse.Builder builder) throws ServiceException {
     Region region = rsh.r;
     String scannerName = rsh.scannerName;
+    // The callback of the previous call waits for its response to be sent when the response
+    // refers to the scanned cells. Usually that response is through by now, as the client sent
+    // this call after getting it, or this call was pipelined and waited for it. A client that
+    // timed out the previous call and retried it may get here while that response is still being
+    // written, with cells the retry does not get, as it is out of order and resets the scanner.
+    // Either way ship the cells now if the callback did not run yet, which also gives the lease
+    // back.
+    try {
+      rsh.shippedCallback.run();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
     Leases.Lease lease;
     try {
       // Remove lease while its being processed in server; protects against case
@@ -3283,11 +3618,15 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     }
     MutableObject<Object> lastBlock = new MutableObject<>();
     boolean scannerClosed = false;
+    ScanPrefetch prefetch = rsh.prefetch;
+    rsh.prefetch = null;
+    boolean prefetchKept = false;
     try {
       List<Result> results = new ArrayList<>();
       if (rows > 0) {
         boolean done = false;
-        // Call coprocessor. Get region info from scanner.
+        // Call coprocessor. Get region info from scanner. The hook runs here even when the batch
+        // was scanned ahead, so it sees the user of the call.
         if (region.getCoprocessorHost() != null) {
           Boolean bypass = region.getCoprocessorHost().preScannerNext(scanner, results, rows);
           if (!results.isEmpty()) {
@@ -3300,12 +3639,38 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
           }
         }
         if (!done) {
-          scan((HBaseRpcController) controller, request, rsh, maxQuotaResultSize, rows, limitOfRows,
-            results, builder, lastBlock, context);
+          long scanTime;
+          if (prefetch != null && prefetch.take(results, builder)) {
+            for (Result r : results) {
+              lastBlock.setValue(addSize(context, r, lastBlock.getValue()));
+            }
+            scanTime = prefetch.getScanTime();
+            scanPrefetchTakenCount.increment();
+          } else {
+            scanTime = scan((HBaseRpcController) controller, request, rsh, maxQuotaResultSize,
+              rows, limitOfRows, results, builder, lastBlock, context);
+          }
+          prefetch = null;
+          updateScanMetrics(region, context, scanTime);
+          // coprocessor postNext hook
+          if (region.getCoprocessorHost() != null) {
+            region.getCoprocessorHost().postScannerNext(scanner, results, rows, true);
+          }
         } else {
+          if (prefetch != null && prefetch.keep()) {
+            // the scanner is past the batch, so it goes to the next call
+            rsh.prefetch = prefetch;
+            prefetchKept = true;
+          }
+          prefetch = null;
           builder.setMoreResultsInRegion(!results.isEmpty());
         }
       } else {
+        if (prefetch != null) {
+          // A close call, drop the batch scanned ahead once the scan of it is over.
+          prefetch.discard();
+          prefetch = null;
+        }
         // This is a open scanner call with numberOfRow = 0, so set more results in region to true.
         builder.setMoreResultsInRegion(true);
       }
@@ -3346,10 +3711,17 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
       if (!builder.getMoreResults() || !builder.getMoreResultsInRegion() || closeScanner) {
         scannerClosed = true;
         closeScanner(region, scanner, scannerName, context);
+      } else if (!prefetchKept && scanPrefetchPool != null && context != null && rows > 0
+          && limitOfRows <= 0) {
+        rsh.prefetch = new ScanPrefetch(rsh, request, rows);
       }
       return builder.build();
     } catch (IOException e) {
       try {
+        if (prefetch != null) {
+          // a hook failed the call before the batch was taken, let its scan finish before closing
+          prefetch.discard();
+        }
         // scanner is closed here
         scannerClosed = true;
         // The scanner state might be left in a dirty state, so we will tell the Client to
@@ -3397,7 +3769,7 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
         // Adding resets expiration time on lease.
         // the closeCallBack will be set in closeScanner so here we only care about shippedCallback
         if (context != null) {
-          context.setCallBack(rsh.shippedCallback);
+          context.setCallBack(rsh.shippedCallback.forCall(rsh.prefetch));
         } else {
           // When context != null, adding back the lease will be done in callback set above.
           addScannerLeaseBack(lease);
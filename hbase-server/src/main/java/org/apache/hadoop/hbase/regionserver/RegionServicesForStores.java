@@ -83,6 +83,14 @@ public class RegionServicesForStores {
     return region.getMemStoreFlushSize();
   }
 
+  /**
+   * Reports the action chosen by an adaptive in-memory compaction, with the number of bytes it
+   * is estimated to eliminate from the memstore.
+   */
+  public void reportInMemoryCompaction(MemStoreCompactor.Action action, long estimatedSavings) {
+    region.reportInMemoryCompaction(action, estimatedSavings);
+  }
+
   public int getNumStores() {
     return region.getTableDescriptor().getColumnFamilyCount();
   }
@@ -48,6 +48,13 @@ public class ReversedKeyValueHeap extends KeyValueHeap {
     super(scanners, new ReversedKVScannerComparator(comparator));
   }
 
+  @Override
+  public int nextRun(Cell bound, CellComparator cellComparator, CellRunVisitor visitor)
+      throws IOException {
+    throw new IllegalStateException(
+        "nextRun cannot be called on ReversedKeyValueHeap");
+  }
+
   @Override
   public boolean seek(Cell seekKey) throws IOException {
     throw new IllegalStateException(
@@ -72,23 +79,22 @@ public class ReversedKeyValueHeap extends KeyValueHeap {
     if (current == null) {
       return false;
     }
-    heap.add(current);
+    KeyValueScanner scanner = heap.pushPop(current);
     current = null;
 
-    KeyValueScanner scanner;
-    while ((scanner = heap.poll()) != null) {
+    while (scanner != null) {
       Cell topKey = scanner.peek();
       if (comparator.getComparator().compareRows(topKey, seekKey) < 0) {
         // Row of Top KeyValue is before Seek row.
-        heap.add(scanner);
-        current = pollRealKV();
+        current = pollRealKV(scanner);
         return current != null;
       }
 
       if (!scanner.seekToPreviousRow(seekKey)) {
         this.scannersForDelayedClose.add(scanner);
+        scanner = heap.poll();
       } else {
-        heap.add(scanner);
+        scanner = heap.pushPop(scanner);
       }
     }
 
@@ -101,23 +107,22 @@ public class ReversedKeyValueHeap extends KeyValueHeap {
     if (current == null) {
       return false;
     }
-    heap.add(current);
+    KeyValueScanner scanner = heap.pushPop(current);
     current = null;
 
-    KeyValueScanner scanner;
-    while ((scanner = heap.poll()) != null) {
+    while (scanner != null) {
       Cell topKey = scanner.peek();
       if ((CellUtil.matchingRow(seekKey, topKey) && comparator
           .getComparator().compare(seekKey, topKey) <= 0)
           || comparator.getComparator().compareRows(seekKey, topKey) > 0) {
-        heap.add(scanner);
-        current = pollRealKV();
+        current = pollRealKV(scanner);
         return current != null;
       }
       if (!scanner.backwardSeek(seekKey)) {
         this.scannersForDelayedClose.add(scanner);
+        scanner = heap.poll();
       } else {
-        heap.add(scanner);
+        scanner = heap.pushPop(scanner);
       }
     }
     return false;
@@ -132,20 +137,20 @@ public class ReversedKeyValueHeap extends KeyValueHeap {
     Cell kvNext = this.current.peek();
     if (kvNext == null
         || this.comparator.kvComparator.compareRows(kvNext, kvReturn) > 0) {
-      if (this.current.seekToPreviousRow(kvReturn)) {
-        this.heap.add(this.current);
+      KeyValueScanner previous = this.current;
+      if (previous.seekToPreviousRow(kvReturn)) {
+        this.current = null;
+        this.current = pollRealKV(previous);
       } else {
-        this.scannersForDelayedClose.add(this.current);
+        this.scannersForDelayedClose.add(previous);
+        this.current = null;
+        this.current = pollRealKV();
       }
-      this.current = null;
-      this.current = pollRealKV();
     } else {
       KeyValueScanner topScanner = this.heap.peek();
       if (topScanner != null
           && this.comparator.compare(this.current, topScanner) > 0) {
-        this.heap.add(this.current);
-        this.current = null;
-        this.current = pollRealKV();
+        swapCurrentWithTop();
       }
     }
     return kvReturn;
@@ -48,13 +48,14 @@ public class ScanInfo {
   private boolean usePread;
   private long cellsPerTimeoutCheck;
   private boolean parallelSeekEnabled;
+  private final boolean batchedScanEnabled;
   private final long preadMaxBytes;
   private final Configuration conf;
   private final boolean newVersionBehavior;
 
   public static final long FIXED_OVERHEAD = ClassSize.align(ClassSize.OBJECT
       + (2 * ClassSize.REFERENCE) + (2 * Bytes.SIZEOF_INT)
-      + (4 * Bytes.SIZEOF_LONG) + (4 * Bytes.SIZEOF_BOOLEAN));
+      + (4 * Bytes.SIZEOF_LONG) + (5 * Bytes.SIZEOF_BOOLEAN));
 
   /**
    * @param conf
@@ -103,6 +104,8 @@ public class ScanInfo {
         perHeartbeat: StoreScanner.DEFAULT_HBASE_CELLS_SCANNED_PER_HEARTBEAT_CHECK;
     this.parallelSeekEnabled =
       conf.getBoolean(StoreScanner.STORESCANNER_PARALLEL_SEEK_ENABLE, false);
+    this.batchedScanEnabled = conf.getBoolean(StoreScanner.STORESCANNER_BATCHED_SCAN_ENABLE,
+      StoreScanner.DEFAULT_STORESCANNER_BATCHED_SCAN_ENABLE);
     this.preadMaxBytes = conf.getLong(StoreScanner.STORESCANNER_PREAD_MAX_BYTES, 4 * blockSize);
     this.conf = conf;
     this.newVersionBehavior = newVersionBehavior;
@@ -128,6 +131,10 @@ public class ScanInfo {
     return this.parallelSeekEnabled;
   }
 
+  boolean isBatchedScanEnabled() {
+    return this.batchedScanEnabled;
+  }
+
   public byte[] getFamily() {
     return family;
   }
@@ -161,11 +161,23 @@ public abstract class Segment {
    * @return either the given cell or its clone
    */
   public Cell maybeCloneWithAllocator(Cell cell) {
+    return maybeCloneWithAllocator(cell, false);
+  }
+
+  /**
+   * Same as {@link #maybeCloneWithAllocator(Cell)}, but when forceCloneOfBigCell is set a cell too
+   * big for the allocator's chunks is cloned into a dedicated chunk instead of being returned as is
+   * @return either the given cell or its clone
+   */
+  public Cell maybeCloneWithAllocator(Cell cell, boolean forceCloneOfBigCell) {
     if (this.memStoreLAB == null) {
       return cell;
     }
 
     Cell cellFromMslab = this.memStoreLAB.copyCellInto(cell);
+    if (cellFromMslab == null && forceCloneOfBigCell) {
+      cellFromMslab = this.memStoreLAB.forceCopyOfBigCellInto(cell);
+    }
     return (cellFromMslab != null) ? cellFromMslab : cell;
   }
 
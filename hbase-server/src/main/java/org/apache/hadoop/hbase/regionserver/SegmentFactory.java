@@ -69,6 +69,9 @@ public final class SegmentFactory {
 
   // create not-flat immutable segment from mutable segment
   public ImmutableSegment createImmutableSegment(MutableSegment segment) {
+    if (segment instanceof CellChunkSkipListMutableSegment) {
+      return new CellChunkSkipListImmutableSegment((CellChunkSkipListMutableSegment) segment);
+    }
     return new CSLMImmutableSegment(segment);
   }
 
@@ -78,6 +81,18 @@ public final class SegmentFactory {
     return generateMutableSegment(conf, comparator, memStoreLAB);
   }
 
+  // create mutable segment for active segment of compacting memstore, which keeps its index in
+  // MSLAB chunks when flat segments are CellChunkMap based
+  public MutableSegment createMutableSegment(final Configuration conf, CellComparator comparator,
+      CompactingMemStore.IndexType idxType) {
+    MemStoreLAB memStoreLAB = MemStoreLAB.newInstance(conf);
+    if (idxType == CompactingMemStore.IndexType.CHUNK_MAP && memStoreLAB != null
+        && CellChunkSkipListMap.isSupported()) {
+      return new CellChunkSkipListMutableSegment(comparator, memStoreLAB);
+    }
+    return generateMutableSegment(conf, comparator, memStoreLAB);
+  }
+
   // create new flat immutable segment from merging old immutable segments
   // for merge
   public ImmutableSegment createImmutableSegmentByMerge(final Configuration conf,
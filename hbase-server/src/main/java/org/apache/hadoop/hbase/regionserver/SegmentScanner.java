@@ -25,6 +25,7 @@ import java.util.SortedSet;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.client.Scan;
@@ -114,6 +115,23 @@ public class SegmentScanner implements KeyValueScanner {
     return oldCurrent;
   }
 
+  /**
+   * When the last cell of the segment sorts before the bound, the whole remainder of the segment is
+   * in the run and no cell needs comparing to the bound. Cells added to the segment after this
+   * check are newer than the read point and never returned by this scanner.
+   */
+  @Override
+  public int nextRun(Cell bound, CellComparator comparator, CellRunVisitor visitor)
+      throws IOException {
+    if (bound != null && !closed && current != null) {
+      Cell last = segment.last();
+      if (last != null && comparator.compare(last, bound) < 0) {
+        bound = null;
+      }
+    }
+    return KeyValueScanner.super.nextRun(bound, comparator, visitor);
+  }
+
   /**
    * Seek the scanner at or after the specified Cell.
    * @param cell seek value
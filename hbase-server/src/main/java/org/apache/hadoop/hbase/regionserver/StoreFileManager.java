@@ -104,6 +104,22 @@ public interface StoreFileManager {
    */
   int getStorefileCount();
 
+  /**
+   * Returns the number of files that count against {@link HStore#BLOCKING_STOREFILES_KEY}.
+   * @return The number of files.
+   */
+  default int getStorefileCountForBlocking() {
+    return getStorefileCount();
+  }
+
+  /**
+   * Returns the number of files a read of a single row may have to look at.
+   * @return The number of files.
+   */
+  default int getReadAmplification() {
+    return getStorefileCount();
+  }
+
   /**
    * Returns the number of compacted files.
    * @return The number of files.
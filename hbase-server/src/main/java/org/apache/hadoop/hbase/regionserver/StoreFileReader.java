@@ -17,12 +17,15 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_PARAM_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_TYPE_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.DELETE_FAMILY_COUNT;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.LAST_BLOOM_KEY;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.SortedSet;
@@ -50,6 +53,7 @@ import org.apache.hadoop.hbase.io.hfile.HFileScanner;
 import org.apache.hadoop.hbase.nio.ByteBuff;
 import org.apache.hadoop.hbase.util.BloomFilter;
 import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.yetus.audience.InterfaceStability;
@@ -71,6 +75,8 @@ public class StoreFileReader {
   protected long sequenceID = -1;
   protected TimeRange timeRange = null;
   private byte[] lastBloomKey;
+  /** The row prefix of a ROWPREFIX Bloom filter, see {@link BloomFilterUtil#getBloomFilterParam} */
+  private byte[] bloomFilterParam;
   private long deleteFamilyCnt = -1;
   private boolean bulkLoadResult = false;
   private KeyValue.KeyOnlyKeyValue lastBloomKeyOnlyKV = null;
@@ -113,6 +119,7 @@ public class StoreFileReader {
     this.sequenceID = reader.sequenceID;
     this.timeRange = reader.timeRange;
     this.lastBloomKey = reader.lastBloomKey;
+    this.bloomFilterParam = reader.bloomFilterParam;
     this.bulkLoadResult = reader.bulkLoadResult;
     this.lastBloomKeyOnlyKV = reader.lastBloomKeyOnlyKV;
     this.skipResetSeqId = reader.skipResetSeqId;
@@ -222,7 +229,8 @@ public class StoreFileReader {
 
   /**
    * Checks whether the given scan passes the Bloom filter (if present). Only
-   * checks Bloom filters for single-row or single-row-column scans. Bloom
+   * checks Bloom filters for single-row or single-row-column scans, and for
+   * scans of the rows of a single prefix with row prefix Bloom filters. Bloom
    * filter checking for multi-gets is implemented as part of the store
    * scanner system (see {@link StoreFileScanner#seek(Cell)} and uses
    * the lower-level API {@link #passesGeneralRowBloomFilter(byte[], int, int)}
@@ -237,15 +245,19 @@ public class StoreFileReader {
    *         False if the Bloom filter is applicable and the scan fails it.
    */
   boolean passesBloomFilter(Scan scan, final SortedSet<byte[]> columns) {
-    // Multi-column non-get scans will use Bloom filters through the
-    // lower-level API function that this function calls.
+    byte[] row = scan.getStartRow();
     if (!scan.isGetScan()) {
+      if (bloomFilterType == BloomType.ROWPREFIX) {
+        return passesGeneralRowPrefixBloomFilter(scan);
+      }
+      // Multi-column non-get scans will use Bloom filters through the
+      // lower-level API function that this function calls.
       return true;
     }
 
-    byte[] row = scan.getStartRow();
     switch (this.bloomFilterType) {
       case ROW:
+      case ROWPREFIX:
         return passesGeneralRowBloomFilter(row, 0, row.length);
 
       case ROWCOL:
@@ -265,6 +277,59 @@ public class StoreFileReader {
     }
   }
 
+  /**
+   * Checks a row prefix Bloom filter for a scan, if all the rows the scan can return have the same
+   * prefix.
+   */
+  private boolean passesGeneralRowPrefixBloomFilter(Scan scan) {
+    // The rows of a prefix are all the rows from the prefix to the next one, so the scan has to
+    // start and stop there
+    byte[] prefix = BloomFilterUtil.getRowPrefix(bloomFilterParam, scan.getStartRow());
+    if (!BloomFilterUtil.isCompleteRowPrefix(bloomFilterParam, prefix)) {
+      return true;
+    }
+    byte[] stopRow = scan.getStopRow();
+    if (scan.isReversed()) {
+      if (Bytes.equals(stopRow, HConstants.EMPTY_END_ROW)
+          || Bytes.compareTo(stopRow, prefix) < 0) {
+        return true;
+      }
+    } else {
+      byte[] nextPrefix = getClosestRowAfterPrefix(prefix);
+      if (nextPrefix != null) {
+        if (Bytes.equals(stopRow, HConstants.EMPTY_END_ROW)) {
+          return true;
+        }
+        int cmp = Bytes.compareTo(stopRow, nextPrefix);
+        if (cmp > 0 || (cmp == 0 && scan.includeStopRow())) {
+          return true;
+        }
+      }
+    }
+    BloomFilter bloomFilter = this.generalBloomFilter;
+    if (bloomFilter == null) {
+      return true;
+    }
+    return checkGeneralBloomFilter(prefix, null, bloomFilter);
+  }
+
+  /**
+   * @return the first row after all the rows starting with the prefix, or null if they go to the
+   *         end of the table
+   */
+  private static byte[] getClosestRowAfterPrefix(byte[] prefix) {
+    int offset = prefix.length;
+    while (offset > 0 && prefix[offset - 1] == (byte) 0xFF) {
+      offset--;
+    }
+    if (offset == 0) {
+      return null;
+    }
+    byte[] next = Arrays.copyOf(prefix, offset);
+    next[offset - 1]++;
+    return next;
+  }
+
   public boolean passesDeleteFamilyBloomFilter(byte[] row, int rowOffset,
       int rowLen) {
     // Cache Bloom filter as a local variable in case it is set to null by
@@ -306,13 +371,14 @@ public class StoreFileReader {
       return true;
     }
 
-    // Used in ROW bloom
+    // Used in ROW and ROWPREFIX bloom
     byte[] key = null;
     if (rowOffset != 0 || rowLen != row.length) {
       throw new AssertionError(
           "For row-only Bloom filters the row " + "must occupy the whole array");
     }
-    key = row;
+    key = bloomFilterType == BloomType.ROWPREFIX
+        ? BloomFilterUtil.getRowPrefix(bloomFilterParam, row) : row;
     return checkGeneralBloomFilter(key, null, bloomFilter);
   }
 
@@ -368,7 +434,7 @@ public class StoreFileReader {
         // hbase:meta does not have blooms. So we need not have special interpretation
         // of the hbase:meta cells.  We can safely use Bytes.BYTES_RAWCOMPARATOR for ROW Bloom
         if (keyIsAfterLast) {
-          if (bloomFilterType == BloomType.ROW) {
+          if (bloomFilterType != BloomType.ROWCOL) {
             keyIsAfterLast = (Bytes.BYTES_RAWCOMPARATOR.compare(key, lastBloomKey) > 0);
           } else {
             keyIsAfterLast = (CellComparator.COMPARATOR.compare(kvKey, lastBloomKeyOnlyKV)) > 0;
@@ -448,6 +514,7 @@ public class StoreFileReader {
     }
 
     lastBloomKey = fi.get(LAST_BLOOM_KEY);
+    bloomFilterParam = fi.get(BLOOM_FILTER_PARAM_KEY);
     if(bloomFilterType == BloomType.ROWCOL) {
       lastBloomKeyOnlyKV = new KeyValue.KeyOnlyKeyValue(lastBloomKey, 0, lastBloomKey.length);
     }
@@ -553,6 +620,10 @@ public class StoreFileReader {
     return reader.midKey();
   }
 
+  public List<Cell> getRootIndexKeys() {
+    return reader.getRootIndexKeys();
+  }
+
   public long length() {
     return reader.length();
   }
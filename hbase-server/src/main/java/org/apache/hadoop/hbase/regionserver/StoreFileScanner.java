@@ -205,6 +205,37 @@ public class StoreFileScanner implements KeyValueScanner {
     return retKey;
   }
 
+  /**
+   * Cells before the next indexed key are all in the current block, so when that key does not sort
+   * after the bound the rest of the block is in the run without comparing each cell to the bound.
+   */
+  @Override
+  public int nextRun(Cell bound, CellComparator comparator, CellRunVisitor visitor)
+      throws IOException {
+    int accepted = 0;
+    Cell checkedIndexedKey = null;
+    boolean blockBeforeBound = false;
+    while (cur != null) {
+      if (bound != null) {
+        Cell nextIndexedKey = getNextIndexedKey();
+        if (nextIndexedKey == null || nextIndexedKey != checkedIndexedKey) {
+          checkedIndexedKey = nextIndexedKey;
+          blockBeforeBound = nextIndexedKey != null && nextIndexedKey != NO_NEXT_INDEXED_KEY
+              && comparator.compare(nextIndexedKey, bound) <= 0;
+        }
+        if (!blockBeforeBound && comparator.compare(cur, bound) >= 0) {
+          break;
+        }
+      }
+      if (!visitor.visit(cur)) {
+        break;
+      }
+      next();
+      accepted++;
+    }
+    return accepted;
+  }
+
   public boolean seek(Cell key) throws IOException {
     if (seekCount != null) seekCount.increment();
 
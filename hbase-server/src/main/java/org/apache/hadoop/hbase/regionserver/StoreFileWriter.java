@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hbase.regionserver;
 
+import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_PARAM_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.BLOOM_FILTER_TYPE_KEY;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.DELETE_FAMILY_COUNT;
 import static org.apache.hadoop.hbase.regionserver.HStoreFile.EARLIEST_PUT_TS;
@@ -46,11 +47,13 @@ import org.apache.hadoop.hbase.io.hfile.HFile;
 import org.apache.hadoop.hbase.io.hfile.HFileContext;
 import org.apache.hadoop.hbase.util.BloomContext;
 import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.BloomFilterWriter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.util.RowBloomContext;
 import org.apache.hadoop.hbase.util.RowColBloomContext;
+import org.apache.hadoop.hbase.util.RowPrefixBloomContext;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.yetus.audience.InterfaceAudience;
 
@@ -67,6 +70,7 @@ public class StoreFileWriter implements CellSink, ShipperListener {
   private final BloomFilterWriter generalBloomFilterWriter;
   private final BloomFilterWriter deleteFamilyBloomFilterWriter;
   private final BloomType bloomType;
+  private byte[] bloomFilterParam = null;
   private long earliestPutTs = HConstants.LATEST_TIMESTAMP;
   private long deleteFamilyCnt = 0;
   private BloomContext bloomContext = null;
@@ -124,9 +128,19 @@ public class StoreFileWriter implements CellSink, ShipperListener {
       case ROWCOL:
         bloomContext = new RowColBloomContext(generalBloomFilterWriter, comparator);
         break;
+      case ROWPREFIX:
+        bloomFilterParam = BloomFilterUtil.getBloomFilterParam(bloomType, conf);
+        if (bloomFilterParam == null) {
+          LOG.warn("No " + BloomFilterUtil.PREFIX_LENGTH_KEY + " or "
+              + BloomFilterUtil.DELIMITER_KEY + " set for the row prefix Bloom filter of " + path
+              + ", using the whole row");
+        }
+        bloomContext =
+            new RowPrefixBloomContext(generalBloomFilterWriter, comparator, bloomFilterParam);
+        break;
       default:
         throw new IOException(
-            "Invalid Bloom filter type: " + bloomType + " (ROW or ROWCOL expected)");
+            "Invalid Bloom filter type: " + bloomType + " (ROW, ROWCOL or ROWPREFIX expected)");
       }
     } else {
       // Not using Bloom filters.
@@ -280,6 +294,9 @@ public class StoreFileWriter implements CellSink, ShipperListener {
     if (hasGeneralBloom) {
       writer.addGeneralBloomFilter(generalBloomFilterWriter);
       writer.appendFileInfo(BLOOM_FILTER_TYPE_KEY, Bytes.toBytes(bloomType.toString()));
+      if (bloomFilterParam != null) {
+        writer.appendFileInfo(BLOOM_FILTER_PARAM_KEY, bloomFilterParam);
+      }
       bloomContext.addLastBloomKey(writer);
     }
     return hasGeneralBloom;
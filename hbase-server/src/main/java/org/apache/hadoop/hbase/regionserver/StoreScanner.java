@@ -92,6 +92,8 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
   private final int minVersions;
   private final long maxRowSize;
   private final long cellsPerHeartbeatCheck;
+  // Null unless the matcher is run over runs of cells, see STORESCANNER_BATCHED_SCAN_ENABLE
+  private final CellRun cellRun;
 
   // 1) Collects all the KVHeap that are eagerly getting closed during the
   //    course of a scan
@@ -115,6 +117,14 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
   public static final String STORESCANNER_PARALLEL_SEEK_ENABLE =
       "hbase.storescanner.parallel.seek.enable";
 
+  /**
+   * Whether the scanner takes the cells the query matcher includes or skips from the heap in runs,
+   * see {@link KeyValueScanner#nextRun}, instead of one at a time.
+   */
+  public static final String STORESCANNER_BATCHED_SCAN_ENABLE =
+      "hbase.storescanner.batched.scan.enable";
+  public static final boolean DEFAULT_STORESCANNER_BATCHED_SCAN_ENABLE = true;
+
   /** Used during unit testing to ensure that lazy seek does save seek ops */
   private static boolean lazySeekEnabledGlobally = LAZY_SEEK_ENABLED_BY_DEFAULT;
 
@@ -197,6 +207,8 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     }
     this.preadMaxBytes = scanInfo.getPreadMaxBytes();
     this.cellsPerHeartbeatCheck = scanInfo.getCellsPerTimeoutCheck();
+    this.cellRun = scanInfo.isBatchedScanEnabled() && !scan.isReversed()
+        ? new CellRun(scanInfo.getComparator()) : null;
     // Parallel seeking is on if the config allows and more there is more than one store file.
     this.store.ifPresent(s -> {
       if (s.getStorefilesCount() > 1) {
@@ -560,24 +572,31 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     long totalBytesRead = 0;
 
     LOOP: do {
-      // Update and check the time limit based on the configured value of cellsPerTimeoutCheck
-      if ((kvsScanned % cellsPerHeartbeatCheck == 0)) {
-        scannerContext.updateTimeProgress();
-        if (scannerContext.checkTimeLimit(LimitScope.BETWEEN_CELLS)) {
-          return scannerContext.setScannerState(NextState.TIME_LIMIT_REACHED).hasMoreValues();
+      // A run of cells may have ended on a cell that was already matched
+      ScanQueryMatcher.MatchCode qcode = cellRun != null ? cellRun.takeUnhandled(cell) : null;
+      int cellSize;
+      if (qcode != null) {
+        cellSize = CellUtil.estimatedSerializedSizeOf(cell);
+      } else {
+        // Update and check the time limit based on the configured value of cellsPerTimeoutCheck
+        if ((kvsScanned % cellsPerHeartbeatCheck == 0)) {
+          scannerContext.updateTimeProgress();
+          if (scannerContext.checkTimeLimit(LimitScope.BETWEEN_CELLS)) {
+            return scannerContext.setScannerState(NextState.TIME_LIMIT_REACHED).hasMoreValues();
+          }
         }
+        // Do object compare - we set prevKV from the same heap.
+        if (prevCell != cell) {
+          ++kvsScanned;
+        }
+        checkScanOrder(prevCell, cell, comparator);
+        cellSize = CellUtil.estimatedSerializedSizeOf(cell);
+        bytesRead += cellSize;
+        prevCell = cell;
+        scannerContext.setLastPeekedCell(cell);
+        topChanged = false;
+        qcode = matcher.match(cell);
       }
-      // Do object compare - we set prevKV from the same heap.
-      if (prevCell != cell) {
-        ++kvsScanned;
-      }
-      checkScanOrder(prevCell, cell, comparator);
-      int cellSize = CellUtil.estimatedSerializedSizeOf(cell);
-      bytesRead += cellSize;
-      prevCell = cell;
-      scannerContext.setLastPeekedCell(cell);
-      topChanged = false;
-      ScanQueryMatcher.MatchCode qcode = matcher.match(cell);
       switch (qcode) {
         case INCLUDE:
         case INCLUDE_AND_SEEK_NEXT_ROW:
@@ -638,6 +657,15 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
           if (scannerContext.checkSizeLimit(LimitScope.BETWEEN_CELLS)) {
             break LOOP;
           }
+          if (qcode == ScanQueryMatcher.MatchCode.INCLUDE && canScanInRuns()) {
+            boolean limitReached = cellRun.run(outResult, scannerContext, comparator,
+              totalBytesRead);
+            count += cellRun.includedCells;
+            totalBytesRead += cellRun.includedBytes;
+            if (limitReached) {
+              break LOOP;
+            }
+          }
           continue;
 
         case DONE:
@@ -679,6 +707,15 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
 
         case SKIP:
           this.heap.next();
+          if (canScanInRuns()) {
+            boolean limitReached = cellRun.run(outResult, scannerContext, comparator,
+              totalBytesRead);
+            count += cellRun.includedCells;
+            totalBytesRead += cellRun.includedBytes;
+            if (limitReached) {
+              break LOOP;
+            }
+          }
           break;
 
         case SEEK_NEXT_USING_HINT:
@@ -708,6 +745,116 @@ public class StoreScanner extends NonReversedNonLazyKeyValueScanner
     return scannerContext.setScannerState(NextState.NO_MORE_VALUES).hasMoreValues();
   }
 
+  /**
+   * Whether the cells following an included or skipped one may be matched in a run. Runs do not
+   * handle the per column family limit and offset.
+   */
+  private boolean canScanInRuns() {
+    return cellRun != null && storeLimit < 0 && storeOffset == 0;
+  }
+
+  /**
+   * Matches a run of cells taken from the heap, doing for each cell the query matcher includes or
+   * skips what {@link #next(List, ScannerContext)} does, minus the heap maintenance between cells.
+   * The run ends on the first cell the matcher asks for anything else, such as a seek or the end of
+   * the row; that cell's match code is handed back to the next loop iteration. The run also ends
+   * before a cell that is due for a time limit check, and after a cell that reaches the batch or
+   * size limit.
+   */
+  private final class CellRun implements CellRunVisitor {
+    private final CellComparator runComparator;
+    private List<Cell> outResult;
+    private ScannerContext scannerContext;
+    private CellComparator checkComparator;
+    private long totalBytesRead;
+    private boolean limitReached;
+    private Cell unhandledCell;
+    private ScanQueryMatcher.MatchCode unhandledCode;
+    int includedCells;
+    long includedBytes;
+
+    CellRun(CellComparator runComparator) {
+      this.runComparator = runComparator;
+    }
+
+    /**
+     * @return true if the batch or size limit was reached
+     */
+    boolean run(List<Cell> outResult, ScannerContext scannerContext,
+        CellComparator checkComparator, long totalBytesRead) throws IOException {
+      this.outResult = outResult;
+      this.scannerContext = scannerContext;
+      this.checkComparator = checkComparator;
+      this.totalBytesRead = totalBytesRead;
+      this.limitReached = false;
+      this.includedCells = 0;
+      this.includedBytes = 0;
+      try {
+        heap.nextRun(null, runComparator, this);
+      } finally {
+        this.outResult = null;
+        this.scannerContext = null;
+      }
+      return limitReached;
+    }
+
+    /**
+     * @return the match code the run ended on if the run ended on the given cell, otherwise null
+     */
+    ScanQueryMatcher.MatchCode takeUnhandled(Cell cell) {
+      ScanQueryMatcher.MatchCode code = null;
+      if (unhandledCell == cell) {
+        code = unhandledCode;
+      }
+      unhandledCell = null;
+      unhandledCode = null;
+      return code;
+    }
+
+    @Override
+    public boolean visit(Cell cell) throws IOException {
+      if (limitReached || kvsScanned % cellsPerHeartbeatCheck == 0) {
+        return false;
+      }
+      if (prevCell != cell) {
+        ++kvsScanned;
+      }
+      checkScanOrder(prevCell, cell, checkComparator);
+      int cellSize = CellUtil.estimatedSerializedSizeOf(cell);
+      bytesRead += cellSize;
+      prevCell = cell;
+      scannerContext.setLastPeekedCell(cell);
+      topChanged = false;
+      ScanQueryMatcher.MatchCode qcode = matcher.match(cell);
+      if (qcode == ScanQueryMatcher.MatchCode.SKIP) {
+        return true;
+      }
+      if (qcode != ScanQueryMatcher.MatchCode.INCLUDE) {
+        unhandledCell = cell;
+        unhandledCode = qcode;
+        return false;
+      }
+      Filter f = matcher.getFilter();
+      if (f != null) {
+        cell = f.transformCell(cell);
+      }
+      countPerRow++;
+      outResult.add(cell);
+      includedCells++;
+      includedBytes += cellSize;
+      totalBytesRead += cellSize;
+      scannerContext.incrementSizeProgress(cellSize, CellUtil.estimatedHeapSizeOf(cell));
+      scannerContext.incrementBatchProgress(1);
+      if (matcher.isUserScan() && totalBytesRead > maxRowSize) {
+        throw new RowTooBigException(
+            "Max row size allowed: " + maxRowSize + ", but the row is bigger than that.");
+      }
+      limitReached = scannerContext.checkBatchLimit(LimitScope.BETWEEN_CELLS)
+          || scannerContext.checkSizeLimit(LimitScope.BETWEEN_CELLS);
+      return true;
+    }
+  }
+
   /**
    * If the top cell won't be flushed into disk, the new top cell may be
    * changed after #reopenAfterFlush. Because the older top cell only exist
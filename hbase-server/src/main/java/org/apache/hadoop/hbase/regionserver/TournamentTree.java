@@ -0,0 +1,256 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A tournament tree for k-way merges, used by {@link KeyValueHeap} in place of a
+ * {@link java.util.PriorityQueue}.
+ * <p>
+ * Elements sit in fixed leaves and every internal node holds the leaf that wins the match
+ * between its two children, so the root holds the smallest element. Adding, removing or
+ * replacing an element replays only the matches on the path from its leaf to the root, which is
+ * at most log2(k) comparisons, one per level, where a binary heap needs up to two per level to
+ * sift down. Replacing the top, which is what a merge does on nearly every step, is a single
+ * such pass. Nothing is allocated unless the tree has to grow.
+ * <p>
+ * As with a PriorityQueue, elements must not change their order while they are in the tree.
+ * Not thread safe.
+ */
+@InterfaceAudience.Private
+public class TournamentTree<E> implements Iterable<E> {
+
+  private final Comparator<? super E> comparator;
+
+  // Number of leaves. Leaf i is node (capacity + i); node n > 0 has children 2n and 2n + 1.
+  private int capacity;
+  private Object[] leaves;
+  // Winning leaf of each internal node, indexed by node. The overall winner is in winners[1].
+  private int[] winners;
+  private int[] freeLeaves;
+  private int numFree;
+  private int size;
+
+  public TournamentTree(int initialCapacity, Comparator<? super E> comparator) {
+    this.comparator = comparator;
+    init(Math.max(1, initialCapacity));
+  }
+
+  private void init(int capacity) {
+    this.capacity = capacity;
+    this.leaves = new Object[capacity];
+    this.winners = new int[capacity];
+    this.freeLeaves = new int[capacity];
+    // Hand out the low leaves first
+    for (int i = 0; i < capacity; i++) {
+      freeLeaves[i] = capacity - 1 - i;
+    }
+    this.numFree = capacity;
+    this.size = 0;
+    rebuild();
+  }
+
+  private void rebuild() {
+    for (int node = capacity - 1; node > 0; node--) {
+      int left = winnerOf(2 * node);
+      int right = winnerOf(2 * node + 1);
+      winners[node] = beats(left, right) ? left : right;
+    }
+  }
+
+  private int winnerOf(int node) {
+    return node >= capacity ? node - capacity : winners[node];
+  }
+
+  @SuppressWarnings("unchecked")
+  private E leaf(int leaf) {
+    return (E) leaves[leaf];
+  }
+
+  /**
+   * @return true if the element in leaf <code>a</code> sorts at or before the one in leaf
+   *         <code>b</code>. An empty leaf loses to everything.
+   */
+  private boolean beats(int a, int b) {
+    E right = leaf(b);
+    if (right == null) {
+      return true;
+    }
+    E left = leaf(a);
+    return left != null && comparator.compare(left, right) <= 0;
+  }
+
+  /**
+   * Replays the matches on the path from the given leaf to the root after it changed.
+   */
+  private void replay(int leaf) {
+    for (int node = (leaf + capacity) >>> 1; node > 0; node >>>= 1) {
+      int left = winnerOf(2 * node);
+      int right = winnerOf(2 * node + 1);
+      int winner = beats(left, right) ? left : right;
+      if (winner == winners[node] && winner != leaf) {
+        // Same winner as before and it is not the changed leaf, so nothing above changes
+        return;
+      }
+      winners[node] = winner;
+    }
+  }
+
+  private int topLeaf() {
+    return capacity == 1 ? 0 : winners[1];
+  }
+
+  private void grow() {
+    Object[] old = leaves;
+    int oldCapacity = capacity;
+    this.capacity = oldCapacity * 2;
+    this.leaves = Arrays.copyOf(old, capacity);
+    this.winners = new int[capacity];
+    this.freeLeaves = new int[capacity];
+    this.numFree = 0;
+    for (int i = capacity - 1; i >= oldCapacity; i--) {
+      freeLeaves[numFree++] = i;
+    }
+    rebuild();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the smallest element, or null if the tree is empty
+   */
+  public E peek() {
+    return size == 0 ? null : leaf(topLeaf());
+  }
+
+  public void add(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    if (numFree == 0) {
+      grow();
+    }
+    int leaf = freeLeaves[--numFree];
+    leaves[leaf] = e;
+    size++;
+    replay(leaf);
+  }
+
+  /**
+   * Removes and returns the smallest element.
+   * @return the smallest element, or null if the tree is empty
+   */
+  public E poll() {
+    if (size == 0) {
+      return null;
+    }
+    int leaf = topLeaf();
+    E top = leaf(leaf);
+    leaves[leaf] = null;
+    freeLeaves[numFree++] = leaf;
+    size--;
+    replay(leaf);
+    return top;
+  }
+
+  /**
+   * Removes the smallest element and puts the given one in its place, in a single pass up the
+   * tree. Unlike {@link #pushPop(Object)} the removed element is returned even if the given one
+   * sorts before it.
+   * @return the element that was the smallest, or null if the tree was empty
+   */
+  public E replaceTop(E e) {
+    if (size == 0) {
+      add(e);
+      return null;
+    }
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    int leaf = topLeaf();
+    E top = leaf(leaf);
+    leaves[leaf] = e;
+    replay(leaf);
+    return top;
+  }
+
+  /**
+   * Adds the given element and removes the smallest one. Same as {@link #add(Object)} followed by
+   * {@link #poll()}, but returns the given element without touching the tree when it sorts at or
+   * before the current top, and costs a single pass up the tree otherwise.
+   * @return the smallest of the given element and the elements in the tree
+   */
+  public E pushPop(E e) {
+    E top = peek();
+    if (top == null || comparator.compare(e, top) <= 0) {
+      return e;
+    }
+    return replaceTop(e);
+  }
+
+  /**
+   * Removes all elements.
+   */
+  public void clear() {
+    init(capacity);
+  }
+
+  /**
+   * @return an iterator over the elements in no particular order. It does not support removal.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int next = advance(0);
+
+      private int advance(int from) {
+        while (from < capacity && leaves[from] == null) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next < capacity;
+      }
+
+      @Override
+      public E next() {
+        if (next >= capacity) {
+          throw new NoSuchElementException();
+        }
+        E e = leaf(next);
+        next = advance(next + 1);
+        return e;
+      }
+    };
+  }
+}
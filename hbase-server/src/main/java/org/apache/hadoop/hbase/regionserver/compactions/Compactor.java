@@ -43,9 +43,9 @@ import org.apache.hadoop.hbase.regionserver.CellSink;
 import org.apache.hadoop.hbase.regionserver.HStore;
 import org.apache.hadoop.hbase.regionserver.HStoreFile;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
-import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
 import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.regionserver.Shipper;
 import org.apache.hadoop.hbase.regionserver.ShipperListener;
 import org.apache.hadoop.hbase.regionserver.StoreFileReader;
 import org.apache.hadoop.hbase.regionserver.StoreFileScanner;
@@ -267,6 +267,13 @@ public abstract class Compactor<T extends CellSink> {
     /* includesTags = */fd.maxTagsLength > 0, shouldDropBehind);
   }
 
+  /**
+   * @return whether to drop the page cache behind the reads and writes of the compaction.
+   */
+  protected boolean shouldDropBehind(CompactionRequestImpl request) {
+    return request.isMajor() || request.isAllFiles() ? dropCacheMajor : dropCacheMinor;
+  }
+
   protected List<Path> compact(final CompactionRequestImpl request,
       InternalScannerFactory scannerFactory, CellSinkFactory<T> sinkFactory,
       ThroughputController throughputController, User user) throws IOException {
@@ -277,12 +284,7 @@ public abstract class Compactor<T extends CellSink> {
     long smallestReadPoint = getSmallestReadPoint();
 
     T writer = null;
-    boolean dropCache;
-    if (request.isMajor() || request.isAllFiles()) {
-      dropCache = this.dropCacheMajor;
-    } else {
-      dropCache = this.dropCacheMinor;
-    }
+    boolean dropCache = shouldDropBehind(request);
 
     List<StoreFileScanner> scanners =
         createFileScanners(request.getFiles(), smallestReadPoint, dropCache);
@@ -302,8 +304,7 @@ public abstract class Compactor<T extends CellSink> {
         return new ArrayList<>();
       }
       boolean cleanSeqId = false;
-      if (fd.minSeqIdToKeep > 0 && !store.getColumnFamilyDescriptor().isNewVersionBehavior()) {
-        // For mvcc-sensitive family, we never set mvcc to 0.
+      if (fd.minSeqIdToKeep > 0 && canCleanSeqId()) {
         smallestReadPoint = Math.min(fd.minSeqIdToKeep, smallestReadPoint);
         cleanSeqId = true;
       }
@@ -366,6 +367,16 @@ public abstract class Compactor<T extends CellSink> {
       request, user);
   }
 
+  /**
+   * @return whether the seqId of the cells at or below the smallest read point can be set to 0,
+   *         which leaves the order of the store files to decide between cells that only differ in
+   *         it.
+   */
+  protected boolean canCleanSeqId() {
+    // For mvcc-sensitive family, we never set mvcc to 0.
+    return !store.getColumnFamilyDescriptor().isNewVersionBehavior();
+  }
+
   /**
    * Performs the compaction.
    * @param fd FileDetails of cell sink writer
@@ -381,6 +392,20 @@ public abstract class Compactor<T extends CellSink> {
   protected boolean performCompaction(FileDetails fd, InternalScanner scanner, CellSink writer,
       long smallestReadPoint, boolean cleanSeqId, ThroughputController throughputController,
       boolean major, int numofFilesToCompact) throws IOException {
+    return performCompaction(fd, scanner, writer, smallestReadPoint, cleanSeqId,
+      throughputController, major, numofFilesToCompact, progress);
+  }
+
+  /**
+   * Performs the compaction, counting it in the given progress.
+   * @param progress the progress of this compaction, not shared with any other thread.
+   * @see #performCompaction(FileDetails, InternalScanner, CellSink, long, boolean,
+   *      ThroughputController, boolean, int)
+   */
+  protected final boolean performCompaction(FileDetails fd, InternalScanner scanner,
+      CellSink writer, long smallestReadPoint, boolean cleanSeqId,
+      ThroughputController throughputController, boolean major, int numofFilesToCompact,
+      CompactionProgress progress) throws IOException {
     assert writer instanceof ShipperListener;
     long bytesWrittenProgressForCloseCheck = 0;
     long bytesWrittenProgressForLog = 0;
@@ -400,7 +425,7 @@ public abstract class Compactor<T extends CellSink> {
         ScannerContext.newBuilder().setBatchLimit(compactionKVMax).build();
 
     throughputController.start(compactionName);
-    KeyValueScanner kvs = (scanner instanceof KeyValueScanner)? (KeyValueScanner)scanner : null;
+    Shipper shipper = (scanner instanceof Shipper) ? (Shipper) scanner : null;
     long shippedCallSizeLimit = (long) numofFilesToCompact * this.store.getColumnFamilyDescriptor().getBlocksize();
     try {
       do {
@@ -440,7 +465,7 @@ public abstract class Compactor<T extends CellSink> {
               }
             }
           }
-          if (kvs != null && bytesWrittenProgressForShippedCall > shippedCallSizeLimit) {
+          if (shipper != null && bytesWrittenProgressForShippedCall > shippedCallSizeLimit) {
             if (lastCleanCell != null) {
               // HBASE-16931, set back sequence id to avoid affecting scan order unexpectedly.
               // ShipperListener will do a clone of the last cells it refer, so need to set back
@@ -456,7 +481,7 @@ public abstract class Compactor<T extends CellSink> {
             // we are doing the similar thing. In between the compaction (after every N cells
             // written with collective size of 'shippedCallSizeLimit') we will call shipped which
             // may clear prevBlocks list.
-            kvs.shipped();
+            shipper.shipped();
             bytesWrittenProgressForShippedCall = 0;
           }
         }
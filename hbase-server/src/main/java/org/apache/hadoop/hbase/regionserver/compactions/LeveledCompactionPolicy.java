@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.regionserver.LeveledStoreConfig;
+import org.apache.hadoop.hbase.regionserver.LeveledStoreFileManager;
+import org.apache.hadoop.hbase.regionserver.StoreConfigInformation;
+import org.apache.hadoop.hbase.regionserver.StoreUtils;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Leveled compaction policy. See {@link LeveledStoreFileManager} for the layout.
+ * <p>
+ * L0 is compacted first, and only one L0 compaction runs at a time. L0 is size tiered: runs of at
+ * least {@link LeveledStoreConfig#getLevel0MinFiles()} consecutive L0 files of about the same size
+ * (see {@link LeveledStoreConfig#getLevel0SizeRatio()}) are merged into one L0 file, so a flushed
+ * cell is rewritten a few times within L0 while the number of L0 files stays low. Once L0 is over
+ * {@link LeveledStoreConfig#getLevel0Size()}, or has {@link LeveledStoreConfig#getLevel0MaxFiles()}
+ * files or as many as block the flushes, its oldest files are compacted into L1 together with all
+ * the L1 files their rows overlap, so that the data left in L0 is always newer than the data in
+ * the levels. Otherwise
+ * the level the most over its size has one file compacted into the next level, together with the
+ * files of the next level it overlaps. The file that overlaps the fewest bytes of the next level
+ * for its size is picked, so the least data is rewritten. Compactions of the same level can run at
+ * the same time as long as they do not share files. Since a compaction takes all the files of the
+ * next level that its rows overlap, the new files never overlap the other files of their level.
+ * <p>
+ * A major compaction compacts all the files into the last level that has files.
+ */
+@InterfaceAudience.Private
+public class LeveledCompactionPolicy extends CompactionPolicy {
+  private static final Log LOG = LogFactory.getLog(LeveledCompactionPolicy.class);
+
+  private final LeveledStoreConfig config;
+
+  public LeveledCompactionPolicy(Configuration conf, StoreConfigInformation storeConfigInfo,
+      LeveledStoreConfig config) {
+    super(conf, storeConfigInfo);
+    this.config = config;
+  }
+
+  public List<HStoreFile> preSelectFilesForCoprocessor(LeveledStoreFileManager sfm,
+      List<HStoreFile> filesCompacting) {
+    List<HStoreFile> candidates = new ArrayList<>(sfm.getStorefiles());
+    candidates.removeAll(filesCompacting);
+    return candidates;
+  }
+
+  public boolean needsCompaction(LeveledStoreFileManager sfm, List<HStoreFile> filesCompacting) {
+    return selectLevelCompaction(sfm, filesCompacting, false) != null;
+  }
+
+  public LeveledCompactionRequest selectCompaction(LeveledStoreFileManager sfm,
+      List<HStoreFile> filesCompacting, boolean isUserCompaction, boolean forceMajor)
+      throws IOException {
+    Collection<HStoreFile> allFiles = sfm.getStorefiles();
+    if (allFiles.isEmpty()) {
+      return null;
+    }
+    if (filesCompacting.isEmpty() && (forceMajor || shouldPerformMajorCompaction(allFiles))) {
+      LeveledCompactionRequest request =
+          new LeveledCompactionRequest(allFiles, Math.max(1, sfm.getLevelCount()));
+      request.setIsMajor(true, true);
+      return request;
+    }
+    // Users asking for a compaction get L0 compacted into L1 as soon as there is something in it
+    LeveledCompactionRequest request =
+        selectLevelCompaction(sfm, filesCompacting, isUserCompaction);
+    if (request != null) {
+      // Compactions of all the files can drop the deletes
+      request.setIsMajor(false, request.getFiles().size() == allFiles.size());
+    }
+    return request;
+  }
+
+  /**
+   * @param promoteLevel0 whether to compact L0 into L1 as soon as it has files
+   */
+  private LeveledCompactionRequest selectLevelCompaction(LeveledStoreFileManager sfm,
+      List<HStoreFile> filesCompacting, boolean promoteLevel0) {
+    List<HStoreFile> level0 = sfm.getLevel0Files();
+    if (!level0.isEmpty() && Collections.disjoint(level0, filesCompacting)) {
+      if (promoteLevel0 || isLevel0Full(sfm)) {
+        List<HStoreFile> files =
+            new ArrayList<>(level0.subList(0, Math.min(level0.size(), config.getLevel0MaxFiles())));
+        List<HStoreFile> overlapping = sfm.getOverlappingFiles(1, files);
+        if (Collections.disjoint(overlapping, filesCompacting)) {
+          files.addAll(overlapping);
+          return new LeveledCompactionRequest(files, 1);
+        }
+      } else {
+        List<HStoreFile> files = selectLevel0Run(level0);
+        if (files != null) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Merging " + files.size() + " L0 files of "
+                + LeveledStoreFileManager.getSize(files) + " bytes");
+          }
+          return new LeveledCompactionRequest(files, 0);
+        }
+      }
+    }
+
+    // Files are never compacted out of the last level
+    int levels = Math.min(sfm.getLevelCount(), config.getMaxLevels() - 1);
+    List<Integer> overSized = new ArrayList<>();
+    for (int level = 1; level <= levels; level++) {
+      if (sfm.getLevelSize(level) > config.getLevelSize(level)) {
+        overSized.add(level);
+      }
+    }
+    overSized.sort((l1, l2) -> Double.compare(getScore(sfm, l2), getScore(sfm, l1)));
+    for (int level : overSized) {
+      HStoreFile best = null;
+      List<HStoreFile> bestOverlapping = null;
+      double bestRatio = Double.MAX_VALUE;
+      for (HStoreFile sf : sfm.getLevelFiles(level)) {
+        if (filesCompacting.contains(sf)) {
+          continue;
+        }
+        List<HStoreFile> overlapping =
+            sfm.getOverlappingFiles(level + 1, Collections.singletonList(sf));
+        if (!Collections.disjoint(overlapping, filesCompacting)) {
+          continue;
+        }
+        double ratio = (double) LeveledStoreFileManager.getSize(overlapping)
+            / Math.max(1, sf.getReader().length());
+        if (ratio < bestRatio) {
+          best = sf;
+          bestOverlapping = overlapping;
+          bestRatio = ratio;
+        }
+      }
+      if (best != null) {
+        List<HStoreFile> files = new ArrayList<>(bestOverlapping.size() + 1);
+        files.add(best);
+        files.addAll(bestOverlapping);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("L" + level + " is " + sfm.getLevelSize(level) + " bytes, compacting "
+              + best.getPath() + " with " + bestOverlapping.size() + " files of L" + (level + 1));
+        }
+        return new LeveledCompactionRequest(files, level + 1);
+      }
+    }
+    return null;
+  }
+
+  private boolean isLevel0Full(LeveledStoreFileManager sfm) {
+    int files = sfm.getLevel0Files().size();
+    return sfm.getLevelSize(0) > config.getLevel0Size() || files >= config.getLevel0MaxFiles()
+        || files >= storeConfigInfo.getBlockingFileCount();
+  }
+
+  /**
+   * Picks the longest run of consecutive L0 files whose biggest file is at most
+   * {@link LeveledStoreConfig#getLevel0SizeRatio()} times the smallest, and the smallest run of
+   * those of the same length. The files have to be consecutive so that the merged file can take
+   * their place in the sequence id order of L0.
+   * @param level0 the L0 files, sorted by sequence id
+   * @return the files to merge, or null if no run has
+   *         {@link LeveledStoreConfig#getLevel0MinFiles()} files
+   */
+  private List<HStoreFile> selectLevel0Run(List<HStoreFile> level0) {
+    List<HStoreFile> best = null;
+    long bestSize = Long.MAX_VALUE;
+    for (int start = 0; start < level0.size(); start++) {
+      long min = Long.MAX_VALUE;
+      long max = 0;
+      long size = 0;
+      int end = start;
+      while (end < level0.size() && end - start < config.getLevel0MaxFiles()) {
+        long length = level0.get(end).getReader().length();
+        long newMin = Math.min(min, length);
+        long newMax = Math.max(max, length);
+        if (newMax > config.getLevel0SizeRatio() * Math.max(1, newMin)) {
+          break;
+        }
+        min = newMin;
+        max = newMax;
+        size += length;
+        end++;
+      }
+      int count = end - start;
+      if (count >= config.getLevel0MinFiles() && (best == null || count > best.size()
+          || (count == best.size() && size < bestSize))) {
+        best = level0.subList(start, end);
+        bestSize = size;
+      }
+    }
+    return best == null ? null : new ArrayList<>(best);
+  }
+
+  private double getScore(LeveledStoreFileManager sfm, int level) {
+    return (double) sfm.getLevelSize(level) / config.getLevelSize(level);
+  }
+
+  @Override
+  public boolean shouldPerformMajorCompaction(Collection<HStoreFile> filesToCompact)
+      throws IOException {
+    long period = comConf.getMajorCompactionPeriod();
+    if (period <= 0 || filesToCompact.isEmpty()) {
+      return false;
+    }
+    long lowTimestamp = StoreUtils.getLowestTimestamp(filesToCompact);
+    return lowTimestamp > 0L && lowTimestamp < EnvironmentEdgeManager.currentTime() - period;
+  }
+
+  @Override
+  public boolean throttleCompaction(long compactionSize) {
+    return compactionSize > comConf.getThrottlePoint();
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import java.util.Collection;
+
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Compaction request of the leveled store engine, with the level to write the files out to.
+ */
+@edu.umd.cs.findbugs.annotations.SuppressWarnings(value="EQ_DOESNT_OVERRIDE_EQUALS",
+  justification="It is intended to use the same equal method as superclass")
+@InterfaceAudience.Private
+public class LeveledCompactionRequest extends CompactionRequestImpl {
+  private final int targetLevel;
+
+  public LeveledCompactionRequest(Collection<HStoreFile> files, int targetLevel) {
+    super(files);
+    this.targetLevel = targetLevel;
+  }
+
+  public int getTargetLevel() {
+    return targetLevel;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " targetLevel=" + targetLevel;
+  }
+}
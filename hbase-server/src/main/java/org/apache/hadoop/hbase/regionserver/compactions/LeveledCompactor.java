@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.OptionalLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.regionserver.LeveledMultiFileWriter;
+import org.apache.hadoop.hbase.regionserver.StoreUtils;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * This compactor will generate StoreFiles of about the same size for a level of the leveled store
+ * engine.
+ */
+@InterfaceAudience.Private
+public class LeveledCompactor extends AbstractMultiOutputCompactor<LeveledMultiFileWriter> {
+
+  private static final Log LOG = LogFactory.getLog(LeveledCompactor.class);
+
+  public LeveledCompactor(Configuration conf, HStore store) {
+    super(conf, store);
+  }
+
+  private boolean needEmptyFile(CompactionRequestImpl request) {
+    // if we are going to compact the last N files, then we need to emit an empty file to retain the
+    // maxSeqId if we haven't written out anything.
+    OptionalLong maxSeqId = StoreUtils.getMaxSequenceIdInList(request.getFiles());
+    OptionalLong storeMaxSeqId = store.getMaxSequenceId();
+    return maxSeqId.isPresent() && storeMaxSeqId.isPresent() &&
+        maxSeqId.getAsLong() == storeMaxSeqId.getAsLong();
+  }
+
+  /**
+   * @param targetLevel the level of the new files
+   * @param targetSize the size of the new files
+   */
+  public List<Path> compact(final CompactionRequestImpl request, final int targetLevel,
+      final long targetSize, ThroughputController throughputController, User user)
+      throws IOException {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Executing compaction of " + request.getFiles().size() + " files into L"
+          + targetLevel + " files of " + targetSize + " bytes");
+    }
+
+    return compact(request, defaultScannerFactory,
+      new CellSinkFactory<LeveledMultiFileWriter>() {
+
+        @Override
+        public LeveledMultiFileWriter createWriter(InternalScanner scanner, FileDetails fd,
+            boolean shouldDropBehind) throws IOException {
+          LeveledMultiFileWriter writer =
+              new LeveledMultiFileWriter(targetLevel, targetSize, needEmptyFile(request));
+          initMultiWriter(writer, scanner, fd, shouldDropBehind);
+          return writer;
+        }
+      }, throughputController, user);
+  }
+
+  /**
+   * The files of a level are compacted into the next level together with the files they overlap
+   * there, but not with the other files of their level those may overlap, so the sequence id of a
+   * new file can be above that of files with newer cells in the level it came from. The cells keep
+   * their own sequence ids to be ordered by, instead of the order of the files.
+   */
+  @Override
+  protected boolean canCleanSeqId() {
+    return false;
+  }
+
+  @Override
+  protected List<Path> commitWriter(LeveledMultiFileWriter writer, FileDetails fd,
+      CompactionRequestImpl request) throws IOException {
+    return writer.commitWriters(fd.maxSeqId, request.isAllFiles());
+  }
+}
@@ -0,0 +1,410 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.regionserver.DefaultStoreEngine;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.regionserver.ScanType;
+import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.regionserver.Shipper;
+import org.apache.hadoop.hbase.regionserver.StoreFileReader;
+import org.apache.hadoop.hbase.regionserver.StoreFileScanner;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
+import org.apache.hadoop.hbase.regionserver.StoreScanner;
+import org.apache.hadoop.hbase.regionserver.throttle.ThroughputController;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.hbase.util.Threads;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hbase.shaded.com.google.common.io.Closeables;
+
+/**
+ * Compacts the whole store in up to {@link #MAX_RANGES_KEY} row ranges at once, each range by a
+ * thread of its own into a file of its own. The ranges are cut on the root data index keys of the
+ * files, so they hold about the same amount of data. All the files are committed together
+ * or none is. The ranges of a compaction share the limit of the {@link ThroughputController} like
+ * any other compactions running at the same time do.
+ * <p>
+ * Only compactions of all the files of a store, of at least {@link #MIN_SIZE_KEY}, are cut in
+ * ranges; others run like in {@link DefaultCompactor}. The files of the ranges do not overlap, so
+ * they are left out of minor compactions, which would otherwise rewrite them again, until the next
+ * major compaction. The coprocessor compaction hooks are called for each range.
+ * <p>
+ * Use it by setting {@link DefaultStoreEngine#DEFAULT_COMPACTOR_CLASS_KEY} to this class.
+ */
+@InterfaceAudience.Private
+public class RangeParallelCompactor extends DefaultCompactor {
+  private static final Log LOG = LogFactory.getLog(RangeParallelCompactor.class);
+
+  /** The number of ranges to cut a compaction in, at most */
+  public static final String MAX_RANGES_KEY = "hbase.hstore.compaction.parallel.ranges";
+  static final int DEFAULT_MAX_RANGES = 4;
+
+  /** The size of the files to compact below which the compaction is not cut in ranges */
+  public static final String MIN_SIZE_KEY = "hbase.hstore.compaction.parallel.min.size";
+  static final long DEFAULT_MIN_SIZE = 1024L * 1024 * 1024;
+
+  private final int maxRanges;
+  private final long minSize;
+
+  public RangeParallelCompactor(Configuration conf, HStore store) {
+    super(conf, store);
+    this.maxRanges = conf.getInt(MAX_RANGES_KEY, DEFAULT_MAX_RANGES);
+    this.minSize = conf.getLong(MIN_SIZE_KEY, DEFAULT_MIN_SIZE);
+  }
+
+  @Override
+  public List<Path> compact(CompactionRequestImpl request,
+      ThroughputController throughputController, User user) throws IOException {
+    if (maxRanges < 2 || !request.isAllFiles() || request.getSize() < minSize
+        || store.getRegionInfo().isMetaRegion()) {
+      return super.compact(request, throughputController, user);
+    }
+    List<Cell> boundaries = getBoundaries(request.getFiles());
+    if (boundaries.isEmpty()) {
+      return super.compact(request, throughputController, user);
+    }
+    return compact(request, boundaries, throughputController, user);
+  }
+
+  /**
+   * @return the first on row cells of the rows the ranges of the compaction start with, but for
+   *         the first range. Empty if the compaction can not be cut.
+   */
+  @VisibleForTesting
+  List<Cell> getBoundaries(Collection<HStoreFile> files) {
+    // Each root index key of a file starts about the same share of the file
+    List<Pair<Cell, Long>> keys = new ArrayList<>();
+    long total = 0;
+    for (HStoreFile file : files) {
+      StoreFileReader reader = file.getReader();
+      if (reader == null) {
+        continue;
+      }
+      List<Cell> fileKeys = reader.getRootIndexKeys();
+      if (fileKeys.isEmpty()) {
+        continue;
+      }
+      long share = reader.length() / fileKeys.size();
+      for (Cell key : fileKeys) {
+        keys.add(new Pair<>(key, share));
+      }
+      total += share * fileKeys.size();
+    }
+    CellComparator comparator = store.getComparator();
+    keys.sort((k1, k2) -> comparator.compare(k1.getFirst(), k2.getFirst()));
+    List<Cell> boundaries = new ArrayList<>(maxRanges - 1);
+    long size = 0;
+    for (Pair<Cell, Long> key : keys) {
+      if (boundaries.size() == maxRanges - 1) {
+        break;
+      }
+      if (size > 0 && size >= total * (boundaries.size() + 1) / maxRanges) {
+        Cell boundary = CellUtil.createFirstOnRow(CellUtil.cloneRow(key.getFirst()));
+        // Rows are never cut, so keys on the row of the previous boundary can not make another
+        if (boundaries.isEmpty()
+            || comparator.compareRows(boundaries.get(boundaries.size() - 1), boundary) < 0) {
+          boundaries.add(boundary);
+        }
+      }
+      size += key.getSecond();
+    }
+    return boundaries;
+  }
+
+  private List<Path> compact(CompactionRequestImpl request, List<Cell> boundaries,
+      ThroughputController throughputController, User user) throws IOException {
+    FileDetails fd = getFileDetails(request.getFiles(), request.isAllFiles());
+    // Each range counts in a progress of its own, added to this one as the range ends
+    this.progress = new CompactionProgress(fd.maxKeyCount);
+    long smallestReadPoint = getSmallestReadPoint();
+    boolean dropCache = shouldDropBehind(request);
+
+    List<Range> ranges = new ArrayList<>(boundaries.size() + 1);
+    for (int i = 0; i <= boundaries.size(); i++) {
+      ranges.add(new Range(i == 0 ? null : boundaries.get(i - 1),
+          i == boundaries.size() ? null : boundaries.get(i),
+          fd.maxKeyCount / (boundaries.size() + 1)));
+    }
+    List<Future<Boolean>> futures = new ArrayList<>(ranges.size());
+    ThreadPoolExecutor pool = Threads.getBoundedCachedThreadPool(ranges.size(), 60,
+      TimeUnit.SECONDS, Threads.newDaemonThreadFactory(
+        "RangeParallelCompactor-" + store.getRegionInfo().getEncodedName() + "-" + store));
+    boolean finished = false;
+    try {
+      for (Range range : ranges) {
+        futures.add(pool.submit(() -> compactRange(request, range, fd, smallestReadPoint,
+          dropCache, throughputController, user)));
+      }
+      boolean interrupted = false;
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          interrupted |= !futures.get(i).get();
+          CompactionProgress rangeProgress = ranges.get(i).progress;
+          progress.currentCompactedKVs += rangeProgress.currentCompactedKVs;
+          progress.totalCompactedSize += rangeProgress.totalCompactedSize;
+        } catch (InterruptedException e) {
+          throw (InterruptedIOException) new InterruptedIOException(
+              "Interrupted while waiting for the ranges of the compaction of " + store)
+                  .initCause(e);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+      }
+      if (interrupted) {
+        throw new InterruptedIOException("Aborting compaction of store " + store + " in region "
+            + store.getRegionInfo().getRegionNameAsString() + " because it was interrupted.");
+      }
+      finished = true;
+    } finally {
+      pool.shutdownNow();
+      if (!finished) {
+        progress.cancel();
+        // Wait for the other ranges to stop before removing what they wrote
+        for (Future<Boolean> future : futures) {
+          try {
+            future.get();
+          } catch (InterruptedException | ExecutionException e) {
+            LOG.debug("Range of an unfinished compaction failed", e);
+          }
+        }
+        for (Range range : ranges) {
+          if (range.writer != null) {
+            abortWriter(range.writer);
+          }
+        }
+      }
+    }
+    progress.complete();
+    return commitWriters(ranges, fd, request);
+  }
+
+  /**
+   * A range of rows of a compaction, and the file it is compacted into.
+   */
+  private static final class Range {
+
+    /** The first on row cell of the first row of the range, null for the first range */
+    final Cell startRow;
+
+    /** The first on row cell of the first row after the range, null for the last range */
+    final Cell stopRow;
+
+    StoreFileWriter writer;
+
+    long cells;
+
+    /** The progress of the range alone, as the ranges are compacted at the same time */
+    final CompactionProgress progress;
+
+    Range(Cell startRow, Cell stopRow, long estimatedKVs) {
+      this.startRow = startRow;
+      this.stopRow = stopRow;
+      this.progress = new CompactionProgress(estimatedKVs);
+    }
+  }
+
+  /**
+   * @return whether the compaction of the range ended; false if it was interrupted.
+   */
+  private boolean compactRange(CompactionRequestImpl request, Range range, FileDetails fd,
+      long smallestReadPoint, boolean dropCache, ThroughputController throughputController,
+      User user) throws IOException {
+    List<StoreFileScanner> scanners =
+        createFileScanners(request.getFiles(), smallestReadPoint, dropCache);
+    InternalScanner scanner = null;
+    try {
+      ScanType scanType = defaultScannerFactory.getScanType(request);
+      scanner = preCreateCoprocScanner(request, scanType, fd.earliestPutTs, scanners, user,
+        smallestReadPoint);
+      if (scanner == null) {
+        scanner = defaultScannerFactory.createScanner(scanners, scanType, fd, smallestReadPoint);
+      }
+      scanner = postCreateCoprocScanner(request, scanType, scanner, user);
+      if (scanner == null) {
+        // NULL scanner returned from coprocessor hooks means skip normal processing.
+        return true;
+      }
+      RangeScanner rangeScanner =
+          new RangeScanner(scanner, store.getComparator(), range.startRow, range.stopRow);
+      scanner = rangeScanner;
+      long readPoint = smallestReadPoint;
+      boolean cleanSeqId = false;
+      if (fd.minSeqIdToKeep > 0 && canCleanSeqId()) {
+        readPoint = Math.min(fd.minSeqIdToKeep, smallestReadPoint);
+        cleanSeqId = true;
+      }
+      range.writer = createTmpWriter(fd, dropCache);
+      boolean finished = performCompaction(fd, scanner, range.writer, readPoint, cleanSeqId,
+        throughputController, request.isAllFiles(), request.getFiles().size(), range.progress);
+      range.cells = rangeScanner.cells;
+      return finished;
+    } finally {
+      Closeables.close(scanner, true);
+    }
+  }
+
+  private List<Path> commitWriters(List<Range> ranges, FileDetails fd,
+      CompactionRequestImpl request) throws IOException {
+    List<Path> newFiles = new ArrayList<>(ranges.size());
+    int i = 0;
+    try {
+      for (; i < ranges.size(); i++) {
+        StoreFileWriter writer = ranges.get(i).writer;
+        if (writer == null) {
+          continue;
+        }
+        // Keep one file even if all the cells were dropped, like a compaction in one range would
+        if (ranges.get(i).cells > 0 || (newFiles.isEmpty() && i == ranges.size() - 1)) {
+          writer.appendFileInfo(HStoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY,
+            Bytes.toBytes(true));
+          newFiles.addAll(commitWriter(writer, fd, request));
+        } else {
+          abortWriter(writer);
+        }
+      }
+    } finally {
+      if (i < ranges.size()) {
+        // None of the files is committed if one fails, so remove those already written too
+        for (Path newFile : newFiles) {
+          try {
+            store.getFileSystem().delete(newFile, false);
+          } catch (IOException e) {
+            LOG.warn("Failed to delete the leftover file " + newFile
+                + " after an unfinished compaction.", e);
+          }
+        }
+        for (; i < ranges.size(); i++) {
+          if (ranges.get(i).writer != null) {
+            abortWriter(ranges.get(i).writer);
+          }
+        }
+      }
+    }
+    return newFiles;
+  }
+
+  /**
+   * Returns the rows of a compaction scanner from a start row, inclusive, to a stop row,
+   * exclusive.
+   */
+  @VisibleForTesting
+  static final class RangeScanner implements InternalScanner, Shipper {
+
+    private final InternalScanner scanner;
+
+    private final CellComparator comparator;
+
+    private Cell startRow;
+
+    private final Cell stopRow;
+
+    /** The number of cells returned */
+    long cells;
+
+    RangeScanner(InternalScanner scanner, CellComparator comparator, Cell startRow, Cell stopRow)
+        throws IOException {
+      this.scanner = scanner;
+      this.comparator = comparator;
+      this.stopRow = stopRow;
+      if (startRow != null && scanner instanceof StoreScanner) {
+        // Jump to the start row instead of reading all the rows before it
+        ((StoreScanner) scanner).reseek(startRow);
+      } else {
+        this.startRow = startRow;
+      }
+    }
+
+    @Override
+    public boolean next(List<Cell> result) throws IOException {
+      return next(result, ScannerContext.newBuilder().build());
+    }
+
+    @Override
+    public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+      for (;;) {
+        boolean moreRows = scanner.next(result, scannerContext);
+        if (result.isEmpty()) {
+          return moreRows;
+        }
+        if (startRow != null) {
+          int skip = 0;
+          while (skip < result.size() && comparator.compareRows(result.get(skip), startRow) < 0) {
+            skip++;
+          }
+          result.subList(0, skip).clear();
+          if (result.isEmpty()) {
+            if (!moreRows) {
+              return false;
+            }
+            continue;
+          }
+          // The rows only go up from here
+          startRow = null;
+        }
+        if (stopRow != null
+            && comparator.compareRows(result.get(result.size() - 1), stopRow) >= 0) {
+          int keep = 0;
+          while (comparator.compareRows(result.get(keep), stopRow) < 0) {
+            keep++;
+          }
+          result.subList(keep, result.size()).clear();
+          cells += result.size();
+          return false;
+        }
+        cells += result.size();
+        return moreRows;
+      }
+    }
+
+    @Override
+    public void shipped() throws IOException {
+      if (scanner instanceof Shipper) {
+        ((Shipper) scanner).shipped();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      scanner.close();
+    }
+  }
+}
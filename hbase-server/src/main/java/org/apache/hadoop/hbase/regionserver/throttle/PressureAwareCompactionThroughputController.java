@@ -37,7 +37,10 @@ import org.apache.hadoop.hbase.regionserver.compactions.OffPeakHours;
  * {@value #HBASE_HSTORE_COMPACTION_MAX_THROUGHPUT_HIGHER_BOUND}, using the formula &quot;lower +
  * (higer - lower) * compactionPressure&quot;, where compactionPressure is in range [0.0, 1.0]</li>
  * </ul>
+ * The throughput is also capped to the share of the cluster wide compaction budget the master
+ * grants this server, if the master has one.
  * @see org.apache.hadoop.hbase.regionserver.HStore#getCompactionPressure()
+ * @see org.apache.hadoop.hbase.master.CompactionThroughputBudget
  */
 @InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
 public class PressureAwareCompactionThroughputController extends PressureAwareThroughputController {
@@ -73,6 +76,11 @@ public class PressureAwareCompactionThroughputController extends PressureAwareTh
 
   private long maxThroughputOffpeak;
 
+  /** The throughput tuned from the compaction pressure, before the cluster cap. */
+  private volatile double tunedMaxThroughput;
+
+  private volatile double clusterMaxThroughput = Double.MAX_VALUE;
+
   @Override
   public void setup(final RegionServerServices server) {
     server.getChoreService().scheduleChore(
@@ -105,7 +113,24 @@ public class PressureAwareCompactionThroughputController extends PressureAwareTh
       LOG.trace("CompactionPressure is " + compactionPressure + ", tune throughput to "
           + throughputDesc(maxThroughputToSet));
     }
-    this.setMaxThroughput(maxThroughputToSet);
+    this.tunedMaxThroughput = maxThroughputToSet;
+    this.setMaxThroughput(Math.min(maxThroughputToSet, clusterMaxThroughput));
+  }
+
+  /**
+   * @param clusterMaxThroughput the share of the cluster wide compaction budget granted to this
+   *          server, or {@link Double#MAX_VALUE} if there is no cluster wide budget
+   */
+  public void setClusterMaxThroughput(double clusterMaxThroughput) {
+    if (clusterMaxThroughput == this.clusterMaxThroughput) {
+      return;
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Cluster compaction throughput share set to "
+          + throughputDesc(clusterMaxThroughput));
+    }
+    this.clusterMaxThroughput = clusterMaxThroughput;
+    this.setMaxThroughput(Math.min(tunedMaxThroughput, clusterMaxThroughput));
   }
 
   @Override
@@ -127,7 +152,8 @@ public class PressureAwareCompactionThroughputController extends PressureAwareTh
     this.controlPerSize =
         conf.getLong(HBASE_HSTORE_COMPACTION_THROUGHPUT_CONTROL_CHECK_INTERVAL,
           this.maxThroughputLowerBound);
-    this.setMaxThroughput(this.maxThroughputLowerBound);
+    this.tunedMaxThroughput = this.maxThroughputLowerBound;
+    this.setMaxThroughput(Math.min(tunedMaxThroughput, clusterMaxThroughput));
     this.tuningPeriod =
         getConf().getInt(HBASE_HSTORE_COMPACTION_THROUGHPUT_TUNE_PERIOD,
           DEFAULT_HSTORE_COMPACTION_THROUGHPUT_TUNE_PERIOD);
@@ -876,7 +876,10 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
     }
   }
 
-  long getUnflushedEntriesCount() {
+  /**
+   * @return the number of appends that are not synced yet
+   */
+  public long getUnflushedEntriesCount() {
     long highestSynced = this.highestSyncedTxid.get();
     long highestUnsynced = this.highestUnsyncedTxid;
     return highestSynced >= highestUnsynced ? 0 : highestUnsynced - highestSynced;
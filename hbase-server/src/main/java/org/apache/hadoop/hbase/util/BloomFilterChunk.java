@@ -50,6 +50,10 @@ public class BloomFilterChunk implements BloomFilterBase {
   protected ByteBuffer bloom;
   /** The type of bloom */
   protected BloomType bloomType;
+  /**
+   * Whether all the bits of a key are in the same {@link BloomFilterUtil#BLOOM_BLOCK_BYTES} block
+   */
+  protected final boolean blocked;
 
   /**
    * Loads bloom filter meta data from file input.
@@ -63,6 +67,7 @@ public class BloomFilterChunk implements BloomFilterBase {
     this.hashType = meta.readInt();
     this.keyCount = meta.readInt();
     this.maxKeys = this.keyCount;
+    this.blocked = false;
 
     this.hash = Hash.getInstance(this.hashType);
     if (hash == null) {
@@ -85,9 +90,14 @@ public class BloomFilterChunk implements BloomFilterBase {
   }
 
   public BloomFilterChunk(int hashType, BloomType bloomType) {
+    this(hashType, bloomType, false);
+  }
+
+  public BloomFilterChunk(int hashType, BloomType bloomType, boolean blocked) {
     this.hashType = hashType;
     this.hash = Hash.getInstance(hashType);
     this.bloomType = bloomType;
+    this.blocked = blocked;
   }
 
   /**
@@ -127,7 +137,7 @@ public class BloomFilterChunk implements BloomFilterBase {
    * @return a Bloom filter with the same configuration as this
    */
   public BloomFilterChunk createAnother() {
-    BloomFilterChunk bbf = new BloomFilterChunk(hashType, this.bloomType);
+    BloomFilterChunk bbf = new BloomFilterChunk(hashType, this.bloomType, this.blocked);
     bbf.byteSize = byteSize;
     bbf.hashCount = hashCount;
     bbf.maxKeys = maxKeys;
@@ -187,12 +197,12 @@ public class BloomFilterChunk implements BloomFilterBase {
     int hash1;
     int hash2;
     HashKey<Cell> hashKey;
-    if (this.bloomType == BloomType.ROW) {
-      hashKey = new RowBloomHashKey(cell);
+    if (this.bloomType == BloomType.ROWCOL) {
+      hashKey = new RowColBloomHashKey(cell);
       hash1 = this.hash.hash(hashKey, 0);
       hash2 = this.hash.hash(hashKey, hash1);
     } else {
-      hashKey = new RowColBloomHashKey(cell);
+      hashKey = new RowBloomHashKey(cell);
       hash1 = this.hash.hash(hashKey, 0);
       hash2 = this.hash.hash(hashKey, hash1);
     }
@@ -200,9 +210,20 @@ public class BloomFilterChunk implements BloomFilterBase {
   }
 
   private void setHashLoc(int hash1, int hash2) {
-    for (int i = 0; i < this.hashCount; i++) {
-      long hashLoc = Math.abs((hash1 + i * hash2) % (this.byteSize * 8));
-      set(hashLoc);
+    if (blocked) {
+      // Must be consistent with BloomFilterUtil#contains
+      long blockPos = BloomFilterUtil.getBlockOffset(hash1, (int) this.byteSize) * 8L;
+      int step = BloomFilterUtil.getBlockProbeStep(hash1);
+      int compositeHash = hash2;
+      for (int i = 0; i < this.hashCount; i++) {
+        set(blockPos + BloomFilterUtil.getBitInBlock(compositeHash));
+        compositeHash += step;
+      }
+    } else {
+      for (int i = 0; i < this.hashCount; i++) {
+        long hashLoc = Math.abs((hash1 + i * hash2) % (this.byteSize * 8));
+        set(hashLoc);
+      }
     }
 
     ++this.keyCount;
@@ -258,15 +279,21 @@ public class BloomFilterChunk implements BloomFilterBase {
     return hashType;
   }
 
+  public boolean isBlocked() {
+    return blocked;
+  }
+
   public void compactBloom() {
     // see if the actual size is exponentially smaller than expected.
     if (this.keyCount > 0 && this.bloom.hasArray()) {
       int pieces = 1;
       int newByteSize = (int)this.byteSize;
       int newMaxKeys = this.maxKeys;
+      // blocked filters are folded by whole blocks, so that the bits of a key stay together
+      int foldMask = blocked ? (BloomFilterUtil.BLOOM_BLOCK_BYTES << 1) - 1 : 1;
 
       // while exponentially smaller & folding is lossless
-      while ((newByteSize & 1) == 0 && newMaxKeys > (this.keyCount<<1)) {
+      while ((newByteSize & foldMask) == 0 && newMaxKeys > (this.keyCount<<1)) {
         pieces <<= 1;
         newByteSize >>= 1;
         newMaxKeys >>= 1;
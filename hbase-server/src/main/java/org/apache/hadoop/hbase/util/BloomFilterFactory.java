@@ -81,6 +81,15 @@ public final class BloomFilterFactory {
   public static final String IO_STOREFILE_BLOOM_BLOCK_SIZE =
       "io.storefile.bloom.block.size";
 
+  /**
+   * Whether to write blocked Bloom filters, that set all the bits of a key in the same cache line
+   * sized block, so that a lookup costs a single cache miss instead of one per hash function, for
+   * a slightly higher false positive rate. Region servers older than the blocked Bloom filters
+   * cannot read the files written with them.
+   */
+  public static final String IO_STOREFILE_BLOOM_BLOCKED =
+      "io.storefile.bloom.blocked";
+
   /** Maximum number of times a Bloom filter can be "folded" if oversized */
   private static final int MAX_ALLOWED_FOLD_FACTOR = 7;
 
@@ -103,6 +112,9 @@ public final class BloomFilterFactory {
       case CompoundBloomFilterBase.VERSION:
         return new CompoundBloomFilter(meta, reader);
 
+      case CompoundBloomFilterBase.BLOCKED_VERSION:
+        return new CompoundBloomFilter(meta, reader, true);
+
       default:
         throw new IllegalArgumentException(
           "Bad bloom filter format version " + version
@@ -125,6 +137,13 @@ public final class BloomFilterFactory {
     return conf.getBoolean(IO_STOREFILE_DELETEFAMILY_BLOOM_ENABLED, true);
   }
 
+  /**
+   * @return true if the Bloom filters written with the given configuration are blocked
+   */
+  public static boolean isBlockedBloomEnabled(Configuration conf) {
+    return conf.getBoolean(IO_STOREFILE_BLOOM_BLOCKED, false);
+  }
+
   /**
    * @return the Bloom filter error rate in the given configuration
    */
@@ -152,7 +171,7 @@ public final class BloomFilterFactory {
   }
 
   /**
-   * Creates a new general (Row or RowCol) Bloom filter at the time of
+   * Creates a new general (Row, RowCol or RowPrefix) Bloom filter at the time of
    * {@link org.apache.hadoop.hbase.regionserver.HStoreFile} writing.
    *
    * @param conf
@@ -194,7 +213,8 @@ public final class BloomFilterFactory {
     // In case of compound Bloom filters we ignore the maxKeys hint.
     CompoundBloomFilterWriter bloomWriter = new CompoundBloomFilterWriter(getBloomBlockSize(conf),
         err, Hash.getHashType(conf), maxFold, cacheConf.shouldCacheBloomsOnWrite(),
-        bloomType == BloomType.ROWCOL ? CellComparator.COMPARATOR : null, bloomType);
+        bloomType == BloomType.ROWCOL ? CellComparator.COMPARATOR : null, bloomType,
+        isBlockedBloomEnabled(conf));
     writer.addInlineBlockWriter(bloomWriter);
     return bloomWriter;
   }
@@ -225,7 +245,7 @@ public final class BloomFilterFactory {
     // In case of compound Bloom filters we ignore the maxKeys hint.
     CompoundBloomFilterWriter bloomWriter = new CompoundBloomFilterWriter(getBloomBlockSize(conf),
         err, Hash.getHashType(conf), maxFold, cacheConf.shouldCacheBloomsOnWrite(),
-        null, BloomType.ROW);
+        null, BloomType.ROW, isBlockedBloomEnabled(conf));
     writer.addInlineBlockWriter(bloomWriter);
     return bloomWriter;
   }
@@ -18,9 +18,12 @@
 package org.apache.hadoop.hbase.util;
 
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Random;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.nio.ByteBuff;
 import org.apache.hadoop.hbase.regionserver.BloomType;
@@ -38,6 +41,33 @@ public final class BloomFilterUtil {
    * 0.480453.
    */
   public static final double LOG2_SQUARED = Math.log(2) * Math.log(2);
+
+  /**
+   * The length of the row prefix a ROWPREFIX Bloom filter is built on. Set in the column family
+   * configuration.
+   */
+  public static final String PREFIX_LENGTH_KEY = "RowPrefixBloomFilter.prefix_length";
+
+  /**
+   * The delimiter, a single byte in {@link Bytes#toStringBinary(byte[])} form, the row prefix a
+   * ROWPREFIX Bloom filter is built on ends with. Set in the column family configuration.
+   */
+  public static final String DELIMITER_KEY = "RowPrefixBloomFilter.delimiter";
+
+  private static final byte PREFIX_FIXED_LENGTH = 0;
+  private static final byte PREFIX_DELIMITED = 1;
+
+  /**
+   * The size of the blocks of a blocked Bloom filter, a cache line. All the bits of a key are set
+   * in the same block, so a lookup touches a single cache line instead of one per hash function.
+   */
+  public static final int BLOOM_BLOCK_BYTES = 64;
+
+  private static final int BLOOM_BLOCK_BITS = BLOOM_BLOCK_BYTES * 8;
+
+  /** The shift taking the top bits of a hash to a bit position within a block */
+  private static final int BLOOM_BLOCK_HASH_SHIFT =
+      Integer.numberOfLeadingZeros(BLOOM_BLOCK_BITS - 1);
   
   /**
    * A random number generator to use for "fake lookups" when testing to
@@ -158,6 +188,36 @@ public final class BloomFilterUtil {
     return (int) byteSizeLong;
   }
 
+  /**
+   * Increases the given byte size of a blocked Bloom filter until it is made of whole blocks, and
+   * can be folded by the given factor without splitting them.
+   */
+  static int computeFoldableBlockedByteSize(long bitSize, int foldFactor) {
+    return computeFoldableByteSize(bitSize,
+      foldFactor + Integer.numberOfTrailingZeros(BLOOM_BLOCK_BYTES));
+  }
+
+  /**
+   * @return the offset, in bytes, of the block the bits of a key are in, for a blocked Bloom
+   *         filter of the given byte size. Keeps working after the filter is folded.
+   */
+  static int getBlockOffset(int hash1, int byteSize) {
+    return Math.abs(hash1 % (byteSize / BLOOM_BLOCK_BYTES)) * BLOOM_BLOCK_BYTES;
+  }
+
+  /**
+   * @return the step between the hashes giving the positions of the bits of a key within its
+   *         block, for a blocked Bloom filter. Odd, so that the positions do not repeat early.
+   */
+  static int getBlockProbeStep(int hash1) {
+    return (hash1 * 0x9E3779B9) | 1;
+  }
+
+  /** @return the position of a bit within its block, for a blocked Bloom filter */
+  static int getBitInBlock(int compositeHash) {
+    return compositeHash >>> BLOOM_BLOCK_HASH_SHIFT;
+  }
+
   public static int optimalFunctionCount(int maxKeys, long bitSize) {
     long i = bitSize / maxKeys;
     double result = Math.ceil(Math.log(2) * i);
@@ -180,9 +240,28 @@ public final class BloomFilterUtil {
    */
   public static BloomFilterChunk createBySize(int byteSizeHint,
       double errorRate, int hashType, int foldFactor, BloomType bloomType) {
-    BloomFilterChunk bbf = new BloomFilterChunk(hashType, bloomType);
+    return createBySize(byteSizeHint, errorRate, hashType, foldFactor, bloomType, false);
+  }
 
-    bbf.byteSize = computeFoldableByteSize(byteSizeHint * 8L, foldFactor);
+  /**
+   * Creates a Bloom filter chunk of the given size.
+   *
+   * @param byteSizeHint the desired number of bytes for the Bloom filter bit
+   *          array. Will be increased so that folding is possible.
+   * @param errorRate target false positive rate of the Bloom filter
+   * @param hashType Bloom filter hash function type
+   * @param foldFactor
+   * @param bloomType
+   * @param blocked whether all the bits of a key are set in the same
+   *          {@link #BLOOM_BLOCK_BYTES} block
+   * @return the new Bloom filter of the desired size
+   */
+  public static BloomFilterChunk createBySize(int byteSizeHint, double errorRate, int hashType,
+      int foldFactor, BloomType bloomType, boolean blocked) {
+    BloomFilterChunk bbf = new BloomFilterChunk(hashType, bloomType, blocked);
+
+    bbf.byteSize = blocked ? computeFoldableBlockedByteSize(byteSizeHint * 8L, foldFactor)
+        : computeFoldableByteSize(byteSizeHint * 8L, foldFactor);
     long bitSize = bbf.byteSize * 8;
     bbf.maxKeys = (int) idealMaxKeys(bitSize, errorRate);
     bbf.hashCount = optimalFunctionCount(bbf.maxKeys, bitSize);
@@ -198,14 +277,22 @@ public final class BloomFilterUtil {
   public static boolean contains(byte[] buf, int offset, int length,
       ByteBuff bloomBuf, int bloomOffset, int bloomSize, Hash hash,
       int hashCount) {
+    return contains(buf, offset, length, bloomBuf, bloomOffset, bloomSize, hash, hashCount, false);
+  }
+
+  public static boolean contains(byte[] buf, int offset, int length, ByteBuff bloomBuf,
+      int bloomOffset, int bloomSize, Hash hash, int hashCount, boolean blocked) {
     HashKey<byte[]> hashKey = new ByteArrayHashKey(buf, offset, length);
-    return contains(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey);
+    return contains(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey, blocked);
   }
 
   private static <T> boolean contains(ByteBuff bloomBuf, int bloomOffset, int bloomSize, Hash hash,
-      int hashCount, HashKey<T> hashKey) {
+      int hashCount, HashKey<T> hashKey, boolean blocked) {
     int hash1 = hash.hash(hashKey, 0);
     int hash2 = hash.hash(hashKey, hash1);
+    if (blocked) {
+      return containsBlocked(bloomBuf, bloomOffset, bloomSize, hashCount, hash1, hash2);
+    }
     int bloomBitSize = bloomSize << 3;
 
     if (randomGeneratorForTest == null) {
@@ -230,11 +317,136 @@ public final class BloomFilterUtil {
     return true;
   }
 
+  private static boolean containsBlocked(ByteBuff bloomBuf, int bloomOffset, int bloomSize,
+      int hashCount, int hash1, int hash2) {
+    if (randomGeneratorForTest == null) {
+      // Production mode.
+      int blockOffset = bloomOffset + getBlockOffset(hash1, bloomSize);
+      int step = getBlockProbeStep(hash1);
+      int compositeHash = hash2;
+      for (int i = 0; i < hashCount; i++) {
+        if (!checkBit(getBitInBlock(compositeHash), bloomBuf, blockOffset)) {
+          return false;
+        }
+        compositeHash += step;
+      }
+    } else {
+      // Test mode with "fake lookups" to estimate "ideal false positive rate".
+      int blockOffset = bloomOffset
+          + randomGeneratorForTest.nextInt(bloomSize / BLOOM_BLOCK_BYTES) * BLOOM_BLOCK_BYTES;
+      for (int i = 0; i < hashCount; i++) {
+        if (!checkBit(randomGeneratorForTest.nextInt(BLOOM_BLOCK_BITS), bloomBuf, blockOffset)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   public static boolean contains(Cell cell, ByteBuff bloomBuf, int bloomOffset, int bloomSize,
       Hash hash, int hashCount, BloomType type) {
-    HashKey<Cell> hashKey = type == BloomType.ROW ? new RowBloomHashKey(cell)
-        : new RowColBloomHashKey(cell);
-    return contains(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey);
+    return contains(cell, bloomBuf, bloomOffset, bloomSize, hash, hashCount, type, false);
+  }
+
+  public static boolean contains(Cell cell, ByteBuff bloomBuf, int bloomOffset, int bloomSize,
+      Hash hash, int hashCount, BloomType type, boolean blocked) {
+    HashKey<Cell> hashKey = type == BloomType.ROWCOL ? new RowColBloomHashKey(cell)
+        : new RowBloomHashKey(cell);
+    return contains(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey, blocked);
+  }
+
+  /**
+   * @return the param of the ROWPREFIX Bloom filters of a column family with the given
+   *         configuration, to be kept in the file info of its store files, or null if the Bloom
+   *         filters are not ROWPREFIX or no prefix is configured, in which case the whole row is
+   *         the prefix.
+   * @throws IllegalArgumentException if the configured prefix is invalid
+   */
+  public static byte[] getBloomFilterParam(BloomType bloomType, Configuration conf) {
+    if (bloomType != BloomType.ROWPREFIX) {
+      return null;
+    }
+    String prefixLength = conf.get(PREFIX_LENGTH_KEY);
+    String delimiter = conf.get(DELIMITER_KEY);
+    if (prefixLength != null && delimiter != null) {
+      throw new IllegalArgumentException(
+          "Only one of " + PREFIX_LENGTH_KEY + " and " + DELIMITER_KEY + " can be set");
+    }
+    if (prefixLength != null) {
+      int length = Integer.parseInt(prefixLength);
+      if (length <= 0) {
+        throw new IllegalArgumentException(PREFIX_LENGTH_KEY + " must be > 0: " + prefixLength);
+      }
+      return Bytes.add(new byte[] { PREFIX_FIXED_LENGTH }, Bytes.toBytes(length));
+    }
+    if (delimiter != null) {
+      byte[] delimiterBytes = Bytes.toBytesBinary(delimiter);
+      // A longer delimiter would make the prefixes of sorted rows go out of order
+      if (delimiterBytes.length != 1) {
+        throw new IllegalArgumentException(DELIMITER_KEY + " must be a single byte: " + delimiter);
+      }
+      return new byte[] { PREFIX_DELIMITED, delimiterBytes[0] };
+    }
+    return null;
+  }
+
+  /**
+   * @param param the param of a ROWPREFIX Bloom filter, see
+   *          {@link #getBloomFilterParam(BloomType, Configuration)}
+   * @return the length of the prefix of the row of the cell the Bloom filter is built on. Either
+   *         the configured length, or up to and including the first delimiter, so that the
+   *         prefixes of sorted rows are sorted too.
+   */
+  public static int getRowPrefixLength(byte[] param, Cell cell) {
+    int rowLength = cell.getRowLength();
+    if (param == null) {
+      return rowLength;
+    }
+    if (param[0] == PREFIX_FIXED_LENGTH) {
+      return Math.min(Bytes.toInt(param, 1), rowLength);
+    }
+    for (int i = 0; i < rowLength; i++) {
+      if (CellUtil.getRowByte(cell, i) == param[1]) {
+        return i + 1;
+      }
+    }
+    return rowLength;
+  }
+
+  /**
+   * @return the prefix of the row a ROWPREFIX Bloom filter is built on
+   * @see #getRowPrefixLength(byte[], Cell)
+   */
+  public static byte[] getRowPrefix(byte[] param, byte[] row) {
+    if (param == null) {
+      return row;
+    }
+    if (param[0] == PREFIX_FIXED_LENGTH) {
+      return row.length > Bytes.toInt(param, 1) ? Arrays.copyOf(row, Bytes.toInt(param, 1)) : row;
+    }
+    for (int i = 0; i < row.length; i++) {
+      if (row[i] == param[1]) {
+        return Arrays.copyOf(row, i + 1);
+      }
+    }
+    return row;
+  }
+
+  /**
+   * @return whether all the rows starting with the given row have it, whole, as their prefix for a
+   *         ROWPREFIX Bloom filter, so that they can only be in the file if the Bloom filter
+   *         contains it.
+   * @see #getRowPrefixLength(byte[], Cell)
+   */
+  public static boolean isCompleteRowPrefix(byte[] param, byte[] row) {
+    if (param == null) {
+      return false;
+    }
+    if (param[0] == PREFIX_FIXED_LENGTH) {
+      return row.length == Bytes.toInt(param, 1);
+    }
+    return row.length > 0 && row[row.length - 1] == param[1]
+        && Bytes.indexOf(row, param[1]) == row.length - 1;
   }
 
   /**
@@ -17,9 +17,16 @@
  */
 package org.apache.hadoop.hbase.util;
 
+import org.apache.hadoop.hbase.shaded.io.netty.bootstrap.ServerBootstrap;
+import org.apache.hadoop.hbase.shaded.io.netty.buffer.ByteBufAllocator;
+import org.apache.hadoop.hbase.shaded.io.netty.buffer.PooledByteBufAllocator;
+import org.apache.hadoop.hbase.shaded.io.netty.buffer.UnpooledByteBufAllocator;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.Channel;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelOption;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.EventLoopGroup;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.ServerChannel;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.epoll.Epoll;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.epoll.EpollChannelOption;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.epoll.EpollSocketChannel;
@@ -30,31 +37,98 @@ import org.apache.hadoop.hbase.shaded.io.netty.util.concurrent.DefaultThreadFact
 
 import java.util.concurrent.ThreadFactory;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.yetus.audience.InterfaceAudience;
 
 /**
- * Event loop group related config.
+ * Event loop group related config. Also holds the tuning of the channels served by the event loops
+ * which depends on the transport, like the native socket options of epoll and the allocator of
+ * the buffers.
  */
 @InterfaceAudience.Private
 public class NettyEventLoopGroupConfig {
 
+  private static final Log LOG = LogFactory.getLog(NettyEventLoopGroupConfig.class);
+
+  public static final String NATIVE_TRANSPORT_KEY = "hbase.netty.nativetransport";
+
+  public static final String WORKER_COUNT_KEY = "hbase.netty.worker.count";
+
+  /**
+   * Whether to turn on TCP_QUICKACK on the accepted connections, so acks are not delayed. Only
+   * supported by the native transport.
+   */
+  public static final String TCP_QUICKACK_KEY = "hbase.netty.tcp.quickack";
+
+  /**
+   * The allocator of the buffers of the channels: 'default' for the netty default, 'pooled' for a
+   * pooled direct allocator sized by {@link #ALLOCATOR_PAGE_SIZE_KEY} and
+   * {@link #ALLOCATOR_MAX_ORDER_KEY}, or 'unpooled'.
+   */
+  public static final String ALLOCATOR_KEY = "hbase.netty.allocator";
+
+  public static final String ALLOCATOR_PAGE_SIZE_KEY = "hbase.netty.allocator.page.size";
+
+  /**
+   * A pooled chunk is page size << max order bytes. Buffers larger than a chunk, like big cell
+   * blocks, are not pooled, so size the chunk to hold the usual cell block.
+   */
+  public static final String ALLOCATOR_MAX_ORDER_KEY = "hbase.netty.allocator.max.order";
+
   private final EventLoopGroup group;
 
   private final Class<? extends ServerChannel> serverChannelClass;
 
   private final Class<? extends Channel> clientChannelClass;
 
+  private final boolean useEpoll;
+
+  private final boolean tcpQuickAck;
+
+  private final ByteBufAllocator allocator;
+
   private static boolean useEpoll(Configuration conf) {
     // Config to enable native transport.
-    boolean epollEnabled = conf.getBoolean("hbase.netty.nativetransport", true);
+    boolean epollEnabled = conf.getBoolean(NATIVE_TRANSPORT_KEY, true);
     // Use the faster native epoll transport mechanism on linux if enabled
-    return epollEnabled && JVM.isLinux() && JVM.isAmd64();
+    if (!epollEnabled || !JVM.isLinux() || !JVM.isAmd64()) {
+      return false;
+    }
+    if (!Epoll.isAvailable()) {
+      LOG.warn("Can not use the native epoll transport, fall back to nio",
+        Epoll.unavailabilityCause());
+      return false;
+    }
+    return true;
+  }
+
+  private static ByteBufAllocator createAllocator(Configuration conf, int workerCount) {
+    String allocator = conf.get(ALLOCATOR_KEY, "default");
+    switch (allocator) {
+      case "default":
+        return ByteBufAllocator.DEFAULT;
+      case "unpooled":
+        return UnpooledByteBufAllocator.DEFAULT;
+      case "pooled":
+        int arenas = workerCount > 0 ? workerCount : PooledByteBufAllocator.defaultNumDirectArena();
+        return new PooledByteBufAllocator(true, 0, arenas,
+            conf.getInt(ALLOCATOR_PAGE_SIZE_KEY, PooledByteBufAllocator.defaultPageSize()),
+            conf.getInt(ALLOCATOR_MAX_ORDER_KEY, PooledByteBufAllocator.defaultMaxOrder()));
+      default:
+        throw new IllegalArgumentException("Unknown " + ALLOCATOR_KEY + ": " + allocator);
+    }
   }
 
   public NettyEventLoopGroupConfig(Configuration conf, String threadPoolName) {
-    boolean useEpoll = useEpoll(conf);
-    int workerCount = conf.getInt("hbase.netty.worker.count", 0);
+    this.useEpoll = useEpoll(conf);
+    int workerCount = conf.getInt(WORKER_COUNT_KEY, 0);
+    this.tcpQuickAck = conf.getBoolean(TCP_QUICKACK_KEY, false);
+    if (tcpQuickAck && !useEpoll) {
+      LOG.warn(TCP_QUICKACK_KEY + " is only supported by the native epoll transport, ignore it");
+    }
+    this.allocator = createAllocator(conf, workerCount);
     ThreadFactory eventLoopThreadFactory =
         new DefaultThreadFactory(threadPoolName, true, Thread.MAX_PRIORITY);
     if (useEpoll) {
@@ -79,4 +153,23 @@ public class NettyEventLoopGroupConfig {
   public Class<? extends Channel> clientChannelClass() {
     return clientChannelClass;
   }
+
+  public boolean isNativeTransport() {
+    return useEpoll;
+  }
+
+  public ByteBufAllocator allocator() {
+    return allocator;
+  }
+
+  /**
+   * Apply the allocator and the transport specific options to the accepted channels.
+   */
+  public ServerBootstrap configureChildren(ServerBootstrap bootstrap) {
+    bootstrap.childOption(ChannelOption.ALLOCATOR, allocator);
+    if (useEpoll && tcpQuickAck) {
+      bootstrap.childOption(EpollChannelOption.TCP_QUICKACK, true);
+    }
+    return bootstrap;
+  }
 }
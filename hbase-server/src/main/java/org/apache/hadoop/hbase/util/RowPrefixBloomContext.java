@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.util;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Handles ROWPREFIX bloom related context. The Bloom filter is built on the prefixes of the rows,
+ * see {@link BloomFilterUtil#getRowPrefixLength(byte[], Cell)}, so it is the prefix that is
+ * added once for all the cells of the rows that have it, and that is the last bloom key.
+ */
+@InterfaceAudience.Private
+public class RowPrefixBloomContext extends RowBloomContext {
+
+  private final byte[] param;
+
+  public RowPrefixBloomContext(BloomFilterWriter bloomFilterWriter, CellComparator comparator,
+      byte[] param) {
+    super(bloomFilterWriter, comparator);
+    this.param = param;
+  }
+
+  @Override
+  public void writeBloom(Cell cell) throws IOException {
+    int prefixLength = BloomFilterUtil.getRowPrefixLength(param, cell);
+    Cell lastCell = getLastCell();
+    if (lastCell == null || !matchingRowPrefix(cell, prefixLength, lastCell)) {
+      byte[] prefix = new byte[prefixLength];
+      for (int i = 0; i < prefixLength; i++) {
+        prefix[i] = CellUtil.getRowByte(cell, i);
+      }
+      super.writeBloom(CellUtil.createFirstOnRow(prefix));
+    }
+  }
+
+  private static boolean matchingRowPrefix(Cell cell, int prefixLength, Cell lastPrefix) {
+    if (lastPrefix.getRowLength() != prefixLength) {
+      return false;
+    }
+    for (int i = prefixLength - 1; i >= 0; i--) {
+      if (CellUtil.getRowByte(cell, i) != CellUtil.getRowByte(lastPrefix, i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
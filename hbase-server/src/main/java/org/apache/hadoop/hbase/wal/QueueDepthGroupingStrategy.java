@@ -0,0 +1,107 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider.RegionGroupingStrategy;
+
+/**
+ * A WAL grouping strategy that spreads regions over the wal groups by load. A region is placed,
+ * the first time it asks for its wal, in the group whose wal has the fewest appends waiting to
+ * be synced, the group holding fewer regions winning ties, and stays there until it is closed,
+ * with or without a close marker.
+ * Keeping a region in one wal keeps its edits ordered and leaves the sequence id accounting and
+ * the replication of every wal as they are.
+ * <p>
+ * The number of groups is "hbase.wal.regiongrouping.queuedepth.numgroups", which defaults to a
+ * quarter of the available processors, so that the number of wal pipelines follows the host.
+ */
+@InterfaceAudience.Private
+public class QueueDepthGroupingStrategy implements RegionGroupingStrategy {
+
+  static final String NUM_REGION_GROUPS = "hbase.wal.regiongrouping.queuedepth.numgroups";
+
+  static int getDefaultNumRegionGroups() {
+    return Math.max(2, Runtime.getRuntime().availableProcessors() / 4);
+  }
+
+  // the index of the group each open region is in
+  private final ConcurrentHashMap<String, Integer> regionGroups = new ConcurrentHashMap<>();
+  private String[] groupNames;
+  private AtomicInteger[] regionCounts;
+  // the number of appends waiting to be synced in the wal of a group
+  private volatile ToLongFunction<String> queueDepth = group -> 0;
+
+  /**
+   * Sets how to get the number of appends waiting to be synced in the wal of a group. Until it is
+   * set, every group is considered idle and regions are spread evenly.
+   */
+  void setQueueDepth(ToLongFunction<String> queueDepth) {
+    this.queueDepth = queueDepth;
+  }
+
+  @Override
+  public String group(byte[] identifier, byte[] namespace) {
+    return groupNames[regionGroups.computeIfAbsent(Bytes.toString(identifier), id -> pickGroup())];
+  }
+
+  /**
+   * Takes a closed region out of the count of its group. When it is opened again it is placed
+   * anew.
+   */
+  @Override
+  public void regionClosed(byte[] identifier) {
+    Integer group = regionGroups.remove(Bytes.toString(identifier));
+    if (group != null) {
+      regionCounts[group].decrementAndGet();
+    }
+  }
+
+  private int pickGroup() {
+    int best = 0;
+    long bestDepth = queueDepth.applyAsLong(groupNames[0]);
+    for (int i = 1; i < groupNames.length; i++) {
+      long depth = queueDepth.applyAsLong(groupNames[i]);
+      if (depth < bestDepth
+          || (depth == bestDepth && regionCounts[i].get() < regionCounts[best].get())) {
+        best = i;
+        bestDepth = depth;
+      }
+    }
+    regionCounts[best].incrementAndGet();
+    return best;
+  }
+
+  @Override
+  public void init(Configuration config, String providerId) {
+    int regionGroupNumber = config.getInt(NUM_REGION_GROUPS, getDefaultNumRegionGroups());
+    groupNames = new String[regionGroupNumber];
+    regionCounts = new AtomicInteger[regionGroupNumber];
+    for (int i = 0; i < regionGroupNumber; i++) {
+      groupNames[i] = providerId + GROUP_NAME_DELIMITER + "regiongroup-" + i;
+      regionCounts[i] = new AtomicInteger();
+    }
+  }
+}
@@ -31,12 +31,18 @@ import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.yetus.audience.InterfaceAudience;
 // imports for classes still in regionserver.wal
+import org.apache.hadoop.hbase.regionserver.wal.AbstractFSWAL;
 import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.IdLock;
 
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor.EventType;
+
 /**
  * A WAL Provider that returns a WAL per group of regions.
  *
@@ -50,6 +56,8 @@ import org.apache.hadoop.hbase.util.IdLock;
  *                                  "bounded".</li>
  *   <li><em>identity</em> : each region belongs to its own group.</li>
  *   <li><em>bounded</em> : bounded number of groups and region evenly assigned to each group.</li>
+ *   <li><em>queueDepth</em> : bounded number of groups and region assigned to the group whose wal
+ *                             has the fewest appends waiting to be synced.</li>
  * </ul>
  * Optionally, a FQCN to a custom implementation may be given.
  */
@@ -68,6 +76,12 @@ public class RegionGroupingProvider implements WALProvider {
      */
     String group(final byte[] identifier, byte[] namespace);
     void init(Configuration config, String providerId);
+
+    /**
+     * Tells the strategy a region is closed. Strategies that keep state per region drop it here.
+     */
+    default void regionClosed(final byte[] identifier) {
+    }
   }
 
   /**
@@ -77,7 +91,8 @@ public class RegionGroupingProvider implements WALProvider {
     defaultStrategy(BoundedGroupingStrategy.class),
     identity(IdentityGroupingStrategy.class),
     bounded(BoundedGroupingStrategy.class),
-    namespace(NamespaceGroupingStrategy.class);
+    namespace(NamespaceGroupingStrategy.class),
+    queueDepth(QueueDepthGroupingStrategy.class);
 
     final Class<? extends RegionGroupingStrategy> clazz;
     Strategies(Class<? extends RegionGroupingStrategy> clazz) {
@@ -157,6 +172,16 @@ public class RegionGroupingProvider implements WALProvider {
     }
     this.providerId = sb.toString();
     this.strategy = getStrategy(conf, REGION_GROUPING_STRATEGY, DEFAULT_REGION_GROUPING_STRATEGY);
+    if (strategy instanceof QueueDepthGroupingStrategy) {
+      QueueDepthGroupingStrategy queueDepthStrategy = (QueueDepthGroupingStrategy) strategy;
+      queueDepthStrategy.setQueueDepth(this::getQueueDepth);
+      List<WALActionsListener> withCloseListener = new ArrayList<>();
+      if (this.listeners != null) {
+        withCloseListener.addAll(this.listeners);
+      }
+      withCloseListener.add(new RegionCloseListener(queueDepthStrategy));
+      this.listeners = Collections.unmodifiableList(withCloseListener);
+    }
     this.providerClass = factory.getProviderClass(DELEGATE_PROVIDER, DEFAULT_DELEGATE_PROVIDER);
   }
 
@@ -197,6 +222,51 @@ public class RegionGroupingProvider implements WALProvider {
     return provider.getWAL(null, null);
   }
 
+  /**
+   * @return the number of appends waiting to be synced in the wal of the given group, 0 if the
+   *         group has no wal yet
+   */
+  private long getQueueDepth(final String group) {
+    WALProvider provider = cached.get(group);
+    if (provider == null) {
+      return 0;
+    }
+    long depth = 0;
+    for (WAL wal : provider.getWALs()) {
+      if (wal instanceof AbstractFSWAL) {
+        depth += ((AbstractFSWAL<?>) wal).getUnflushedEntriesCount();
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * Tells the queue depth strategy a region is closed when its close marker is appended, so the
+   * region no longer counts towards its group as soon as it stops writing. Regions closed without
+   * a marker are taken out by {@link #regionClosed(byte[])} from the close path of the region.
+   */
+  static class RegionCloseListener extends WALActionsListener.Base {
+    private final QueueDepthGroupingStrategy strategy;
+
+    RegionCloseListener(QueueDepthGroupingStrategy strategy) {
+      this.strategy = strategy;
+    }
+
+    @Override
+    public void postAppend(final long entryLen, final long elapsedTimeMillis, final WALKey logKey,
+        final WALEdit logEdit) throws IOException {
+      if (!logEdit.isMetaEdit()) {
+        return;
+      }
+      for (Cell cell : logEdit.getCells()) {
+        RegionEventDescriptor event = WALEdit.getRegionEventDescriptor(cell);
+        if (event != null && event.getEventType() == EventType.REGION_CLOSE) {
+          strategy.regionClosed(logKey.getEncodedRegionName());
+        }
+      }
+    }
+  }
+
   @Override
   public WAL getWAL(final byte[] identifier, byte[] namespace) throws IOException {
     final String group;
@@ -208,6 +278,18 @@ public class RegionGroupingProvider implements WALProvider {
     return getWAL(group);
   }
 
+  @VisibleForTesting
+  RegionGroupingStrategy getRegionGroupingStrategy() {
+    return strategy;
+  }
+
+  @Override
+  public void regionClosed(final byte[] identifier) {
+    if (!META_WAL_PROVIDER_ID.equals(this.providerId)) {
+      strategy.regionClosed(identifier);
+    }
+  }
+
   @Override
   public void shutdown() throws IOException {
     // save the last exception and rethrow
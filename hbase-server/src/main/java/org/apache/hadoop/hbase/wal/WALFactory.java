@@ -244,6 +244,14 @@ public class WALFactory implements WALFileLengthProvider {
     return provider.getWAL(identifier, namespace);
   }
 
+  /**
+   * Tells the provider of the user region wals a region is closed.
+   * @param identifier may not be null, contents will not be altered
+   */
+  public void regionClosed(final byte[] identifier) {
+    provider.regionClosed(identifier);
+  }
+
   /**
    * @param identifier may not be null, contents will not be altered
    */
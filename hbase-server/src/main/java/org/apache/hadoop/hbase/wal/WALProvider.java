@@ -62,6 +62,15 @@ public interface WALProvider {
    */
   List<WAL> getWALs();
 
+  /**
+   * Tells the provider a region is closed, whether or not it wrote a close marker, so that it
+   * lets go of what it keeps for the region. May be called more than once, and for regions that
+   * never asked for a wal.
+   * @param identifier the identifier the region passed to {@link #getWAL(byte[], byte[])}
+   */
+  default void regionClosed(final byte[] identifier) {
+  }
+
   /**
    * persist outstanding WALs to storage and stop accepting new appends.
    * This method serves as shorthand for sending a sync to every WAL provided by a given
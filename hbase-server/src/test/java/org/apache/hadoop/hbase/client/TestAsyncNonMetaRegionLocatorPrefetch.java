@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.apache.hadoop.hbase.HConstants.EMPTY_START_ROW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Prefetching the region locations of a table from meta.
+ */
+@Category({ MediumTests.class, ClientTests.class })
+public class TestAsyncNonMetaRegionLocatorPrefetch {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static TableName TABLE_NAME = TableName.valueOf("async");
+
+  private static byte[] FAMILY = Bytes.toBytes("cf");
+
+  private static byte[][] SPLIT_KEYS;
+
+  private AsyncConnectionImpl conn;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    TEST_UTIL.startMiniCluster(3);
+    TEST_UTIL.getAdmin().setBalancerRunning(false, true);
+    SPLIT_KEYS = new byte[8][];
+    for (int i = 111; i < 999; i += 111) {
+      SPLIT_KEYS[i / 111 - 1] = Bytes.toBytes(String.format("%03d", i));
+    }
+    TEST_UTIL.createTable(TABLE_NAME, FAMILY, SPLIT_KEYS);
+    TEST_UTIL.waitTableAvailable(TABLE_NAME);
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    TEST_UTIL.shutdownMiniCluster();
+  }
+
+  @After
+  public void tearDownAfterTest() {
+    IOUtils.closeQuietly(conn);
+  }
+
+  private AsyncNonMetaRegionLocator createLocator(String key, String value) throws Exception {
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.set(key, value);
+    AsyncRegistry registry = AsyncRegistryFactory.getRegistry(conf);
+    conn = new AsyncConnectionImpl(conf, registry, registry.getClusterId().get(),
+        User.getCurrent());
+    return new AsyncNonMetaRegionLocator(conn);
+  }
+
+  private static List<byte[]> getStartKeys() {
+    List<byte[]> startKeys = new ArrayList<>();
+    startKeys.add(EMPTY_START_ROW);
+    for (byte[] splitKey : SPLIT_KEYS) {
+      startKeys.add(splitKey);
+    }
+    return startKeys;
+  }
+
+  private static void waitCached(AsyncNonMetaRegionLocator locator, byte[] row) {
+    TEST_UTIL.waitFor(10000, () -> locator.getRegionLocationInCache(TABLE_NAME, row) != null);
+  }
+
+  @Test
+  public void testPrefetchTable() throws Exception {
+    AsyncNonMetaRegionLocator locator =
+        createLocator(AsyncNonMetaRegionLocator.LOCATE_PREFETCH_TABLE, "true");
+    locator.getRegionLocation(TABLE_NAME, SPLIT_KEYS[3], RegionLocateType.CURRENT, false).get();
+    for (byte[] startKey : getStartKeys()) {
+      waitCached(locator, startKey);
+    }
+  }
+
+  @Test
+  public void testPrefetchAfterLocate() throws Exception {
+    AsyncNonMetaRegionLocator locator =
+        createLocator(AsyncNonMetaRegionLocator.LOCATE_PREFETCH_LIMIT, "3");
+    locator.getRegionLocation(TABLE_NAME, SPLIT_KEYS[0], RegionLocateType.CURRENT, false).get();
+    for (int i = 1; i <= 3; i++) {
+      waitCached(locator, SPLIT_KEYS[i]);
+    }
+    assertNull(locator.getRegionLocationInCache(TABLE_NAME, EMPTY_START_ROW));
+    assertNull(locator.getRegionLocationInCache(TABLE_NAME, SPLIT_KEYS[4]));
+
+    // the next region is cached so do not prefetch again
+    locator.getRegionLocation(TABLE_NAME, EMPTY_START_ROW, RegionLocateType.CURRENT, false).get();
+    Thread.sleep(1000);
+    assertNull(locator.getRegionLocationInCache(TABLE_NAME, SPLIT_KEYS[4]));
+  }
+
+  @Test
+  public void testClearCacheOfServer() throws Exception {
+    AsyncNonMetaRegionLocator locator =
+        createLocator(AsyncNonMetaRegionLocator.LOCATE_PREFETCH_TABLE, "true");
+    HRegionLocation loc =
+        locator.getRegionLocation(TABLE_NAME, EMPTY_START_ROW, RegionLocateType.CURRENT, false)
+            .get();
+    for (byte[] startKey : getStartKeys()) {
+      waitCached(locator, startKey);
+    }
+    ServerName serverName = loc.getServerName();
+    locator.clearCache(serverName);
+    int cleared = 0;
+    for (byte[] startKey : getStartKeys()) {
+      ServerName sn = TEST_UTIL.getConnection().getRegionLocator(TABLE_NAME)
+          .getRegionLocation(startKey).getServerName();
+      if (sn.equals(serverName)) {
+        assertNull(locator.getRegionLocationInCache(TABLE_NAME, startKey));
+        cleared++;
+      } else {
+        assertNotNull(locator.getRegionLocationInCache(TABLE_NAME, startKey));
+      }
+    }
+    assertEquals(TEST_UTIL.getHBaseCluster().getRegionServer(serverName)
+        .getRegions(TABLE_NAME).size(), cleared);
+  }
+}
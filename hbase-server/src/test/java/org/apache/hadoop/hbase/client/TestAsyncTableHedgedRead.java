@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.RegionObserver;
+import org.apache.hadoop.hbase.regionserver.StorefileRefresherChore;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Hedged reads of the async client across region replicas.
+ */
+@Category({ MediumTests.class, ClientTests.class })
+public class TestAsyncTableHedgedRead {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static TableName TABLE_NAME = TableName.valueOf("async");
+
+  private static byte[] FAMILY = Bytes.toBytes("cf");
+
+  private static byte[] QUALIFIER = Bytes.toBytes("cq");
+
+  private static byte[] ROW = Bytes.toBytes("row");
+
+  private static byte[] VALUE = Bytes.toBytes("value");
+
+  private static AsyncConnectionImpl CONN;
+
+  private static volatile CountDownLatch PRIMARY_LATCH = new CountDownLatch(0);
+
+  private static volatile boolean FAIL_PRIMARY = false;
+
+  public static final class SlowPrimaryObserver implements RegionCoprocessor, RegionObserver {
+
+    @Override
+    public Optional<RegionObserver> getRegionObserver() {
+      return Optional.of(this);
+    }
+
+    @Override
+    public void preGetOp(ObserverContext<RegionCoprocessorEnvironment> e, Get get,
+        List<Cell> results) throws IOException {
+      if (e.getEnvironment().getRegion().getRegionInfo().getReplicaId() == 0) {
+        if (FAIL_PRIMARY) {
+          throw new DoNotRetryIOException("Inject error");
+        }
+        try {
+          PRIMARY_LATCH.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+          throw new IOException(ie);
+        }
+      }
+    }
+  }
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    Configuration conf = TEST_UTIL.getConfiguration();
+    conf.setInt(StorefileRefresherChore.REGIONSERVER_STOREFILE_REFRESH_PERIOD, 100);
+    TEST_UTIL.startMiniCluster(2);
+    TEST_UTIL.getAdmin().createTable(TableDescriptorBuilder.newBuilder(TABLE_NAME)
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY)).setRegionReplication(2)
+        .addCoprocessor(SlowPrimaryObserver.class.getName()).build());
+    TEST_UTIL.waitUntilAllRegionsAssigned(TABLE_NAME);
+    TEST_UTIL.getConnection().getTable(TABLE_NAME)
+        .put(new Put(ROW).addColumn(FAMILY, QUALIFIER, VALUE));
+    TEST_UTIL.flush(TABLE_NAME);
+    // wait until the secondary picks up the flushed file
+    Thread.sleep(1000);
+    CONN = createConnection(1.0);
+  }
+
+  private static AsyncConnectionImpl createConnection(double budget) throws Exception {
+    return createConnection(budget, AsyncHedgedReadPolicy.DEFAULT_PRIMARY_CALL_TIMEOUT);
+  }
+
+  private static AsyncConnectionImpl createConnection(double budget, int primaryCallTimeoutUs)
+      throws Exception {
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setBoolean(AsyncHedgedReadPolicy.ENABLED, true);
+    conf.setDouble(AsyncHedgedReadPolicy.BUDGET, budget);
+    // hedge after the primary call timeout, until we have enough samples for the percentile
+    conf.setInt(AsyncHedgedReadPolicy.MIN_SAMPLES, Integer.MAX_VALUE);
+    conf.setInt(AsyncHedgedReadPolicy.PRIMARY_CALL_TIMEOUT, primaryCallTimeoutUs);
+    return (AsyncConnectionImpl) ConnectionFactory.createAsyncConnection(conf).get();
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    CONN.close();
+    TEST_UTIL.shutdownMiniCluster();
+  }
+
+  @After
+  public void releasePrimary() {
+    PRIMARY_LATCH.countDown();
+    FAIL_PRIMARY = false;
+  }
+
+  @Test
+  public void testStrongGetNotHedged() throws Exception {
+    PRIMARY_LATCH = new CountDownLatch(1);
+    long hedgedReads = CONN.hedgedReadPolicy.getHedgedReads();
+    CompletableFuture<Result> future = CONN.getRawTable(TABLE_NAME).get(new Get(ROW));
+    Thread.sleep(500);
+    assertFalse(future.isDone());
+    PRIMARY_LATCH.countDown();
+    Result result = future.get();
+    assertFalse(result.isStale());
+    assertArrayEquals(VALUE, result.getValue(FAMILY, QUALIFIER));
+    assertEquals(hedgedReads, CONN.hedgedReadPolicy.getHedgedReads());
+  }
+
+  @Test
+  public void testTimelineGetHedged() throws Exception {
+    PRIMARY_LATCH = new CountDownLatch(1);
+    long hedgedReads = CONN.hedgedReadPolicy.getHedgedReads();
+    long wins = CONN.hedgedReadPolicy.getHedgedReadWins();
+    Result result = CONN.getRawTable(TABLE_NAME)
+        .get(new Get(ROW).setConsistency(Consistency.TIMELINE)).get();
+    assertTrue(result.isStale());
+    assertArrayEquals(VALUE, result.getValue(FAMILY, QUALIFIER));
+    assertEquals(hedgedReads + 1, CONN.hedgedReadPolicy.getHedgedReads());
+    assertEquals(wins + 1, CONN.hedgedReadPolicy.getHedgedReadWins());
+  }
+
+  @Test
+  public void testFastPrimaryNotHedged() throws Exception {
+    long hedgedReads = CONN.hedgedReadPolicy.getHedgedReads();
+    Result result = CONN.getRawTable(TABLE_NAME)
+        .get(new Get(ROW).setConsistency(Consistency.TIMELINE)).get();
+    assertArrayEquals(VALUE, result.getValue(FAMILY, QUALIFIER));
+    // the primary may be slower than the delay in a busy test environment, but it must not be
+    // hedged for every get
+    for (int i = 0; i < 10; i++) {
+      CONN.getRawTable(TABLE_NAME).get(new Get(ROW).setConsistency(Consistency.TIMELINE)).get();
+    }
+    assertTrue(CONN.hedgedReadPolicy.getHedgedReads() - hedgedReads < 11);
+  }
+
+  @Test
+  public void testTimelineBatchHedged() throws Exception {
+    PRIMARY_LATCH = new CountDownLatch(1);
+    List<Result> results = CONN.getRawTable(TABLE_NAME)
+        .getAll(Arrays.asList(new Get(ROW).setConsistency(Consistency.TIMELINE),
+          new Get(ROW).setConsistency(Consistency.TIMELINE)))
+        .get();
+    assertEquals(2, results.size());
+    for (Result result : results) {
+      assertTrue(result.isStale());
+      assertArrayEquals(VALUE, result.getValue(FAMILY, QUALIFIER));
+    }
+  }
+
+  @Test
+  public void testFailedPrimaryHedgedAtOnce() throws Exception {
+    // a delay far longer than the test may wait
+    try (AsyncConnectionImpl conn = createConnection(1.0, 60 * 1000 * 1000)) {
+      FAIL_PRIMARY = true;
+      Result result = conn.getRawTable(TABLE_NAME)
+          .get(new Get(ROW).setConsistency(Consistency.TIMELINE)).get(10, TimeUnit.SECONDS);
+      assertTrue(result.isStale());
+      assertArrayEquals(VALUE, result.getValue(FAMILY, QUALIFIER));
+      assertEquals(1, conn.hedgedReadPolicy.getHedgedReads());
+    }
+  }
+
+  @Test
+  public void testFailedPrimaryWithoutBudget() throws Exception {
+    try (AsyncConnectionImpl conn = createConnection(0, 60 * 1000 * 1000)) {
+      FAIL_PRIMARY = true;
+      try {
+        conn.getRawTable(TABLE_NAME).get(new Get(ROW).setConsistency(Consistency.TIMELINE))
+            .get(10, TimeUnit.SECONDS);
+        fail("the get should fail with the error of the primary");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof DoNotRetryIOException);
+      }
+      assertEquals(0, conn.hedgedReadPolicy.getHedgedReads());
+    }
+  }
+
+  @Test
+  public void testNoBudget() throws Exception {
+    try (AsyncConnectionImpl conn = createConnection(0)) {
+      PRIMARY_LATCH = new CountDownLatch(1);
+      CompletableFuture<Result> future =
+          conn.getRawTable(TABLE_NAME).get(new Get(ROW).setConsistency(Consistency.TIMELINE));
+      Thread.sleep(500);
+      assertFalse(future.isDone());
+      PRIMARY_LATCH.countDown();
+      assertFalse(future.get().isStale());
+      assertEquals(0, conn.hedgedReadPolicy.getHedgedReads());
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.testclassification.ClientTests;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Threads;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Scans with several calls in flight on each scanner.
+ */
+@Category({ MediumTests.class, ClientTests.class })
+public class TestAsyncTableScanPipeline {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static TableName TABLE_NAME = TableName.valueOf("async");
+
+  private static byte[] FAMILY = Bytes.toBytes("cf");
+
+  private static byte[] CQ = Bytes.toBytes("cq");
+
+  private static int COUNT = 500;
+
+  private static AsyncConnection CONN;
+
+  private static RawAsyncTable TABLE;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    // fewer handlers than the calls the concurrent scans pipeline
+    TEST_UTIL.getConfiguration().setInt(HConstants.REGION_SERVER_HANDLER_COUNT, 3);
+    TEST_UTIL.startMiniCluster(1);
+    TEST_UTIL.createTable(TABLE_NAME, FAMILY,
+      new byte[][] { Bytes.toBytes("100"), Bytes.toBytes("300") });
+    TEST_UTIL.waitTableAvailable(TABLE_NAME);
+    TEST_UTIL.getConfiguration().setInt(AsyncConnectionConfiguration.SCANNER_PIPELINE_WINDOW_KEY,
+      4);
+    CONN = ConnectionFactory.createAsyncConnection(TEST_UTIL.getConfiguration()).get();
+    TABLE = CONN.getRawTable(TABLE_NAME);
+    TABLE.putAll(IntStream.range(0, COUNT)
+        .mapToObj(i -> new Put(Bytes.toBytes(String.format("%03d", i))).addColumn(FAMILY, CQ,
+          Bytes.toBytes(i)))
+        .collect(Collectors.toList())).get();
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    CONN.close();
+    TEST_UTIL.shutdownMiniCluster();
+  }
+
+  private static void assertResults(List<Result> results, int start, int count, boolean reversed) {
+    assertEquals(count, results.size());
+    for (int i = 0; i < count; i++) {
+      int row = reversed ? start - i : start + i;
+      Result result = results.get(i);
+      assertEquals(String.format("%03d", row), Bytes.toString(result.getRow()));
+      assertEquals(row, Bytes.toInt(result.getValue(FAMILY, CQ)));
+    }
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    assertResults(TABLE.scanAll(new Scan().setCaching(7)).get(), 0, COUNT, false);
+  }
+
+  @Test
+  public void testReversedScan() throws Exception {
+    assertResults(TABLE.scanAll(new Scan().setReversed(true).setCaching(7)).get(), COUNT - 1,
+      COUNT, true);
+  }
+
+  @Test
+  public void testScanWithRange() throws Exception {
+    assertResults(TABLE.scanAll(new Scan().withStartRow(Bytes.toBytes("095"))
+        .withStopRow(Bytes.toBytes("305")).setCaching(3)).get(), 95, 210, false);
+  }
+
+  @Test
+  public void testScanWithLimit() throws Exception {
+    assertResults(TABLE.scanAll(new Scan().setLimit(123).setCaching(5)).get(), 0, 123, false);
+  }
+
+  /**
+   * The calls pipelined ahead of their turn wait without holding a handler, so scans pipelining
+   * more calls than there are handlers all go through.
+   */
+  @Test(timeout = 60000)
+  public void testConcurrentScans() throws Exception {
+    List<CompletableFuture<List<Result>>> futures = IntStream.range(0, 10)
+        .mapToObj(i -> TABLE.scanAll(new Scan().setCaching(2))).collect(Collectors.toList());
+    for (CompletableFuture<List<Result>> future : futures) {
+      assertResults(future.get(), 0, COUNT, false);
+    }
+  }
+
+  private static final class SuspendingConsumer implements RawScanResultConsumer {
+
+    private final List<Result> results = new ArrayList<>();
+
+    private Throwable error;
+
+    private boolean finished = false;
+
+    @Override
+    public synchronized void onNext(Result[] results, ScanController controller) {
+      for (Result result : results) {
+        this.results.add(result);
+      }
+      if (this.results.size() % 2 == 0) {
+        // let the pipelined calls come back while the scan is suspended
+        ScanResumer resumer = controller.suspend();
+        new Thread(() -> {
+          Threads.sleep(10);
+          resumer.resume();
+        }).start();
+      }
+    }
+
+    @Override
+    public synchronized void onError(Throwable error) {
+      this.finished = true;
+      this.error = error;
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void onComplete() {
+      this.finished = true;
+      notifyAll();
+    }
+
+    public synchronized List<Result> get() throws Throwable {
+      while (!finished) {
+        wait();
+      }
+      if (error != null) {
+        throw error;
+      }
+      return results;
+    }
+  }
+
+  @Test
+  public void testSuspend() throws Throwable {
+    SuspendingConsumer consumer = new SuspendingConsumer();
+    TABLE.scan(new Scan().withStopRow(Bytes.toBytes("150")).setCaching(2), consumer);
+    assertResults(consumer.get(), 0, 150, false);
+  }
+}
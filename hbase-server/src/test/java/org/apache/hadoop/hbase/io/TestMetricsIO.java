@@ -34,6 +34,9 @@ public class TestMetricsIO {
     MetricsIO metrics = new MetricsIO(new MetricsIOWrapper() {
       @Override
       public long getChecksumFailures() { return 40; }
+
+      @Override
+      public long getCoalescedBlockLoads() { return 7; }
     });
 
     metrics.updateFsReadTime(100);
@@ -45,10 +48,15 @@ public class TestMetricsIO {
     metrics.updateFsWriteTime(500);
     metrics.updateFsWriteTime(600);
 
+    metrics.updateBlockLoadWaitTime(10);
+    metrics.updateBlockLoadWaitTime(20);
+
     HELPER.assertCounter("fsChecksumFailureCount", 40, metrics.getMetricsSource());
+    HELPER.assertCounter("coalescedBlockLoadCount", 7, metrics.getMetricsSource());
 
     HELPER.assertCounter("fsReadTime_numOps", 2, metrics.getMetricsSource());
     HELPER.assertCounter("fsPReadTime_numOps", 1, metrics.getMetricsSource());
     HELPER.assertCounter("fsWriteTime_numOps", 3, metrics.getMetricsSource());
+    HELPER.assertCounter("blockLoadWaitTime_numOps", 2, metrics.getMetricsSource());
   }
 }
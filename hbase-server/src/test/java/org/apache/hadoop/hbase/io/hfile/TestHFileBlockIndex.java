@@ -23,7 +23,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -492,6 +494,111 @@ public class TestHFileBlockIndex {
     }
   }
 
+  /** Long rows sharing a prefix, several in a row with the same fence prefix */
+  private static byte[] getFencePrefixRow(int i) {
+    return Bytes.toBytes(String.format("user-profile-record-of-tenant-0042-%03d-%012d", i / 6, i));
+  }
+
+  @Test
+  public void testFencePrefixesBinarySearch() throws IOException {
+    byte[] family = Bytes.toBytes("f");
+    byte[] qualifier = Bytes.toBytes("q");
+    int numEntries = 300;
+    BlockIndexChunk chunk = new BlockIndexChunk();
+    for (int i = 0; i < numEntries; ++i) {
+      // Only the even rows are indexed, so the odd ones fall between the entries
+      KeyValue kv = new KeyValue(getFencePrefixRow(2 * i), family, qualifier, 1, new byte[0]);
+      chunk.add(kv.getKey(), getDummyFileOffset(i), getDummyOnDiskSize(i));
+    }
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(baos);
+    chunk.writeNonRoot(dos, true);
+    assertEquals(chunk.getNonRootSize(true), dos.size());
+    assertTrue(chunk.getNonRootSize(true) > chunk.getNonRootSize());
+    ByteBuffer nonRootIndex = ByteBuffer.wrap(baos.toByteArray());
+
+    baos.reset();
+    dos = new DataOutputStream(baos);
+    chunk.writeRoot(dos);
+    HFileBlockIndex.CellBasedKeyBlockIndexReader plainRoot =
+        new HFileBlockIndex.CellBasedKeyBlockIndexReader(CellComparator.COMPARATOR, 1);
+    plainRoot.readRootIndex(
+      new DataInputStream(new ByteArrayInputStream(baos.toByteArray())),
+      numEntries);
+    HFileBlockIndex.CellBasedKeyBlockIndexReader fencedRoot =
+        new HFileBlockIndex.CellBasedKeyBlockIndexReader(CellComparator.COMPARATOR, 1);
+    fencedRoot.readRootIndex(
+      new DataInputStream(new ByteArrayInputStream(baos.toByteArray())),
+      numEntries);
+    fencedRoot.setFencePrefixes(true);
+    assertTrue(fencedRoot.heapSize() > plainRoot.heapSize());
+
+    List<KeyValue> searchKeys = new ArrayList<>();
+    for (int i = 0; i < 2 * numEntries + 1; ++i) {
+      byte[] row = getFencePrefixRow(i);
+      searchKeys.add(new KeyValue(row, family, qualifier, 1, new byte[0]));
+      searchKeys.add(KeyValueUtil.createFirstOnRow(row));
+      searchKeys.add(KeyValueUtil.createLastOnRow(row));
+    }
+    // Rows not sharing the prefix of the entries, and rows shorter than it
+    for (String row : new String[] { "", "a", "user-profile", "user-profile-record-of-tenant-0042",
+        "user-profile-record-of-tenant-0042-", "user-profile-record-of-tenant-0043", "zzz" }) {
+      searchKeys.add(KeyValueUtil.createFirstOnRow(Bytes.toBytes(row)));
+    }
+
+    for (KeyValue key : searchKeys) {
+      int expected = BlockIndexReader.binarySearchNonRootIndex(key,
+        new MultiByteBuff(nonRootIndex), CellComparator.COMPARATOR);
+      String msg = "Failed to look up " + key;
+      assertEquals(msg, expected, BlockIndexReader.binarySearchNonRootIndex(key,
+        new MultiByteBuff(nonRootIndex), CellComparator.COMPARATOR, true));
+      assertEquals(msg, expected, plainRoot.rootBlockContainingKey(key));
+      assertEquals(msg, expected, fencedRoot.rootBlockContainingKey(key));
+    }
+  }
+
+  @Test
+  public void testHFileWriterAndReaderWithFencePrefixes() throws IOException {
+    Path hfilePath = new Path(TEST_UTIL.getDataTestDir(), "hfile_with_fence_prefixes");
+    Configuration conf = new Configuration(this.conf);
+    conf.setInt(HFileBlockIndex.MAX_CHUNK_SIZE_KEY, 512);
+    conf.setBoolean(HFileBlockIndex.FENCE_PREFIXES_KEY, true);
+    CacheConfig cacheConf = new CacheConfig(conf);
+    cacheConf.getBlockCache().evictBlocksByHfileName(hfilePath.getName());
+    HFileContext meta = new HFileContextBuilder().withBlockSize(SMALL_BLOCK_SIZE)
+        .withCompression(compr).build();
+    HFile.Writer writer = HFile.getWriterFactory(conf, cacheConf).withPath(fs, hfilePath)
+        .withFileContext(meta).create();
+    Random rand = new Random(19231737);
+    byte[] prefix = Bytes.toBytes("user-profile-record-of-tenant-0042-");
+    byte[][] keys = new byte[NUM_KV][];
+    for (int i = 0; i < NUM_KV; ++i) {
+      byte[] row = Bytes.add(prefix, RandomKeyValueUtil.randomOrderedKey(rand, i));
+      KeyValue kv = new KeyValue(row, Bytes.toBytes("f"), Bytes.toBytes("q"), 1,
+          RandomKeyValueUtil.randomValue(rand));
+      writer.append(kv);
+      keys[i] = kv.getKey();
+    }
+    writer.close();
+
+    HFile.Reader reader = HFile.createReader(fs, hfilePath, cacheConf, true, conf);
+    assertTrue(reader.getTrailer().getNumDataIndexLevels() > 2);
+    assertTrue(((HFileBlockIndex.CellBasedKeyBlockIndexReader) reader.getDataBlockIndexReader())
+        .hasFencePrefixes());
+    for (boolean pread : new boolean[] { false, true }) {
+      HFileScanner scanner = reader.getScanner(true, pread);
+      for (int i = 0; i < NUM_KV; ++i) {
+        checkSeekTo(keys, scanner, i);
+        assertTrue(Bytes.equals(keys[i], ((KeyValue) scanner.getKey()).getKey()));
+      }
+      // Before the first row, and after the prefix of all the rows
+      assertEquals(-1, scanner.seekTo(KeyValueUtil.createFirstOnRow(prefix)));
+      assertEquals(1, scanner.seekTo(KeyValueUtil.createFirstOnRow(Bytes.toBytes("v"))));
+    }
+    reader.close();
+  }
+
   /** Checks if the HeapSize calculator is within reason */
   @Test
   public void testHeapSizeForBlockIndex() throws IOException {
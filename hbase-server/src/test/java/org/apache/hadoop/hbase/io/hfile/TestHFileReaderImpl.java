@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.fs.HFileSystem;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests that concurrent cache misses on the same block in {@link HFileReaderImpl} are collapsed
+ * into a single load.
+ */
+@Category({IOTests.class, SmallTests.class})
+public class TestHFileReaderImpl {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static final int DATA_BLOCK_SIZE = 1024;
+  private static final int NUM_KV = 1000;
+
+  private Configuration conf;
+  private CacheConfig cacheConf;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = TEST_UTIL.getConfiguration();
+    fs = HFileSystem.get(conf);
+    CacheConfig.blockCacheDisabled = false;
+    cacheConf = new CacheConfig(conf);
+  }
+
+  private Path writeStoreFile(String name) throws IOException {
+    Path storeFileParentDir = new Path(TEST_UTIL.getDataTestDir(), name);
+    HFileContext meta = new HFileContextBuilder().withBlockSize(DATA_BLOCK_SIZE).build();
+    StoreFileWriter sfw = new StoreFileWriter.Builder(conf, cacheConf, fs)
+        .withOutputDir(storeFileParentDir).withComparator(CellComparator.COMPARATOR)
+        .withFileContext(meta).build();
+    for (int i = 0; i < NUM_KV; ++i) {
+      byte[] row = Bytes.toBytes(String.format("row-%05d", i));
+      sfw.append(new KeyValue(row, Bytes.toBytes("f"), Bytes.toBytes("q"), Bytes.toBytes(i)));
+    }
+    sfw.close();
+    return sfw.getPath();
+  }
+
+  @Test(timeout = 60000)
+  public void testWaiterReadsBlockLoadedByOther() throws Exception {
+    Path storeFile = writeStoreFile("testWaiterReadsBlockLoadedByOther");
+    HFileReaderImpl reader =
+        (HFileReaderImpl) HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    try {
+      BlockCache blockCache = cacheConf.getBlockCache();
+      blockCache.evictBlocksByHfileName(reader.getName());
+      // Pretend another reader is loading the first block.
+      CompletableFuture<Void> pendingLoad = new CompletableFuture<>();
+      reader.getPendingBlockLoads().put(0L, pendingLoad);
+      long coalescedBefore = HFile.getCoalescedBlockLoadsCount();
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        Future<HFileBlock> waiter = executor.submit(
+          () -> reader.readBlock(0, -1, true, true, false, true, BlockType.DATA, null));
+        Thread.sleep(500);
+        assertTrue("Reader should wait for the pending load", !waiter.isDone());
+
+        // The "other" reader caches the block and completes its load.
+        HFileBlock block = reader.readBlock(0, -1, false, true, false, true, BlockType.DATA, null);
+        blockCache.cacheBlock(new BlockCacheKey(reader.getName(), 0, true, BlockType.DATA),
+          block);
+        reader.getPendingBlockLoads().remove(0L, pendingLoad);
+        pendingLoad.complete(null);
+
+        HFileBlock waited = waiter.get();
+        assertNotNull(waited);
+        assertEquals(block.getOnDiskSizeWithHeader(), waited.getOnDiskSizeWithHeader());
+        assertEquals(coalescedBefore + 1, HFile.getCoalescedBlockLoadsCount());
+      } finally {
+        executor.shutdownNow();
+      }
+      assertTrue(reader.getPendingBlockLoads().isEmpty());
+    } finally {
+      reader.close(true);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testWaiterReadsBlockNotCachedByOther() throws Exception {
+    Path storeFile = writeStoreFile("testWaiterReadsBlockNotCachedByOther");
+    HFileReaderImpl reader =
+        (HFileReaderImpl) HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    try {
+      cacheConf.getBlockCache().evictBlocksByHfileName(reader.getName());
+      // Pretend another reader is loading the first block.
+      CompletableFuture<Void> pendingLoad = new CompletableFuture<>();
+      reader.getPendingBlockLoads().put(0L, pendingLoad);
+      long coalescedBefore = HFile.getCoalescedBlockLoadsCount();
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        Future<HFileBlock> waiter = executor.submit(
+          () -> reader.readBlock(0, -1, true, true, false, true, BlockType.DATA, null));
+        Thread.sleep(500);
+        assertTrue("Reader should wait for the pending load", !waiter.isDone());
+
+        // The "other" reader completes its load without caching the block.
+        reader.getPendingBlockLoads().remove(0L, pendingLoad);
+        pendingLoad.complete(null);
+
+        // The waiter reads the block itself, so its load was not coalesced.
+        assertNotNull(waiter.get());
+        assertEquals(coalescedBefore, HFile.getCoalescedBlockLoadsCount());
+      } finally {
+        executor.shutdownNow();
+      }
+      assertTrue(reader.getPendingBlockLoads().isEmpty());
+    } finally {
+      reader.close(true);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testConcurrentReadsOfSameBlocks() throws Exception {
+    Path storeFile = writeStoreFile("testConcurrentReadsOfSameBlocks");
+    HFileReaderImpl reader =
+        (HFileReaderImpl) HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    try {
+      cacheConf.getBlockCache().evictBlocksByHfileName(reader.getName());
+      List<Long> offsets = new ArrayList<>();
+      List<Integer> sizes = new ArrayList<>();
+      long offset = 0;
+      while (offset < reader.getTrailer().getLoadOnOpenDataOffset()) {
+        HFileBlock block = reader.readBlock(offset, -1, false, true, false, true, null, null);
+        offsets.add(offset);
+        sizes.add(block.getOnDiskSizeWithHeader());
+        offset += block.getOnDiskSizeWithHeader();
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+          futures.add(executor.submit(() -> {
+            for (int i = 0; i < offsets.size(); i++) {
+              HFileBlock block =
+                  reader.readBlock(offsets.get(i), -1, true, true, false, true, null, null);
+              assertEquals(sizes.get(i).intValue(), block.getOnDiskSizeWithHeader());
+            }
+            return null;
+          }));
+        }
+        for (Future<Void> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      assertTrue(reader.getPendingBlockLoads().isEmpty());
+    } finally {
+      reader.close(true);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.fs.HFileSystem;
@@ -79,6 +80,61 @@ public class TestPrefetch {
     readStoreFile(storeFile);
   }
 
+  @Test(timeout=60000)
+  public void testPrefetchProgressPerTable() throws Exception {
+    TableName table = TableName.valueOf("testPrefetchProgressPerTable");
+    Path familyDir = new Path(TEST_UTIL.getDataTestDir(),
+        "data/default/" + table.getNameAsString() + "/0123456789abcdef/f");
+    Path storeFile = writeStoreFile(familyDir);
+    HFile.Reader reader = HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    while (!reader.prefetchComplete()) {
+      Thread.sleep(100);
+    }
+    long dataBytes = reader.getTrailer().getLoadOnOpenDataOffset();
+    assertEquals(dataBytes, PrefetchExecutor.getRequestedBytes(table));
+    assertEquals(dataBytes, PrefetchExecutor.getCompletedBytes(table));
+    // A closed file no longer counts
+    reader.close(false);
+    assertEquals(0, PrefetchExecutor.getRequestedBytes(table));
+    assertEquals(0, PrefetchExecutor.getCompletedBytes(table));
+
+    // Blocks found cached are skipped without counting as cache accesses
+    BlockCache blockCache = cacheConf.getBlockCache();
+    long requests = blockCache.getStats().getRequestCount();
+    reader = HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    while (!reader.prefetchComplete()) {
+      Thread.sleep(100);
+    }
+    assertEquals(dataBytes, PrefetchExecutor.getCompletedBytes(table));
+    assertEquals(requests, blockCache.getStats().getRequestCount());
+    reader.close(true);
+    assertEquals(0, PrefetchExecutor.getRequestedBytes(table));
+  }
+
+  @Test
+  public void testStoreHeat() {
+    Path storeDir = new Path(TEST_UTIL.getDataTestDir(), "testStoreHeat");
+    assertEquals(0, PrefetchExecutor.getStoreHeat(storeDir));
+    for (int i = 0; i < 3; i++) {
+      PrefetchExecutor.recordAccess(storeDir);
+    }
+    assertEquals(3, PrefetchExecutor.getStoreHeat(storeDir));
+  }
+
+  @Test
+  public void testCancelledPrefetchIsCompleted() throws Exception {
+    Path path = new Path(TEST_UTIL.getDataTestDir(), "testCancelledPrefetchIsCompleted");
+    PrefetchExecutor.request(path, 1, new Runnable() {
+      @Override
+      public void run() {
+        fail("Cancelled prefetch should not run");
+      }
+    });
+    assertFalse(PrefetchExecutor.isCompleted(path));
+    PrefetchExecutor.cancel(path);
+    assertTrue(PrefetchExecutor.isCompleted(path));
+  }
+
   private void readStoreFile(Path storeFilePath) throws Exception {
     // Open the file
     HFile.Reader reader = HFile.createReader(fs, storeFilePath, cacheConf, true, conf);
@@ -105,7 +161,10 @@ public class TestPrefetch {
   }
 
   private Path writeStoreFile() throws IOException {
-    Path storeFileParentDir = new Path(TEST_UTIL.getDataTestDir(), "TestPrefetch");
+    return writeStoreFile(new Path(TEST_UTIL.getDataTestDir(), "TestPrefetch"));
+  }
+
+  private Path writeStoreFile(Path storeFileParentDir) throws IOException {
     HFileContext meta = new HFileContextBuilder()
       .withBlockSize(DATA_BLOCK_SIZE)
       .build();
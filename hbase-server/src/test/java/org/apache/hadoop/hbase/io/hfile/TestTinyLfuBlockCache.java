@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the W-TinyLFU first level block cache.
+ */
+@Category({IOTests.class, SmallTests.class})
+public class TestTinyLfuBlockCache {
+
+  private static final int BLOCK_SIZE = 1024;
+  // Smaller than a block, so that blocks span pages
+  private static final int PAGE_SIZE = 512;
+
+  private TinyLfuBlockCache createCache(int numBlocks) {
+    return new TinyLfuBlockCache(numBlocks * weightOf(CacheTestUtils.generateHFileBlocks(
+        BLOCK_SIZE, 1)[0]), BLOCK_SIZE, TinyLfuBlockCache.DEFAULT_WINDOW_FACTOR,
+        TinyLfuBlockCache.DEFAULT_PROTECTED_FACTOR, 16 * 1024 * 1024, PAGE_SIZE);
+  }
+
+  private long offHeapSizeOf(HFileBlockPair block) {
+    int length = block.getBlock().getSerializedLength();
+    return (length + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+  }
+
+  private long weightOf(HFileBlockPair block) {
+    long pages = offHeapSizeOf(block) / PAGE_SIZE;
+    return block.getBlockName().heapSize() + TinyLfuBlockCache.PER_BLOCK_OVERHEAD
+        + ClassSize.align(ClassSize.ARRAY + pages * ClassSize.REFERENCE) + offHeapSizeOf(block);
+  }
+
+  @Test
+  public void testCacheAndGet() throws Exception {
+    TinyLfuBlockCache cache = createCache(100);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 10);
+    long expectedSize = 0;
+    long expectedOffHeapSize = 0;
+    for (HFileBlockPair block : blocks) {
+      assertNull(cache.getBlock(block.getBlockName(), true, false, true));
+      cache.cacheBlock(block.getBlockName(), block.getBlock());
+      expectedSize += weightOf(block);
+      expectedOffHeapSize += offHeapSizeOf(block);
+    }
+    assertEquals(blocks.length, cache.getBlockCount());
+    assertEquals(blocks.length, cache.getDataBlockCount());
+    // Accounting is exact, not an estimate
+    assertEquals(expectedSize, cache.getCurrentSize());
+    assertEquals(expectedSize - expectedOffHeapSize, cache.heapSize());
+    assertEquals(expectedOffHeapSize, cache.getOffHeapUsedSize());
+    for (HFileBlockPair block : blocks) {
+      Cacheable cached = cache.getBlock(block.getBlockName(), true, false, true);
+      assertEquals(block.getBlock(), cached);
+      // Served over the pages, which are held until the block is returned
+      assertEquals(Cacheable.MemoryType.SHARED, cached.getMemoryType());
+      assertEquals(1, cache.getRefCount(block.getBlockName()));
+      cache.returnBlock(block.getBlockName(), cached);
+      assertEquals(0, cache.getRefCount(block.getBlockName()));
+    }
+    assertEquals(blocks.length, cache.getStats().getHitCount());
+
+    for (HFileBlockPair block : blocks) {
+      assertTrue(cache.evictBlock(block.getBlockName()));
+    }
+    assertEquals(0, cache.getBlockCount());
+    assertEquals(0, cache.getCurrentSize());
+    assertEquals(0, cache.heapSize());
+    // The pages are back in the pool
+    assertEquals(0, cache.getOffHeapUsedSize());
+    cache.shutdown();
+  }
+
+  @Test
+  public void testLentBlockKeepsItsPages() throws Exception {
+    TinyLfuBlockCache cache = createCache(100);
+    HFileBlockPair block = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 1)[0];
+    cache.cacheBlock(block.getBlockName(), block.getBlock());
+    Cacheable first = cache.getBlock(block.getBlockName(), true, false, true);
+    Cacheable second = cache.peekBlock(block.getBlockName());
+    assertEquals(2, cache.getRefCount(block.getBlockName()));
+
+    assertTrue(cache.evictBlock(block.getBlockName()));
+    assertFalse(cache.evictBlock(block.getBlockName()));
+    assertFalse(cache.containsBlock(block.getBlockName()));
+    assertNull(cache.getBlock(block.getBlockName(), true, false, true));
+    assertEquals(0, cache.getBlockCount());
+    assertEquals(0, cache.getCurrentSize());
+    // Still readable until returned
+    assertEquals(offHeapSizeOf(block), cache.getOffHeapUsedSize());
+    assertEquals(block.getBlock(), first);
+
+    cache.returnBlock(block.getBlockName(), first);
+    assertEquals(offHeapSizeOf(block), cache.getOffHeapUsedSize());
+    // An equal block not lent by the cache is not taken for one that was
+    cache.returnBlock(block.getBlockName(), block.getBlock());
+    assertEquals(1, cache.getRefCount(block.getBlockName()));
+    cache.returnBlock(block.getBlockName(), second);
+    assertEquals(0, cache.getOffHeapUsedSize());
+
+    // The key can be cached again once the pages are back
+    cache.cacheBlock(block.getBlockName(), block.getBlock());
+    assertTrue(cache.containsBlock(block.getBlockName()));
+    cache.shutdown();
+  }
+
+  @Test
+  public void testSizeIsOnlyConfiguredByItsOwnKey() {
+    Configuration conf = HBaseConfiguration.create();
+    try {
+      TinyLfuBlockCache.getConfiguredSize(conf);
+      fail("The size should not default to a share of the heap");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    conf.setLong(TinyLfuBlockCache.SIZE_CONFIG_NAME, 64);
+    assertEquals(64L * 1024 * 1024, TinyLfuBlockCache.getConfiguredSize(conf));
+  }
+
+  @Test
+  public void testHeapSizeChanges() {
+    TinyLfuBlockCache cache = createCache(100);
+    CacheTestUtils.testHeapSizeChanges(cache, BLOCK_SIZE);
+    cache.shutdown();
+  }
+
+  @Test
+  public void testCacheMultiThreaded() throws Exception {
+    TinyLfuBlockCache cache = createCache(1000);
+    CacheTestUtils.testCacheMultiThreaded(cache, BLOCK_SIZE, 10, 1000, 0.80);
+    cache.shutdown();
+  }
+
+  @Test
+  public void testEvictionKeepsSizeUnderMax() throws Exception {
+    TinyLfuBlockCache cache = createCache(50);
+    for (HFileBlockPair block : CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 200)) {
+      cache.cacheBlock(block.getBlockName(), block.getBlock());
+      assertTrue(cache.getCurrentSize() <= cache.getMaxSize());
+    }
+    assertTrue(cache.getStats().getEvictedCount() >= 150);
+
+    assertTrue(cache.getOffHeapUsedSize() <= cache.getMaxSize());
+
+    long maxSize = cache.getMaxSize();
+    cache.setMaxSize(maxSize / 2);
+    assertTrue(cache.getCurrentSize() <= cache.getMaxSize());
+    assertTrue(cache.getBlockCount() <= 25);
+    // The direct memory of the pool bounds the cache
+    cache.setMaxSize(maxSize * 2);
+    assertTrue(cache.getMaxSize() <= maxSize);
+    cache.shutdown();
+  }
+
+  @Test
+  public void testScanResistance() throws Exception {
+    TinyLfuBlockCache cache = createCache(100);
+    HFileBlockPair[] hot = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 20);
+    for (HFileBlockPair block : hot) {
+      cache.cacheBlock(block.getBlockName(), block.getBlock());
+    }
+    for (int i = 0; i < 3; i++) {
+      for (HFileBlockPair block : hot) {
+        Cacheable cached = cache.getBlock(block.getBlockName(), true, false, true);
+        assertNotNull(cached);
+        cache.returnBlock(block.getBlockName(), cached);
+      }
+      cache.drainReadBufferForTest();
+    }
+    assertTrue(cache.getProtectedSize() > 0);
+
+    // A scan several times the size of the cache touching every block once
+    for (HFileBlockPair block : CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 500)) {
+      cache.cacheBlock(block.getBlockName(), block.getBlock());
+    }
+    for (HFileBlockPair block : hot) {
+      assertTrue("Lost hot block " + block.getBlockName(),
+          cache.containsBlock(block.getBlockName()));
+    }
+    cache.shutdown();
+  }
+
+  @Test
+  public void testInMemoryBlocksSkipTheWindow() throws Exception {
+    TinyLfuBlockCache cache = createCache(100);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 2);
+    cache.cacheBlock(blocks[0].getBlockName(), blocks[0].getBlock(), true, false);
+    assertEquals(weightOf(blocks[0]), cache.getProtectedSize());
+    cache.cacheBlock(blocks[1].getBlockName(), blocks[1].getBlock(), false, false);
+    assertEquals(weightOf(blocks[0]), cache.getProtectedSize());
+    for (CachedBlock cb : cache) {
+      if (cb.getFilename().equals(blocks[0].getBlockName().getHfileName())) {
+        assertEquals(BlockPriority.MEMORY, cb.getBlockPriority());
+      } else {
+        assertEquals(BlockPriority.SINGLE, cb.getBlockPriority());
+      }
+    }
+    cache.shutdown();
+  }
+
+  @Test
+  public void testVictimCache() throws Exception {
+    TinyLfuBlockCache cache = createCache(10);
+    TinyLfuBlockCache victim = createCache(100);
+    cache.setVictimCache(victim);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(BLOCK_SIZE, 50);
+    for (HFileBlockPair block : blocks) {
+      cache.cacheBlock(block.getBlockName(), block.getBlock());
+    }
+    assertEquals(blocks.length, cache.getBlockCount() + victim.getBlockCount());
+    for (HFileBlockPair block : blocks) {
+      Cacheable cached = cache.getBlock(block.getBlockName(), false, false, true);
+      assertEquals(block.getBlock(), cached);
+      // Whichever cache lent it takes it back
+      cache.returnBlock(block.getBlockName(), cached);
+      assertEquals(0, cache.getRefCount(block.getBlockName()));
+      assertEquals(0, victim.getRefCount(block.getBlockName()));
+    }
+    // Evicting by file reaches into the victim cache too
+    assertTrue(cache.evictBlocksByHfileName(blocks[0].getBlockName().getHfileName()) > 0);
+    assertNull(cache.getBlock(blocks[0].getBlockName(), false, false, true));
+    cache.shutdown();
+  }
+}
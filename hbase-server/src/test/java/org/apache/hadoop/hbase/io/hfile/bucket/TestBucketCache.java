@@ -20,11 +20,14 @@ package org.apache.hadoop.hbase.io.hfile.bucket;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -277,6 +280,84 @@ public class TestBucketCache {
     TEST_UTIL.cleanupTestDir();
   }
 
+  @Test
+  public void testRetrieveAfterCrash() throws Exception {
+    HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+    Path testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+    String cachePath = testDir + "/bucket.cache";
+
+    BucketCache bucketCache = new BucketCache("file:" + cachePath, capacitySize,
+        constructedBlockSize, constructedBlockSizes, writeThreads, writerQLen, testDir
+            + "/bucket.persistence");
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(constructedBlockSize, 4);
+    cacheAndWaitUntilFlushedToBucket(bucketCache, blocks[0].getBlockName(), blocks[0].getBlock());
+    cacheAndWaitUntilFlushedToBucket(bucketCache, blocks[1].getBlockName(), blocks[1].getBlock());
+    // Everything after the checkpoint is only in the journal
+    bucketCache.checkpoint();
+    cacheAndWaitUntilFlushedToBucket(bucketCache, blocks[2].getBlockName(), blocks[2].getBlock());
+    assertTrue(bucketCache.evictBlock(blocks[1].getBlockName()));
+    cacheAndWaitUntilFlushedToBucket(bucketCache, blocks[3].getBlockName(), blocks[3].getBlock());
+    long usedSize = bucketCache.getAllocator().getUsedSize();
+    long overwrittenOffset = bucketCache.backingMap.get(blocks[2].getBlockName()).offset();
+    // Die without persisting anything on the way out
+    bucketCache.stopWriterThreads();
+
+    // Simulate the slot of one block being rewritten after its journal record
+    try (RandomAccessFile raf = new RandomAccessFile(cachePath, "rw")) {
+      raf.seek(overwrittenOffset);
+      raf.write(new byte[constructedBlockSize]);
+    }
+
+    bucketCache = new BucketCache("file:" + cachePath, capacitySize,
+        constructedBlockSize, constructedBlockSizes, writeThreads, writerQLen, testDir
+            + "/bucket.persistence");
+    assertEquals(usedSize, bucketCache.getAllocator().getUsedSize());
+    assertEquals(3, bucketCache.backingMap.size());
+    assertEquals(3, bucketCache.getBlockCount());
+    assertFalse(bucketCache.backingMap.containsKey(blocks[1].getBlockName()));
+    assertEquals(blocks[0].getBlock(),
+        bucketCache.getBlock(blocks[0].getBlockName(), false, false, false));
+    assertEquals(blocks[3].getBlock(),
+        bucketCache.getBlock(blocks[3].getBlockName(), false, false, false));
+    // The rewritten block fails verification and is dropped
+    assertNull(bucketCache.getBlock(blocks[2].getBlockName(), false, false, false));
+    assertFalse(bucketCache.backingMap.containsKey(blocks[2].getBlockName()));
+    assertEquals(2, bucketCache.getBlockCount());
+    bucketCache.shutdown();
+
+    TEST_UTIL.cleanupTestDir();
+  }
+
+  @Test
+  public void testStaleJournalNotReplayed() throws Exception {
+    HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+    Path testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+    String persistencePath = testDir + "/bucket.persistence";
+
+    BucketCache bucketCache = new BucketCache("file:" + testDir + "/bucket.cache", capacitySize,
+        constructedBlockSize, constructedBlockSizes, writeThreads, writerQLen, persistencePath);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(constructedBlockSize, 1);
+    bucketCache.checkpoint();
+    cacheAndWaitUntilFlushedToBucket(bucketCache, blocks[0].getBlockName(), blocks[0].getBlock());
+    bucketCache.stopWriterThreads();
+    // What a journal failure leaves behind if the journals are not dropped with the snapshot
+    assertTrue(new File(persistencePath).delete());
+
+    bucketCache = new BucketCache("file:" + testDir + "/bucket.cache", capacitySize,
+        constructedBlockSize, constructedBlockSizes, writeThreads, writerQLen, persistencePath);
+    assertEquals(0, bucketCache.backingMap.size());
+    assertEquals(0, bucketCache.getAllocator().getUsedSize());
+    File[] journals = new File(testDir.toString())
+        .listFiles((dir, name) -> name.startsWith("bucket.persistence.journal."));
+    bucketCache.shutdown();
+    // Only the journal started on top of the empty snapshot
+    assertEquals(1, journals.length);
+
+    TEST_UTIL.cleanupTestDir();
+  }
+
   @Test
   public void testBucketAllocatorLargeBuckets() throws BucketAllocatorException {
     long availableSpace = 20 * 1024L * 1024 * 1024;
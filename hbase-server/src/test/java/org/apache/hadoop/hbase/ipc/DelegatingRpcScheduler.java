@@ -59,11 +59,21 @@ public class DelegatingRpcScheduler extends RpcScheduler {
     return delegate.getActiveRpcHandlerCount();
   }
 
+  @Override
+  public int getGeneralHandlerOccupancy() {
+    return delegate.getGeneralHandlerOccupancy();
+  }
+
   @Override
   public boolean dispatch(CallRunner task) throws IOException, InterruptedException {
     return delegate.dispatch(task);
   }
 
+  @Override
+  public void setCallWeigher(WeightedFairCallQueue.Weigher weigher) {
+    delegate.setCallWeigher(weigher);
+  }
+
   @Override
   public long getNumGeneralCallsDropped() {
     return delegate.getNumGeneralCallsDropped();
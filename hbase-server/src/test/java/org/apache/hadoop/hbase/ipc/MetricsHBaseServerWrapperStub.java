@@ -88,4 +88,24 @@ public class MetricsHBaseServerWrapperStub implements MetricsHBaseServerWrapper{
   public int getActiveScanRpcHandlerCount() {
     return 6;
   }
+
+  @Override
+  public int getNumEventLoops() {
+    return 2;
+  }
+
+  @Override
+  public long getEventLoopReadBytes(int eventLoop) {
+    return 100 + eventLoop;
+  }
+
+  @Override
+  public long getEventLoopWrittenBytes(int eventLoop) {
+    return 200 + eventLoop;
+  }
+
+  @Override
+  public int getEventLoopPendingTasks(int eventLoop) {
+    return 3;
+  }
 }
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.apache.hadoop.hbase.ipc.TestProtobufRpcServiceImpl.SERVICE;
+import static org.apache.hadoop.hbase.ipc.TestProtobufRpcServiceImpl.newBlockingStub;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.ipc.RpcServer.BlockingServiceAndInterface;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestProtos.EchoRequestProto;
+import org.apache.hadoop.hbase.shaded.ipc.protobuf.generated.TestRpcServiceProtos.TestProtobufRpcProto.BlockingInterface;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.JVM;
+import org.apache.hadoop.hbase.util.NettyEventLoopGroupConfig;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.collect.Lists;
+
+/**
+ * Runs echo calls over loopback against the {@link NettyRpcServer} with the different transports
+ * and allocators, and checks the per event loop metrics count their traffic. See
+ * NettyRpcServerBenchmark in hbase-benchmarks for the throughput.
+ */
+@RunWith(Parameterized.class)
+@Category({ RPCTests.class, SmallTests.class })
+public class TestNettyRpcServerTransport {
+
+  private static final int CALLS = 10;
+
+  @Parameters(name = "{index}: transport={0}, allocator={1}")
+  public static Collection<Object[]> parameters() {
+    List<Object[]> params = new ArrayList<>();
+    params.add(new Object[] { "nio", "default" });
+    params.add(new Object[] { "nio", "pooled" });
+    params.add(new Object[] { "nio", "unpooled" });
+    if (JVM.isLinux() && JVM.isAmd64()) {
+      params.add(new Object[] { "epoll", "default" });
+      params.add(new Object[] { "epoll", "pooled" });
+    }
+    return params;
+  }
+
+  @Parameter(0)
+  public String transport;
+
+  @Parameter(1)
+  public String allocator;
+
+  @Test
+  public void testEcho() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(RpcServerFactory.CUSTOM_RPC_SERVER_IMPL_CONF_KEY, NettyRpcServer.class.getName());
+    conf.setBoolean(NettyEventLoopGroupConfig.NATIVE_TRANSPORT_KEY, transport.equals("epoll"));
+    conf.setBoolean(NettyEventLoopGroupConfig.TCP_QUICKACK_KEY, true);
+    conf.setInt(NettyEventLoopGroupConfig.WORKER_COUNT_KEY, 2);
+    conf.set(NettyEventLoopGroupConfig.ALLOCATOR_KEY, allocator);
+    conf.setInt(NettyEventLoopGroupConfig.ALLOCATOR_PAGE_SIZE_KEY, 8192);
+    conf.setInt(NettyEventLoopGroupConfig.ALLOCATOR_MAX_ORDER_KEY, 9);
+    NettyRpcServer rpcServer = (NettyRpcServer) RpcServerFactory.createRpcServer(null,
+      "testRpcServer", Lists.newArrayList(new BlockingServiceAndInterface(SERVICE, null)),
+      new InetSocketAddress("localhost", 0), conf, new FifoRpcScheduler(conf, 1));
+    try (NettyRpcClient client = new NettyRpcClient(conf)) {
+      rpcServer.start();
+      BlockingInterface stub = newBlockingStub(client, rpcServer.getListenerAddress());
+      MetricsHBaseServerWrapper wrapper = new MetricsHBaseServerWrapperImpl(rpcServer);
+      assertEquals(2, wrapper.getNumEventLoops());
+      String message = "hello";
+      EchoRequestProto request = EchoRequestProto.newBuilder().setMessage(message).build();
+      for (int i = 0; i < CALLS; i++) {
+        assertEquals(message, stub.echo(null, request).getMessage());
+      }
+      long readBytes = 0;
+      long writtenBytes = 0;
+      for (int i = 0; i < wrapper.getNumEventLoops(); i++) {
+        readBytes += wrapper.getEventLoopReadBytes(i);
+        writtenBytes += wrapper.getEventLoopWrittenBytes(i);
+        assertTrue(wrapper.getEventLoopPendingTasks(i) >= 0);
+      }
+      // every call carries at least its message both ways, on top of the connection header
+      assertTrue("read " + readBytes, readBytes > CALLS * message.length());
+      assertTrue("written " + writtenBytes, writtenBytes > CALLS * message.length());
+
+      // the counters keep counting
+      assertEquals(message, stub.echo(null, request).getMessage());
+      long readAfter = 0;
+      long writtenAfter = 0;
+      for (int i = 0; i < wrapper.getNumEventLoops(); i++) {
+        readAfter += wrapper.getEventLoopReadBytes(i);
+        writtenAfter += wrapper.getEventLoopWrittenBytes(i);
+      }
+      assertTrue(readAfter > readBytes);
+      assertTrue(writtenAfter > writtenBytes);
+    } finally {
+      rpcServer.stop();
+    }
+  }
+}
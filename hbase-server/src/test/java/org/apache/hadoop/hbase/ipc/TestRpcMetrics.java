@@ -76,6 +76,9 @@ public class TestRpcMetrics {
     HELPER.assertGauge("numCallsInWriteQueue", 50, serverSource);
     HELPER.assertGauge("numCallsInReadQueue", 50, serverSource);
     HELPER.assertGauge("numCallsInScanQueue", 2, serverSource);
+    HELPER.assertCounter("eventLoop0ReadBytes", 100, serverSource);
+    HELPER.assertCounter("eventLoop1WrittenBytes", 201, serverSource);
+    HELPER.assertGauge("eventLoop1PendingTasks", 3, serverSource);
   }
 
   /**
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.codec.KeyValueCodec;
+import org.apache.hadoop.hbase.io.ByteBufferPool;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import org.apache.hadoop.hbase.shaded.io.netty.channel.DefaultEventLoop;
+import org.apache.hadoop.hbase.shaded.io.netty.channel.EventLoop;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ScanResponse;
+
+@Category({RPCTests.class, SmallTests.class})
+public class TestServerCall {
+
+  private static ByteBuffer toOffheap(KeyValue kv) {
+    ByteBuffer buf = ByteBuffer.allocateDirect(kv.getLength());
+    buf.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    return buf;
+  }
+
+  private static SimpleServerCall createCall() {
+    // Run the deferred callback right in done() unless the test is about where it runs
+    return createCall(Runnable::run);
+  }
+
+  private static SimpleServerCall createCall(Executor callbackExecutor) {
+    SimpleServerRpcConnection connection = Mockito.mock(SimpleServerRpcConnection.class);
+    connection.codec = new KeyValueCodec();
+    return new SimpleServerCall(1, null, null, null, null, null, connection, 0, null, null,
+        System.currentTimeMillis(), 0, new ByteBufferPool(1024, 10),
+        new CellBlockBuilder(HBaseConfiguration.create()), callbackExecutor, null, null);
+  }
+
+  private static Cell createBigOffheapCell() {
+    KeyValue kv = new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("f"), Bytes.toBytes("q"),
+        new byte[8 * 1024]);
+    return new ByteBufferKeyValue(toOffheap(kv), 0, kv.getLength());
+  }
+
+  private static byte[] toBytes(BufferChain response) {
+    byte[] bytes = new byte[response.size()];
+    int offset = 0;
+    for (ByteBuffer buf : response.getBuffers()) {
+      int length = buf.remaining();
+      buf.duplicate().get(bytes, offset, length);
+      offset += length;
+    }
+    return bytes;
+  }
+
+  /**
+   * The response of a scan refers to its big off heap cells, as those stay in their block until the
+   * shipped callback runs. So the callback, which lets the block go, waits for the response to be
+   * sent.
+   */
+  @Test
+  public void testCallbackRunsAfterReferencingResponseIsSent() throws IOException {
+    byte[] value = new byte[8 * 1024];
+    for (int i = 0; i < value.length; i++) {
+      value[i] = (byte) i;
+    }
+    KeyValue kv = new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("f"), Bytes.toBytes("q"),
+        value);
+    ByteBuffer block = toOffheap(kv);
+    Cell cell = new ByteBufferKeyValue(block, 0, kv.getLength());
+    AtomicInteger shipped = new AtomicInteger();
+    SimpleServerCall call = createCall();
+    call.setCallBack(() -> {
+      shipped.incrementAndGet();
+      // the block is free to be reused once shipped
+      for (int i = 0; i < block.capacity(); i++) {
+        block.put(i, (byte) 0xFF);
+      }
+    });
+    call.setResponse(ScanResponse.getDefaultInstance(),
+      CellUtil.createCellScanner(Arrays.asList(cell).iterator()), null, null);
+    // the response is built but not sent, so the block is still held
+    assertEquals(0, shipped.get());
+    assertTrue(Bytes.contains(toBytes(call.getResponse()), value));
+    call.done();
+    assertEquals(1, shipped.get());
+    // the response was sent from the block itself, which is why the callback had to wait
+    assertFalse(Bytes.contains(toBytes(call.getResponse()), value));
+    // done() runs the callback once only
+    call.done();
+    assertEquals(1, shipped.get());
+  }
+
+  /**
+   * done() runs on the transport thread that sent the response, a netty event loop here, while
+   * the shipped callback of a scan may read store files. So the callback is handed to the
+   * callback executor instead.
+   */
+  @Test
+  public void testDeferredCallbackDoesNotRunOnEventLoop() throws Exception {
+    EventLoop eventLoop = new DefaultEventLoop();
+    ExecutorService callbackExecutor = Executors.newSingleThreadExecutor();
+    try {
+      CompletableFuture<Boolean> ranInEventLoop = new CompletableFuture<>();
+      SimpleServerCall call = createCall(callbackExecutor);
+      call.setCallBack(() -> ranInEventLoop.complete(eventLoop.inEventLoop()));
+      call.setResponse(ScanResponse.getDefaultInstance(),
+        CellUtil.createCellScanner(Arrays.asList(createBigOffheapCell()).iterator()), null, null);
+      assertFalse(ranInEventLoop.isDone());
+      eventLoop.submit(call::done).get();
+      assertFalse(ranInEventLoop.get(10, TimeUnit.SECONDS));
+    } finally {
+      callbackExecutor.shutdownNow();
+      eventLoop.shutdownGracefully();
+    }
+  }
+
+  @Test
+  public void testCallbackRunsOnceCopyingResponseIsBuilt() throws IOException {
+    KeyValue kv = new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("f"), Bytes.toBytes("q"),
+        Bytes.toBytes("small"));
+    Cell cell = new ByteBufferKeyValue(toOffheap(kv), 0, kv.getLength());
+    AtomicInteger shipped = new AtomicInteger();
+    SimpleServerCall call = createCall();
+    call.setCallBack(shipped::incrementAndGet);
+    call.setResponse(ScanResponse.getDefaultInstance(),
+      CellUtil.createCellScanner(Arrays.asList(cell).iterator()), null, null);
+    // small cells are copied, so the block can go as soon as the response is built
+    assertEquals(1, shipped.get());
+    call.done();
+    assertEquals(1, shipped.get());
+  }
+}
@@ -53,6 +53,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CategoryBasedTimeout;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandlerImpl;
 import org.apache.hadoop.hbase.security.User;
@@ -350,6 +351,72 @@ public class TestSimpleRpcScheduler {
     }
   }
 
+  private static CallRunner mockCallTask(String methodName, Message param) {
+    CallRunner callTask = mock(CallRunner.class);
+    ServerCall call = mock(ServerCall.class);
+    call.param = param;
+    when(callTask.getRpcCall()).thenReturn(call);
+    when(call.getHeader()).thenReturn(RequestHeader.newBuilder().setMethodName(methodName).build());
+    when(call.getParam()).thenReturn(param);
+    when(call.getRequestUser()).thenReturn(Optional.empty());
+    return callTask;
+  }
+
+  @Test
+  public void testSmallCallQueues() throws Exception {
+    Configuration schedConf = HBaseConfiguration.create();
+    schedConf.setFloat(SmallCallRpcExecutor.CALL_QUEUE_SMALL_SHARE_CONF_KEY, 0.25f);
+
+    PriorityFunction priority = mock(PriorityFunction.class);
+    when(priority.getPriority(any(RequestHeader.class), any(Message.class),
+      any(User.class))).thenReturn(HConstants.NORMAL_QOS);
+
+    // 3 general handlers and 1 small call handler
+    RpcScheduler scheduler = new SimpleRpcScheduler(schedConf, 4, 1, 1, priority,
+                                                    HConstants.QOS_THRESHOLD);
+    try {
+      scheduler.start();
+
+      CallRunner scanCallTask =
+          mockCallTask("scan", ScanRequest.newBuilder().setScannerId(1).build());
+      CallRunner getCallTask = mockCallTask("get",
+        RequestConverter.buildGetRequest(Bytes.toBytes("region"), new Get(Bytes.toBytes("row"))));
+      ArrayList<Integer> work = new ArrayList<>();
+      doAnswerTaskExecution(scanCallTask, work, 1, 2000);
+      doAnswerTaskExecution(getCallTask, work, 2, 0);
+
+      // the scans keep all the general handlers busy, the get does not wait for them
+      for (int i = 0; i < 4; i++) {
+        scheduler.dispatch(scanCallTask);
+      }
+      Thread.sleep(100);
+      scheduler.dispatch(getCallTask);
+      Thread.sleep(500);
+      synchronized (work) {
+        assertEquals(4, work.size());
+        assertEquals(Integer.valueOf(2), work.get(3));
+      }
+      assertEquals(1, scheduler.getGeneralQueueLength());
+      waitUntilQueueEmpty((SimpleRpcScheduler) scheduler);
+
+      // the general handlers run the gets when idle
+      CallRunner slowGetCallTask = mockCallTask("get",
+        RequestConverter.buildGetRequest(Bytes.toBytes("region"), new Get(Bytes.toBytes("row"))));
+      ArrayList<Integer> gets = new ArrayList<>();
+      doAnswerTaskExecution(slowGetCallTask, gets, 3, 2000);
+      Thread.sleep(2000);
+      for (int i = 0; i < 4; i++) {
+        scheduler.dispatch(slowGetCallTask);
+      }
+      Thread.sleep(500);
+      synchronized (gets) {
+        assertEquals(4, gets.size());
+      }
+    } finally {
+      scheduler.stop();
+    }
+  }
+
   private void doAnswerTaskExecution(final CallRunner callTask,
       final ArrayList<Integer> results, final int value, final int sleepInterval) {
     callTask.setStatus(new MonitoredRPCHandlerImpl());
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hadoop.hbase.shaded.com.google.protobuf.Message;
+import org.apache.hadoop.hbase.shaded.protobuf.RequestConverter;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ScanRequest;
+
+@Category({RPCTests.class, SmallTests.class})
+public class TestWeightedFairCallQueue {
+
+  private static CallRunner createCall(String userName, Message param) {
+    User user = mock(User.class);
+    when(user.getShortName()).thenReturn(userName);
+    RpcCall call = mock(RpcCall.class);
+    when(call.getRequestUser()).thenReturn(Optional.of(user));
+    when(call.getParam()).thenReturn(param);
+    CallRunner task = mock(CallRunner.class);
+    when(task.getRpcCall()).thenReturn(call);
+    return task;
+  }
+
+  private static String userOf(CallRunner task) {
+    return task.getRpcCall().getRequestUser().get().getShortName();
+  }
+
+  @Test
+  public void testTenantsTakeTurns() throws InterruptedException {
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(100, "user");
+    for (int i = 0; i < 10; i++) {
+      assertTrue(queue.offer(createCall("heavy", null)));
+    }
+    assertTrue(queue.offer(createCall("light", null)));
+    assertTrue(queue.offer(createCall("light", null)));
+    assertEquals(12, queue.size());
+    assertEquals(2, queue.getActiveTenantCount());
+
+    // the light tenant does not wait behind the whole backlog of the heavy one
+    String[] expected = { "heavy", "light", "heavy", "light", "heavy", "heavy" };
+    for (String user : expected) {
+      assertEquals(user, userOf(queue.take()));
+    }
+    assertEquals(1, queue.getActiveTenantCount());
+  }
+
+  @Test
+  public void testWeightedTurns() throws InterruptedException {
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(100, "user");
+    queue.setWeigher((type, call) -> userOf(call).equals("gold") ? 3 : 1);
+    for (int i = 0; i < 8; i++) {
+      queue.offer(createCall("bronze", null));
+      queue.offer(createCall("gold", null));
+    }
+    String[] expected = { "bronze", "gold", "gold", "gold", "bronze", "gold", "gold", "gold",
+        "bronze" };
+    for (String user : expected) {
+      assertEquals(user, userOf(queue.take()));
+    }
+  }
+
+  @Test
+  public void testWeigherRunsOutsideLock() throws Exception {
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(100, "user");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // another thread can use the queue while a weight is being read
+      queue.setWeigher((type, call) -> {
+        try {
+          return executor.submit(() -> queue.size()).get(10, TimeUnit.SECONDS) + 1;
+        } catch (Exception e) {
+          throw new AssertionError("the queue is locked while weighing a tenant", e);
+        }
+      });
+      assertTrue(queue.offer(createCall("a", null)));
+      assertTrue(queue.offer(createCall("a", null)));
+      assertTrue(queue.offer(createCall("b", null)));
+      assertEquals(3, queue.size());
+      // b was weighed with two calls waiting
+      String[] expected = { "a", "b", "b", "a" };
+      assertTrue(queue.offer(createCall("b", null)));
+      for (String user : expected) {
+        assertEquals(user, userOf(queue.take()));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCapacity() {
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(3, "user");
+    assertTrue(queue.offer(createCall("a", null)));
+    assertTrue(queue.offer(createCall("b", null)));
+    assertTrue(queue.offer(createCall("c", null)));
+    assertFalse(queue.offer(createCall("d", null)));
+    assertEquals(0, queue.remainingCapacity());
+    queue.poll();
+    queue.poll();
+    queue.poll();
+    assertNull(queue.poll());
+    assertEquals(0, queue.getActiveTenantCount());
+  }
+
+  @Test
+  public void testTableTenants() throws Exception {
+    WeightedFairCallQueue queue = new WeightedFairCallQueue(100, "table");
+    HRegionInfo first = new HRegionInfo(TableName.valueOf("first"));
+    HRegionInfo second = new HRegionInfo(TableName.valueOf("second"));
+    Message getFirst = RequestConverter.buildGetRequest(first.getRegionName(),
+      new Get(new byte[] { 1 }));
+    Message getSecond = RequestConverter.buildGetRequest(second.getRegionName(),
+      new Get(new byte[] { 1 }));
+    assertEquals(first.getTable(), WeightedFairCallQueue.getTable(createCall("u", getFirst)
+        .getRpcCall()));
+
+    queue.offer(createCall("u", getFirst));
+    queue.offer(createCall("u", getSecond));
+    assertEquals(2, queue.getActiveTenantCount());
+    // the next calls of a scanner name no region, they are shared by user
+    queue.offer(createCall("u", ScanRequest.newBuilder().setScannerId(1).build()));
+    assertEquals(3, queue.getActiveTenantCount());
+  }
+}
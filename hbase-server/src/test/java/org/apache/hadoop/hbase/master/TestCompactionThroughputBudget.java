@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.master;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.testclassification.MasterTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.RegionServerStatusProtos.CompactionDemand;
+
+@Category({ MasterTests.class, SmallTests.class })
+public class TestCompactionThroughputBudget {
+
+  private static final ServerName SERVER1 = ServerName.valueOf("server1", 16020, 1);
+
+  private static final ServerName SERVER2 = ServerName.valueOf("server2", 16020, 1);
+
+  private static final ServerName SERVER3 = ServerName.valueOf("server3", 16020, 1);
+
+  private static final CompactionDemand IDLE = CompactionDemand.newBuilder().build();
+
+  private final ManualEnvironmentEdge edge = new ManualEnvironmentEdge();
+
+  private CompactionThroughputBudget budget;
+
+  @Before
+  public void setUp() {
+    edge.setValue(1000000);
+    EnvironmentEdgeManager.injectEdge(edge);
+    Configuration conf = HBaseConfiguration.create();
+    conf.setLong(CompactionThroughputBudget.CLUSTER_THROUGHPUT_KEY, 100);
+    conf.setLong(CompactionThroughputBudget.MIN_SERVER_THROUGHPUT_KEY, 10);
+    conf.setInt("hbase.regionserver.msginterval", 1000);
+    budget = new CompactionThroughputBudget(conf);
+  }
+
+  @After
+  public void tearDown() {
+    EnvironmentEdgeManager.reset();
+  }
+
+  private static CompactionDemand demand(int compactions, int readAmplification,
+      double pressure) {
+    return CompactionDemand.newBuilder().setQueuedCompactions(compactions)
+        .setReadAmplification(readAmplification).setCompactionPressure(pressure).build();
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    assertFalse(new CompactionThroughputBudget(HBaseConfiguration.create()).isEnabled());
+    assertTrue(budget.isEnabled());
+  }
+
+  @Test
+  public void testIdleServersShareTheBudget() {
+    budget.grant(SERVER1, IDLE);
+    budget.grant(SERVER2, IDLE);
+    edge.incValue(1000);
+    assertEquals(50, budget.grant(SERVER1, IDLE));
+    assertEquals(50, budget.grant(SERVER2, IDLE));
+  }
+
+  @Test
+  public void testWorstReadAmplificationFirst() {
+    budget.grant(SERVER1, IDLE);
+    budget.grant(SERVER2, demand(1, 3, 0));
+    budget.grant(SERVER3, demand(1, 1, 0));
+    edge.incValue(1000);
+    // 30 bytes/s for the minimums, and the rest split 3 to 1
+    assertEquals(10, budget.grant(SERVER1, IDLE));
+    assertEquals(10 + 52, budget.grant(SERVER2, demand(1, 3, 0)));
+    assertEquals(10 + 17, budget.grant(SERVER3, demand(1, 1, 0)));
+  }
+
+  @Test
+  public void testCompactionPressure() {
+    budget.grant(SERVER1, demand(2, 2, 1.0));
+    budget.grant(SERVER2, demand(2, 2, 0));
+    edge.incValue(1000);
+    // 20 bytes/s for the minimums, and the rest split 2 to 1
+    assertEquals(10 + 53, budget.grant(SERVER1, demand(2, 2, 1.0)));
+    assertEquals(10 + 26, budget.grant(SERVER2, demand(2, 2, 0)));
+  }
+
+  @Test
+  public void testSilentServersAreForgotten() {
+    budget.grant(SERVER1, demand(1, 1, 0));
+    budget.grant(SERVER2, demand(1, 1, 0));
+    edge.incValue(1000);
+    assertEquals(10 + 40, budget.grant(SERVER1, demand(1, 1, 0)));
+    // SERVER2 died
+    edge.incValue(20000);
+    assertEquals(100, budget.grant(SERVER1, demand(1, 1, 0)));
+  }
+
+  @Test
+  public void testGrantsStayWithinTheBudget() {
+    budget.grant(SERVER1, demand(1, 1, 0));
+    budget.grant(SERVER2, demand(1, 1, 0));
+    edge.incValue(1000);
+    assertEquals(10 + 40, budget.grant(SERVER1, demand(1, 1, 0)));
+    assertEquals(10 + 40, budget.grant(SERVER2, demand(1, 1, 0)));
+    // SERVER1 keeps its share until it reports again
+    assertEquals(10 + 40, budget.grant(SERVER2, demand(100, 1, 0)));
+    assertEquals(10, budget.grant(SERVER1, demand(1, 1, 0)));
+    assertEquals(10 + 79, budget.grant(SERVER2, demand(100, 1, 0)));
+  }
+}
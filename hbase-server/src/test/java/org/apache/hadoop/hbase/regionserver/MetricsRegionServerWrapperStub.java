@@ -65,6 +65,11 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 1025;
   }
 
+  @Override
+  public long getMemStoreHeapSize() {
+    return 1200;
+  }
+
   @Override
   public long getStoreFileSize() {
     return 1900;
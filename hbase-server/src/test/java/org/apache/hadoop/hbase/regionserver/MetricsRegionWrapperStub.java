@@ -162,4 +162,34 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
   public long getMaxFlushQueueSize() {
     return 6;
   }
+
+  @Override
+  public long getNumInMemoryFlattens() {
+    return 3;
+  }
+
+  @Override
+  public long getNumInMemoryMerges() {
+    return 2;
+  }
+
+  @Override
+  public long getNumInMemoryCompactions() {
+    return 1;
+  }
+
+  @Override
+  public long getInMemoryCompactionEstimatedSavings() {
+    return 1024;
+  }
+
+  @Override
+  public long[] getLevelStoreFileCounts() {
+    return new long[] { 3, 2 };
+  }
+
+  @Override
+  public long[] getLevelStoreFileSizes() {
+    return new long[] { 300, 2048 };
+  }
 }
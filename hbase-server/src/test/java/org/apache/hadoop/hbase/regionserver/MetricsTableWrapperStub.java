@@ -56,6 +56,16 @@ public class MetricsTableWrapperStub implements MetricsTableWrapperAggregate {
     return 3000;
   }
 
+  @Override
+  public long getPrefetchRequestedBytes(String table) {
+    return 4000;
+  }
+
+  @Override
+  public long getPrefetchCompletedBytes(String table) {
+    return 1000;
+  }
+
   public String getTableName() {
     return tableName;
   }
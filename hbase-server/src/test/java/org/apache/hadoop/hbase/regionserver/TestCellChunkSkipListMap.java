@@ -0,0 +1,300 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestCellChunkSkipListMap {
+
+  // small chunks, so that the nodes and the cells take many of them
+  private static final int CHUNK_SIZE = 4 * 1024;
+  private static final int NUM_OF_CELLS = 1000;
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  private final Configuration conf = new Configuration();
+  private MemStoreLAB mslab;
+  private CellChunkSkipListMap map;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    ChunkCreator.initialize(CHUNK_SIZE, false, 0, 0, 0, null);
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue(CellChunkSkipListMap.isSupported());
+    conf.setInt(MemStoreLAB.CHUNK_SIZE_KEY, CHUNK_SIZE);
+    conf.setInt(MemStoreLAB.MAX_ALLOC_KEY, CHUNK_SIZE / 4);
+    // the chunks of the cells are to be found by their id
+    conf.set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
+        String.valueOf(CompactingMemStore.IndexType.CHUNK_MAP));
+    mslab = new MemStoreLABImpl(conf);
+    map = new CellChunkSkipListMap(CellComparator.COMPARATOR, mslab);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (mslab != null) {
+      mslab.close();
+    }
+  }
+
+  private Cell createCell(int row, String value) {
+    KeyValue kv = new KeyValue(Bytes.toBytes(String.format("row%06d", row)), FAMILY, QUALIFIER,
+        1, Bytes.toBytes(value));
+    return mslab.copyCellInto(kv);
+  }
+
+  private void put(Cell cell) {
+    map.put(cell, cell);
+  }
+
+  private static void assertCell(int row, Cell cell) {
+    assertEquals(String.format("row%06d", row), Bytes.toString(CellUtil.cloneRow(cell)));
+  }
+
+  private void putShuffled(int numOfCells) {
+    List<Integer> rows = new ArrayList<>(numOfCells);
+    for (int i = 0; i < numOfCells; i++) {
+      rows.add(i);
+    }
+    Collections.shuffle(rows);
+    for (int row : rows) {
+      put(createCell(row, "v" + row));
+    }
+  }
+
+  @Test
+  public void testPutAndGet() {
+    assertTrue(map.isEmpty());
+    assertNull(map.firstKey());
+    putShuffled(NUM_OF_CELLS);
+    assertEquals(NUM_OF_CELLS, map.size());
+    assertFalse(map.isEmpty());
+
+    int row = 0;
+    for (Cell cell : map.values()) {
+      assertCell(row, cell);
+      assertEquals("v" + row, Bytes.toString(CellUtil.cloneValue(cell)));
+      row++;
+    }
+    assertEquals(NUM_OF_CELLS, row);
+
+    Cell key = createCell(NUM_OF_CELLS / 2, "");
+    assertTrue(map.containsKey(key));
+    assertEquals("v" + NUM_OF_CELLS / 2, Bytes.toString(CellUtil.cloneValue(map.get(key))));
+    Cell missing = createCell(NUM_OF_CELLS, "");
+    assertFalse(map.containsKey(missing));
+    assertNull(map.get(missing));
+
+    assertCell(0, map.firstKey());
+    assertCell(NUM_OF_CELLS - 1, map.lastKey());
+    assertCell(0, map.firstEntry().getValue());
+    assertCell(NUM_OF_CELLS - 1, map.lastEntry().getValue());
+  }
+
+  @Test
+  public void testCellNotInChunk() {
+    KeyValue kv = new KeyValue(Bytes.toBytes("row"), FAMILY, QUALIFIER, 1, Bytes.toBytes("v"));
+    try {
+      map.put(kv, kv);
+      fail("A cell that is not in a chunk cannot be indexed");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testReplace() {
+    putShuffled(10);
+    Cell cell = createCell(5, "new");
+    Cell replaced = map.put(cell, cell);
+    assertCell(5, replaced);
+    assertEquals("v5", Bytes.toString(CellUtil.cloneValue(replaced)));
+    assertEquals(10, map.size());
+    assertEquals("new", Bytes.toString(CellUtil.cloneValue(map.get(cell))));
+
+    int row = 0;
+    for (Cell c : map.values()) {
+      assertCell(row, c);
+      row++;
+    }
+    assertEquals(10, row);
+    // the replaced node is skipped backwards too
+    assertCell(4, map.lowerKey(cell));
+    assertEquals("new", Bytes.toString(CellUtil.cloneValue(map.floorKey(cell))));
+    assertEquals("new", Bytes.toString(CellUtil.cloneValue(map.lowerKey(createCell(6, "")))));
+    assertEquals("new",
+        Bytes.toString(CellUtil.cloneValue(map.descendingMap().higherKey(createCell(6, "")))));
+  }
+
+  @Test
+  public void testRemove() {
+    putShuffled(10);
+    Cell removed = map.remove(createCell(3, ""));
+    assertCell(3, removed);
+    assertNull(map.remove(createCell(3, "")));
+    assertNull(map.get(createCell(3, "")));
+    assertEquals(9, map.size());
+
+    // remove the first and the last cell through the iterator
+    Iterator<Cell> it = map.values().iterator();
+    while (it.hasNext()) {
+      Cell cell = it.next();
+      if (Bytes.toString(CellUtil.cloneRow(cell)).endsWith("0")
+          || Bytes.toString(CellUtil.cloneRow(cell)).endsWith("9")) {
+        it.remove();
+      }
+    }
+    assertEquals(7, map.size());
+    assertCell(1, map.firstKey());
+    assertCell(8, map.lastKey());
+    int[] expected = { 1, 2, 4, 5, 6, 7, 8 };
+    int i = 0;
+    for (Cell cell : map.values()) {
+      assertCell(expected[i++], cell);
+    }
+    assertEquals(expected.length, i);
+    // a removed key is found in neither direction
+    assertCell(2, map.lowerKey(createCell(3, "")));
+    assertCell(4, map.higherKey(createCell(3, "")));
+    assertCell(2, map.floorKey(createCell(3, "")));
+    assertCell(4, map.ceilingKey(createCell(3, "")));
+  }
+
+  @Test
+  public void testSubMaps() {
+    putShuffled(10);
+    Cell three = createCell(3, "");
+    Cell seven = createCell(7, "");
+
+    NavigableMap<Cell, Cell> head = map.headMap(three, false);
+    assertEquals(3, head.size());
+    assertCell(0, head.firstKey());
+    assertCell(2, head.lastKey());
+    assertNull(head.get(three));
+    assertEquals(4, map.headMap(three, true).size());
+
+    NavigableMap<Cell, Cell> tail = map.tailMap(seven, true);
+    assertEquals(3, tail.size());
+    assertCell(7, tail.firstKey());
+    assertCell(9, tail.lastKey());
+    assertEquals(2, map.tailMap(seven, false).size());
+
+    NavigableMap<Cell, Cell> sub = map.subMap(three, true, seven, false);
+    assertEquals(4, sub.size());
+    assertCell(3, sub.firstKey());
+    assertCell(6, sub.lastKey());
+    assertNull(sub.higherKey(createCell(6, "")));
+    assertCell(3, sub.ceilingKey(createCell(0, "")));
+    // a sub-map of a sub-map stays within the bounds of both
+    assertEquals(2, sub.tailMap(createCell(5, ""), true).size());
+    assertEquals(4, sub.headMap(createCell(9, ""), true).size());
+
+    NavigableMap<Cell, Cell> desc = map.descendingMap();
+    assertEquals(10, desc.size());
+    assertCell(9, desc.firstKey());
+    assertCell(0, desc.lastKey());
+    assertCell(6, desc.higherKey(seven));
+    assertCell(8, desc.lowerKey(seven));
+    int row = 9;
+    for (Cell cell : desc.values()) {
+      assertCell(row--, cell);
+    }
+    assertEquals(-1, row);
+
+    NavigableMap<Cell, Cell> descSub = sub.descendingMap();
+    row = 6;
+    for (Cell cell : descSub.values()) {
+      assertCell(row--, cell);
+    }
+    assertEquals(2, row);
+    // in a descending map the head is made of the greater cells
+    assertEquals(2, desc.headMap(seven, false).size());
+    assertCell(9, desc.headMap(seven, false).firstKey());
+    assertEquals(7, desc.tailMap(seven, false).size());
+    assertCell(6, desc.tailMap(seven, false).firstKey());
+
+    // the sub-maps share the cells of the map
+    map.remove(createCell(4, ""));
+    assertEquals(3, sub.size());
+    assertEquals(2, descSub.tailMap(createCell(5, ""), true).size());
+    assertNull(descSub.get(createCell(4, "")));
+  }
+
+  @Test
+  public void testConcurrentPuts() throws Exception {
+    final int numOfThreads = 4;
+    final int cellsPerThread = NUM_OF_CELLS * 10;
+    Thread[] threads = new Thread[numOfThreads];
+    for (int t = 0; t < numOfThreads; t++) {
+      final int first = t;
+      threads[t] = new Thread(() -> {
+        // the threads interleave their rows, so that they link nodes next to each other
+        for (int i = 0; i < cellsPerThread; i++) {
+          put(createCell(i * numOfThreads + first, "v"));
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numOfThreads * cellsPerThread, map.size());
+    int row = 0;
+    for (Cell cell : map.values()) {
+      assertCell(row++, cell);
+    }
+    assertEquals(numOfThreads * cellsPerThread, row);
+    for (int i = 0; i < numOfThreads * cellsPerThread; i += 97) {
+      assertCell(i, map.get(createCell(i, "")));
+    }
+  }
+}
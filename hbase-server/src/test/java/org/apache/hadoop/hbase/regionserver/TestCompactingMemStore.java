@@ -74,7 +74,11 @@ public class TestCompactingMemStore extends TestDefaultMemStore {
   @Before
   public void setUp() throws Exception {
     compactingSetUp();
-    this.memstore = new CompactingMemStore(HBaseConfiguration.create(), CellComparator.COMPARATOR,
+    Configuration conf = HBaseConfiguration.create();
+    // the expected heap sizes below are those of CellArrayMap segments
+    conf.set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
+        String.valueOf(CompactingMemStore.IndexType.ARRAY_MAP));
+    this.memstore = new CompactingMemStore(conf, CellComparator.COMPARATOR,
         store, regionServicesForStores, MemoryCompactionPolicy.EAGER);
   }
 
@@ -602,8 +606,9 @@ public class TestCompactingMemStore extends TestDefaultMemStore {
     // totalCellsLen should remain the same
     long oneCellOnCCMHeapSize =
         ClassSize.CELL_CHUNK_MAP_ENTRY + ClassSize.align(KeyValueUtil.length(kv));
-    totalHeapSize = MutableSegment.DEEP_OVERHEAD + CellChunkImmutableSegment.DEEP_OVERHEAD_CCM
-        + numOfCells * oneCellOnCCMHeapSize;
+    // the new active segment keeps its skip list in MSLAB chunks, as CHUNK_MAP is set now
+    totalHeapSize = CellChunkSkipListMutableSegment.DEEP_OVERHEAD_CCSLM
+        + CellChunkImmutableSegment.DEEP_OVERHEAD_CCM + numOfCells * oneCellOnCCMHeapSize;
 
     assertEquals(totalCellsLen, regionServicesForStores.getMemStoreSize());
     assertEquals(totalHeapSize, ((CompactingMemStore)memstore).heapSize());
@@ -793,6 +798,45 @@ public class TestCompactingMemStore extends TestDefaultMemStore {
     memstore.clearSnapshot(snapshot.getId());
   }
 
+  @Test
+  public void testAdaptiveCompaction() throws IOException {
+    MemoryCompactionPolicy compactionType = MemoryCompactionPolicy.ADAPTIVE;
+    memstore.getConfiguration()
+        .set(CompactingMemStore.COMPACTING_MEMSTORE_TYPE_KEY, String.valueOf(compactionType));
+    ((CompactingMemStore)memstore).initiateType(compactionType);
+
+    // new keys only, nothing to eliminate, so the single segment is just flattened
+    String[] keys1 = { "A", "B", "C", "D" };
+    addRowsByKeys(memstore, keys1);
+    ((CompactingMemStore)memstore).flushInMemory();
+    assertEquals(1, region.inMemoryFlattens.sum());
+    assertEquals(0, region.inMemoryCompactions.sum());
+
+    // all keys are written again, half of the cells in the pipeline are now older versions
+    addRowsByKeys(memstore, keys1);
+    ((CompactingMemStore)memstore).flushInMemory();
+    assertEquals(1, region.inMemoryCompactions.sum());
+    assertTrue(region.inMemoryCompactionEstimatedSavings.sum() > 0);
+    int counter = 0;
+    for (Segment s : memstore.getSegments()) {
+      counter += s.getCellsCount();
+    }
+    assertEquals(4, counter);
+
+    // new keys again, the two segments are merged instead of compacted
+    String[] keys2 = { "E", "F", "G", "H" };
+    addRowsByKeys(memstore, keys2);
+    ((CompactingMemStore)memstore).flushInMemory();
+    assertEquals(1, region.inMemoryMerges.sum());
+    assertEquals(1, region.inMemoryCompactions.sum());
+    assertEquals(1, ((CompactingMemStore)memstore).getImmutableSegments().getNumOfSegments());
+    counter = 0;
+    for (Segment s : memstore.getSegments()) {
+      counter += s.getCellsCount();
+    }
+    assertEquals(8, counter);
+  }
+
   private int addRowsByKeys(final AbstractMemStore hmc, String[] keys) {
     byte[] fam = Bytes.toBytes("testfamily");
     byte[] qf = Bytes.toBytes("testqualifier");
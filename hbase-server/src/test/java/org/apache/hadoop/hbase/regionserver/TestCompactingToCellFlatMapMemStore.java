@@ -74,6 +74,9 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     // set memstore to do data compaction
     conf.set(CompactingMemStore.COMPACTING_MEMSTORE_TYPE_KEY,
         String.valueOf(MemoryCompactionPolicy.EAGER));
+    conf.set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
+        String.valueOf(toCellChunkMap ? CompactingMemStore.IndexType.CHUNK_MAP
+            : CompactingMemStore.IndexType.ARRAY_MAP));
 
     this.memstore =
         new CompactingMemStore(conf, CellComparator.COMPARATOR, store,
@@ -97,7 +100,7 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     long totalCellsLen = addRowsByKeys(memstore, keys1);
     long cellBeforeFlushSize = cellBeforeFlushSize();
     long cellAfterFlushSize  = cellAfterFlushSize();
-    long totalHeapSize = MutableSegment.DEEP_OVERHEAD + 4 * cellBeforeFlushSize;
+    long totalHeapSize = activeOverhead() + 4 * cellBeforeFlushSize;
 
     assertEquals(totalCellsLen, regionServicesForStores.getMemStoreSize());
     assertEquals(totalHeapSize, ((CompactingMemStore)memstore).heapSize());
@@ -111,7 +114,7 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     assertEquals(totalCellsLen, regionServicesForStores.getMemStoreSize());
 
     totalHeapSize =
-        3 * cellAfterFlushSize + MutableSegment.DEEP_OVERHEAD
+        3 * cellAfterFlushSize + activeOverhead()
             + (toCellChunkMap ?
             CellChunkImmutableSegment.DEEP_OVERHEAD_CCM :
             CellArrayImmutableSegment.DEEP_OVERHEAD_CAM);
@@ -143,7 +146,7 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     long totalCellsLen1 = addRowsByKeys(memstore, keys1);     // INSERT 4
     long cellBeforeFlushSize = cellBeforeFlushSize();
     long cellAfterFlushSize = cellAfterFlushSize();
-    long totalHeapSize1 = MutableSegment.DEEP_OVERHEAD + 4 * cellBeforeFlushSize;
+    long totalHeapSize1 = activeOverhead() + 4 * cellBeforeFlushSize;
     assertEquals(totalCellsLen1, regionServicesForStores.getMemStoreSize());
     assertEquals(totalHeapSize1, ((CompactingMemStore) memstore).heapSize());
 
@@ -157,7 +160,7 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     // One cell is duplicated and the compaction will remove it. All cells of same size so adjusting
     // totalCellsLen
     totalCellsLen1 = (totalCellsLen1 * 3) / 4;
-    totalHeapSize1 = 3 * cellAfterFlushSize + MutableSegment.DEEP_OVERHEAD
+    totalHeapSize1 = 3 * cellAfterFlushSize + activeOverhead()
         + (toCellChunkMap ?
         CellChunkImmutableSegment.DEEP_OVERHEAD_CCM :
         CellArrayImmutableSegment.DEEP_OVERHEAD_CAM);
@@ -205,7 +208,7 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     long totalCellsLen1 = addRowsByKeys(memstore, keys1);
     long cellBeforeFlushSize = cellBeforeFlushSize();
     long cellAfterFlushSize = cellAfterFlushSize();
-    long totalHeapSize1 = MutableSegment.DEEP_OVERHEAD + 4 * cellBeforeFlushSize;
+    long totalHeapSize1 = activeOverhead() + 4 * cellBeforeFlushSize;
     assertEquals(totalCellsLen1, region.getMemStoreSize());
     assertEquals(totalHeapSize1, ((CompactingMemStore) memstore).heapSize());
 
@@ -216,7 +219,7 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     // One cell is duplicated and the compaction will remove it. All cells of same size so adjusting
     // totalCellsLen
     totalCellsLen1 = (totalCellsLen1 * 3) / 4;
-    totalHeapSize1 = 3 * cellAfterFlushSize + MutableSegment.DEEP_OVERHEAD
+    totalHeapSize1 = 3 * cellAfterFlushSize + activeOverhead()
         + (toCellChunkMap ?
         CellChunkImmutableSegment.DEEP_OVERHEAD_CCM :
         CellArrayImmutableSegment.DEEP_OVERHEAD_CAM);
@@ -232,7 +235,9 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     ((CompactingMemStore) memstore).disableCompaction();
     size = memstore.getFlushableSize();
     ((CompactingMemStore) memstore).flushInMemory(); // push keys to pipeline without compaction
-    totalHeapSize2 = totalHeapSize2 + CSLMImmutableSegment.DEEP_OVERHEAD_CSLM;
+    totalHeapSize2 = totalHeapSize2 + (toCellChunkMap ?
+        CellChunkSkipListImmutableSegment.DEEP_OVERHEAD_CCSLM :
+        CSLMImmutableSegment.DEEP_OVERHEAD_CSLM);
     assertEquals(0, memstore.getSnapshot().getCellsCount());
     assertEquals(totalCellsLen1 + totalCellsLen2, regionServicesForStores.getMemStoreSize());
     assertEquals(totalHeapSize1 + totalHeapSize2, ((CompactingMemStore) memstore).heapSize());
@@ -258,7 +263,7 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     assertEquals(totalCellsLen1 + totalCellsLen2 + totalCellsLen3,
         regionServicesForStores.getMemStoreSize());
     // Only 4 unique cells left
-    long totalHeapSize4 = 4 * cellAfterFlushSize + MutableSegment.DEEP_OVERHEAD
+    long totalHeapSize4 = 4 * cellAfterFlushSize + activeOverhead()
         + (toCellChunkMap ?
         CellChunkImmutableSegment.DEEP_OVERHEAD_CCM :
         CellArrayImmutableSegment.DEEP_OVERHEAD_CAM);
@@ -398,6 +403,63 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     assertEquals("the count should be ", cnt, 150);
   }
 
+  @Test
+  public void testFlatteningBigCells() throws IOException {
+    MemoryCompactionPolicy compactionType = MemoryCompactionPolicy.BASIC;
+    memstore.getConfiguration().set(CompactingMemStore.COMPACTING_MEMSTORE_TYPE_KEY,
+        String.valueOf(compactionType));
+    ((CompactingMemStore) memstore).initiateType(compactionType);
+    // cells bigger than the maximal MSLAB allocation are not copied into a chunk when added,
+    // unless the active segment keeps its index in chunks too
+    int bigValueLength = MemStoreLAB.MAX_ALLOC_DEFAULT + 1;
+    byte[] fam = Bytes.toBytes("testfamily");
+    byte[] qf = Bytes.toBytes("testqualifier");
+    String[] keys = { "A", "B", "C" };
+    KeyValue[] added = new KeyValue[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      byte[] val = new byte[bigValueLength];
+      val[0] = (byte) i;
+      added[i] = new KeyValue(Bytes.toBytes(keys[i]), fam, qf, i + 1, val);
+      memstore.add(added[i], null);
+    }
+    // this should only flatten as there are no duplicates
+    ((CompactingMemStore) memstore).flushInMemory();
+    while (((CompactingMemStore) memstore).isMemStoreFlushingInMemory()) {
+      Threads.sleep(10);
+    }
+    assertEquals(toCellChunkMap, memstore.getSegments().stream()
+        .anyMatch(s -> s instanceof CellChunkImmutableSegment));
+    List<KeyValueScanner> scanners = memstore.getScanners(Long.MAX_VALUE);
+    int count = 0;
+    long expectedFlatHeapSize = CellChunkImmutableSegment.DEEP_OVERHEAD_CCM;
+    for (KeyValueScanner scanner : scanners) {
+      scanner.seek(KeyValue.LOWESTKEY);
+      Cell cell;
+      while ((cell = scanner.next()) != null) {
+        assertEquals(keys[count], Bytes.toString(CellUtil.cloneRow(cell)));
+        assertEquals(bigValueLength, cell.getValueLength());
+        assertEquals((byte) count, CellUtil.cloneValue(cell)[0]);
+        if (toCellChunkMap) {
+          // the cell was copied into a jumbo chunk when it was added to the active segment,
+          // which takes heap of its own; flattening only swaps the index entry
+          long indexEntrySize = ClassSize.CELL_CHUNK_MAP_ENTRY - KeyValue.FIXED_OVERHEAD;
+          long activeEntrySize = ClassSize.CELL_CHUNK_SKIPLIST_MAP_ENTRY - KeyValue.FIXED_OVERHEAD;
+          expectedFlatHeapSize += indexEntrySize - activeEntrySize
+              + ClassSize.align(activeEntrySize + CellUtil.estimatedHeapSizeOf(cell))
+              + ChunkCreator.JUMBO_CHUNK_OVERHEAD;
+        }
+        count++;
+      }
+      scanner.close();
+    }
+    assertEquals(keys.length, count);
+    if (toCellChunkMap) {
+      Segment flat = memstore.getSegments().stream()
+          .filter(s -> s instanceof CellChunkImmutableSegment).findFirst().get();
+      assertEquals(expectedFlatHeapSize, flat.heapSize());
+    }
+  }
+
   private void addRowsByKeysWith50Cols(AbstractMemStore hmc, String[] keys) {
     byte[] fam = Bytes.toBytes("testfamily");
     for (int i = 0; i < keys.length; i++) {
@@ -538,6 +600,13 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     return memstoreSize.getDataSize();
   }
 
+  private long activeOverhead() {
+    // with CHUNK_MAP the active segment keeps its skip list in MSLAB chunks too
+    return toCellChunkMap ?
+        CellChunkSkipListMutableSegment.DEEP_OVERHEAD_CCSLM :
+        MutableSegment.DEEP_OVERHEAD;
+  }
+
   private long cellBeforeFlushSize() {
     // make one cell
     byte[] row = Bytes.toBytes("A");
@@ -545,7 +614,10 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     KeyValue kv =
         new KeyValue(row, Bytes.toBytes("testfamily"), Bytes.toBytes("testqualifier"),
             System.currentTimeMillis(), val);
-    return ClassSize.align(
+    return toCellChunkMap ?
+        ClassSize.align(ClassSize.CELL_CHUNK_SKIPLIST_MAP_ENTRY - KeyValue.FIXED_OVERHEAD
+            + ClassSize.align(KeyValue.FIXED_OVERHEAD + KeyValueUtil.length(kv))) :
+        ClassSize.align(
         ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY + KeyValue.FIXED_OVERHEAD + KeyValueUtil.length(kv));
   }
 
@@ -61,6 +61,7 @@ import org.apache.hadoop.hbase.io.hfile.HFileScanner;
 import org.apache.hadoop.hbase.testclassification.RegionServerTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.BloomFilterUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ChecksumType;
 import org.apache.hadoop.hbase.util.FSUtils;
@@ -567,6 +568,104 @@ public class TestHStoreFile extends HBaseTestCase {
     bloomWriteRead(writer, fs);
   }
 
+  @Test
+  public void testBlockedBloomFilter() throws Exception {
+    FileSystem fs = FileSystem.getLocal(conf);
+    conf.setFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, (float) 0.01);
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_ENABLED, true);
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_BLOCKED, true);
+
+    // write the file
+    Path f = new Path(ROOT_DIR, getName());
+    HFileContext meta = new HFileContextBuilder().withBlockSize(BLOCKSIZE_SMALL)
+                        .withChecksumType(CKTYPE)
+                        .withBytesPerCheckSum(CKBYTES).build();
+    // Make a store file and write data to it.
+    StoreFileWriter writer = new StoreFileWriter.Builder(conf, cacheConf, this.fs)
+            .withFilePath(f)
+            .withBloomType(BloomType.ROW)
+            .withMaxKeyCount(2000)
+            .withFileContext(meta)
+            .build();
+    bloomWriteRead(writer, fs);
+  }
+
+  @Test
+  public void testRowPrefixBloomFilter() throws Exception {
+    conf.setFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, (float) 0.01);
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_ENABLED, true);
+    // Rows are like 0000000002/0000000003, the prefix is up to the slash
+    conf.setInt(BloomFilterUtil.PREFIX_LENGTH_KEY, 11);
+    rowPrefixBloomWriteRead(getName() + "-length");
+    conf.unset(BloomFilterUtil.PREFIX_LENGTH_KEY);
+    conf.set(BloomFilterUtil.DELIMITER_KEY, "/");
+    rowPrefixBloomWriteRead(getName() + "-delimiter");
+  }
+
+  private void rowPrefixBloomWriteRead(String name) throws Exception {
+    FileSystem fs = FileSystem.getLocal(conf);
+    float err = conf.getFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE, 0);
+    int prefixCount = 1000;
+    int rowsPerPrefix = 3;
+    Path f = new Path(ROOT_DIR, name);
+    HFileContext meta = new HFileContextBuilder().withBlockSize(BLOCKSIZE_SMALL)
+        .withChecksumType(CKTYPE).withBytesPerCheckSum(CKBYTES).build();
+    StoreFileWriter writer = new StoreFileWriter.Builder(conf, cacheConf, this.fs).withFilePath(f)
+        .withBloomType(BloomType.ROWPREFIX).withMaxKeyCount(prefixCount * rowsPerPrefix)
+        .withFileContext(meta).build();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < prefixCount * 2; i += 2) {
+      for (int j = 0; j < rowsPerPrefix; j++) {
+        byte[] row = Bytes.toBytes(String.format(localFormatter + "/" + localFormatter, i, j));
+        writer.append(new KeyValue(row, Bytes.toBytes("family"), Bytes.toBytes("col"), now,
+            Bytes.toBytes("value")));
+      }
+    }
+    writer.close();
+
+    StoreFileReader reader =
+        new StoreFileReader(fs, f, cacheConf, true, new AtomicInteger(0), true, conf);
+    reader.loadFileInfo();
+    reader.loadBloomfilter();
+    StoreFileScanner scanner = getStoreFileScanner(reader, false, false);
+    assertEquals(prefixCount, reader.generalBloomFilter.getKeyCount());
+    HStore store = mock(HStore.class);
+    when(store.getColumnFamilyDescriptor()).thenReturn(ColumnFamilyDescriptorBuilder.of("family"));
+
+    int falsePos = 0;
+    int falseNeg = 0;
+    for (int i = 0; i < prefixCount * 2; i++) {
+      byte[] prefix = Bytes.toBytes(String.format(localFormatter + "/", i));
+      byte[] row = Bytes.add(prefix, Bytes.toBytes(String.format(localFormatter, 1)));
+      // a get, a scan of the prefix, and a reversed scan of the prefix
+      Scan[] scans = { new Scan(row, row), new Scan().setRowPrefixFilter(prefix),
+          new Scan().withStartRow(Bytes.add(prefix, new byte[] { (byte) 0xFF }))
+              .withStopRow(prefix).setReversed(true) };
+      for (Scan scan : scans) {
+        boolean exists = scanner.shouldUseScanner(scan, store, Long.MIN_VALUE);
+        if (i % 2 == 0) {
+          if (!exists) falseNeg++;
+        } else {
+          if (exists) falsePos++;
+        }
+      }
+      // scans going past the rows of the prefix cannot use the Bloom filter
+      if (i % 2 == 1 && i < prefixCount * 2 - 1) {
+        Scan scan = new Scan().withStartRow(prefix)
+            .withStopRow(Bytes.toBytes(String.format(localFormatter, i + 2)));
+        assertTrue(scanner.shouldUseScanner(scan, store, Long.MIN_VALUE));
+        scan = new Scan().withStartRow(Bytes.toBytes(String.format(localFormatter, i)));
+        assertTrue(scanner.shouldUseScanner(scan, store, Long.MIN_VALUE));
+      }
+    }
+    reader.close(true); // evict because we are about to delete the file
+    fs.delete(f, true);
+    assertEquals("False negatives: " + falseNeg, 0, falseNeg);
+    int maxFalsePos = (int) (2 * 3 * prefixCount * err);
+    assertTrue("Too many false positives: " + falsePos + " (err=" + err + ", expected no more than "
+        + maxFalsePos + ")", falsePos <= maxFalsePos);
+  }
+
   @Test
   public void testDeleteFamilyBloomFilter() throws Exception {
     FileSystem fs = FileSystem.getLocal(conf);
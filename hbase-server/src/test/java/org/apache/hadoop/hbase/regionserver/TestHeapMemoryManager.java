@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.regionserver;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -38,6 +39,7 @@ import org.apache.hadoop.hbase.Waiter;
 import org.apache.hadoop.hbase.client.ClusterConnection;
 import org.apache.hadoop.hbase.io.hfile.BlockCache;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
 import org.apache.hadoop.hbase.io.hfile.CacheStats;
 import org.apache.hadoop.hbase.io.hfile.Cacheable;
 import org.apache.hadoop.hbase.io.hfile.CachedBlock;
@@ -85,6 +87,18 @@ public class TestHeapMemoryManager {
     assertFalse(manager.isTunerOn());
   }
 
+  @Test
+  public void testOffHeapL1IsNotTuned() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(CacheConfig.BLOCKCACHE_POLICY_KEY, "TinyLFU");
+    conf.setFloat(MemorySizeUtil.MEMSTORE_SIZE_KEY, 0.6f);
+    conf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.4f);
+    // The heap share of the block cache is not taken, so does not count against the heap
+    MemorySizeUtil.checkForClusterFreeHeapMemoryLimit(conf);
+    assertNull(HeapMemoryManager.create(conf, new MemstoreFlusherStub(0),
+        new RegionServerStub(conf), new RegionServerAccountingStub(conf)));
+  }
+
   @Test
   public void testWhenMemstoreAndBlockCacheMaxMinChecksFails() throws Exception {
     BlockCacheStub blockCache = new BlockCacheStub(0);
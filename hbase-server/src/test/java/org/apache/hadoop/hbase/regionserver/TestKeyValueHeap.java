@@ -207,9 +207,73 @@ public class TestKeyValueHeap extends HBaseTestCase {
     }
   }
 
+  @Test
+  public void testNextRunReschedules() throws IOException {
+    KeyValueHeap kvh = new KeyValueHeap(scanners, CellComparator.COMPARATOR);
+    List<Cell> actual = new ArrayList<>();
+    int accepted = kvh.nextRun(null, CellComparator.COMPARATOR, cell -> actual.add(cell));
+
+    assertEquals(10, accepted);
+    assertEquals(Arrays.asList(
+        kv111, kv112, kv113, kv114, kv115, kv121, kv122, kv211, kv212, kv213), actual);
+    assertNull(kvh.peek());
+    // Each run ends at the top of the rest of the heap, where the heap hands over to the scanner
+    // that now sorts first
+    assertEquals(Arrays.asList(kv113), s2.runBounds);
+    assertEquals(Arrays.asList(kv115, kv211, null), s3.runBounds);
+    assertEquals(Arrays.asList(kv121, kv213), s1.runBounds);
+  }
+
+  @Test
+  public void testNextRunTakesEqualCellFromNewerScanner() throws IOException {
+    Cell kv113A = new KeyValue(row1, fam1, col3, Bytes.toBytes("aaa"));
+    Cell kv113B = new KeyValue(row1, fam1, col3, Bytes.toBytes("bbb"));
+    TestScanner scan1 = new TestScanner(Arrays.asList(kv111, kv113A, kv114), 2);
+    TestScanner scan2 = new TestScanner(Arrays.asList(kv113B, kv115), 1);
+    KeyValueHeap kvh =
+        new KeyValueHeap(new ArrayList<>(Arrays.asList(scan1, scan2)), CellComparator.COMPARATOR);
+    List<Cell> actual = new ArrayList<>();
+    kvh.nextRun(null, CellComparator.COMPARATOR, cell -> actual.add(cell));
+
+    assertEquals(Arrays.asList(kv111, kv113A, kv113B, kv114, kv115), actual);
+  }
+
+  @Test
+  public void testNextRunStopsAtRejectedCell() throws IOException {
+    KeyValueHeap kvh = new KeyValueHeap(scanners, CellComparator.COMPARATOR);
+    List<Cell> actual = new ArrayList<>();
+    int accepted = kvh.nextRun(null, CellComparator.COMPARATOR,
+      cell -> cell != kv121 && actual.add(cell));
+
+    assertEquals(5, accepted);
+    assertEquals(Arrays.asList(kv111, kv112, kv113, kv114, kv115), actual);
+    // The rejected cell stays on top, and the next run or next() picks up from it
+    assertSame(kv121, kvh.peek());
+    assertSame(kv121, kvh.next());
+    actual.clear();
+    accepted = kvh.nextRun(null, CellComparator.COMPARATOR, cell -> actual.add(cell));
+    assertEquals(4, accepted);
+    assertEquals(Arrays.asList(kv122, kv211, kv212, kv213), actual);
+  }
+
+  @Test
+  public void testNextRunStopsAtBound() throws IOException {
+    KeyValueHeap kvh = new KeyValueHeap(scanners, CellComparator.COMPARATOR);
+    List<Cell> actual = new ArrayList<>();
+    int accepted = kvh.nextRun(kv121, CellComparator.COMPARATOR, cell -> actual.add(cell));
+
+    assertEquals(5, accepted);
+    assertEquals(Arrays.asList(kv111, kv112, kv113, kv114, kv115), actual);
+    assertSame(kv121, kvh.peek());
+    // A bound at the current cell gives an empty run
+    assertEquals(0, kvh.nextRun(kv121, CellComparator.COMPARATOR, cell -> actual.add(cell)));
+    assertSame(kv121, kvh.peek());
+  }
+
   private static class TestScanner extends CollectionBackedScanner {
     private boolean closed = false;
     private long scannerOrder = 0;
+    private final List<Cell> runBounds = new ArrayList<>();
 
     public TestScanner(List<Cell> list) {
       super(list);
@@ -233,6 +297,13 @@ public class TestKeyValueHeap extends HBaseTestCase {
     public boolean isClosed() {
       return closed;
     }
+
+    @Override
+    public int nextRun(Cell bound, CellComparator comparator, CellRunVisitor visitor)
+        throws IOException {
+      runBounds.add(bound);
+      return super.nextRun(bound, comparator, visitor);
+    }
   }
 
   private static class SeekTestScanner extends TestScanner {
@@ -0,0 +1,301 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestLeveledStoreEngine {
+
+  private static final HBaseTestingUtility UTIL = HBaseTestingUtility.createLocalHTU();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  private static final int ROWS = 1000;
+
+  private static final int FLUSHES = 12;
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = UTIL.getConfiguration();
+    conf.set(StoreEngine.STORE_ENGINE_CLASS_KEY, LeveledStoreEngine.class.getName());
+    conf.setInt(LeveledStoreConfig.MIN_FILES_L0_KEY, 3);
+    conf.setLong(LeveledStoreConfig.LEVEL0_SIZE_KEY, 8 * 1024);
+    conf.setInt(LeveledStoreConfig.MAX_LEVELS_KEY, 3);
+    conf.setLong(LeveledStoreConfig.LEVEL1_SIZE_KEY, 16 * 1024);
+    conf.setInt(LeveledStoreConfig.LEVEL_SIZE_MULTIPLIER_KEY, 2);
+    conf.setLong(LeveledStoreConfig.FILE_SIZE_KEY, 4 * 1024);
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).build()).build();
+    region = UTIL.createLocalHRegion(htd, null, null);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row-%04d", i));
+  }
+
+  /**
+   * @return the value of the row after all the flushes.
+   */
+  private static int expectedValue(int i) {
+    for (int flush = FLUSHES - 1; flush >= 0; flush--) {
+      if (i % (flush + 2) == 0 || flush == 0) {
+        return flush;
+      }
+    }
+    throw new AssertionError();
+  }
+
+  private HStore load() throws IOException {
+    return load(HConstants.LATEST_TIMESTAMP);
+  }
+
+  /**
+   * @param ts the timestamp of all the puts
+   */
+  private HStore load(long ts) throws IOException {
+    HStore store = region.getStore(FAMILY);
+    for (int flush = 0; flush < FLUSHES; flush++) {
+      for (int i = 0; i < ROWS; i++) {
+        if (i % (flush + 2) == 0 || flush == 0) {
+          region.put(new Put(row(i)).addColumn(FAMILY, QUALIFIER, ts, Bytes.toBytes(flush)));
+        }
+      }
+      region.flush(true);
+      while (store.needsCompaction()) {
+        region.compact(false);
+      }
+    }
+    return store;
+  }
+
+  private void assertRows() throws IOException {
+    assertRows(TestLeveledStoreEngine::expectedValue);
+  }
+
+  private void assertRows(IntUnaryOperator expectedValue) throws IOException {
+    List<Cell> cells = new ArrayList<>();
+    int count = 0;
+    try (InternalScanner scanner = region.getScanner(new Scan())) {
+      boolean more;
+      do {
+        more = scanner.next(cells);
+        if (cells.isEmpty()) {
+          continue;
+        }
+        assertEquals(1, cells.size());
+        Cell cell = cells.get(0);
+        assertEquals(Bytes.toString(row(count)), Bytes.toString(CellUtil.cloneRow(cell)));
+        assertEquals(expectedValue.applyAsInt(count), Bytes.toInt(CellUtil.cloneValue(cell)));
+        count++;
+        cells.clear();
+      } while (more);
+    }
+    assertEquals(ROWS, count);
+  }
+
+  private static void assertNoOverlap(LeveledStoreFileManager sfm) {
+    for (int level = 1; level <= sfm.getLevelCount(); level++) {
+      List<HStoreFile> files = sfm.getLevelFiles(level);
+      for (int i = 0; i < files.size(); i++) {
+        HStoreFile file = files.get(i);
+        assertEquals(level, LeveledStoreFileManager.getLevel(file));
+        if (i > 0) {
+          assertTrue(Bytes.compareTo(CellUtil.cloneRow(files.get(i - 1).getLastKey().get()),
+            CellUtil.cloneRow(file.getFirstKey().get())) < 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCompactionsMoveDataDownTheLevels() throws IOException {
+    HStore store = load();
+    LeveledStoreFileManager sfm = (LeveledStoreFileManager) store.getStoreEngine()
+        .getStoreFileManager();
+    LeveledStoreConfig config = new LeveledStoreConfig(UTIL.getConfiguration());
+    assertTrue(sfm.getLevelSize(0) <= config.getLevel0Size());
+    assertEquals(3, sfm.getLevelCount());
+    assertTrue(sfm.getLevelFiles(3).size() > 1);
+    // Only the last level can be over its size
+    for (int level = 1; level < sfm.getLevelCount(); level++) {
+      assertTrue(sfm.getLevelSize(level) <= config.getLevelSize(level));
+    }
+    assertNoOverlap(sfm);
+    assertEquals(sfm.getLevel0Files().size(), sfm.getStorefileCountForBlocking());
+    assertRows();
+
+    // The levels come back the same when the store files are opened again
+    int files = store.getStorefilesCount();
+    int levelCount = sfm.getLevelCount();
+    region.close();
+    region = HRegion.openHRegion(region, null);
+    store = region.getStore(FAMILY);
+    sfm = (LeveledStoreFileManager) store.getStoreEngine().getStoreFileManager();
+    assertEquals(files, store.getStorefilesCount());
+    assertEquals(levelCount, sfm.getLevelCount());
+    assertNoOverlap(sfm);
+    assertRows();
+  }
+
+  /**
+   * L0 files of about the same size are merged together within L0 until L0 grows to its size.
+   */
+  @Test
+  public void testLevel0SizeTiers() throws IOException {
+    HBaseTestingUtility.closeRegionAndWAL(region);
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY)
+            .setConfiguration(LeveledStoreConfig.LEVEL0_SIZE_KEY, Long.toString(1024 * 1024))
+            .build())
+        .build();
+    region = UTIL.createLocalHRegion(htd, null, null);
+    HStore store = region.getStore(FAMILY);
+    LeveledStoreFileManager sfm = (LeveledStoreFileManager) store.getStoreEngine()
+        .getStoreFileManager();
+    // Each flush writes a different sixth of the rows, so three flushes merge into a file three
+    // times their size, too big to be merged again with the next flushes
+    int[] level0Files = { 1, 2, 1, 2, 3, 2 };
+    for (int flush = 0; flush < level0Files.length; flush++) {
+      for (int i = flush; i < ROWS; i += 6) {
+        region.put(new Put(row(i)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(flush)));
+      }
+      region.flush(true);
+      while (store.needsCompaction()) {
+        region.compact(false);
+      }
+      assertEquals(level0Files[flush], sfm.getLevel0Files().size());
+    }
+    assertEquals(0, sfm.getLevelCount());
+    for (HStoreFile file : sfm.getLevel0Files()) {
+      assertEquals(0, LeveledStoreFileManager.getLevel(file));
+    }
+    assertEquals(2, sfm.getStorefileCountForBlocking());
+    assertRows(i -> i % 6);
+  }
+
+  @Test
+  public void testMajorCompaction() throws IOException {
+    HStore store = load();
+    LeveledStoreFileManager sfm = (LeveledStoreFileManager) store.getStoreEngine()
+        .getStoreFileManager();
+    int levelCount = sfm.getLevelCount();
+    region.compact(true);
+    assertEquals(0, sfm.getLevel0Files().size());
+    assertEquals(store.getStorefilesCount(), sfm.getLevelFiles(levelCount).size());
+    for (HStoreFile file : store.getStorefiles()) {
+      assertTrue(file.isMajorCompactionResult());
+    }
+    assertNoOverlap(sfm);
+    assertRows();
+  }
+
+  private static void assertSeqIdsKept(HStoreFile file) throws IOException {
+    try (StoreFileScanner scanner = file.getPreadScanner(false, Long.MAX_VALUE, 0, false)) {
+      scanner.seek(KeyValue.LOWESTKEY);
+      for (Cell cell = scanner.next(); cell != null; cell = scanner.next()) {
+        assertTrue(cell.getSequenceId() > 0);
+      }
+    }
+  }
+
+  /**
+   * The puts of a cell with the same timestamp only differ in their sequence ids, and so do the
+   * copies of a cell in different levels. The level compactions keep the sequence ids, even those
+   * a compaction of all the files may set to 0, so the last put wins wherever its level.
+   */
+  @Test
+  public void testSameTimestampOverwrites() throws IOException {
+    long ts = EnvironmentEdgeManager.currentTime();
+    HStore store = load(ts);
+    assertRows();
+
+    // Files older than the period to keep the sequence ids for
+    long old = ts - 10L * 24 * 60 * 60 * 1000;
+    for (HStoreFile file : store.getStorefiles()) {
+      region.getFilesystem().setTimes(file.getPath(), old, -1);
+    }
+    region.close();
+    region = HRegion.openHRegion(region, null);
+    store = region.getStore(FAMILY);
+    region.compact(true);
+    for (HStoreFile file : store.getStorefiles()) {
+      assertSeqIdsKept(file);
+    }
+    assertRows();
+
+    // Overwrite a row out of three again, and move the new cells down over the old ones
+    for (int flush = 0; flush < 3; flush++) {
+      for (int i = 0; i < ROWS; i += 3) {
+        region.put(new Put(row(i)).addColumn(FAMILY, QUALIFIER, ts, Bytes.toBytes(-1)));
+      }
+      region.flush(true);
+      while (store.needsCompaction()) {
+        region.compact(false);
+      }
+    }
+    assertRows(i -> i % 3 == 0 ? -1 : expectedValue(i));
+    LeveledStoreFileManager sfm = (LeveledStoreFileManager) store.getStoreEngine()
+        .getStoreFileManager();
+    assertTrue(sfm.getLevelCount() > 1);
+    assertNoOverlap(sfm);
+  }
+}
@@ -48,5 +48,9 @@ public class TestMetricsTableAggregate {
     HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_memstoreSize", 1000, agg);
     HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_storeFileSize", 2000, agg);
     HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_tableSize", 3000, agg);
+    HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_prefetchRequestedBytes",
+      4000, agg);
+    HELPER.assertGauge("Namespace_default_table_testTableMetrics_metric_prefetchCompletedBytes",
+      1000, agg);
   }
 }
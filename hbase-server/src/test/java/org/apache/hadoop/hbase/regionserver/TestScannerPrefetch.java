@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.AsyncConnection;
+import org.apache.hadoop.hbase.client.ClusterConnection;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RawAsyncTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.RegionObserver;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.ipc.HBaseRpcController;
+import org.apache.hadoop.hbase.ipc.HBaseRpcControllerImpl;
+import org.apache.hadoop.hbase.ipc.RpcServer;
+import org.apache.hadoop.hbase.security.AccessDeniedException;
+import org.apache.hadoop.hbase.security.User;
+import org.apache.hadoop.hbase.security.access.AccessControlLists;
+import org.apache.hadoop.hbase.security.access.SecureTestUtil;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hadoop.hbase.shaded.com.google.protobuf.ServiceException;
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.RequestConverter;
+import org.apache.hadoop.hbase.shaded.protobuf.ResponseConverter;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ClientService;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.ScanResponse;
+
+/**
+ * Scans with the region server scanning the next batch ahead of the calls.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestScannerPrefetch {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static TableName TABLE_NAME = TableName.valueOf("prefetch");
+
+  private static byte[] FAMILY = Bytes.toBytes("cf");
+
+  private static byte[] CQ = Bytes.toBytes("cq");
+
+  private static int COUNT = 500;
+
+  private static Table TABLE;
+
+  private static AsyncConnection CONN;
+
+  /**
+   * Checks the scanner hooks run in the RPC call asking for the rows, and counts the rows they see.
+   */
+  public static final class ScannerNextObserver implements RegionCoprocessor, RegionObserver {
+
+    static final AtomicInteger ROWS = new AtomicInteger();
+
+    static final AtomicBoolean OUTSIDE_CALL = new AtomicBoolean();
+
+    @Override
+    public Optional<RegionObserver> getRegionObserver() {
+      return Optional.of(this);
+    }
+
+    @Override
+    public boolean preScannerNext(ObserverContext<RegionCoprocessorEnvironment> c,
+        InternalScanner s, List<Result> result, int limit, boolean hasNext) throws IOException {
+      if (!RpcServer.isInRpcCallContext()) {
+        OUTSIDE_CALL.set(true);
+      }
+      return hasNext;
+    }
+
+    @Override
+    public boolean postScannerNext(ObserverContext<RegionCoprocessorEnvironment> c,
+        InternalScanner s, List<Result> result, int limit, boolean hasNext) throws IOException {
+      if (!RpcServer.isInRpcCallContext()) {
+        OUTSIDE_CALL.set(true);
+      }
+      ROWS.addAndGet(result.size());
+      return hasNext;
+    }
+  }
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    TEST_UTIL.getConfiguration().setBoolean(RSRpcServices.SCAN_PREFETCH_ENABLED_KEY, true);
+    // the scans run as the super user, and other users are not the owners of their scanners
+    SecureTestUtil.enableSecurity(TEST_UTIL.getConfiguration());
+    TEST_UTIL.startMiniCluster(1);
+    TEST_UTIL.waitTableEnabled(AccessControlLists.ACL_TABLE_NAME);
+    TEST_UTIL.getAdmin().createTable(
+      TableDescriptorBuilder.newBuilder(TABLE_NAME)
+          .addColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY))
+          .addCoprocessor(ScannerNextObserver.class.getName()).build(),
+      new byte[][] { Bytes.toBytes("100"), Bytes.toBytes("300") });
+    TEST_UTIL.waitTableAvailable(TABLE_NAME);
+    TABLE = TEST_UTIL.getConnection().getTable(TABLE_NAME);
+    List<Put> puts = new ArrayList<>();
+    for (int i = 0; i < COUNT; i++) {
+      puts.add(new Put(Bytes.toBytes(String.format("%03d", i))).addColumn(FAMILY, CQ,
+        Bytes.toBytes(i)));
+    }
+    TABLE.put(puts);
+    CONN = ConnectionFactory.createAsyncConnection(TEST_UTIL.getConfiguration()).get();
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    CONN.close();
+    TABLE.close();
+    TEST_UTIL.shutdownMiniCluster();
+  }
+
+  private static void assertResults(List<Result> results, int start, int count,
+      boolean reversed) {
+    assertEquals(count, results.size());
+    for (int i = 0; i < count; i++) {
+      int row = reversed ? start - i : start + i;
+      Result result = results.get(i);
+      assertEquals(String.format("%03d", row), Bytes.toString(result.getRow()));
+      assertEquals(row, Bytes.toInt(result.getValue(FAMILY, CQ)));
+    }
+  }
+
+  private static List<Result> scan(Scan scan) throws Exception {
+    List<Result> results = new ArrayList<>();
+    try (ResultScanner scanner = TABLE.getScanner(scan)) {
+      for (Result result; (result = scanner.next()) != null;) {
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  private static RSRpcServices getRpcServices() {
+    return TEST_UTIL.getMiniHBaseCluster().getRegionServer(0).getRSRpcServices();
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    long taken = getRpcServices().scanPrefetchTakenCount.sum();
+    int rows = ScannerNextObserver.ROWS.get();
+    assertResults(scan(new Scan().setCaching(7)), 0, COUNT, false);
+    // most calls take the batch scanned ahead of them
+    assertTrue(getRpcServices().scanPrefetchTakenCount.sum() - taken > COUNT / 7 / 2);
+    // and run the hooks on them
+    assertEquals(COUNT, ScannerNextObserver.ROWS.get() - rows);
+    assertFalse(ScannerNextObserver.OUTSIDE_CALL.get());
+  }
+
+  private static Result[] next(ClientService.BlockingInterface stub, long scannerId,
+      long callSeq) throws Exception {
+    HBaseRpcController controller = new HBaseRpcControllerImpl();
+    ScanResponse resp = stub.scan(controller,
+      RequestConverter.buildScanRequest(scannerId, 2, false, callSeq, false, false, -1));
+    return ResponseConverter.getResults(controller.cellScanner(), resp);
+  }
+
+  @Test
+  public void testNonOwnerRefusedPrefetchedBatch() throws Exception {
+    byte[] regionName = TEST_UTIL.getMiniHBaseCluster().getRegions(TABLE_NAME).stream()
+        .filter(r -> r.getRegionInfo().getStartKey().length == 0).findFirst().get()
+        .getRegionInfo().getRegionName();
+    ClusterConnection conn = (ClusterConnection) TEST_UTIL.getConnection();
+    ClientService.BlockingInterface stub =
+        conn.getClient(TEST_UTIL.getMiniHBaseCluster().getRegionServer(0).getServerName());
+    long scannerId = stub
+        .scan(null, RequestConverter.buildScanRequest(regionName, new Scan(), 2, false))
+        .getScannerId();
+    long taken = getRpcServices().scanPrefetchTakenCount.sum();
+    Result[] results = next(stub, scannerId, 0);
+    assertEquals(1, getRpcServices().scanPrefetchTakenCount.sum() - taken);
+    assertEquals(2, results.length);
+    assertEquals("002", Bytes.toString(results[0].getRow()));
+
+    // the next batch is scanned ahead as well, but only goes to the owner of the scanner
+    User user = User.createUserForTesting(TEST_UTIL.getConfiguration(), "notowner",
+      new String[0]);
+    try (Connection userConn =
+        ConnectionFactory.createConnection(TEST_UTIL.getConfiguration(), user)) {
+      ClientService.BlockingInterface userStub = ((ClusterConnection) userConn)
+          .getClient(TEST_UTIL.getMiniHBaseCluster().getRegionServer(0).getServerName());
+      next(userStub, scannerId, 1);
+      fail("only the owner of the scanner may take its rows");
+    } catch (ServiceException e) {
+      assertTrue(ProtobufUtil.handleRemoteException(e) instanceof AccessDeniedException);
+    }
+  }
+
+  @Test
+  public void testReversedScan() throws Exception {
+    assertResults(scan(new Scan().setReversed(true).setCaching(7)), COUNT - 1, COUNT, true);
+  }
+
+  @Test
+  public void testScanWithMaxResultSize() throws Exception {
+    assertResults(scan(new Scan().setMaxResultSize(1).setCaching(100)), 0, COUNT, false);
+  }
+
+  @Test
+  public void testScanWithFilter() throws Exception {
+    assertResults(scan(new Scan().setFilter(new PrefixFilter(Bytes.toBytes("2"))).setCaching(3)),
+      200, 100, false);
+  }
+
+  @Test
+  public void testScanWithRangeAndCloseEarly() throws Exception {
+    try (ResultScanner scanner = TABLE.getScanner(new Scan().withStartRow(Bytes.toBytes("095"))
+        .withStopRow(Bytes.toBytes("305")).setCaching(3))) {
+      List<Result> results = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        results.add(scanner.next());
+      }
+      assertResults(results, 95, 20, false);
+    }
+    assertResults(scan(new Scan().withStartRow(Bytes.toBytes("095"))
+        .withStopRow(Bytes.toBytes("305")).setCaching(3)), 95, 210, false);
+  }
+
+  @Test
+  public void testAsyncScan() throws Exception {
+    RawAsyncTable table = CONN.getRawTable(TABLE_NAME);
+    assertResults(table.scanAll(new Scan().setCaching(11)).get(), 0, COUNT, false);
+    assertResults(table.scanAll(new Scan().setLimit(123).setCaching(5)).get(), 0, 123, false);
+    assertResults(table.scanAll(new Scan().setReversed(true).setCaching(13)).get(), COUNT - 1,
+      COUNT, true);
+  }
+}
@@ -146,6 +146,15 @@ public class TestStoreScanner {
       this.count.incrementAndGet();
       return super.peek();
     }
+
+    @Override
+    public int nextRun(Cell bound, CellComparator comparator, CellRunVisitor visitor)
+        throws IOException {
+      // Cells taken in a run are not peeked at through the heap, so count them here instead
+      int accepted = super.nextRun(bound, comparator, visitor);
+      this.count.addAndGet(accepted);
+      return accepted;
+    }
   }
 
   /**
@@ -743,6 +752,94 @@ public class TestStoreScanner {
     }
   }
 
+  @Test
+  public void testBatchedScanMatchesUnbatched() throws IOException {
+    KeyValue[] kvs1 = new KeyValue[] {
+        create("R1", "cf", "a", 11, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "c", 11, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "d", 10, KeyValue.Type.DeleteColumn, "dont-care"),
+        create("R2", "cf", "a", 11, KeyValue.Type.Put, "dont-care"),
+        create("R2", "cf", "b", 11, KeyValue.Type.Put, "dont-care"),
+        create("R3", "cf", "a", 11, KeyValue.Type.Put, "dont-care"),
+    };
+    KeyValue[] kvs2 = new KeyValue[] {
+        create("R1", "cf", "b", 11, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "d", 9, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "e", 11, KeyValue.Type.Put, "dont-care"),
+        create("R2", "cf", "b", 12, KeyValue.Type.Put, "dont-care"),
+        create("R2", "cf", "c", 11, KeyValue.Type.Put, "dont-care"),
+        create("R3", "cf", "b", 11, KeyValue.Type.Put, "dont-care"),
+    };
+    Configuration conf = new Configuration(CONF);
+    conf.setBoolean(StoreScanner.STORESCANNER_BATCHED_SCAN_ENABLE, false);
+    ScanInfo unbatchedScanInfo = new ScanInfo(conf, CF, 0, Integer.MAX_VALUE, Long.MAX_VALUE,
+        KeepDeletedCells.FALSE, HConstants.DEFAULT_BLOCKSIZE, 0, CellComparator.COMPARATOR, false);
+    assertTrue(scanInfo.isBatchedScanEnabled());
+    assertFalse(unbatchedScanInfo.isBatchedScanEnabled());
+
+    List<List<Cell>> expected = scanAllRows(unbatchedScanInfo, kvs1, kvs2);
+    List<List<Cell>> actual = scanAllRows(scanInfo, kvs1, kvs2);
+    assertEquals(3, expected.size());
+    assertEquals(Arrays.asList(kvs1[0], kvs2[0], kvs1[1], kvs2[2]), expected.get(0));
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testBatchedScanSkipsAndStopsLikeUnbatched() throws IOException {
+    // Versions at 12 are past the time range and skipped inside a run. Running out of versions
+    // or the batch limit ends the run and is handled outside it.
+    KeyValue[] kvs1 = new KeyValue[] {
+        create("R1", "cf", "a", 12, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "a", 11, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "a", 10, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "b", 12, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "c", 11, KeyValue.Type.Put, "dont-care"),
+        create("R2", "cf", "a", 12, KeyValue.Type.Put, "dont-care"),
+        create("R2", "cf", "b", 11, KeyValue.Type.Put, "dont-care"),
+    };
+    KeyValue[] kvs2 = new KeyValue[] {
+        create("R1", "cf", "a", 9, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "c", 10, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "d", 12, KeyValue.Type.Put, "dont-care"),
+        create("R1", "cf", "e", 10, KeyValue.Type.Put, "dont-care"),
+        create("R2", "cf", "c", 10, KeyValue.Type.Put, "dont-care"),
+    };
+    Configuration conf = new Configuration(CONF);
+    conf.setBoolean(StoreScanner.STORESCANNER_BATCHED_SCAN_ENABLE, false);
+    ScanInfo unbatchedScanInfo = new ScanInfo(conf, CF, 0, Integer.MAX_VALUE, Long.MAX_VALUE,
+        KeepDeletedCells.FALSE, HConstants.DEFAULT_BLOCKSIZE, 0, CellComparator.COMPARATOR, false);
+    Scan scan = new Scan().setTimeRange(0, 12).setMaxVersions(2);
+
+    List<List<Cell>> expected = scanAllRows(unbatchedScanInfo, scan, 2, kvs1, kvs2);
+    List<List<Cell>> actual = scanAllRows(scanInfo, scan, 2, kvs1, kvs2);
+    assertEquals(Arrays.asList(
+        Arrays.asList(kvs1[1], kvs1[2]),
+        Arrays.asList(kvs1[4], kvs2[1]),
+        Arrays.asList(kvs2[3]),
+        Arrays.asList(kvs1[6], kvs2[4])), expected);
+    assertEquals(expected, actual);
+  }
+
+  private List<List<Cell>> scanAllRows(ScanInfo scanInfo, KeyValue[]... kvs) throws IOException {
+    return scanAllRows(scanInfo, new Scan(), -1, kvs);
+  }
+
+  private List<List<Cell>> scanAllRows(ScanInfo scanInfo, Scan scanSpec, int batch,
+      KeyValue[]... kvs) throws IOException {
+    List<List<Cell>> rows = new ArrayList<>();
+    try (StoreScanner scan = new StoreScanner(scanSpec, scanInfo, null, scanFixture(kvs))) {
+      boolean more;
+      do {
+        List<Cell> results = new ArrayList<>();
+        more = scan.next(results, ScannerContext.newBuilder().setBatchLimit(batch).build());
+        if (!results.isEmpty()) {
+          rows.add(results);
+        }
+      } while (more);
+    }
+    return rows;
+  }
+
   private static final KeyValue[] kvs = new KeyValue[] {
         create("R1", "cf", "a", 11, KeyValue.Type.Put, "dont-care"),
         create("R1", "cf", "b", 11, KeyValue.Type.Put, "dont-care"),
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestTournamentTree {
+
+  private static final Comparator<Integer> COMPARATOR = Integer::compare;
+
+  @Test
+  public void testEmpty() {
+    TournamentTree<Integer> tree = new TournamentTree<>(0, COMPARATOR);
+    assertTrue(tree.isEmpty());
+    assertNull(tree.peek());
+    assertNull(tree.poll());
+    assertEquals(Integer.valueOf(7), tree.pushPop(7));
+    assertTrue(tree.isEmpty());
+    assertNull(tree.replaceTop(3));
+    assertEquals(1, tree.size());
+    assertEquals(Integer.valueOf(3), tree.poll());
+    assertTrue(tree.isEmpty());
+  }
+
+  @Test
+  public void testMergeOrder() {
+    for (int k : new int[] { 1, 2, 3, 5, 8, 13, 64, 100 }) {
+      TournamentTree<Integer> tree = new TournamentTree<>(k, COMPARATOR);
+      List<Integer> expected = new ArrayList<>();
+      Random rand = new Random(k);
+      for (int i = 0; i < k; i++) {
+        int value = rand.nextInt(1000);
+        tree.add(value);
+        expected.add(value);
+      }
+      assertEquals(k, tree.size());
+      Collections.sort(expected);
+      for (Integer value : expected) {
+        assertEquals(value, tree.peek());
+        assertEquals(value, tree.poll());
+      }
+      assertTrue(tree.isEmpty());
+    }
+  }
+
+  @Test
+  public void testReplaceTopAndPushPop() {
+    TournamentTree<Integer> tree = new TournamentTree<>(3, COMPARATOR);
+    tree.add(10);
+    tree.add(20);
+    tree.add(30);
+    assertEquals(Integer.valueOf(5), tree.pushPop(5));
+    assertEquals(Integer.valueOf(10), tree.pushPop(25));
+    assertEquals(Integer.valueOf(20), tree.peek());
+    // replaceTop hands back the old top even when the new element sorts before it
+    assertEquals(Integer.valueOf(20), tree.replaceTop(1));
+    assertEquals(Integer.valueOf(1), tree.poll());
+    assertEquals(Integer.valueOf(25), tree.poll());
+    assertEquals(Integer.valueOf(30), tree.poll());
+    assertNull(tree.poll());
+  }
+
+  @Test
+  public void testGrowAndIterate() {
+    TournamentTree<Integer> tree = new TournamentTree<>(2, COMPARATOR);
+    for (int i = 9; i >= 0; i--) {
+      tree.add(i);
+    }
+    assertEquals(10, tree.size());
+    int sum = 0;
+    for (Integer value : tree) {
+      sum += value;
+    }
+    assertEquals(45, sum);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.valueOf(i), tree.poll());
+    }
+    tree.add(4);
+    tree.clear();
+    assertTrue(tree.isEmpty());
+    assertTrue(!tree.iterator().hasNext());
+  }
+
+  @Test
+  public void testRandomOperationsAgainstPriorityQueue() {
+    Random rand = new Random(42L);
+    for (int k : new int[] { 1, 2, 7, 32, 100 }) {
+      TournamentTree<Integer> tree = new TournamentTree<>(k, COMPARATOR);
+      PriorityQueue<Integer> queue = new PriorityQueue<>(k, COMPARATOR);
+      for (int i = 0; i < 10000; i++) {
+        int value = rand.nextInt(500);
+        switch (queue.size() < k ? rand.nextInt(4) : 1 + rand.nextInt(3)) {
+          case 0:
+            tree.add(value);
+            queue.add(value);
+            break;
+          case 1:
+            assertEquals(queue.poll(), tree.poll());
+            break;
+          case 2:
+            queue.add(value);
+            assertEquals(queue.poll(), tree.pushPop(value));
+            break;
+          default:
+            if (!queue.isEmpty()) {
+              Integer top = queue.poll();
+              queue.add(value);
+              assertEquals(top, tree.replaceTop(value));
+            }
+            break;
+        }
+        assertEquals(queue.size(), tree.size());
+        assertEquals(queue.peek(), tree.peek());
+      }
+    }
+  }
+}
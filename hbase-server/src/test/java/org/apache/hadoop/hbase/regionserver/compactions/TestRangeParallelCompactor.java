@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.DefaultStoreEngine;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestRangeParallelCompactor {
+
+  private static final HBaseTestingUtility UTIL = HBaseTestingUtility.createLocalHTU();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  private static final int ROWS = 1000;
+
+  @Rule
+  public TestName name = new TestName();
+
+  private HRegion region;
+
+  private HRegion createRegion(long minSize) throws IOException {
+    Configuration conf = UTIL.getConfiguration();
+    conf.set(DefaultStoreEngine.DEFAULT_COMPACTOR_CLASS_KEY,
+      RangeParallelCompactor.class.getName());
+    conf.setInt(RangeParallelCompactor.MAX_RANGES_KEY, 4);
+    conf.setLong(RangeParallelCompactor.MIN_SIZE_KEY, minSize);
+    // Small blocks, so the root data index has plenty of keys to cut on
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(TableName.valueOf(name.getMethodName()))
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY).setBlocksize(512).build())
+        .build();
+    region = UTIL.createLocalHRegion(htd, null, null);
+    return region;
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    }
+  }
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row-%04d", i));
+  }
+
+  private void load() throws IOException {
+    // Each file holds a third of the rows, spread over the whole key space
+    for (int file = 0; file < 3; file++) {
+      for (int i = file; i < ROWS; i += 3) {
+        region.put(new Put(row(i)).addColumn(FAMILY, QUALIFIER, Bytes.toBytes(i)));
+      }
+      region.flush(true);
+    }
+    for (int i = 0; i < ROWS; i += 10) {
+      region.delete(new Delete(row(i)));
+    }
+    region.flush(true);
+  }
+
+  private void assertRows() throws IOException {
+    List<Cell> cells = new ArrayList<>();
+    int count = 0;
+    try (InternalScanner scanner = region.getScanner(new Scan())) {
+      boolean more;
+      int expected = 1;
+      do {
+        more = scanner.next(cells);
+        if (cells.isEmpty()) {
+          continue;
+        }
+        assertEquals(1, cells.size());
+        Cell cell = cells.get(0);
+        assertEquals(Bytes.toString(row(expected)), Bytes.toString(CellUtil.cloneRow(cell)));
+        assertEquals(expected, Bytes.toInt(CellUtil.cloneValue(cell)));
+        count++;
+        expected += expected % 10 == 9 ? 2 : 1;
+        cells.clear();
+      } while (more);
+    }
+    assertEquals(ROWS - ROWS / 10, count);
+  }
+
+  @Test
+  public void testCompactInRanges() throws IOException {
+    createRegion(0);
+    load();
+    region.compact(true);
+
+    HStore store = region.getStore(FAMILY);
+    List<HStoreFile> files = new ArrayList<>(store.getStorefiles());
+    assertEquals(4, files.size());
+    // The progress counts the cells of all the ranges
+    long cells = files.stream().mapToLong(f -> f.getReader().getEntries()).sum();
+    CompactionProgress progress = store.getCompactionProgress();
+    assertEquals(cells, progress.getCurrentCompactedKvs());
+    assertEquals(cells, progress.getTotalCompactingKvs());
+    files.sort((f1, f2) -> Bytes.compareTo(f1.getFirstKey().map(CellUtil::cloneRow).get(),
+      f2.getFirstKey().map(CellUtil::cloneRow).get()));
+    for (int i = 0; i < files.size(); i++) {
+      HStoreFile file = files.get(i);
+      assertTrue(file.isMajorCompactionResult());
+      assertTrue(file.excludeFromMinorCompaction());
+      if (i > 0) {
+        // The ranges do not overlap
+        assertTrue(Bytes.compareTo(CellUtil.cloneRow(files.get(i - 1).getLastKey().get()),
+          CellUtil.cloneRow(file.getFirstKey().get())) < 0);
+      }
+    }
+    assertRows();
+
+    // Compacting the output again cuts it the same way
+    region.compact(true);
+    assertEquals(4, store.getStorefilesCount());
+    assertRows();
+  }
+
+  @Test
+  public void testSmallCompactionInOneRange() throws IOException {
+    createRegion(Long.MAX_VALUE);
+    load();
+    region.compact(true);
+
+    HStore store = region.getStore(FAMILY);
+    assertEquals(1, store.getStorefilesCount());
+    assertFalse(store.getStorefiles().iterator().next().excludeFromMinorCompaction());
+    assertRows();
+  }
+}
@@ -37,6 +37,7 @@ import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.master.CompactionThroughputBudget;
 import org.apache.hadoop.hbase.regionserver.DefaultStoreEngine;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.HRegionServer;
@@ -238,6 +239,35 @@ public class TestCompactionWithThroughputController {
     }
   }
 
+  @Test
+  public void testClusterThroughputBudget() throws Exception {
+    Configuration conf = TEST_UTIL.getConfiguration();
+    conf.set(StoreEngine.STORE_ENGINE_CLASS_KEY, DefaultStoreEngine.class.getName());
+    conf.set(CompactionThroughputControllerFactory.HBASE_THROUGHPUT_CONTROLLER_KEY,
+      PressureAwareCompactionThroughputController.class.getName());
+    conf.setLong(
+      PressureAwareCompactionThroughputController
+        .HBASE_HSTORE_COMPACTION_MAX_THROUGHPUT_LOWER_BOUND,
+      10L * 1024 * 1024);
+    conf.setLong(CompactionThroughputBudget.CLUSTER_THROUGHPUT_KEY, 4L * 1024 * 1024);
+    TEST_UTIL.startMiniCluster(1);
+    try {
+      HRegionServer regionServer = TEST_UTIL.getMiniHBaseCluster().getRegionServer(0);
+      PressureAwareCompactionThroughputController throughputController =
+          (PressureAwareCompactionThroughputController) regionServer.compactSplitThread
+              .getCompactionThroughputController();
+      // The only region server gets the whole budget, below its own limit
+      TEST_UTIL.waitFor(10000, () -> Math
+          .abs(throughputController.getMaxThroughput() - 4L * 1024 * 1024) < EPSILON);
+
+      throughputController.setClusterMaxThroughput(Double.MAX_VALUE);
+      assertEquals(10L * 1024 * 1024, throughputController.getMaxThroughput(), EPSILON);
+    } finally {
+      conf.unset(CompactionThroughputBudget.CLUSTER_THROUGHPUT_KEY);
+      TEST_UTIL.shutdownMiniCluster();
+    }
+  }
+
   /**
    * Test the logic that we calculate compaction pressure for a striped store.
    */
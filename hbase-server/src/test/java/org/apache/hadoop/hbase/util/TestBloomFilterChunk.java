@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 import junit.framework.TestCase;
 
 import org.apache.hadoop.hbase.nio.MultiByteBuff;
+import org.apache.hadoop.hbase.regionserver.BloomType;
 import org.apache.hadoop.hbase.testclassification.MiscTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.junit.experimental.categories.Category;
@@ -121,6 +122,35 @@ public class TestBloomFilterChunk extends TestCase {
     // test: foldFactor > log(max/actual)
   }
 
+  public void testBlockedBloomFold() throws Exception {
+    BloomFilterChunk b = BloomFilterUtil.createBySize(16 * 1024, 0.01, Hash.MURMUR_HASH, 3,
+      BloomType.ROW, true);
+    b.allocBloom();
+    long origSize = b.getByteSize();
+    assertEquals(0, origSize % (BloomFilterUtil.BLOOM_BLOCK_BYTES << 3));
+    int keys = (int) (b.getMaxKeys() / 5);
+    for (int i = 0; i < keys; ++i) {
+      byte[] ib = Bytes.toBytes(i);
+      b.add(ib, 0, ib.length);
+    }
+    b.compactBloom();
+    // folded by whole blocks only
+    assertEquals(origSize >> 2, b.getByteSize());
+    int falsePositives = 0;
+    for (int i = 0; i < 2 * keys; ++i) {
+      byte[] bytes = Bytes.toBytes(i);
+      if (BloomFilterUtil.contains(bytes, 0, bytes.length, new MultiByteBuff(b.bloom), 0,
+          (int) b.byteSize, b.hash, b.hashCount, true)) {
+        if (i >= keys)
+          falsePositives++;
+      } else {
+        assertFalse(i < keys);
+      }
+    }
+    // the error rate of a blocked Bloom filter is a bit higher than the one it is sized for
+    assertTrue("False positives: " + falsePositives, falsePositives <= keys * 0.04);
+  }
+
   public void testBloomPerf() throws Exception {
     // add
     float err = (float)0.01;
@@ -0,0 +1,166 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.apache.hadoop.hbase.wal.QueueDepthGroupingStrategy.NUM_REGION_GROUPS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor.EventType;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestQueueDepthGroupingStrategy {
+
+  private QueueDepthGroupingStrategy strategy;
+  private final Map<String, Long> depths = new HashMap<>();
+
+  @Before
+  public void setUp() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(NUM_REGION_GROUPS, 3);
+    strategy = new QueueDepthGroupingStrategy();
+    strategy.init(conf, "test");
+    depths.clear();
+    strategy.setQueueDepth(group -> depths.getOrDefault(group, 0L));
+  }
+
+  private String group(String region) {
+    return strategy.group(Bytes.toBytes(region), null);
+  }
+
+  @Test
+  public void testIdleGroupsAreFilledEvenly() {
+    Map<String, Integer> regionsPerGroup = new HashMap<>();
+    for (int i = 0; i < 9; i++) {
+      regionsPerGroup.merge(group("region-" + i), 1, Integer::sum);
+    }
+    assertEquals(3, regionsPerGroup.size());
+    for (int count : regionsPerGroup.values()) {
+      assertEquals(3, count);
+    }
+  }
+
+  @Test
+  public void testLeastLoadedGroupIsPicked() {
+    Set<String> groups = new HashSet<>();
+    for (int i = 0; i < 3; i++) {
+      groups.add(group("region-" + i));
+    }
+    assertEquals(3, groups.size());
+    String busy = group("region-0");
+    for (String group : groups) {
+      depths.put(group, group.equals(busy) ? 0L : 100L);
+    }
+    // the group with the fewest pending appends wins even though it holds as many regions
+    assertEquals(busy, group("region-3"));
+    depths.put(busy, 1000L);
+    assertNotEquals(busy, group("region-4"));
+  }
+
+  @Test
+  public void testRegionStaysInItsGroup() {
+    String first = group("region-0");
+    depths.put(first, 1000L);
+    // a region keeps its wal whatever the load, so its edits stay ordered
+    for (int i = 0; i < 10; i++) {
+      assertEquals(first, group("region-0"));
+    }
+  }
+
+  @Test
+  public void testClosedRegionLeavesItsGroup() {
+    for (int i = 0; i < 6; i++) {
+      group("region-" + i);
+    }
+    String closedGroup = group("region-0");
+    strategy.regionClosed(Bytes.toBytes("region-0"));
+    // closing it again or closing an unknown region changes nothing
+    strategy.regionClosed(Bytes.toBytes("region-0"));
+    strategy.regionClosed(Bytes.toBytes("region-unknown"));
+    // the group of the closed region now holds the fewest regions
+    assertEquals(closedGroup, group("region-6"));
+  }
+
+  @Test
+  public void testCloseMarkerClosesRegion() throws IOException {
+    RegionInfo closing = RegionInfoBuilder.newBuilder(TableName.valueOf("test")).build();
+    for (int i = 0; i < 5; i++) {
+      group("region-" + i);
+    }
+    String closingGroup = strategy.group(closing.getEncodedNameAsBytes(), null);
+    WALActionsListener listener = new RegionGroupingProvider.RegionCloseListener(strategy);
+    WALKey key = new WALKey(closing.getEncodedNameAsBytes(), closing.getTable(),
+        System.currentTimeMillis());
+    // an open marker leaves the region where it is
+    listener.postAppend(0, 0, key, regionEvent(EventType.REGION_OPEN, closing));
+    assertNotEquals(closingGroup, group("region-5"));
+    listener.postAppend(0, 0, key, regionEvent(EventType.REGION_CLOSE, closing));
+    assertEquals(closingGroup, group("region-6"));
+  }
+
+  @Test
+  public void testRegionClosedWithoutMarkerLeavesItsGroup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(NUM_REGION_GROUPS, 3);
+    conf.setClass(WALFactory.WAL_PROVIDER, RegionGroupingProvider.class, WALProvider.class);
+    conf.set(RegionGroupingProvider.REGION_GROUPING_STRATEGY,
+      RegionGroupingProvider.Strategies.queueDepth.name());
+    WALFactory wals = new WALFactory(conf, null, "testRegionClosedWithoutMarkerLeavesItsGroup");
+    try {
+      strategy = (QueueDepthGroupingStrategy) ((RegionGroupingProvider) wals.provider)
+          .getRegionGroupingStrategy();
+      for (int i = 0; i < 6; i++) {
+        group("region-" + i);
+      }
+      String closedGroup = group("region-0");
+      // a region closed on abort writes no close marker, its close path tells the factory
+      wals.regionClosed(Bytes.toBytes("region-0"));
+      assertEquals(closedGroup, group("region-6"));
+    } finally {
+      wals.close();
+    }
+  }
+
+  private static WALEdit regionEvent(EventType type, RegionInfo hri) {
+    return WALEdit.createRegionEventWALEdit(hri, ProtobufUtil.toRegionEventDescriptor(type, hri,
+      1, ServerName.valueOf("localhost", 16020, 1), new TreeMap<>(Bytes.BYTES_COMPARATOR)));
+  }
+}